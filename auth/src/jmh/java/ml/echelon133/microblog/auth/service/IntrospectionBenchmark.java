@@ -0,0 +1,129 @@
+package ml.echelon133.microblog.auth.service;
+
+import ml.echelon133.microblog.auth.model.RedisOAuth2Authorization;
+import ml.echelon133.microblog.shared.user.Role;
+import ml.echelon133.microblog.shared.user.Roles;
+import ml.echelon133.microblog.shared.user.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenIntrospection;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.net.URL;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static ml.echelon133.microblog.shared.auth.TokenOwnerIdExtractor.TOKEN_OWNER_KEY;
+
+/**
+ * Compares the CPU cost of both ways of answering an introspection request, once the data of the token
+ * has been read from Redis:
+ * <ul>
+ *     <li>{@code authorization} - unflattening the whole authorization and building claims from it (which is what
+ *     the default introspection provider does)</li>
+ *     <li>{@code precomputedClaims} - decoding claims precomputed by {@link PrecomputedIntrospectionService}</li>
+ * </ul>
+ * Round trips to Redis are not measured. The first way needs two of them (a lookup of the secondary index
+ * and a read of the authorization hash), the second way needs a single read of a string.
+ *
+ * Run with {@code ./gradlew :auth:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IntrospectionBenchmark {
+
+    private AuthorizationMapper authorizationMapper;
+    private PrecomputedIntrospectionService introspectionService;
+    private RedisOAuth2Authorization storedAuthorization;
+    private String storedClaims;
+    private String clientId;
+
+    @Setup
+    public void setup() throws Exception {
+        var registeredClient = RegisteredClient.withId(UUID.randomUUID().toString())
+                .clientId("public-client")
+                .clientSecret("{noop}secret")
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .clientAuthenticationMethod(ClientAuthenticationMethod.NONE)
+                .redirectUri("http://127.0.0.1:9999")
+                .scope("test")
+                .build();
+        var registeredClientRepository = new InMemoryRegisteredClientRepository(registeredClient);
+        authorizationMapper = new AuthorizationMapper(registeredClientRepository);
+        // the benchmark never touches redis, only encoding and decoding of claims is measured
+        introspectionService = new PrecomputedIntrospectionService(null, registeredClientRepository, Clock.systemUTC());
+        clientId = registeredClient.getClientId();
+
+        var issuedAt = Instant.now();
+        var expiresAt = issuedAt.plus(Duration.ofHours(3));
+        var user = new User("testuser", "test@test.com", "", "", Set.of(new Role(Roles.ROLE_USER.name())));
+        var authorizationRequest = OAuth2AuthorizationRequest.authorizationCode()
+                .authorizationUri("http://localhost:8090/oauth2/authorize")
+                .clientId(clientId)
+                .redirectUri("http://127.0.0.1:9999")
+                .scope("test")
+                .build();
+        // collections which are allowlisted by spring security, just like the ones in issued tokens
+        Map<String, Object> claims = new HashMap<>(Map.of(
+                "sub", "testuser",
+                "aud", Collections.singletonList(clientId),
+                "nbf", issuedAt,
+                "scope", Collections.unmodifiableSet(Set.of("test")),
+                "iss", new URL("http://localhost:8090"),
+                "exp", expiresAt,
+                "iat", issuedAt,
+                "jti", UUID.randomUUID().toString(),
+                TOKEN_OWNER_KEY, UUID.randomUUID()
+        ));
+        var accessToken = new OAuth2AccessToken(
+                OAuth2AccessToken.TokenType.BEARER, UUID.randomUUID().toString(), issuedAt, expiresAt, Set.of("test")
+        );
+        var authorization = OAuth2Authorization.withRegisteredClient(registeredClient)
+                .id(UUID.randomUUID().toString())
+                .principalName(user.getUsername())
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .token(accessToken, (metadata) ->
+                        metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, Collections.unmodifiableMap(claims))
+                )
+                .attributes((attributes) -> attributes.putAll(Map.of(
+                        OAuth2AuthorizationRequest.class.getName(), authorizationRequest,
+                        "java.security.Principal",
+                        new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities())
+                )))
+                .authorizedScopes(Set.of("test"))
+                .build();
+
+        storedAuthorization = authorizationMapper.flatten(authorization);
+        storedClaims = introspectionService.encode(
+                PrecomputedIntrospectionService.buildIntrospection(authorization.getAccessToken(), clientId).getClaims()
+        );
+    }
+
+    @Benchmark
+    public OAuth2TokenIntrospection authorization() {
+        var authorization = authorizationMapper.unflatten(storedAuthorization);
+        return PrecomputedIntrospectionService.buildIntrospection(authorization.getAccessToken(), clientId);
+    }
+
+    @Benchmark
+    public OAuth2TokenIntrospection precomputedClaims() {
+        return OAuth2TokenIntrospection.withClaims(introspectionService.decode(storedClaims)).build();
+    }
+}
@@ -1,10 +1,8 @@
 package ml.echelon133.microblog.auth.config;
 
-import com.nimbusds.jose.jwk.JWKSet;
-import com.nimbusds.jose.jwk.RSAKey;
-import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
-import com.nimbusds.jose.jwk.source.JWKSource;
-import com.nimbusds.jose.proc.SecurityContext;
+import ml.echelon133.microblog.auth.service.PrecomputedIntrospectionService;
+import ml.echelon133.microblog.auth.service.SigningKeyRingService;
+import ml.echelon133.microblog.shared.auth.AccessTokens;
 import ml.echelon133.microblog.shared.scope.MicroblogScope;
 import ml.echelon133.microblog.shared.user.User;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,6 +16,8 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.core.AuthorizationGrantType;
 import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
 import org.springframework.security.oauth2.server.authorization.authentication.*;
 import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
@@ -27,18 +27,14 @@ import org.springframework.security.oauth2.server.authorization.settings.Authori
 import org.springframework.security.oauth2.server.authorization.settings.ClientSettings;
 import org.springframework.security.oauth2.server.authorization.settings.OAuth2TokenFormat;
 import org.springframework.security.oauth2.server.authorization.settings.TokenSettings;
+import org.springframework.security.oauth2.server.authorization.token.JwtEncodingContext;
 import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenClaimsContext;
-import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenClaimsSet;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenContext;
 import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenCustomizer;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.LoginUrlAuthenticationEntryPoint;
 
-import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.interfaces.RSAPrivateKey;
-import java.security.interfaces.RSAPublicKey;
 import java.time.Duration;
-import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.UUID;
 import java.util.function.Consumer;
@@ -59,6 +55,37 @@ public class OAuth2SecurityConfig {
     @Value("${CONFIDENTIAL_CLIENT_SECRET}")
     private String clientSecret;
 
+    /*
+    Identifier of the auth service, which is the 'iss' claim of issued tokens. Resource servers only accept
+    self-contained access tokens with this issuer.
+     */
+    @Value("${auth.issuer}")
+    private String issuer;
+
+    /*
+    Format of issued access tokens, either 'reference' (opaque tokens, which resource servers introspect)
+    or 'self-contained' (JWTs, which resource servers verify locally).
+     */
+    @Value("${auth.access-token.format}")
+    private String accessTokenFormat;
+
+    @Value("${auth.access-token.time-to-live}")
+    private Duration accessTokenTimeToLive;
+
+    /*
+    How long a refresh token of the public client can be used to get a new access token (and a new refresh token,
+    since refresh tokens are rotated), i.e. how long users do not need to log in again.
+     */
+    @Value("${auth.refresh-token.public-client-time-to-live}")
+    private Duration publicClientRefreshTokenTimeToLive;
+
+    /*
+    How long a refresh token of the admin client can be used, which is much shorter than for the public client,
+    because its tokens grant admin scopes.
+     */
+    @Value("${auth.refresh-token.admin-client-time-to-live}")
+    private Duration adminClientRefreshTokenTimeToLive;
+
     @Autowired
     public OAuth2SecurityConfig(PasswordEncoder passwordEncoder) {
         this.passwordEncoder = passwordEncoder;
@@ -66,7 +93,11 @@ public class OAuth2SecurityConfig {
 
     @Bean
     @Order(HIGHEST_PRECEDENCE)
-    public SecurityFilterChain authorizationServerSecurityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain authorizationServerSecurityFilterChain(
+            HttpSecurity http,
+            PrecomputedIntrospectionService precomputedIntrospectionService,
+            OAuth2AuthorizationService authorizationService,
+            RegisteredClientRepository registeredClientRepository) throws Exception {
         OAuth2AuthorizationServerConfigurer authorizationServerConfigurer =
                 new OAuth2AuthorizationServerConfigurer();
         RequestMatcher endpointsMatcher = authorizationServerConfigurer
@@ -76,6 +107,26 @@ public class OAuth2SecurityConfig {
                 .authorizationEndpoint(authorizationEndpoint ->
                         authorizationEndpoint
                                 .authenticationProviders(configureAuthenticationValidator())
+                )
+                // by default, public clients can only authenticate at the token endpoint when they exchange their
+                // authorization codes, these let them authenticate when they use their refresh tokens
+                .clientAuthentication(clientAuthentication ->
+                        clientAuthentication
+                                .authenticationConverter(new PublicClientRefreshTokenAuthenticationConverter())
+                                .authenticationProvider(
+                                        new PublicClientRefreshTokenAuthenticationProvider(registeredClientRepository)
+                                )
+                )
+                .tokenEndpoint(tokenEndpoint ->
+                        tokenEndpoint
+                                .authenticationProviders(issueRefreshTokensToPublicClients(authorizationService))
+                )
+                // custom providers go before the default one, which is only used when this one returns null
+                .tokenIntrospectionEndpoint(tokenIntrospectionEndpoint ->
+                        tokenIntrospectionEndpoint
+                                .authenticationProvider(
+                                        new PrecomputedIntrospectionAuthenticationProvider(precomputedIntrospectionService)
+                                )
                 );
 
         http
@@ -112,11 +163,42 @@ public class OAuth2SecurityConfig {
                 });
     }
 
+    private Consumer<List<AuthenticationProvider>> issueRefreshTokensToPublicClients(
+            OAuth2AuthorizationService authorizationService) {
+        return (authenticationProviders) ->
+                authenticationProviders.replaceAll((authenticationProvider) -> {
+                    if (authenticationProvider instanceof OAuth2AuthorizationCodeAuthenticationProvider) {
+                        return new PublicClientRefreshTokenIssuingProvider(authenticationProvider, authorizationService);
+                    }
+                    return authenticationProvider;
+                });
+    }
+
     @Bean
     public TokenSettings tokenSettings() {
+        OAuth2TokenFormat format;
+        if (OAuth2TokenFormat.REFERENCE.getValue().equals(accessTokenFormat)) {
+            format = OAuth2TokenFormat.REFERENCE;
+        } else if (OAuth2TokenFormat.SELF_CONTAINED.getValue().equals(accessTokenFormat)) {
+            format = OAuth2TokenFormat.SELF_CONTAINED;
+        } else {
+            throw new IllegalStateException(String.format(
+                    "access token format '%s' is not supported, use either '%s' or '%s'",
+                    accessTokenFormat, OAuth2TokenFormat.REFERENCE.getValue(), OAuth2TokenFormat.SELF_CONTAINED.getValue()
+            ));
+        }
         return TokenSettings.builder()
-                .accessTokenFormat(OAuth2TokenFormat.REFERENCE)
-                .accessTokenTimeToLive(Duration.of(3, ChronoUnit.HOURS))
+                .accessTokenFormat(format)
+                .accessTokenTimeToLive(accessTokenTimeToLive)
+                .build();
+    }
+
+    private TokenSettings refreshingTokenSettings(Duration refreshTokenTimeToLive) {
+        return TokenSettings.withSettings(tokenSettings().getSettings())
+                .refreshTokenTimeToLive(refreshTokenTimeToLive)
+                // every refresh replaces the refresh token, and using a replaced refresh token removes
+                // the whole authorization (see CustomOAuth2AuthorizationService)
+                .reuseRefreshTokens(false)
                 .build();
     }
 
@@ -124,19 +206,36 @@ public class OAuth2SecurityConfig {
     public OAuth2TokenCustomizer<OAuth2TokenClaimsContext> accessTokenCustomizer() {
         // enrich the access token with the id of the token owner, so that
         // resource servers have access to it during token introspection
+        return context -> context.getClaims().claim(TOKEN_OWNER_KEY, findTokenOwnerId(context));
+    }
+
+    @Bean
+    public OAuth2TokenCustomizer<JwtEncodingContext> jwtCustomizer(SigningKeyRingService signingKeyRingService) {
         return context -> {
-            OAuth2TokenClaimsSet.Builder claims = context.getClaims();
-            // this type assumption should always be correct because in the current flow
-            // the first step of auth (GET /oauth2/authorize) entails the user exchanging
-            // their username and password for a code needed in the second step
-            UsernamePasswordAuthenticationToken principal = context.getPrincipal();
-            // this cast shouldn't fail because the tokens are filled with the
-            // UserDetails object which is returned by the custom UserDetailsService
-            User innerPrincipal = (User)principal.getPrincipal();
-            claims.claim(TOKEN_OWNER_KEY, innerPrincipal.getId());
+            // the key ring publishes multiple keys, only one of which signs new tokens
+            context.getJwsHeader().keyId(signingKeyRingService.getSigningKeyId());
+
+            // embed the id of the token owner in self-contained access tokens, so that resource servers
+            // have access to it without introspecting the token (scopes are embedded by default)
+            if (OAuth2TokenType.ACCESS_TOKEN.equals(context.getTokenType())) {
+                context.getClaims().claim(TOKEN_OWNER_KEY, findTokenOwnerId(context).toString());
+                // tells access tokens apart from other JWTs signed with the same keys (e.g. ID tokens)
+                context.getJwsHeader().type(AccessTokens.JWT_TYPE);
+            }
         };
     }
 
+    private static UUID findTokenOwnerId(OAuth2TokenContext context) {
+        // this type assumption should always be correct because in the current flow
+        // the first step of auth (GET /oauth2/authorize) entails the user exchanging
+        // their username and password for a code needed in the second step
+        UsernamePasswordAuthenticationToken principal = context.getPrincipal();
+        // this cast shouldn't fail because the tokens are filled with the
+        // UserDetails object which is returned by the custom UserDetailsService
+        User innerPrincipal = (User)principal.getPrincipal();
+        return innerPrincipal.getId();
+    }
+
     @Bean
     public RegisteredClientRepository registeredClientRepository() {
 
@@ -169,65 +268,45 @@ public class OAuth2SecurityConfig {
         AuthorizationGrantType.AUTHORIZATION_CODE combined with ClientAuthenticationMethod.NONE enables
         the Authorization Code with PKCE flow. This flow is for public (non-confidential) clients which
         cannot protect their secrets.
+
+        AuthorizationGrantType.REFRESH_TOKEN lets the client get a new access token (and a new refresh token)
+        when its access token expires, without sending the user through the login form again.
          */
         var publicClient = RegisteredClient.withId(UUID.randomUUID().toString())
                 .clientId("public-client")
                 .clientSecret("{noop}secret") // does not matter because it's not used in this flow
                 .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
                 .clientAuthenticationMethod(ClientAuthenticationMethod.NONE)
                 // redirectUri is required, set it to this placeholder value during the development
                 .redirectUri("http://127.0.0.1:9999")
                 .scopes((scope) -> scope.addAll(MicroblogScope.ALL_SCOPES))
-                .tokenSettings(tokenSettings())
+                .tokenSettings(refreshingTokenSettings(publicClientRefreshTokenTimeToLive))
                 .clientSettings(ClientSettings.builder().requireAuthorizationConsent(false).build())
                 .build();
 
         /*
-        This client is set up just like the public-client, except it only grants admin scopes.
+        This client is set up just like the public-client, except it only grants admin scopes, and its
+        refresh tokens expire much sooner.
          */
         var adminClient = RegisteredClient.withId(UUID.randomUUID().toString())
                 .clientId("admin-client")
                 .clientSecret("{noop}secret1") // does not matter because it's not used in this flow
                 .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
                 .clientAuthenticationMethod(ClientAuthenticationMethod.NONE)
                 // redirectUri is required, set it to this placeholder value during the development
                 .redirectUri("http://127.0.0.1:8888")
                 .scopes((scope) -> scope.addAll(MicroblogScope.Admin.ALL_ADMIN_SCOPES))
-                .tokenSettings(tokenSettings())
+                .tokenSettings(refreshingTokenSettings(adminClientRefreshTokenTimeToLive))
                 .clientSettings(ClientSettings.builder().requireAuthorizationConsent(false).build())
                 .build();
 
         return new InMemoryRegisteredClientRepository(adminClient, publicClient, confidentialClient);
     }
 
-    @Bean
-    public JWKSource<SecurityContext> jwkSource() {
-        KeyPair keyPair = generateRsaKey();
-        RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
-        RSAPrivateKey privateKey = (RSAPrivateKey) keyPair.getPrivate();
-        RSAKey rsaKey = new RSAKey.Builder(publicKey)
-                .privateKey(privateKey)
-                .keyID(UUID.randomUUID().toString())
-                .build();
-        JWKSet jwkSet = new JWKSet(rsaKey);
-        return new ImmutableJWKSet<>(jwkSet);
-    }
-
-    private static KeyPair generateRsaKey() {
-        KeyPair keyPair;
-        try {
-            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
-            keyPairGenerator.initialize(2048);
-            keyPair = keyPairGenerator.generateKeyPair();
-        }
-        catch (Exception ex) {
-            throw new IllegalStateException(ex);
-        }
-        return keyPair;
-    }
-
     @Bean
     public AuthorizationServerSettings providerSettings() {
-        return AuthorizationServerSettings.builder().build();
+        return AuthorizationServerSettings.builder().issuer(issuer).build();
     }
 }
@@ -0,0 +1,49 @@
+package ml.echelon133.microblog.auth.config;
+
+import ml.echelon133.microblog.auth.service.PrecomputedIntrospectionService;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2TokenIntrospectionAuthenticationToken;
+
+/**
+ * {@link AuthenticationProvider} which answers token introspection requests with claims precomputed by
+ * {@link PrecomputedIntrospectionService}.
+ *
+ * This provider is registered before the default introspection provider. Whenever there are no precomputed
+ * claims of a token (e.g. because the token is inactive, or because it had been issued before claims were
+ * precomputed), this provider returns {@code null}, so that the default provider introspects the token using
+ * its authorization.
+ */
+public class PrecomputedIntrospectionAuthenticationProvider implements AuthenticationProvider {
+
+    private final PrecomputedIntrospectionService precomputedIntrospectionService;
+
+    public PrecomputedIntrospectionAuthenticationProvider(PrecomputedIntrospectionService precomputedIntrospectionService) {
+        this.precomputedIntrospectionService = precomputedIntrospectionService;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        var introspectionAuthentication = (OAuth2TokenIntrospectionAuthenticationToken) authentication;
+
+        // just like the default provider, only answer clients which have already been authenticated
+        if (!(introspectionAuthentication.getPrincipal() instanceof OAuth2ClientAuthenticationToken clientPrincipal)
+                || !clientPrincipal.isAuthenticated()) {
+            throw new OAuth2AuthenticationException(OAuth2ErrorCodes.INVALID_CLIENT);
+        }
+
+        var token = introspectionAuthentication.getToken();
+        return precomputedIntrospectionService.find(token)
+                .map(claims -> new OAuth2TokenIntrospectionAuthenticationToken(token, clientPrincipal, claims))
+                .orElse(null);
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return OAuth2TokenIntrospectionAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+}
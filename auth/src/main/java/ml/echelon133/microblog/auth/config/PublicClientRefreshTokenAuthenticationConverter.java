@@ -0,0 +1,57 @@
+package ml.echelon133.microblog.auth.config;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.web.authentication.AuthenticationConverter;
+import org.springframework.util.StringUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link AuthenticationConverter} which extracts the identity of a public client (i.e. a client which only
+ * sends its {@code client_id}) from refresh token requests.
+ *
+ * The default converter of public clients only recognizes authorization code requests with PKCE, which means that
+ * without this converter public clients cannot use their refresh tokens. Requests which contain any credentials
+ * of a confidential client are ignored, so that they are handled by default converters.
+ */
+public class PublicClientRefreshTokenAuthenticationConverter implements AuthenticationConverter {
+
+    @Override
+    public Authentication convert(HttpServletRequest request) {
+        if (!HttpMethod.POST.matches(request.getMethod()) ||
+                !AuthorizationGrantType.REFRESH_TOKEN.getValue().equals(request.getParameter(OAuth2ParameterNames.GRANT_TYPE)) ||
+                request.getHeader(HttpHeaders.AUTHORIZATION) != null ||
+                request.getParameter(OAuth2ParameterNames.CLIENT_SECRET) != null ||
+                request.getParameter(OAuth2ParameterNames.CLIENT_ASSERTION) != null) {
+            return null;
+        }
+
+        var clientIds = request.getParameterValues(OAuth2ParameterNames.CLIENT_ID);
+        if (clientIds == null || !StringUtils.hasText(clientIds[0])) {
+            return null;
+        }
+        if (clientIds.length != 1) {
+            throw new OAuth2AuthenticationException(OAuth2ErrorCodes.INVALID_REQUEST);
+        }
+
+        Map<String, Object> additionalParameters = new HashMap<>();
+        request.getParameterMap().forEach((name, values) -> {
+            if (!OAuth2ParameterNames.CLIENT_ID.equals(name)) {
+                additionalParameters.put(name, values[0]);
+            }
+        });
+        return new OAuth2ClientAuthenticationToken(
+                clientIds[0], ClientAuthenticationMethod.NONE, null, additionalParameters
+        );
+    }
+}
@@ -0,0 +1,59 @@
+package ml.echelon133.microblog.auth.config;
+
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+
+/**
+ * {@link AuthenticationProvider} which authenticates public clients which use their refresh tokens.
+ *
+ * Public clients cannot prove their identity, so just like during the authorization code flow with PKCE, the client
+ * is authenticated as long as it's registered with {@link ClientAuthenticationMethod#NONE}. The refresh token is
+ * then validated by the default refresh token provider, which only accepts refresh tokens issued to the same client.
+ * Since refresh tokens are rotated, a refresh token which leaks after it's been used cannot be used again, and using
+ * it removes the whole authorization (see {@link ml.echelon133.microblog.auth.service.CustomOAuth2AuthorizationService}),
+ * so a stolen refresh token stops working as soon as either the thief or the client uses it after the other one.
+ *
+ * This provider is registered before the default client authentication providers, and returns {@code null}
+ * for all requests other than refresh token requests of public clients.
+ */
+public class PublicClientRefreshTokenAuthenticationProvider implements AuthenticationProvider {
+
+    private final RegisteredClientRepository registeredClientRepository;
+
+    public PublicClientRefreshTokenAuthenticationProvider(RegisteredClientRepository registeredClientRepository) {
+        this.registeredClientRepository = registeredClientRepository;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        var clientAuthentication = (OAuth2ClientAuthenticationToken) authentication;
+
+        var grantType = clientAuthentication.getAdditionalParameters().get(OAuth2ParameterNames.GRANT_TYPE);
+        if (!ClientAuthenticationMethod.NONE.equals(clientAuthentication.getClientAuthenticationMethod()) ||
+                !AuthorizationGrantType.REFRESH_TOKEN.getValue().equals(grantType)) {
+            return null;
+        }
+
+        var clientId = clientAuthentication.getPrincipal().toString();
+        var registeredClient = registeredClientRepository.findByClientId(clientId);
+        if (registeredClient == null ||
+                !registeredClient.getClientAuthenticationMethods().contains(ClientAuthenticationMethod.NONE)) {
+            throw new OAuth2AuthenticationException(OAuth2ErrorCodes.INVALID_CLIENT);
+        }
+
+        return new OAuth2ClientAuthenticationToken(registeredClient, ClientAuthenticationMethod.NONE, null);
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return OAuth2ClientAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+}
@@ -0,0 +1,92 @@
+package ml.echelon133.microblog.auth.config;
+
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AccessTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AuthorizationCodeAuthenticationProvider;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AuthorizationCodeAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.token.DefaultOAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2RefreshTokenGenerator;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
+
+import java.security.Principal;
+
+/**
+ * {@link AuthenticationProvider} which exchanges authorization codes for tokens using
+ * {@link OAuth2AuthorizationCodeAuthenticationProvider}, and then issues refresh tokens to public clients.
+ *
+ * The default provider never issues refresh tokens to clients which use
+ * {@link org.springframework.security.oauth2.core.ClientAuthenticationMethod#NONE}, which means that users
+ * of public clients would have to log in again every time their access token expires. This provider adds
+ * a refresh token to the authorization of every client which is allowed to use the
+ * {@link AuthorizationGrantType#REFRESH_TOKEN} grant, but has not received a refresh token from the default provider.
+ */
+public class PublicClientRefreshTokenIssuingProvider implements AuthenticationProvider {
+
+    private final AuthenticationProvider delegate;
+    private final OAuth2AuthorizationService authorizationService;
+    private final OAuth2TokenGenerator<OAuth2RefreshToken> refreshTokenGenerator = new OAuth2RefreshTokenGenerator();
+
+    public PublicClientRefreshTokenIssuingProvider(AuthenticationProvider delegate,
+                                                   OAuth2AuthorizationService authorizationService) {
+        this.delegate = delegate;
+        this.authorizationService = authorizationService;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        var accessTokenAuthentication = (OAuth2AccessTokenAuthenticationToken) delegate.authenticate(authentication);
+        var registeredClient = accessTokenAuthentication.getRegisteredClient();
+
+        if (accessTokenAuthentication.getRefreshToken() != null ||
+                !registeredClient.getAuthorizationGrantTypes().contains(AuthorizationGrantType.REFRESH_TOKEN)) {
+            return accessTokenAuthentication;
+        }
+
+        var accessToken = accessTokenAuthentication.getAccessToken();
+        var authorization = authorizationService.findByToken(accessToken.getTokenValue(), OAuth2TokenType.ACCESS_TOKEN);
+        if (authorization == null) {
+            throw new OAuth2AuthenticationException(OAuth2ErrorCodes.INVALID_GRANT);
+        }
+
+        var tokenContext = DefaultOAuth2TokenContext.builder()
+                .registeredClient(registeredClient)
+                .principal(authorization.getAttribute(Principal.class.getName()))
+                .authorization(authorization)
+                .authorizedScopes(authorization.getAuthorizedScopes())
+                .tokenType(OAuth2TokenType.REFRESH_TOKEN)
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .authorizationGrant(authentication)
+                .build();
+        var refreshToken = refreshTokenGenerator.generate(tokenContext);
+        if (refreshToken == null) {
+            throw new OAuth2AuthenticationException(new OAuth2Error(
+                    OAuth2ErrorCodes.SERVER_ERROR, "The token generator failed to generate the refresh token.", null
+            ));
+        }
+
+        authorizationService.save(OAuth2Authorization.from(authorization).refreshToken(refreshToken).build());
+
+        return new OAuth2AccessTokenAuthenticationToken(
+                registeredClient,
+                (Authentication) accessTokenAuthentication.getPrincipal(),
+                accessToken,
+                refreshToken,
+                accessTokenAuthentication.getAdditionalParameters()
+        );
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return OAuth2AuthorizationCodeAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+}
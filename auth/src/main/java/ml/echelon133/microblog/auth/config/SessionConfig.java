@@ -0,0 +1,25 @@
+package ml.echelon133.microblog.auth.config;
+
+import ml.echelon133.microblog.auth.service.AuthorizationMapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * Login sessions (which hold the security context of a user who has logged in, and the authorization request
+ * which they have been redirected from) are stored in the auth redis by spring session, instead of
+ * the memory of a single replica, so that every step of the authorization code flow can be handled by any replica.
+ */
+@Configuration
+public class SessionConfig {
+
+    /**
+     * Serializes attributes of sessions as JSON (instead of JDK serialization), which keeps stored sessions small
+     * and only allows deserialization of classes which are allowlisted by spring security.
+     */
+    @Bean
+    public RedisSerializer<Object> springSessionDefaultRedisSerializer() {
+        return new GenericJackson2JsonRedisSerializer(AuthorizationMapper.createObjectMapper());
+    }
+}
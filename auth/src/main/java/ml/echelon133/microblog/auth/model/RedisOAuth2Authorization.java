@@ -1,30 +1,31 @@
 package ml.echelon133.microblog.auth.model;
 
-import org.springframework.data.annotation.Id;
-import org.springframework.data.redis.core.RedisHash;
-import org.springframework.data.redis.core.index.Indexed;
-
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * The minimal version of the recommended way of representing {@link org.springframework.security.oauth2.server.authorization.OAuth2Authorization}
  * in a database in a flattened way.
  *
- * The only difference between the fields of the recommended version and this one (besides the fact that all refresh
- * token fields and openid token fields are not present) is that this version has a separate 'authorizedScopes' field,
+ * The only difference between the fields of the recommended version and this one (besides the fact that all openid
+ * token fields are not present) is that this version has a separate 'authorizedScopes' field,
  * since the 0.4.0 version of the spring-authorization-server added a separate field in the {@link org.springframework.security.oauth2.server.authorization.OAuth2Authorization},
  * which contents were previously stored in attributes under a 'OAuth2Authorization.AUTHORIZED_SCOPE_ATTRIBUTE_NAME'
  * key.
  *
- * <strong>This particular implementation does not hold the information about refresh tokens and openid tokens</strong>,
+ * <strong>This particular implementation does not hold the information about openid tokens</strong>,
  * because these are not used by this authorization server.
  *
+ * Besides the fields of the recommended version, this class holds hashes of refresh tokens which have been rotated
+ * (together with their expiration), so that a rotated refresh token which is used again can be recognized.
+ *
+ * Objects of this class are stored by {@link ml.echelon133.microblog.auth.repository.OAuth2AuthorizationRepository}.
+ *
  * @see <a href="https://docs.spring.io/spring-authorization-server/docs/0.4.0/reference/html/guides/how-to-jpa.html#authorization-entity">The complete JPA version of this class</a>
  */
-@RedisHash(value = "authorization")
 public class RedisOAuth2Authorization {
 
-    @Id
     private String id;
     private String registeredClientId;
     private String principalName;
@@ -32,16 +33,13 @@ public class RedisOAuth2Authorization {
     private String attributes;
     private String authorizedScopes;
 
-    @Indexed
     private String state;
 
-    @Indexed
     private String authorizationCodeValue;
     private Instant authorizationCodeIssuedAt;
     private Instant authorizationCodeExpiresAt;
     private String authorizationCodeMetadata;
 
-    @Indexed
     private String accessTokenValue;
     private Instant accessTokenIssuedAt;
     private Instant accessTokenExpiresAt;
@@ -49,6 +47,13 @@ public class RedisOAuth2Authorization {
     private String accessTokenType;
     private String accessTokenScopes;
 
+    private String refreshTokenValue;
+    private Instant refreshTokenIssuedAt;
+    private Instant refreshTokenExpiresAt;
+    private String refreshTokenMetadata;
+
+    private Map<String, Instant> rotatedRefreshTokens = new HashMap<>();
+
     public RedisOAuth2Authorization() {
     }
 
@@ -187,4 +192,44 @@ public class RedisOAuth2Authorization {
     public void setAccessTokenScopes(String accessTokenScopes) {
         this.accessTokenScopes = accessTokenScopes;
     }
+
+    public String getRefreshTokenValue() {
+        return refreshTokenValue;
+    }
+
+    public void setRefreshTokenValue(String refreshTokenValue) {
+        this.refreshTokenValue = refreshTokenValue;
+    }
+
+    public Instant getRefreshTokenIssuedAt() {
+        return refreshTokenIssuedAt;
+    }
+
+    public void setRefreshTokenIssuedAt(Instant refreshTokenIssuedAt) {
+        this.refreshTokenIssuedAt = refreshTokenIssuedAt;
+    }
+
+    public Instant getRefreshTokenExpiresAt() {
+        return refreshTokenExpiresAt;
+    }
+
+    public void setRefreshTokenExpiresAt(Instant refreshTokenExpiresAt) {
+        this.refreshTokenExpiresAt = refreshTokenExpiresAt;
+    }
+
+    public String getRefreshTokenMetadata() {
+        return refreshTokenMetadata;
+    }
+
+    public void setRefreshTokenMetadata(String refreshTokenMetadata) {
+        this.refreshTokenMetadata = refreshTokenMetadata;
+    }
+
+    public Map<String, Instant> getRotatedRefreshTokens() {
+        return rotatedRefreshTokens;
+    }
+
+    public void setRotatedRefreshTokens(Map<String, Instant> rotatedRefreshTokens) {
+        this.rotatedRefreshTokens = rotatedRefreshTokens;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,56 @@
+package ml.echelon133.microblog.auth.queue;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * Connects to the redis which is used as a queue by all services. It's a different redis than the one
+ * which stores authorizations.
+ */
+@Configuration
+public class QueueConfiguration {
+
+    @Value("${auth.queue.host}")
+    String host;
+
+    @Value("${auth.queue.password}")
+    String password;
+
+    /**
+     * Connection factory of the redis which stores authorizations (and sessions). It would be auto-configured
+     * from {@code spring.redis}, but the auto-configuration backs off as soon as the queue connection factory
+     * is defined, so it's defined here, and it's primary, so that everything but the queue uses it.
+     */
+    @Bean
+    @Primary
+    public LettuceConnectionFactory redisConnectionFactory(RedisProperties redisProperties) {
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(
+                redisProperties.getHost(), redisProperties.getPort()
+        );
+        config.setPassword(RedisPassword.of(redisProperties.getPassword()));
+        return new LettuceConnectionFactory(config);
+    }
+
+    @Bean
+    public LettuceConnectionFactory queueConnectionFactory() {
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(host);
+        config.setPassword(RedisPassword.of(password));
+        return new LettuceConnectionFactory(config);
+    }
+
+    @Bean
+    RedisTemplate<String, Object> queueTemplate(@Qualifier("queueConnectionFactory") RedisConnectionFactory queueConnectionFactory) {
+        RedisTemplate<String, Object> template = new RedisTemplate<>();
+        template.setConnectionFactory(queueConnectionFactory);
+        return template;
+    }
+}
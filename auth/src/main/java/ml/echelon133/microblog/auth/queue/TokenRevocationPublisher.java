@@ -0,0 +1,42 @@
+package ml.echelon133.microblog.auth.queue;
+
+import ml.echelon133.microblog.shared.auth.TokenHash;
+import ml.echelon133.microblog.shared.queue.QueueTopic;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Publishes hashes of revoked tokens to a redis queue.
+ */
+@Service
+public class TokenRevocationPublisher {
+
+    private static final Logger LOGGER = LogManager.getLogger(TokenRevocationPublisher.class);
+    private final RedisTemplate<String, Object> queueTemplate;
+
+    @Autowired
+    public TokenRevocationPublisher(RedisTemplate<String, Object> queueTemplate) {
+        this.queueTemplate = queueTemplate;
+    }
+
+    /**
+     * Publishes a message which makes every resource server evict the cached introspection of the token.
+     *
+     * Failures are only logged, because the token has already been revoked, and resource servers stop
+     * accepting it once its cached introspection expires anyway.
+     *
+     * @param tokenValue value of the revoked token
+     */
+    public void publishRevocation(String tokenValue) {
+        var tokenHash = TokenHash.of(tokenValue);
+        LOGGER.debug(String.format("Publishing a revocation of token with hash '%s'", tokenHash));
+        try {
+            queueTemplate.convertAndSend(QueueTopic.TOKEN_REVOCATION.getTopic(), tokenHash);
+        } catch (RuntimeException e) {
+            LOGGER.error(String.format("Failed to publish a revocation of token with hash '%s'", tokenHash), e);
+        }
+    }
+}
@@ -1,13 +1,259 @@
 package ml.echelon133.microblog.auth.repository;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import ml.echelon133.microblog.auth.model.RedisOAuth2Authorization;
-import org.springframework.data.repository.CrudRepository;
+import ml.echelon133.microblog.shared.auth.TokenHash;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Predicate;
 
+/**
+ * Stores {@link RedisOAuth2Authorization} objects in Redis using plain keys which expire together with the tokens
+ * of authorizations, so that Redis only holds authorizations which still have live tokens.
+ *
+ * Every authorization is stored as JSON under {@code oauth2-authorization:<id>}, and every token of an authorization
+ * (authorization code, access token and refresh token) has a key {@code oauth2-authorization:token:<hash of the token>} which holds
+ * the id of the authorization. Each token key expires together with its token, and the authorization expires
+ * together with the token which lives the longest.
+ *
+ * When a refresh rotates the refresh token of an authorization, the hash of the rotated refresh token is kept
+ * in the authorization (and its token key is kept until it expires), so that a rotated refresh token which is
+ * used again can be recognized by {@link #findByRotatedRefreshTokenValue(String)}.
+ *
+ * Saving and deleting an authorization is a single pipelined round trip. Finding an authorization by any of its
+ * tokens takes two round trips (the token key, then the authorization), because the key of the authorization
+ * is only known after the token key is read, so it could not be declared upfront by a script.
+ */
 @Repository
-public interface OAuth2AuthorizationRepository extends CrudRepository<RedisOAuth2Authorization, String> {
-    Optional<RedisOAuth2Authorization> findByAuthorizationCodeValue(String token);
-    Optional<RedisOAuth2Authorization> findByAccessTokenValue(String token);
+public class OAuth2AuthorizationRepository {
+
+    static final String AUTHORIZATION_KEY_PREFIX = "oauth2-authorization:";
+    static final String TOKEN_KEY_PREFIX = AUTHORIZATION_KEY_PREFIX + "token:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final Clock clock;
+    private final ObjectMapper objectMapper;
+
+    /*
+    How long an authorization which does not have any expiring tokens (e.g. because it's waiting for
+    its authorization code) is stored.
+     */
+    @Value("${auth.authorization-store.default-time-to-live}")
+    Duration defaultTimeToLive;
+
+    @Autowired
+    public OAuth2AuthorizationRepository(StringRedisTemplate redisTemplate, Clock clock) {
+        this.redisTemplate = redisTemplate;
+        this.clock = clock;
+        // all fields of a flattened authorization are strings and instants
+        this.objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    }
+
+    /**
+     * Saves the authorization and (re)sets keys of its tokens, using a single pipelined round trip.
+     * Tokens which have already expired are not indexed, and an authorization all of whose tokens have
+     * expired is deleted instead of being saved. Keys of tokens of the previous version which have been
+     * replaced (e.g. by a refresh) are deleted in the same round trip, except for the key of a rotated refresh
+     * token, whose hash is added to the rotated refresh tokens of the authorization instead.
+     *
+     * @param authorization authorization to save
+     * @param previous previously saved version of the authorization, {@code null} if it's not known
+     */
+    public void save(RedisOAuth2Authorization authorization, RedisOAuth2Authorization previous) {
+        var now = Instant.now(clock);
+        var authorizationKey = AUTHORIZATION_KEY_PREFIX + authorization.getId();
+        if (previous != null) {
+            authorization.setRotatedRefreshTokens(findRotatedRefreshTokens(authorization, previous, now));
+        }
+        var value = encode(authorization);
+
+        Map<String, Duration> tokenKeys = new HashMap<>();
+        addTokenKey(tokenKeys, authorization.getAuthorizationCodeValue(), authorization.getAuthorizationCodeExpiresAt(), now);
+        addTokenKey(tokenKeys, authorization.getAccessTokenValue(), authorization.getAccessTokenExpiresAt(), now);
+        addTokenKey(tokenKeys, authorization.getRefreshTokenValue(), authorization.getRefreshTokenExpiresAt(), now);
+        var timeToLive = findAuthorizationTimeToLive(authorization, now);
+        var replacedTokenKeys = findReplacedTokenKeys(authorization, previous);
+
+        redisTemplate.executePipelined(new SessionCallback<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                if (timeToLive.isPresent()) {
+                    operations.opsForValue().set(authorizationKey, value, timeToLive.get());
+                    tokenKeys.forEach((key, ttl) -> operations.opsForValue().set(key, authorization.getId(), ttl));
+                } else {
+                    operations.delete(authorizationKey);
+                }
+                if (!replacedTokenKeys.isEmpty()) {
+                    operations.delete(replacedTokenKeys);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Deletes the authorization and keys of its tokens, using a single round trip.
+     *
+     * @param id id of the authorization
+     * @param tokenValues values of tokens of the authorization (authorization code, access token and refresh token)
+     */
+    public void deleteById(String id, Collection<String> tokenValues) {
+        var keys = new ArrayList<String>();
+        keys.add(AUTHORIZATION_KEY_PREFIX + id);
+        tokenValues.forEach(tokenValue -> keys.add(tokenKeyOf(tokenValue)));
+        redisTemplate.delete(keys);
+    }
+
+    /**
+     * Finds the authorization with {@code id}, using a single round trip.
+     */
+    public Optional<RedisOAuth2Authorization> findById(String id) {
+        return Optional.ofNullable(redisTemplate.opsForValue().get(AUTHORIZATION_KEY_PREFIX + id))
+                .map(this::decode);
+    }
+
+    /**
+     * Finds the authorization which contains {@code token}, either as its authorization code, its access token
+     * or its refresh token.
+     */
+    public Optional<RedisOAuth2Authorization> findByTokenValue(String token) {
+        return findByToken(token, authorization ->
+                token.equals(authorization.getAuthorizationCodeValue()) ||
+                        token.equals(authorization.getAccessTokenValue()) ||
+                        token.equals(authorization.getRefreshTokenValue())
+        );
+    }
+
+    public Optional<RedisOAuth2Authorization> findByAuthorizationCodeValue(String token) {
+        return findByToken(token, authorization -> token.equals(authorization.getAuthorizationCodeValue()));
+    }
+
+    public Optional<RedisOAuth2Authorization> findByAccessTokenValue(String token) {
+        return findByToken(token, authorization -> token.equals(authorization.getAccessTokenValue()));
+    }
+
+    public Optional<RedisOAuth2Authorization> findByRefreshTokenValue(String token) {
+        return findByToken(token, authorization -> token.equals(authorization.getRefreshTokenValue()));
+    }
+
+    /**
+     * Finds the authorization whose refresh token used to be {@code token}, before it was rotated.
+     */
+    public Optional<RedisOAuth2Authorization> findByRotatedRefreshTokenValue(String token) {
+        var tokenHash = TokenHash.of(token);
+        return findByToken(token, authorization -> authorization.getRotatedRefreshTokens().containsKey(tokenHash));
+    }
+
+    // keys of replaced tokens are deleted when the authorization is saved, but authorizations found by their
+    // token keys still need to be checked, because a lookup can read the key of a token right before it's replaced
+    private Optional<RedisOAuth2Authorization> findByToken(String token, Predicate<RedisOAuth2Authorization> contains) {
+        var id = redisTemplate.opsForValue().get(tokenKeyOf(token));
+        if (id == null) {
+            return Optional.empty();
+        }
+        return findById(id).filter(contains);
+    }
+
+    // hashes of refresh tokens which have been rotated, and have not expired yet
+    private static Map<String, Instant> findRotatedRefreshTokens(RedisOAuth2Authorization authorization,
+                                                                 RedisOAuth2Authorization previous, Instant now) {
+        var rotatedRefreshTokens = new HashMap<String, Instant>();
+        previous.getRotatedRefreshTokens().forEach((tokenHash, expiresAt) -> {
+            if (expiresAt.isAfter(now)) {
+                rotatedRefreshTokens.put(tokenHash, expiresAt);
+            }
+        });
+        var previousRefreshTokenValue = previous.getRefreshTokenValue();
+        if (previousRefreshTokenValue != null &&
+                !previousRefreshTokenValue.equals(authorization.getRefreshTokenValue()) &&
+                previous.getRefreshTokenExpiresAt() != null &&
+                previous.getRefreshTokenExpiresAt().isAfter(now)) {
+            rotatedRefreshTokens.put(TokenHash.of(previousRefreshTokenValue), previous.getRefreshTokenExpiresAt());
+        }
+        return rotatedRefreshTokens;
+    }
+
+    // keys of rotated refresh tokens are kept (until they expire), so that a rotated refresh token which is used
+    // again can still be followed to its authorization
+    private static List<String> findReplacedTokenKeys(RedisOAuth2Authorization authorization,
+                                                      RedisOAuth2Authorization previous) {
+        if (previous == null) {
+            return List.of();
+        }
+        var currentTokenValues = new HashSet<String>();
+        currentTokenValues.add(authorization.getAuthorizationCodeValue());
+        currentTokenValues.add(authorization.getAccessTokenValue());
+        currentTokenValues.add(authorization.getRefreshTokenValue());
+
+        var replacedTokenKeys = new ArrayList<String>();
+        for (var tokenValue : Arrays.asList(previous.getAuthorizationCodeValue(), previous.getAccessTokenValue())) {
+            if (tokenValue != null && !currentTokenValues.contains(tokenValue)) {
+                replacedTokenKeys.add(tokenKeyOf(tokenValue));
+            }
+        }
+        return replacedTokenKeys;
+    }
+
+    private static void addTokenKey(Map<String, Duration> tokenKeys, String tokenValue, Instant expiresAt, Instant now) {
+        if (tokenValue != null && expiresAt != null && expiresAt.isAfter(now)) {
+            tokenKeys.put(tokenKeyOf(tokenValue), Duration.between(now, expiresAt));
+        }
+    }
+
+    // the authorization lives as long as its longest living token, and is not saved at all when all of its tokens
+    // have expired
+    private Optional<Duration> findAuthorizationTimeToLive(RedisOAuth2Authorization authorization, Instant now) {
+        var expirations = new ArrayList<Instant>();
+        if (authorization.getAuthorizationCodeExpiresAt() != null) {
+            expirations.add(authorization.getAuthorizationCodeExpiresAt());
+        }
+        if (authorization.getAccessTokenExpiresAt() != null) {
+            expirations.add(authorization.getAccessTokenExpiresAt());
+        }
+        if (authorization.getRefreshTokenExpiresAt() != null) {
+            expirations.add(authorization.getRefreshTokenExpiresAt());
+        }
+        if (expirations.isEmpty()) {
+            return Optional.of(defaultTimeToLive);
+        }
+
+        var expiresAt = Collections.max(expirations);
+        if (!expiresAt.isAfter(now)) {
+            return Optional.empty();
+        }
+        return Optional.of(Duration.between(now, expiresAt));
+    }
+
+    static String tokenKeyOf(String tokenValue) {
+        return TOKEN_KEY_PREFIX + TokenHash.of(tokenValue);
+    }
+
+    private String encode(RedisOAuth2Authorization authorization) {
+        try {
+            return objectMapper.writeValueAsString(authorization);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private RedisOAuth2Authorization decode(String value) {
+        try {
+            return objectMapper.readValue(value, RedisOAuth2Authorization.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
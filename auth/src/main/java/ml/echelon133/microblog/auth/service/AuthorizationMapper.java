@@ -16,6 +16,7 @@ import org.springframework.security.jackson2.CoreJackson2Module;
 import org.springframework.security.jackson2.SecurityJackson2Modules;
 import org.springframework.security.oauth2.core.AuthorizationGrantType;
 import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
 import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
 import org.springframework.security.oauth2.core.oidc.OidcIdToken;
 import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
@@ -52,7 +53,18 @@ public class AuthorizationMapper {
     @Autowired
     public AuthorizationMapper(RegisteredClientRepository registeredClientRepository) {
         this.registeredClientRepository = registeredClientRepository;
-        this.objectMapper = new ObjectMapper();
+        this.objectMapper = createObjectMapper();
+    }
+
+    /**
+     * Creates an {@link ObjectMapper} which can serialize and deserialize classes provided by spring security
+     * (and our classes which they contain, e.g. {@link User}), such as attributes of authorizations
+     * and attributes of login sessions.
+     *
+     * @return configured {@link ObjectMapper}
+     */
+    public static ObjectMapper createObjectMapper() {
+        var objectMapper = new ObjectMapper();
 
         // enables proper serialization of Instant type
         objectMapper.registerModule(
@@ -78,6 +90,7 @@ public class AuthorizationMapper {
         objectMapper.addMixIn(Role.class, AuthorizationMixIns.RoleMixIn.class);
         objectMapper.addMixIn(UUID.class, AuthorizationMixIns.UUIDMixIn.class);
         objectMapper.addMixIn(Timestamp.class, AuthorizationMixIns.TimestampMixIn.class);
+        return objectMapper;
     }
 
     /**
@@ -86,8 +99,8 @@ public class AuthorizationMapper {
      *
      * @param authorization representation of an authorization object that will be flattened
      * @return flattened version of {@link OAuth2Authorization} that can be saved in a Redis database
-     * @throws IllegalArgumentException when the {@link OAuth2Authorization} contains a refresh token or
-     * an oidc token, which are currently not supported by this authorization server
+     * @throws IllegalArgumentException when the {@link OAuth2Authorization} contains an oidc token, which is
+     * currently not supported by this authorization server
      */
     public RedisOAuth2Authorization flatten(OAuth2Authorization authorization) throws IllegalArgumentException {
         RedisOAuth2Authorization flatAuth = new RedisOAuth2Authorization();
@@ -147,10 +160,19 @@ public class AuthorizationMapper {
             }
         }
 
-        Assert.isNull(
-                authorization.getRefreshToken(),
-                "This OAuth2AuthorizationService does not support refresh tokens"
-        );
+        OAuth2Authorization.Token<OAuth2RefreshToken> refreshToken =
+                authorization.getRefreshToken();
+
+        if (refreshToken != null) {
+            var innerToken = refreshToken.getToken();
+            flatAuth.setRefreshTokenValue(innerToken.getTokenValue());
+            flatAuth.setRefreshTokenIssuedAt(innerToken.getIssuedAt());
+            flatAuth.setRefreshTokenExpiresAt(innerToken.getExpiresAt());
+
+            String refreshTokenMetadata = writeMapAsString(refreshToken.getMetadata());
+            flatAuth.setRefreshTokenMetadata(refreshTokenMetadata);
+        }
+
         Assert.isNull(
                 authorization.getToken(OidcIdToken.class),
                 "This OAuth2AuthorizationService does not support openid tokens"
@@ -234,8 +256,18 @@ public class AuthorizationMapper {
             builder.token(accessToken, (metadata) -> metadata.putAll(accessTokenMetadata));
         }
 
-        // ignore openid and refresh tokens and just build the Authorization without them, because
-        // this implementation of an auth server does not use openid or refresh tokens
+        String refreshTokenValue = authorization.getRefreshTokenValue();
+        if (StringUtils.hasText(refreshTokenValue)) {
+            tokenIssuedAt = authorization.getRefreshTokenIssuedAt();
+            tokenExpiresAt = authorization.getRefreshTokenExpiresAt();
+            Map<String, Object> refreshTokenMetadata = readStringIntoMap(authorization.getRefreshTokenMetadata());
+
+            OAuth2RefreshToken refreshToken = new OAuth2RefreshToken(refreshTokenValue, tokenIssuedAt, tokenExpiresAt);
+            builder.token(refreshToken, (metadata) -> metadata.putAll(refreshTokenMetadata));
+        }
+
+        // ignore openid tokens and just build the Authorization without them, because
+        // this implementation of an auth server does not use openid tokens
         return builder.build();
     }
 
@@ -1,12 +1,14 @@
 package ml.echelon133.microblog.auth.service;
 
 import ml.echelon133.microblog.auth.model.RedisOAuth2Authorization;
+import ml.echelon133.microblog.auth.queue.TokenRevocationPublisher;
 import ml.echelon133.microblog.auth.repository.OAuth2AuthorizationRepository;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
 import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
 import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
 import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
 import org.springframework.stereotype.Service;
@@ -17,6 +19,18 @@ import java.util.*;
 /**
  * {@link OAuth2AuthorizationService} implementation which enables saving and loading {@link OAuth2Authorization}
  * objects to and from Redis.
+ *
+ * Whenever an access token stops being valid before it expires (i.e. it's invalidated by a revocation, or its
+ * authorization is removed), the revocation is published, so that resource servers evict cached introspections
+ * of the token.
+ *
+ * Introspection claims of access tokens are precomputed when the tokens are issued and removed when the tokens
+ * stop being valid (see {@link PrecomputedIntrospectionService}).
+ *
+ * Refresh tokens are rotated, i.e. every refresh replaces both the access token and the refresh token
+ * of an authorization. The replaced access token stops being valid, therefore it's handled just like a revoked one.
+ * A rotated refresh token which is used again must have been copied (either the client or an attacker uses a stolen
+ * copy), therefore the whole authorization is removed, which revokes the tokens issued by the latest refresh.
  */
 @Service
 public class CustomOAuth2AuthorizationService implements OAuth2AuthorizationService {
@@ -25,12 +39,18 @@ public class CustomOAuth2AuthorizationService implements OAuth2AuthorizationServ
 
     private final OAuth2AuthorizationRepository authorizationRepository;
     private final AuthorizationMapper authorizationMapper;
+    private final TokenRevocationPublisher tokenRevocationPublisher;
+    private final PrecomputedIntrospectionService precomputedIntrospectionService;
 
     @Autowired
     public CustomOAuth2AuthorizationService(OAuth2AuthorizationRepository authorizationRepository,
-                                            AuthorizationMapper authorizationMapper) {
+                                            AuthorizationMapper authorizationMapper,
+                                            TokenRevocationPublisher tokenRevocationPublisher,
+                                            PrecomputedIntrospectionService precomputedIntrospectionService) {
         this.authorizationRepository = authorizationRepository;
         this.authorizationMapper = authorizationMapper;
+        this.tokenRevocationPublisher = tokenRevocationPublisher;
+        this.precomputedIntrospectionService = precomputedIntrospectionService;
     }
 
     @Override
@@ -38,7 +58,45 @@ public class CustomOAuth2AuthorizationService implements OAuth2AuthorizationServ
         LOGGER.debug(String.format(
                 "Saving authorization '%s' owned by principal '%s'", authorization.getId(), authorization.getPrincipalName()
         ));
-        this.authorizationRepository.save(authorizationMapper.flatten(authorization));
+        var previous = findPreviousVersion(authorization);
+        var replacedAccessTokenValue = findReplacedAccessTokenValue(authorization, previous);
+        this.authorizationRepository.save(authorizationMapper.flatten(authorization), previous);
+
+        if (replacedAccessTokenValue != null) {
+            LOGGER.debug(String.format("Access token of authorization '%s' has been refreshed", authorization.getId()));
+            precomputedIntrospectionService.evict(replacedAccessTokenValue);
+            tokenRevocationPublisher.publishRevocation(replacedAccessTokenValue);
+        }
+
+        // revocation of a token saves its authorization with the token marked as invalidated
+        var accessToken = authorization.getAccessToken();
+        if (accessToken != null && accessToken.isInvalidated()) {
+            precomputedIntrospectionService.evict(accessToken.getToken().getTokenValue());
+            tokenRevocationPublisher.publishRevocation(accessToken.getToken().getTokenValue());
+        } else {
+            precomputedIntrospectionService.store(authorization);
+        }
+    }
+
+    // only authorizations with refresh tokens can have their tokens replaced, which means that other
+    // authorizations (e.g. these which are waiting for their authorization code to be exchanged) are saved
+    // without reading their previous version
+    private RedisOAuth2Authorization findPreviousVersion(OAuth2Authorization authorization) {
+        if (authorization.getRefreshToken() == null) {
+            return null;
+        }
+        return this.authorizationRepository.findById(authorization.getId()).orElse(null);
+    }
+
+    private static String findReplacedAccessTokenValue(OAuth2Authorization authorization,
+                                                       RedisOAuth2Authorization previous) {
+        var previousAccessTokenValue = previous == null ? null : previous.getAccessTokenValue();
+        var accessToken = authorization.getAccessToken();
+        if (previousAccessTokenValue == null ||
+                (accessToken != null && previousAccessTokenValue.equals(accessToken.getToken().getTokenValue()))) {
+            return null;
+        }
+        return previousAccessTokenValue;
     }
 
     @Override
@@ -46,7 +104,25 @@ public class CustomOAuth2AuthorizationService implements OAuth2AuthorizationServ
         LOGGER.debug(String.format(
                 "Removing authorization '%s' owned by principal '%s'", authorization.getId(), authorization.getPrincipalName()
         ));
-        this.authorizationRepository.deleteById(authorization.getId());
+        var tokenValues = new ArrayList<String>();
+        var authorizationCode = authorization.getToken(OAuth2AuthorizationCode.class);
+        if (authorizationCode != null) {
+            tokenValues.add(authorizationCode.getToken().getTokenValue());
+        }
+        var accessToken = authorization.getAccessToken();
+        if (accessToken != null) {
+            tokenValues.add(accessToken.getToken().getTokenValue());
+        }
+        var refreshToken = authorization.getRefreshToken();
+        if (refreshToken != null) {
+            tokenValues.add(refreshToken.getToken().getTokenValue());
+        }
+        this.authorizationRepository.deleteById(authorization.getId(), tokenValues);
+
+        if (accessToken != null) {
+            precomputedIntrospectionService.evict(accessToken.getToken().getTokenValue());
+            tokenRevocationPublisher.publishRevocation(accessToken.getToken().getTokenValue());
+        }
     }
 
     @Override
@@ -74,17 +150,12 @@ public class CustomOAuth2AuthorizationService implements OAuth2AuthorizationServ
 
         if (tokenType == null) {
             LOGGER.debug(String.format(
-                    "Token type is null, try to find token '%s' among authorization codes or access tokens", token
+                    "Token type is null, try to find token '%s' among authorization codes, access tokens or refresh tokens", token
             ));
-            // try to get either authorization_code or access_token and
-            // ignore state and refresh_token because they are not used in this
-            // implementation of an authorization server
-            foundAuth =
-                    this.authorizationRepository.findByAuthorizationCodeValue(token);
-            if (foundAuth.isEmpty()) {
-                foundAuth =
-                        this.authorizationRepository.findByAccessTokenValue(token);
-            }
+            // authorization codes, access tokens and refresh tokens are indexed by the same kind of key, which makes
+            // it possible to search all of them using a single lookup (state is ignored because it's not used
+            // in this implementation of an authorization server)
+            foundAuth = this.authorizationRepository.findByTokenValue(token);
         } else if (OAuth2ParameterNames.CODE.equals(tokenType.getValue())) {
             LOGGER.debug(String.format(
                     "Token type is CODE, try to find token '%s' among authorization codes", token
@@ -95,9 +166,17 @@ public class CustomOAuth2AuthorizationService implements OAuth2AuthorizationServ
                     "Token type is ACCESS_TOKEN, try to find token '%s' among access tokens", token
             ));
             foundAuth = this.authorizationRepository.findByAccessTokenValue(token);
+        } else if (OAuth2TokenType.REFRESH_TOKEN.equals(tokenType)) {
+            LOGGER.debug(String.format(
+                    "Token type is REFRESH_TOKEN, try to find token '%s' among refresh tokens", token
+            ));
+            foundAuth = this.authorizationRepository.findByRefreshTokenValue(token);
+            if (foundAuth.isEmpty()) {
+                removeAuthorizationOfRotatedRefreshToken(token);
+            }
         } else {
             LOGGER.warn(String.format(
-                    "Server does not support tokens of type '%s'. Only CODE and ACCESS_TOKEN are supported", tokenType.getValue()
+                    "Server does not support tokens of type '%s'. Only CODE, ACCESS_TOKEN and REFRESH_TOKEN are supported", tokenType.getValue()
             ));
         }
 
@@ -108,4 +187,14 @@ public class CustomOAuth2AuthorizationService implements OAuth2AuthorizationServ
         }
         return foundAuth.map(authorizationMapper::unflatten).orElse(null);
     }
+
+    private void removeAuthorizationOfRotatedRefreshToken(String token) {
+        this.authorizationRepository.findByRotatedRefreshTokenValue(token).ifPresent(rotatedAuth -> {
+            LOGGER.warn(String.format(
+                    "Rotated refresh token of authorization '%s' has been used again, removing the authorization",
+                    rotatedAuth.getId()
+            ));
+            remove(authorizationMapper.unflatten(rotatedAuth));
+        });
+    }
 }
@@ -0,0 +1,205 @@
+package ml.echelon133.microblog.auth.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ml.echelon133.microblog.shared.auth.TokenHash;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2TokenIntrospectionClaimNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenIntrospection;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Stores ready-made introspection claim sets of access tokens in Redis, so that introspection of a token is
+ * a single read of a small JSON document, instead of a search through the secondary index of authorizations
+ * followed by {@link AuthorizationMapper#unflatten}.
+ *
+ * Claims are stored under hashes of tokens (see {@link TokenHash#of(String)}) when tokens are issued, and expire
+ * together with the tokens. They need to be removed with {@link #evict(String)} when tokens stop being valid
+ * before they expire.
+ */
+@Service
+public class PrecomputedIntrospectionService {
+
+    private static final Logger LOGGER = LogManager.getLogger(PrecomputedIntrospectionService.class);
+
+    static final String KEY_PREFIX = "introspection:";
+
+    // claims which hold instants, encoded as seconds since the epoch
+    private static final Set<String> INSTANT_CLAIMS = Set.of(
+            OAuth2TokenIntrospectionClaimNames.EXP,
+            OAuth2TokenIntrospectionClaimNames.IAT,
+            OAuth2TokenIntrospectionClaimNames.NBF
+    );
+
+    private final StringRedisTemplate redisTemplate;
+    private final RegisteredClientRepository registeredClientRepository;
+    private final Clock clock;
+    // claims are only strings, numbers, booleans and lists of strings, which do not need any modules or mixins
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    public PrecomputedIntrospectionService(StringRedisTemplate redisTemplate,
+                                           RegisteredClientRepository registeredClientRepository,
+                                           Clock clock) {
+        this.redisTemplate = redisTemplate;
+        this.registeredClientRepository = registeredClientRepository;
+        this.clock = clock;
+    }
+
+    /**
+     * Stores the introspection claim set of the access token of {@code authorization}, unless the authorization
+     * has no access token, or the token is invalidated or expired.
+     *
+     * @param authorization authorization which contains a newly issued access token
+     */
+    public void store(OAuth2Authorization authorization) {
+        var accessToken = authorization.getAccessToken();
+        if (accessToken == null || accessToken.isInvalidated() || accessToken.getToken().getExpiresAt() == null) {
+            return;
+        }
+
+        // expired tokens are not stored
+        var timeToLive = Duration.between(Instant.now(clock), accessToken.getToken().getExpiresAt());
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            return;
+        }
+
+        var registeredClient = registeredClientRepository.findById(authorization.getRegisteredClientId());
+        if (registeredClient == null) {
+            return;
+        }
+
+        try {
+            var claims = encode(buildIntrospection(accessToken, registeredClient.getClientId()).getClaims());
+            redisTemplate.opsForValue().set(keyOf(accessToken.getToken().getTokenValue()), claims, timeToLive);
+        } catch (RuntimeException e) {
+            // introspection falls back to the authorization itself when claims are missing
+            LOGGER.error(String.format(
+                    "Failed to store introspection claims of authorization '%s'", authorization.getId()
+            ), e);
+        }
+    }
+
+    /**
+     * Removes the introspection claim set of {@code tokenValue}, so that the token is no longer introspected
+     * as active.
+     *
+     * @param tokenValue value of the access token
+     */
+    public void evict(String tokenValue) {
+        redisTemplate.delete(keyOf(tokenValue));
+    }
+
+    /**
+     * Finds the introspection claim set of {@code tokenValue}.
+     *
+     * @param tokenValue value of the access token
+     * @return introspection of the active token, empty if there are no (readable) stored claims of the token
+     * or the token is not active anymore
+     */
+    public Optional<OAuth2TokenIntrospection> find(String tokenValue) {
+        var claims = redisTemplate.opsForValue().get(keyOf(tokenValue));
+        if (claims == null) {
+            return Optional.empty();
+        }
+
+        OAuth2TokenIntrospection introspection;
+        try {
+            introspection = OAuth2TokenIntrospection.withClaims(decode(claims)).build();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to decode stored introspection claims", e);
+            return Optional.empty();
+        }
+        var now = Instant.now(clock);
+        var expiresAt = introspection.getExpiresAt();
+        var notBefore = introspection.getNotBefore();
+        if ((expiresAt != null && !expiresAt.isAfter(now)) || (notBefore != null && notBefore.isAfter(now))) {
+            return Optional.empty();
+        }
+        return Optional.of(introspection);
+    }
+
+    /**
+     * Builds the same introspection of an active access token as the default introspection provider of
+     * {@code spring-authorization-server}.
+     */
+    static OAuth2TokenIntrospection buildIntrospection(OAuth2Authorization.Token<OAuth2AccessToken> accessToken,
+                                                       String clientId) {
+        OAuth2TokenIntrospection.Builder builder;
+        if (CollectionUtils.isEmpty(accessToken.getClaims())) {
+            builder = OAuth2TokenIntrospection.builder(true);
+        } else {
+            var claims = new HashMap<String, Object>();
+            accessToken.getClaims().forEach((name, value) -> claims.put(name, normalize(value)));
+            builder = OAuth2TokenIntrospection.withClaims(claims).active(true);
+        }
+
+        var token = accessToken.getToken();
+        builder.clientId(clientId).tokenType(token.getTokenType().getValue());
+        if (token.getIssuedAt() != null) {
+            builder.issuedAt(token.getIssuedAt());
+        }
+        if (token.getExpiresAt() != null) {
+            builder.expiresAt(token.getExpiresAt());
+        }
+        return builder.build();
+    }
+
+    // scopes and audiences have to be lists, values of custom claims (e.g. UUIDs) are introspected as strings
+    private static Object normalize(Object value) {
+        if (value instanceof Collection<?> collection) {
+            return collection.stream().map(Object::toString).toList();
+        } else if (value instanceof Instant || value instanceof Boolean || value instanceof Number) {
+            return value;
+        }
+        return value.toString();
+    }
+
+    String encode(Map<String, Object> claims) {
+        var encoded = new HashMap<String, Object>();
+        claims.forEach((name, value) -> {
+            if (value instanceof Instant instant) {
+                encoded.put(name, instant.getEpochSecond());
+            } else {
+                encoded.put(name, normalize(value));
+            }
+        });
+        try {
+            return objectMapper.writeValueAsString(encoded);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    Map<String, Object> decode(String claims) {
+        Map<String, Object> decoded;
+        try {
+            decoded = objectMapper.readValue(claims, new TypeReference<HashMap<String, Object>>() {});
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        for (var name : INSTANT_CLAIMS) {
+            if (decoded.get(name) instanceof Number epochSecond) {
+                decoded.put(name, Instant.ofEpochSecond(epochSecond.longValue()));
+            }
+        }
+        return decoded;
+    }
+
+    private static String keyOf(String tokenValue) {
+        return KEY_PREFIX + TokenHash.of(tokenValue);
+    }
+}
@@ -0,0 +1,236 @@
+package ml.echelon133.microblog.auth.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.EncryptionMethod;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.JWEHeader;
+import com.nimbusds.jose.JWEObject;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.DirectDecrypter;
+import com.nimbusds.jose.crypto.DirectEncrypter;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.text.ParseException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Ring of RSA keys which sign JWTs, shared by all replicas of the auth service through Redis, so that tokens signed
+ * by any replica can be verified with the same JWK set, and restarts of replicas do not replace keys.
+ *
+ * Keys are stored in the {@code jwk-ring} hash, one key per rotation period. The first replica which notices that
+ * the current rotation period does not have a key yet generates one ({@code HSETNX} makes sure that only
+ * one key is stored per period). Every key is:
+ * <ul>
+ *     <li>published in the JWK set as soon as it's generated</li>
+ *     <li>used for signing after {@code activation-delay}, so that resource servers which cache the JWK set learn
+ *     about the key before they see tokens signed with it</li>
+ *     <li>published until {@code retention} passes since a newer key started signing, so that tokens signed with it
+ *     can be verified until they expire</li>
+ * </ul>
+ * Every replica caches the ring in memory and reloads it every {@code refresh-interval}.
+ *
+ * Private keys never reach Redis in plaintext. Every key is stored as a JWE encrypted with AES-256-GCM using
+ * {@code encryption-key}, which comes from a kubernetes secret, so that reading the auth redis (or its volume)
+ * is not enough to sign tokens.
+ */
+@Service
+public class SigningKeyRingService implements JWKSource<SecurityContext> {
+
+    private static final Logger LOGGER = LogManager.getLogger(SigningKeyRingService.class);
+
+    static final String KEY_RING_KEY = "jwk-ring";
+
+    private final StringRedisTemplate redisTemplate;
+    private final Clock clock;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // null until the ring is loaded for the first time
+    private volatile KeyRing keyRing;
+
+    record RingKey(RSAKey key, Instant createdAt) {}
+
+    private record KeyRing(JWKSet jwkSet, String signingKeyId) {}
+
+    /*
+    How often a new signing key is generated.
+     */
+    @Value("${auth.key-ring.rotation-period}")
+    Duration rotationPeriod;
+
+    /*
+    How long a new key is published before it's used for signing.
+     */
+    @Value("${auth.key-ring.activation-delay}")
+    Duration activationDelay;
+
+    /*
+    How long a key stays published after a newer key starts signing, which should be longer
+    than the time to live of access tokens.
+     */
+    @Value("${auth.key-ring.retention}")
+    Duration retention;
+
+    /*
+    Base64 encoded 256-bit AES key which encrypts keys of the ring stored in Redis.
+     */
+    @Value("${auth.key-ring.encryption-key}")
+    String encryptionKey;
+
+    @Autowired
+    public SigningKeyRingService(StringRedisTemplate redisTemplate, Clock clock) {
+        this.redisTemplate = redisTemplate;
+        this.clock = clock;
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        return jwkSelector.select(currentKeyRing().jwkSet());
+    }
+
+    /**
+     * @return id of the key which should sign new JWTs
+     */
+    public String getSigningKeyId() {
+        return currentKeyRing().signingKeyId();
+    }
+
+    private KeyRing currentKeyRing() {
+        var currentRing = keyRing;
+        if (currentRing == null) {
+            synchronized (this) {
+                if (keyRing == null) {
+                    refresh();
+                }
+                currentRing = keyRing;
+            }
+        }
+        return currentRing;
+    }
+
+    /**
+     * Reloads the ring from Redis, generates the key of the current rotation period if it does not exist yet,
+     * and removes keys which do not need to be published anymore.
+     */
+    @Scheduled(fixedDelayString = "${auth.key-ring.refresh-interval}", initialDelayString = "${auth.key-ring.refresh-interval}")
+    public synchronized void refresh() {
+        var now = Instant.now(clock);
+        var period = Long.toString(now.getEpochSecond() / rotationPeriod.toSeconds());
+
+        var storedKeys = redisTemplate.<String, String>opsForHash().entries(KEY_RING_KEY);
+        if (!storedKeys.containsKey(period)) {
+            var generated = encode(new RingKey(generateRsaKey(), now));
+            if (Boolean.TRUE.equals(redisTemplate.opsForHash().putIfAbsent(KEY_RING_KEY, period, generated))) {
+                LOGGER.info(String.format("Generated the signing key of rotation period %s", period));
+            }
+            storedKeys = redisTemplate.<String, String>opsForHash().entries(KEY_RING_KEY);
+        }
+
+        // periods are numbers, so sorting them sorts keys from the oldest to the newest
+        var sortedPeriods = new ArrayList<>(storedKeys.keySet());
+        sortedPeriods.sort(Comparator.comparingLong(Long::parseLong));
+        var ringKeys = new ArrayList<RingKey>();
+        for (var storedPeriod : sortedPeriods) {
+            ringKeys.add(decode(storedKeys.get(storedPeriod)));
+        }
+
+        // a key can be removed once the key after it has been signing for longer than the retention
+        var publishedKeys = new ArrayList<JWK>();
+        for (int i = 0; i < ringKeys.size(); i++) {
+            var isRetired = i + 1 < ringKeys.size() &&
+                    !activationOf(ringKeys.get(i + 1)).plus(retention).isAfter(now);
+            if (isRetired) {
+                redisTemplate.opsForHash().delete(KEY_RING_KEY, sortedPeriods.get(i));
+            } else {
+                publishedKeys.add(ringKeys.get(i).key());
+            }
+        }
+
+        keyRing = new KeyRing(new JWKSet(publishedKeys), findSigningKey(ringKeys, now).key().getKeyID());
+    }
+
+    // the newest key which is already active, or the oldest key if none of them are active yet (which only happens
+    // when the ring is created)
+    private RingKey findSigningKey(List<RingKey> ringKeys, Instant now) {
+        for (int i = ringKeys.size() - 1; i >= 0; i--) {
+            if (!activationOf(ringKeys.get(i)).isAfter(now)) {
+                return ringKeys.get(i);
+            }
+        }
+        return ringKeys.get(0);
+    }
+
+    private Instant activationOf(RingKey ringKey) {
+        return ringKey.createdAt().plus(activationDelay);
+    }
+
+    private static RSAKey generateRsaKey() {
+        KeyPair keyPair;
+        try {
+            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+            keyPairGenerator.initialize(2048);
+            keyPair = keyPairGenerator.generateKeyPair();
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+        return new RSAKey.Builder((RSAPublicKey) keyPair.getPublic())
+                .privateKey((RSAPrivateKey) keyPair.getPrivate())
+                .keyID(UUID.randomUUID().toString())
+                .build();
+    }
+
+    private SecretKey secretKey() {
+        return new SecretKeySpec(Base64.getDecoder().decode(encryptionKey), "AES");
+    }
+
+    String encode(RingKey ringKey) {
+        try {
+            var jwe = new JWEObject(
+                    new JWEHeader(JWEAlgorithm.DIR, EncryptionMethod.A256GCM),
+                    new Payload(ringKey.key().toJSONObject())
+            );
+            jwe.encrypt(new DirectEncrypter(secretKey()));
+            return objectMapper.writeValueAsString(Map.of(
+                    "createdAt", ringKey.createdAt().getEpochSecond(),
+                    "jwe", jwe.serialize()
+            ));
+        } catch (JsonProcessingException | JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    RingKey decode(String value) {
+        try {
+            var stored = objectMapper.readValue(value, new TypeReference<Map<String, Object>>() {});
+            var createdAt = Instant.ofEpochSecond(((Number) stored.get("createdAt")).longValue());
+            var jwe = JWEObject.parse((String) stored.get("jwe"));
+            jwe.decrypt(new DirectDecrypter(secretKey()));
+            return new RingKey(RSAKey.parse(jwe.getPayload().toJSONObject()), createdAt);
+        } catch (JsonProcessingException | ParseException | JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
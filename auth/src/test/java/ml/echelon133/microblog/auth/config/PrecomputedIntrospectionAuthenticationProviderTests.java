@@ -0,0 +1,103 @@
+package ml.echelon133.microblog.auth.config;
+
+import ml.echelon133.microblog.auth.service.PrecomputedIntrospectionService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenIntrospection;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2TokenIntrospectionAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of PrecomputedIntrospectionAuthenticationProvider")
+public class PrecomputedIntrospectionAuthenticationProviderTests {
+
+    private static final String TOKEN = "test-token";
+
+    @Mock
+    private PrecomputedIntrospectionService precomputedIntrospectionService;
+
+    @InjectMocks
+    private PrecomputedIntrospectionAuthenticationProvider provider;
+
+    private static OAuth2ClientAuthenticationToken createAuthenticatedClient() {
+        var client = RegisteredClient.withId("test-id")
+                .clientId("confidential-client")
+                .clientSecret("secret")
+                .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .build();
+        return new OAuth2ClientAuthenticationToken(client, ClientAuthenticationMethod.CLIENT_SECRET_BASIC, null);
+    }
+
+    @Test
+    @DisplayName("authenticate throws when the client is not authenticated")
+    public void authenticate_ClientNotAuthenticated_ThrowsException() {
+        var client = new OAuth2ClientAuthenticationToken(
+                "confidential-client", ClientAuthenticationMethod.CLIENT_SECRET_BASIC, "secret", null
+        );
+        var authentication = new OAuth2TokenIntrospectionAuthenticationToken(TOKEN, client, null, null);
+
+        // when
+        var error = assertThrows(OAuth2AuthenticationException.class, () -> {
+            provider.authenticate(authentication);
+        }).getError();
+
+        // then
+        assertEquals(OAuth2ErrorCodes.INVALID_CLIENT, error.getErrorCode());
+        verify(precomputedIntrospectionService, times(0)).find(TOKEN);
+    }
+
+    @Test
+    @DisplayName("authenticate returns null when claims are not precomputed")
+    public void authenticate_ClaimsNotFound_ReturnsNull() {
+        var authentication = new OAuth2TokenIntrospectionAuthenticationToken(
+                TOKEN, createAuthenticatedClient(), null, null
+        );
+
+        // given
+        given(precomputedIntrospectionService.find(TOKEN)).willReturn(Optional.empty());
+
+        // when
+        var result = provider.authenticate(authentication);
+
+        // then
+        assertNull(result);
+    }
+
+    @Test
+    @DisplayName("authenticate returns precomputed claims when they are found")
+    public void authenticate_ClaimsFound_ReturnsIntrospection() {
+        var client = createAuthenticatedClient();
+        var authentication = new OAuth2TokenIntrospectionAuthenticationToken(TOKEN, client, null, null);
+        var claims = OAuth2TokenIntrospection.withClaims(Map.of("active", true, "sub", "testuser")).build();
+
+        // given
+        given(precomputedIntrospectionService.find(TOKEN)).willReturn(Optional.of(claims));
+
+        // when
+        var result = (OAuth2TokenIntrospectionAuthenticationToken) provider.authenticate(authentication);
+
+        // then
+        assertNotNull(result);
+        assertTrue(result.isAuthenticated());
+        assertEquals(client, result.getPrincipal());
+        assertEquals(claims, result.getTokenClaims());
+    }
+}
@@ -0,0 +1,115 @@
+package ml.echelon133.microblog.auth.config;
+
+import ml.echelon133.microblog.auth.service.AuthTestData;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of PublicClientRefreshTokenAuthenticationProvider")
+public class PublicClientRefreshTokenAuthenticationProviderTests {
+
+    @Mock
+    private RegisteredClientRepository registeredClientRepository;
+
+    @InjectMocks
+    private PublicClientRefreshTokenAuthenticationProvider provider;
+
+    private static OAuth2ClientAuthenticationToken createClientAuthentication(String grantType) {
+        return new OAuth2ClientAuthenticationToken(
+                AuthTestData.Client.CLIENT_ID,
+                ClientAuthenticationMethod.NONE,
+                null,
+                Map.of(OAuth2ParameterNames.GRANT_TYPE, grantType)
+        );
+    }
+
+    @Test
+    @DisplayName("authenticate authenticates a public client which uses its refresh token")
+    public void authenticate_PublicClientRefreshesToken_ReturnsAuthenticatedClient() {
+        var registeredClient = AuthTestData.Client.createTestRegisteredClient();
+
+        // given
+        given(registeredClientRepository.findByClientId(AuthTestData.Client.CLIENT_ID)).willReturn(registeredClient);
+
+        // when
+        var authentication = (OAuth2ClientAuthenticationToken) provider.authenticate(
+                createClientAuthentication(AuthorizationGrantType.REFRESH_TOKEN.getValue())
+        );
+
+        // then
+        assertTrue(authentication.isAuthenticated());
+        assertEquals(registeredClient, authentication.getRegisteredClient());
+        assertEquals(ClientAuthenticationMethod.NONE, authentication.getClientAuthenticationMethod());
+    }
+
+    @Test
+    @DisplayName("authenticate returns null when the grant is not a refresh token grant")
+    public void authenticate_AuthorizationCodeGrant_ReturnsNull() {
+        // when
+        var authentication = provider.authenticate(
+                createClientAuthentication(AuthorizationGrantType.AUTHORIZATION_CODE.getValue())
+        );
+
+        // then
+        assertNull(authentication);
+        verify(registeredClientRepository, times(0)).findByClientId(any());
+    }
+
+    @Test
+    @DisplayName("authenticate throws when the client is not registered")
+    public void authenticate_ClientNotRegistered_ThrowsException() {
+        // given
+        given(registeredClientRepository.findByClientId(AuthTestData.Client.CLIENT_ID)).willReturn(null);
+
+        // when
+        var error = assertThrows(OAuth2AuthenticationException.class, () -> {
+            provider.authenticate(createClientAuthentication(AuthorizationGrantType.REFRESH_TOKEN.getValue()));
+        }).getError();
+
+        // then
+        assertEquals(OAuth2ErrorCodes.INVALID_CLIENT, error.getErrorCode());
+    }
+
+    @Test
+    @DisplayName("authenticate throws when the client is confidential")
+    public void authenticate_ConfidentialClient_ThrowsException() {
+        var confidentialClient = RegisteredClient.withId("test-id")
+                .clientId(AuthTestData.Client.CLIENT_ID)
+                .clientSecret("secret")
+                .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .build();
+
+        // given
+        given(registeredClientRepository.findByClientId(AuthTestData.Client.CLIENT_ID)).willReturn(confidentialClient);
+
+        // when
+        var error = assertThrows(OAuth2AuthenticationException.class, () -> {
+            provider.authenticate(createClientAuthentication(AuthorizationGrantType.REFRESH_TOKEN.getValue()));
+        }).getError();
+
+        // then
+        assertEquals(OAuth2ErrorCodes.INVALID_CLIENT, error.getErrorCode());
+    }
+}
@@ -0,0 +1,137 @@
+package ml.echelon133.microblog.auth.config;
+
+import ml.echelon133.microblog.auth.service.AuthTestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AccessTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2AuthorizationCodeAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static ml.echelon133.microblog.auth.service.AuthTestData.Redis;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of PublicClientRefreshTokenIssuingProvider")
+public class PublicClientRefreshTokenIssuingProviderTests {
+
+    @Mock
+    private AuthenticationProvider delegate;
+
+    @Mock
+    private OAuth2AuthorizationService authorizationService;
+
+    private PublicClientRefreshTokenIssuingProvider provider;
+
+    private final OAuth2AccessToken accessToken = new OAuth2AccessToken(
+            OAuth2AccessToken.TokenType.BEARER,
+            Redis.ACCESS_TOKEN_VALUE,
+            Redis.ACCESS_TOKEN_ISSUED_AT,
+            Redis.ACCESS_TOKEN_EXPIRES_AT
+    );
+
+    @BeforeEach
+    public void beforeEach() {
+        provider = new PublicClientRefreshTokenIssuingProvider(delegate, authorizationService);
+    }
+
+    private static OAuth2AuthorizationCodeAuthenticationToken createCodeAuthentication(RegisteredClient registeredClient) {
+        var clientPrincipal = new OAuth2ClientAuthenticationToken(registeredClient, ClientAuthenticationMethod.NONE, null);
+        return new OAuth2AuthorizationCodeAuthenticationToken(
+                Redis.AUTHORIZATION_CODE_VALUE, clientPrincipal, AuthTestData.Client.REDIRECT_URI, Map.of()
+        );
+    }
+
+    @Test
+    @DisplayName("authenticate issues a refresh token to a public client which is allowed to refresh tokens")
+    public void authenticate_PublicClientWithoutRefreshToken_IssuesRefreshToken() {
+        var registeredClient = AuthTestData.Client.createTestRegisteredClient();
+        var codeAuthentication = createCodeAuthentication(registeredClient);
+        var authorization = AuthTestData.Auth.createValidOAuth2Authorization();
+        var captor = ArgumentCaptor.forClass(OAuth2Authorization.class);
+
+        // given
+        given(delegate.authenticate(codeAuthentication)).willReturn(new OAuth2AccessTokenAuthenticationToken(
+                registeredClient, (OAuth2ClientAuthenticationToken) codeAuthentication.getPrincipal(), accessToken
+        ));
+        given(authorizationService.findByToken(Redis.ACCESS_TOKEN_VALUE, OAuth2TokenType.ACCESS_TOKEN))
+                .willReturn(authorization);
+
+        // when
+        var authentication = (OAuth2AccessTokenAuthenticationToken) provider.authenticate(codeAuthentication);
+
+        // then
+        var refreshToken = authentication.getRefreshToken();
+        assertNotNull(refreshToken);
+        assertEquals(accessToken, authentication.getAccessToken());
+        assertTrue(refreshToken.getExpiresAt().isAfter(Instant.now()));
+        verify(authorizationService).save(captor.capture());
+        var savedAuthorization = captor.getValue();
+        assertEquals(refreshToken.getTokenValue(), savedAuthorization.getRefreshToken().getToken().getTokenValue());
+        assertEquals(Redis.ACCESS_TOKEN_VALUE, savedAuthorization.getAccessToken().getToken().getTokenValue());
+    }
+
+    @Test
+    @DisplayName("authenticate does not issue a refresh token when the default provider has issued one")
+    public void authenticate_RefreshTokenIssued_ReturnsAuthenticationOfDefaultProvider() {
+        var registeredClient = AuthTestData.Client.createTestRegisteredClient();
+        var codeAuthentication = createCodeAuthentication(registeredClient);
+        var issued = new OAuth2AccessTokenAuthenticationToken(
+                registeredClient,
+                (OAuth2ClientAuthenticationToken) codeAuthentication.getPrincipal(),
+                accessToken,
+                new OAuth2RefreshToken(Redis.REFRESH_TOKEN_VALUE, Redis.REFRESH_TOKEN_ISSUED_AT, Redis.REFRESH_TOKEN_EXPIRES_AT)
+        );
+
+        // given
+        given(delegate.authenticate(codeAuthentication)).willReturn(issued);
+
+        // when
+        var authentication = provider.authenticate(codeAuthentication);
+
+        // then
+        assertSame(issued, authentication);
+        verify(authorizationService, times(0)).save(any());
+    }
+
+    @Test
+    @DisplayName("authenticate does not issue a refresh token when the client is not allowed to refresh tokens")
+    public void authenticate_RefreshTokenGrantNotAllowed_DoesNotIssueRefreshToken() {
+        var registeredClient = RegisteredClient.from(AuthTestData.Client.createTestRegisteredClient())
+                .authorizationGrantTypes(grantTypes -> grantTypes.remove(AuthorizationGrantType.REFRESH_TOKEN))
+                .build();
+        var codeAuthentication = createCodeAuthentication(registeredClient);
+
+        // given
+        given(delegate.authenticate(codeAuthentication)).willReturn(new OAuth2AccessTokenAuthenticationToken(
+                registeredClient, (OAuth2ClientAuthenticationToken) codeAuthentication.getPrincipal(), accessToken
+        ));
+
+        // when
+        var authentication = (OAuth2AccessTokenAuthenticationToken) provider.authenticate(codeAuthentication);
+
+        // then
+        assertNull(authentication.getRefreshToken());
+        verify(authorizationService, times(0)).save(any());
+    }
+}
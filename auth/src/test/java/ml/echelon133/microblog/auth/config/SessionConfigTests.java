@@ -0,0 +1,79 @@
+package ml.echelon133.microblog.auth.config;
+
+import ml.echelon133.microblog.shared.user.Role;
+import ml.echelon133.microblog.shared.user.Roles;
+import ml.echelon133.microblog.shared.user.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.PortResolverImpl;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.security.web.savedrequest.DefaultSavedRequest;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests of SessionConfig")
+public class SessionConfigTests {
+
+    private final SessionConfig sessionConfig = new SessionConfig();
+
+    @Test
+    @DisplayName("springSessionDefaultRedisSerializer restores the security context of a logged in user")
+    public void springSessionDefaultRedisSerializer_SecurityContext_RestoresSecurityContext() {
+        var serializer = sessionConfig.springSessionDefaultRedisSerializer();
+        var userId = UUID.randomUUID();
+        var user = new User("testuser", "test@test.com", "", "", Set.of(new Role(Roles.ROLE_USER.name())));
+        user.setId(userId);
+        var authentication = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+        authentication.setDetails(new WebAuthenticationDetails(new MockHttpServletRequest()));
+        var securityContext = new SecurityContextImpl(authentication);
+
+        // when
+        var restored = (SecurityContextImpl) serializer.deserialize(serializer.serialize(securityContext));
+
+        // then
+        var restoredAuthentication = restored.getAuthentication();
+        assertTrue(restoredAuthentication.isAuthenticated());
+        var restoredUser = (User) restoredAuthentication.getPrincipal();
+        assertEquals(userId, restoredUser.getId());
+        assertEquals("testuser", restoredUser.getUsername());
+        assertEquals(Roles.ROLE_USER.name(), restoredAuthentication.getAuthorities().iterator().next().getAuthority());
+    }
+
+    @Test
+    @DisplayName("springSessionDefaultRedisSerializer restores the request which redirected to the login page")
+    public void springSessionDefaultRedisSerializer_SavedRequest_RestoresSavedRequest() {
+        var serializer = sessionConfig.springSessionDefaultRedisSerializer();
+        var request = new MockHttpServletRequest("GET", "/oauth2/authorize");
+        request.setQueryString("response_type=code&client_id=public-client&scope=test");
+        request.setParameter("response_type", "code");
+        request.setParameter("client_id", "public-client");
+        request.setParameter("scope", "test");
+        var savedRequest = new DefaultSavedRequest(request, new PortResolverImpl());
+
+        // when
+        var restored = (DefaultSavedRequest) serializer.deserialize(serializer.serialize(savedRequest));
+
+        // then
+        assertEquals(savedRequest.getRedirectUrl(), restored.getRedirectUrl());
+        assertArrayEquals(new String[] {"public-client"}, restored.getParameterValues("client_id"));
+    }
+
+    @Test
+    @DisplayName("springSessionDefaultRedisSerializer restores timestamps of sessions as longs")
+    public void springSessionDefaultRedisSerializer_Timestamp_RestoresLong() {
+        var serializer = sessionConfig.springSessionDefaultRedisSerializer();
+        var timestamp = 1678300000000L;
+
+        // when
+        var restored = serializer.deserialize(serializer.serialize(timestamp));
+
+        // then
+        assertEquals(timestamp, restored);
+    }
+}
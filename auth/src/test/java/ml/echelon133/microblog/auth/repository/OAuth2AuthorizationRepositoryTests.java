@@ -0,0 +1,408 @@
+package ml.echelon133.microblog.auth.repository;
+
+import ml.echelon133.microblog.auth.model.RedisOAuth2Authorization;
+import ml.echelon133.microblog.shared.auth.TokenHash;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static ml.echelon133.microblog.auth.repository.OAuth2AuthorizationRepository.AUTHORIZATION_KEY_PREFIX;
+import static ml.echelon133.microblog.auth.repository.OAuth2AuthorizationRepository.tokenKeyOf;
+import static ml.echelon133.microblog.auth.service.AuthTestData.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of OAuth2AuthorizationRepository")
+public class OAuth2AuthorizationRepositoryTests {
+
+    // after the issue of the access token from the test data, but before its authorization code expires
+    private static final Instant NOW = Instant.parse("2023-03-07T19:45:00Z");
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private RedisOperations<String, String> pipelineOperations;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private OAuth2AuthorizationRepository authorizationRepository;
+
+    @BeforeEach
+    public void beforeEach() {
+        authorizationRepository = new OAuth2AuthorizationRepository(redisTemplate, Clock.fixed(NOW, ZoneOffset.UTC));
+        authorizationRepository.defaultTimeToLive = Duration.ofMinutes(10);
+    }
+
+    // runs commands which the repository sends in a pipeline, returns the value of the saved authorization
+    @SuppressWarnings("unchecked")
+    private String executePipeline() {
+        var captor = ArgumentCaptor.forClass(SessionCallback.class);
+        verify(redisTemplate).executePipelined(captor.capture());
+        captor.getValue().execute(pipelineOperations);
+
+        var valueCaptor = ArgumentCaptor.forClass(String.class);
+        verify(valueOperations, times(1)).set(eq(AUTHORIZATION_KEY_PREFIX + Redis.AUTH_ID), valueCaptor.capture(), any(Duration.class));
+        return valueCaptor.getValue();
+    }
+
+    @Test
+    @DisplayName("save sets keys which expire together with tokens")
+    public void save_TokensNotExpired_SetsKeysWithTimeToLive() {
+        var authorization = Redis.createValidRedisOAuth2Authorization();
+
+        // given
+        given(pipelineOperations.opsForValue()).willReturn(valueOperations);
+
+        // when
+        authorizationRepository.save(authorization, null);
+        executePipeline();
+
+        // then
+        var accessTokenTtl = Duration.between(NOW, Redis.ACCESS_TOKEN_EXPIRES_AT);
+        var authorizationCodeTtl = Duration.between(NOW, Redis.AUTHORIZATION_CODE_EXPIRES_AT);
+        var refreshTokenTtl = Duration.between(NOW, Redis.REFRESH_TOKEN_EXPIRES_AT);
+        verify(valueOperations, times(1)).set(eq(AUTHORIZATION_KEY_PREFIX + Redis.AUTH_ID), anyString(), eq(refreshTokenTtl));
+        verify(valueOperations, times(1)).set(tokenKeyOf(Redis.ACCESS_TOKEN_VALUE), Redis.AUTH_ID, accessTokenTtl);
+        verify(valueOperations, times(1)).set(tokenKeyOf(Redis.AUTHORIZATION_CODE_VALUE), Redis.AUTH_ID, authorizationCodeTtl);
+        verify(valueOperations, times(1)).set(tokenKeyOf(Redis.REFRESH_TOKEN_VALUE), Redis.AUTH_ID, refreshTokenTtl);
+    }
+
+    @Test
+    @DisplayName("save keeps the authorization until its refresh token expires")
+    public void save_AccessTokenExpired_KeepsAuthorizationUntilRefreshTokenExpires() {
+        var authorization = Redis.createValidRedisOAuth2Authorization();
+        authorization.setAuthorizationCodeExpiresAt(NOW.minusSeconds(2));
+        authorization.setAccessTokenExpiresAt(NOW.minusSeconds(1));
+
+        // given
+        given(pipelineOperations.opsForValue()).willReturn(valueOperations);
+
+        // when
+        authorizationRepository.save(authorization, null);
+        executePipeline();
+
+        // then
+        var refreshTokenTtl = Duration.between(NOW, Redis.REFRESH_TOKEN_EXPIRES_AT);
+        verify(valueOperations, times(1)).set(eq(AUTHORIZATION_KEY_PREFIX + Redis.AUTH_ID), anyString(), eq(refreshTokenTtl));
+        verify(valueOperations, times(1)).set(tokenKeyOf(Redis.REFRESH_TOKEN_VALUE), Redis.AUTH_ID, refreshTokenTtl);
+        verify(valueOperations, times(0)).set(eq(tokenKeyOf(Redis.ACCESS_TOKEN_VALUE)), any(), any(Duration.class));
+    }
+
+    @Test
+    @DisplayName("save does not set keys of expired tokens")
+    public void save_AuthorizationCodeExpired_DoesNotSetKeyOfAuthorizationCode() {
+        var authorization = Redis.createValidRedisOAuth2Authorization();
+        authorization.setAuthorizationCodeExpiresAt(NOW.minusSeconds(1));
+
+        // given
+        given(pipelineOperations.opsForValue()).willReturn(valueOperations);
+
+        // when
+        authorizationRepository.save(authorization, null);
+        executePipeline();
+
+        // then
+        verify(valueOperations, times(1)).set(eq(tokenKeyOf(Redis.ACCESS_TOKEN_VALUE)), eq(Redis.AUTH_ID), any(Duration.class));
+        verify(valueOperations, times(0)).set(eq(tokenKeyOf(Redis.AUTHORIZATION_CODE_VALUE)), any(), any(Duration.class));
+    }
+
+    @Test
+    @DisplayName("save uses the default time to live when the authorization has no tokens")
+    public void save_NoTokens_UsesDefaultTimeToLive() {
+        var authorization = new RedisOAuth2Authorization();
+        authorization.setId(Redis.AUTH_ID);
+
+        // given
+        given(pipelineOperations.opsForValue()).willReturn(valueOperations);
+
+        // when
+        authorizationRepository.save(authorization, null);
+        executePipeline();
+
+        // then
+        verify(valueOperations, times(1)).set(eq(AUTHORIZATION_KEY_PREFIX + Redis.AUTH_ID), anyString(), eq(Duration.ofMinutes(10)));
+    }
+
+    @Test
+    @DisplayName("save deletes the authorization when all of its tokens have expired")
+    @SuppressWarnings("unchecked")
+    public void save_AllTokensExpired_DeletesAuthorization() {
+        var authorization = Redis.createValidRedisOAuth2Authorization();
+        authorization.setAuthorizationCodeExpiresAt(NOW.minusSeconds(2));
+        authorization.setAccessTokenExpiresAt(NOW.minusSeconds(1));
+        authorization.setRefreshTokenExpiresAt(NOW.minusSeconds(1));
+
+        // when
+        authorizationRepository.save(authorization, null);
+        var captor = ArgumentCaptor.forClass(SessionCallback.class);
+        verify(redisTemplate).executePipelined(captor.capture());
+        captor.getValue().execute(pipelineOperations);
+
+        // then
+        verify(pipelineOperations, times(1)).delete(AUTHORIZATION_KEY_PREFIX + Redis.AUTH_ID);
+        verify(pipelineOperations, times(0)).opsForValue();
+    }
+
+    @Test
+    @DisplayName("save deletes keys of tokens which have been replaced, but keeps the key of the rotated refresh token")
+    public void save_TokensReplaced_DeletesKeysOfReplacedTokens() {
+        var previous = Redis.createValidRedisOAuth2Authorization();
+        var authorization = Redis.createValidRedisOAuth2Authorization();
+        authorization.setAccessTokenValue("new-access-token");
+        authorization.setRefreshTokenValue("new-refresh-token");
+
+        // given
+        given(pipelineOperations.opsForValue()).willReturn(valueOperations);
+
+        // when
+        authorizationRepository.save(authorization, previous);
+        executePipeline();
+
+        // then
+        verify(pipelineOperations, times(1)).delete(List.of(tokenKeyOf(Redis.ACCESS_TOKEN_VALUE)));
+        verify(valueOperations, times(1)).set(eq(tokenKeyOf("new-access-token")), eq(Redis.AUTH_ID), any(Duration.class));
+        verify(valueOperations, times(1)).set(eq(tokenKeyOf("new-refresh-token")), eq(Redis.AUTH_ID), any(Duration.class));
+    }
+
+    @Test
+    @DisplayName("save keeps the hash of the rotated refresh token in the authorization")
+    public void save_RefreshTokenRotated_KeepsHashOfRotatedRefreshToken() {
+        var previous = Redis.createValidRedisOAuth2Authorization();
+        var authorization = Redis.createValidRedisOAuth2Authorization();
+        authorization.setRefreshTokenValue("new-refresh-token");
+
+        // given
+        given(pipelineOperations.opsForValue()).willReturn(valueOperations);
+
+        // when
+        authorizationRepository.save(authorization, previous);
+        var savedValue = executePipeline();
+
+        // then
+        var rotatedTokenHash = TokenHash.of(Redis.REFRESH_TOKEN_VALUE);
+        assertEquals(Map.of(rotatedTokenHash, Redis.REFRESH_TOKEN_EXPIRES_AT), authorization.getRotatedRefreshTokens());
+        assertTrue(savedValue.contains(rotatedTokenHash));
+    }
+
+    @Test
+    @DisplayName("save forgets hashes of rotated refresh tokens which have expired")
+    public void save_RotatedRefreshTokenExpired_ForgetsItsHash() {
+        var previous = Redis.createValidRedisOAuth2Authorization();
+        previous.setRotatedRefreshTokens(Map.of(
+                "expired-hash", NOW.minusSeconds(1),
+                "live-hash", NOW.plusSeconds(1)
+        ));
+        var authorization = Redis.createValidRedisOAuth2Authorization();
+
+        // given
+        given(pipelineOperations.opsForValue()).willReturn(valueOperations);
+
+        // when
+        authorizationRepository.save(authorization, previous);
+        executePipeline();
+
+        // then
+        assertEquals(Map.of("live-hash", NOW.plusSeconds(1)), authorization.getRotatedRefreshTokens());
+    }
+
+    @Test
+    @DisplayName("save does not delete keys when no token has been replaced")
+    @SuppressWarnings("unchecked")
+    public void save_TokensNotReplaced_DoesNotDeleteKeys() {
+        var previous = Redis.createValidRedisOAuth2Authorization();
+        var authorization = Redis.createValidRedisOAuth2Authorization();
+
+        // given
+        given(pipelineOperations.opsForValue()).willReturn(valueOperations);
+
+        // when
+        authorizationRepository.save(authorization, previous);
+        executePipeline();
+
+        // then
+        verify(pipelineOperations, times(0)).delete(anyCollection());
+    }
+
+    @Test
+    @DisplayName("findByAccessTokenValue returns the authorization which was saved")
+    public void findByAccessTokenValue_AuthorizationSaved_ReturnsAuthorization() {
+        var authorization = Redis.createValidRedisOAuth2Authorization();
+
+        // given
+        given(pipelineOperations.opsForValue()).willReturn(valueOperations);
+        authorizationRepository.save(authorization, null);
+        var savedValue = executePipeline();
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.get(tokenKeyOf(Redis.ACCESS_TOKEN_VALUE))).willReturn(Redis.AUTH_ID);
+        given(valueOperations.get(AUTHORIZATION_KEY_PREFIX + Redis.AUTH_ID)).willReturn(savedValue);
+
+        // when
+        var found = authorizationRepository.findByAccessTokenValue(Redis.ACCESS_TOKEN_VALUE).orElseThrow();
+
+        // then
+        assertEquals(Redis.AUTH_ID, found.getId());
+        assertEquals(Redis.ACCESS_TOKEN_VALUE, found.getAccessTokenValue());
+        assertEquals(Redis.ACCESS_TOKEN_EXPIRES_AT, found.getAccessTokenExpiresAt());
+        assertEquals(Redis.ATTRIBUTES, found.getAttributes());
+        assertEquals(Redis.ACCESS_TOKEN_METADATA, found.getAccessTokenMetadata());
+    }
+
+    @Test
+    @DisplayName("findByAuthorizationCodeValue returns empty when the found authorization has a different code")
+    public void findByAuthorizationCodeValue_TokenIsNotCode_ReturnsEmpty() {
+        var authorization = Redis.createValidRedisOAuth2Authorization();
+
+        // given
+        given(pipelineOperations.opsForValue()).willReturn(valueOperations);
+        authorizationRepository.save(authorization, null);
+        var savedValue = executePipeline();
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.get(tokenKeyOf(Redis.ACCESS_TOKEN_VALUE))).willReturn(Redis.AUTH_ID);
+        given(valueOperations.get(AUTHORIZATION_KEY_PREFIX + Redis.AUTH_ID)).willReturn(savedValue);
+
+        // when
+        var found = authorizationRepository.findByAuthorizationCodeValue(Redis.ACCESS_TOKEN_VALUE);
+
+        // then
+        assertTrue(found.isEmpty());
+    }
+
+    @Test
+    @DisplayName("findByRefreshTokenValue returns the authorization which was saved")
+    public void findByRefreshTokenValue_AuthorizationSaved_ReturnsAuthorization() {
+        var authorization = Redis.createValidRedisOAuth2Authorization();
+
+        // given
+        given(pipelineOperations.opsForValue()).willReturn(valueOperations);
+        authorizationRepository.save(authorization, null);
+        var savedValue = executePipeline();
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.get(tokenKeyOf(Redis.REFRESH_TOKEN_VALUE))).willReturn(Redis.AUTH_ID);
+        given(valueOperations.get(AUTHORIZATION_KEY_PREFIX + Redis.AUTH_ID)).willReturn(savedValue);
+
+        // when
+        var found = authorizationRepository.findByRefreshTokenValue(Redis.REFRESH_TOKEN_VALUE).orElseThrow();
+
+        // then
+        assertEquals(Redis.AUTH_ID, found.getId());
+        assertEquals(Redis.REFRESH_TOKEN_VALUE, found.getRefreshTokenValue());
+        assertEquals(Redis.REFRESH_TOKEN_EXPIRES_AT, found.getRefreshTokenExpiresAt());
+        assertEquals(Redis.REFRESH_TOKEN_METADATA, found.getRefreshTokenMetadata());
+    }
+
+    @Test
+    @DisplayName("findByRefreshTokenValue returns empty when the refresh token has been rotated")
+    public void findByRefreshTokenValue_RefreshTokenRotated_ReturnsEmpty() {
+        var authorization = Redis.createValidRedisOAuth2Authorization();
+        authorization.setRefreshTokenValue("rotated-refresh-token");
+
+        // given
+        given(pipelineOperations.opsForValue()).willReturn(valueOperations);
+        authorizationRepository.save(authorization, null);
+        var savedValue = executePipeline();
+        // the key of the used refresh token is read right before the authorization is saved
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.get(tokenKeyOf(Redis.REFRESH_TOKEN_VALUE))).willReturn(Redis.AUTH_ID);
+        given(valueOperations.get(AUTHORIZATION_KEY_PREFIX + Redis.AUTH_ID)).willReturn(savedValue);
+
+        // when
+        var found = authorizationRepository.findByRefreshTokenValue(Redis.REFRESH_TOKEN_VALUE);
+
+        // then
+        assertTrue(found.isEmpty());
+    }
+
+    @Test
+    @DisplayName("findByRotatedRefreshTokenValue returns the authorization whose refresh token has been rotated")
+    public void findByRotatedRefreshTokenValue_RefreshTokenRotated_ReturnsAuthorization() {
+        var previous = Redis.createValidRedisOAuth2Authorization();
+        var authorization = Redis.createValidRedisOAuth2Authorization();
+        authorization.setRefreshTokenValue("new-refresh-token");
+
+        // given
+        given(pipelineOperations.opsForValue()).willReturn(valueOperations);
+        authorizationRepository.save(authorization, previous);
+        var savedValue = executePipeline();
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.get(tokenKeyOf(Redis.REFRESH_TOKEN_VALUE))).willReturn(Redis.AUTH_ID);
+        given(valueOperations.get(AUTHORIZATION_KEY_PREFIX + Redis.AUTH_ID)).willReturn(savedValue);
+
+        // when
+        var foundByRotated = authorizationRepository.findByRotatedRefreshTokenValue(Redis.REFRESH_TOKEN_VALUE);
+        var foundByCurrent = authorizationRepository.findByRefreshTokenValue(Redis.REFRESH_TOKEN_VALUE);
+
+        // then
+        assertEquals(Redis.AUTH_ID, foundByRotated.orElseThrow().getId());
+        assertTrue(foundByCurrent.isEmpty());
+    }
+
+    @Test
+    @DisplayName("findByRotatedRefreshTokenValue returns empty when the refresh token is current")
+    public void findByRotatedRefreshTokenValue_RefreshTokenCurrent_ReturnsEmpty() {
+        var authorization = Redis.createValidRedisOAuth2Authorization();
+
+        // given
+        given(pipelineOperations.opsForValue()).willReturn(valueOperations);
+        authorizationRepository.save(authorization, null);
+        var savedValue = executePipeline();
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.get(tokenKeyOf(Redis.REFRESH_TOKEN_VALUE))).willReturn(Redis.AUTH_ID);
+        given(valueOperations.get(AUTHORIZATION_KEY_PREFIX + Redis.AUTH_ID)).willReturn(savedValue);
+
+        // when
+        var found = authorizationRepository.findByRotatedRefreshTokenValue(Redis.REFRESH_TOKEN_VALUE);
+
+        // then
+        assertTrue(found.isEmpty());
+    }
+
+    @Test
+    @DisplayName("findByTokenValue returns empty when the token is not indexed")
+    public void findByTokenValue_TokenNotIndexed_ReturnsEmpty() {
+        // given
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.get(tokenKeyOf("unknown-token"))).willReturn(null);
+
+        // when
+        var found = authorizationRepository.findByTokenValue("unknown-token");
+
+        // then
+        assertTrue(found.isEmpty());
+        verify(valueOperations, times(0)).get(startsWith(AUTHORIZATION_KEY_PREFIX + Redis.AUTH_ID));
+    }
+
+    @Test
+    @DisplayName("deleteById deletes the authorization and keys of its tokens")
+    public void deleteById_TokensProvided_DeletesAllKeys() {
+        // when
+        authorizationRepository.deleteById(Redis.AUTH_ID, List.of(Redis.AUTHORIZATION_CODE_VALUE, Redis.ACCESS_TOKEN_VALUE));
+
+        // then
+        verify(redisTemplate, times(1)).delete(List.of(
+                AUTHORIZATION_KEY_PREFIX + Redis.AUTH_ID,
+                tokenKeyOf(Redis.AUTHORIZATION_CODE_VALUE),
+                tokenKeyOf(Redis.ACCESS_TOKEN_VALUE)
+        ));
+    }
+}
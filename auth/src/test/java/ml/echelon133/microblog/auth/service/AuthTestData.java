@@ -31,6 +31,7 @@ public class AuthTestData {
                     .clientId(CLIENT_ID)
                     .clientSecret("test-secret") // does not matter in a public client
                     .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                    .authorizationGrantType(AuthorizationGrantType.REFRESH_TOKEN)
                     .clientAuthenticationMethod(ClientAuthenticationMethod.NONE)
                     .redirectUri(REDIRECT_URI)
                     .scope(SCOPE)
@@ -74,15 +75,23 @@ public class AuthTestData {
         .replace("$sub", PRINCIPAL_NAME)
         .replace("$clientId", Client.CLIENT_ID)
         .replace("$scope", Client.SCOPE);
+        public static String REFRESH_TOKEN_VALUE = "kQ3ZpXlh0ay8mB0vOoc9gEMLQ1mxBzX1u_0kKXJ6n3pWcCu7jSx1SQRbLz2pTO3yW4kdYBi9cV_HrxqfbsD5dXL3rWXQJuhYtrP8F7wpn-qrLmJnKdCIHeQcE-Gyt0A";
+        public static Instant REFRESH_TOKEN_ISSUED_AT = ACCESS_TOKEN_ISSUED_AT;
+        public static Instant REFRESH_TOKEN_EXPIRES_AT = Instant.parse("2023-03-14T19:44:46.947811513Z");
+        public static String REFRESH_TOKEN_METADATA =
+"""
+{"@class":"java.util.Collections$UnmodifiableMap","metadata.token.invalidated":false}
+""";
 
         /**
          * Builds a {@link RedisOAuth2Authorization} object which precisely emulates
          * a flattened version of a real {@link org.springframework.security.oauth2.server.authorization.OAuth2Authorization}
-         * containing an access token. This object can be used to test whether the code which rebuilds the
+         * containing an access token and a refresh token. This object can be used to test whether the code which rebuilds the
          * {@link org.springframework.security.oauth2.server.authorization.OAuth2Authorization} from the flattened
          * database object is actually correct.
          *
          * @return a {@link RedisOAuth2Authorization} which represents an authorization containing an access token
+         * and a refresh token
          */
         public static RedisOAuth2Authorization createValidRedisOAuth2Authorization() {
             RedisOAuth2Authorization auth = new RedisOAuth2Authorization();
@@ -102,6 +111,10 @@ public class AuthTestData {
             auth.setAccessTokenType(ACCESS_TOKEN_TYPE);
             auth.setAccessTokenScopes(ACCESS_TOKEN_SCOPES);
             auth.setAccessTokenMetadata(ACCESS_TOKEN_METADATA);
+            auth.setRefreshTokenValue(REFRESH_TOKEN_VALUE);
+            auth.setRefreshTokenIssuedAt(REFRESH_TOKEN_ISSUED_AT);
+            auth.setRefreshTokenExpiresAt(REFRESH_TOKEN_EXPIRES_AT);
+            auth.setRefreshTokenMetadata(REFRESH_TOKEN_METADATA);
             return auth;
         }
     }
@@ -144,6 +157,11 @@ public class AuthTestData {
                             Redis.ACCESS_TOKEN_EXPIRES_AT,
                             Set.of(Redis.ACCESS_TOKEN_SCOPES)
                     ))
+                    .refreshToken(new OAuth2RefreshToken(
+                            Redis.REFRESH_TOKEN_VALUE,
+                            Redis.REFRESH_TOKEN_ISSUED_AT,
+                            Redis.REFRESH_TOKEN_EXPIRES_AT
+                    ))
                     .attributes((attrib) -> attrib.putAll(Map.of(
                             "org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest",
                             authorizationRequest,
@@ -9,7 +9,6 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.dao.DataRetrievalFailureException;
 import org.springframework.security.oauth2.core.AuthorizationGrantType;
 import org.springframework.security.oauth2.core.OAuth2AccessToken;
-import org.springframework.security.oauth2.core.OAuth2RefreshToken;
 import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationRequest;
 import org.springframework.security.oauth2.core.endpoint.OAuth2AuthorizationResponseType;
 import org.springframework.security.oauth2.core.oidc.OidcIdToken;
@@ -108,27 +107,35 @@ public class AuthorizationMapperTests {
         var accessTokenClaims = accessToken.getClaims();
         assertEquals(AuthTestData.Redis.PRINCIPAL_NAME, accessTokenClaims.get("sub"));
         assertFalse((boolean)accessToken.getMetadata("metadata.token.invalidated"));
+
+        // check refresh token
+        var refreshToken = auth.getRefreshToken();
+        assertNotNull(refreshToken);
+        assertEquals(AuthTestData.Redis.REFRESH_TOKEN_VALUE, refreshToken.getToken().getTokenValue());
+        assertEquals(AuthTestData.Redis.REFRESH_TOKEN_ISSUED_AT, refreshToken.getToken().getIssuedAt());
+        assertEquals(AuthTestData.Redis.REFRESH_TOKEN_EXPIRES_AT, refreshToken.getToken().getExpiresAt());
+        assertFalse((boolean)refreshToken.getMetadata("metadata.token.invalidated"));
     }
 
     @Test
-    @DisplayName("flatten throws an exception when authorization contains a refresh token")
-    public void flatten_AuthorizationContainsRefreshToken_ThrowsException() {
-        var invalidAuth = OAuth2Authorization
-                .from(AuthTestData.Auth.createValidOAuth2Authorization())
-                .refreshToken(new OAuth2RefreshToken(
-                        "some-token-value",
-                        Instant.now(),
-                        Instant.now()
-                ))
-                .build();
+    @DisplayName("unflatten returns OAuth2Authorization without refresh token when it was not issued")
+    public void unflatten_RefreshTokenNotIssued_ReturnsAuthorizationWithoutRefreshToken() {
+        var flatAuth = AuthTestData.Redis.createValidRedisOAuth2Authorization();
+        flatAuth.setRefreshTokenValue(null);
+        flatAuth.setRefreshTokenIssuedAt(null);
+        flatAuth.setRefreshTokenExpiresAt(null);
+        flatAuth.setRefreshTokenMetadata(null);
+
+        // given
+        given(registeredClientRepository.findById(AuthTestData.Client.REGISTERED_CLIENT_ID))
+                .willReturn(AuthTestData.Client.createTestRegisteredClient());
 
         // when
-        String message = assertThrows(IllegalArgumentException.class, () -> {
-            authorizationMapper.flatten(invalidAuth);
-        }).getMessage();
+        var auth = authorizationMapper.unflatten(flatAuth);
 
         // then
-        assertEquals("This OAuth2AuthorizationService does not support refresh tokens", message);
+        assertNull(auth.getRefreshToken());
+        assertNotNull(auth.getAccessToken());
     }
 
     @Test
@@ -184,5 +191,11 @@ public class AuthorizationMapperTests {
         assertEquals(AuthTestData.Client.SCOPE, auth.getAccessTokenScopes());
         var accessTokenMetadata = auth.getAccessTokenMetadata();
         assertTrue(accessTokenMetadata.contains("\"metadata.token.invalidated\":false"));
+
+        assertEquals(AuthTestData.Redis.REFRESH_TOKEN_VALUE, auth.getRefreshTokenValue());
+        assertEquals(AuthTestData.Redis.REFRESH_TOKEN_ISSUED_AT, auth.getRefreshTokenIssuedAt());
+        assertEquals(AuthTestData.Redis.REFRESH_TOKEN_EXPIRES_AT, auth.getRefreshTokenExpiresAt());
+        var refreshTokenMetadata = auth.getRefreshTokenMetadata();
+        assertTrue(refreshTokenMetadata.contains("\"metadata.token.invalidated\":false"));
     }
 }
@@ -1,5 +1,6 @@
 package ml.echelon133.microblog.auth.service;
 
+import ml.echelon133.microblog.auth.queue.TokenRevocationPublisher;
 import ml.echelon133.microblog.auth.repository.OAuth2AuthorizationRepository;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -7,6 +8,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
 import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
 
@@ -15,6 +17,7 @@ import java.util.*;
 import static ml.echelon133.microblog.auth.service.AuthTestData.*;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -32,6 +35,12 @@ public class CustomOAuth2AuthorizationServiceTests {
     @Mock
     private AuthorizationMapper authorizationMapper;
 
+    @Mock
+    private TokenRevocationPublisher tokenRevocationPublisher;
+
+    @Mock
+    private PrecomputedIntrospectionService precomputedIntrospectionService;
+
     @InjectMocks
     private CustomOAuth2AuthorizationService authorizationService;
 
@@ -86,7 +95,7 @@ public class CustomOAuth2AuthorizationServiceTests {
         authorizationService.save(auth);
 
         // then
-        verify(authorizationRepository, times(1)).save(any());
+        verify(authorizationRepository, times(1)).save(any(), any());
     }
 
     @Test
@@ -98,7 +107,145 @@ public class CustomOAuth2AuthorizationServiceTests {
         authorizationService.remove(auth);
 
         // then
-        verify(authorizationRepository, times(1)).deleteById(auth.getId());
+        verify(authorizationRepository, times(1)).deleteById(
+                auth.getId(), List.of(Redis.AUTHORIZATION_CODE_VALUE, Redis.ACCESS_TOKEN_VALUE, Redis.REFRESH_TOKEN_VALUE)
+        );
+    }
+
+    @Test
+    @DisplayName("save does not publish a revocation when the access token is valid")
+    public void save_AccessTokenValid_DoesNotPublishRevocation() {
+        var auth = Auth.createValidOAuth2Authorization();
+
+        // when
+        authorizationService.save(auth);
+
+        // then
+        verify(tokenRevocationPublisher, times(0)).publishRevocation(any());
+    }
+
+    @Test
+    @DisplayName("save publishes a revocation when the access token is invalidated")
+    public void save_AccessTokenInvalidated_PublishesRevocation() {
+        var validAuth = Auth.createValidOAuth2Authorization();
+        var accessToken = validAuth.getAccessToken().getToken();
+        var auth = OAuth2Authorization.from(validAuth)
+                .token(accessToken, (metadata) -> metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, true))
+                .build();
+
+        // when
+        authorizationService.save(auth);
+
+        // then
+        verify(tokenRevocationPublisher, times(1)).publishRevocation(Redis.ACCESS_TOKEN_VALUE);
+    }
+
+    @Test
+    @DisplayName("save publishes a revocation of the access token which has been replaced by a refresh")
+    public void save_AccessTokenRefreshed_PublishesRevocationOfReplacedAccessToken() {
+        var auth = Auth.createValidOAuth2Authorization();
+        var previousAuth = Redis.createValidRedisOAuth2Authorization();
+        previousAuth.setAccessTokenValue("replaced-access-token");
+
+        // given
+        given(authorizationRepository.findById(Redis.AUTH_ID)).willReturn(Optional.of(previousAuth));
+
+        // when
+        authorizationService.save(auth);
+
+        // then
+        verify(precomputedIntrospectionService, times(1)).evict("replaced-access-token");
+        verify(tokenRevocationPublisher, times(1)).publishRevocation("replaced-access-token");
+        verify(precomputedIntrospectionService, times(1)).store(auth);
+        verify(authorizationRepository, times(1)).save(any(), eq(previousAuth));
+    }
+
+    @Test
+    @DisplayName("save does not publish a revocation when the access token has not been replaced")
+    public void save_AccessTokenNotReplaced_DoesNotPublishRevocation() {
+        var auth = Auth.createValidOAuth2Authorization();
+
+        // given
+        given(authorizationRepository.findById(Redis.AUTH_ID))
+                .willReturn(Optional.of(Redis.createValidRedisOAuth2Authorization()));
+
+        // when
+        authorizationService.save(auth);
+
+        // then
+        verify(tokenRevocationPublisher, times(0)).publishRevocation(any());
+        verify(precomputedIntrospectionService, times(0)).evict(any());
+    }
+
+    @Test
+    @DisplayName("save does not read the previous authorization when there is no refresh token")
+    public void save_NoRefreshToken_DoesNotReadPreviousAuthorization() {
+        var validAuth = Auth.createValidOAuth2Authorization();
+        var auth = OAuth2Authorization.withRegisteredClient(Client.createTestRegisteredClient())
+                .id(validAuth.getId())
+                .principalName(validAuth.getPrincipalName())
+                .authorizationGrantType(validAuth.getAuthorizationGrantType())
+                .build();
+
+        // when
+        authorizationService.save(auth);
+
+        // then
+        verify(authorizationRepository, times(0)).findById(any());
+    }
+
+    @Test
+    @DisplayName("remove publishes a revocation of the access token")
+    public void remove_AccessTokenPresent_PublishesRevocation() {
+        var auth = Auth.createValidOAuth2Authorization();
+
+        // when
+        authorizationService.remove(auth);
+
+        // then
+        verify(tokenRevocationPublisher, times(1)).publishRevocation(Redis.ACCESS_TOKEN_VALUE);
+    }
+
+    @Test
+    @DisplayName("save stores introspection claims when the access token is valid")
+    public void save_AccessTokenValid_StoresIntrospectionClaims() {
+        var auth = Auth.createValidOAuth2Authorization();
+
+        // when
+        authorizationService.save(auth);
+
+        // then
+        verify(precomputedIntrospectionService, times(1)).store(auth);
+        verify(precomputedIntrospectionService, times(0)).evict(any());
+    }
+
+    @Test
+    @DisplayName("save evicts introspection claims when the access token is invalidated")
+    public void save_AccessTokenInvalidated_EvictsIntrospectionClaims() {
+        var validAuth = Auth.createValidOAuth2Authorization();
+        var accessToken = validAuth.getAccessToken().getToken();
+        var auth = OAuth2Authorization.from(validAuth)
+                .token(accessToken, (metadata) -> metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, true))
+                .build();
+
+        // when
+        authorizationService.save(auth);
+
+        // then
+        verify(precomputedIntrospectionService, times(1)).evict(Redis.ACCESS_TOKEN_VALUE);
+        verify(precomputedIntrospectionService, times(0)).store(any());
+    }
+
+    @Test
+    @DisplayName("remove evicts introspection claims of the access token")
+    public void remove_AccessTokenPresent_EvictsIntrospectionClaims() {
+        var auth = Auth.createValidOAuth2Authorization();
+
+        // when
+        authorizationService.remove(auth);
+
+        // then
+        verify(precomputedIntrospectionService, times(1)).evict(Redis.ACCESS_TOKEN_VALUE);
     }
 
     @Test
@@ -114,19 +261,21 @@ public class CustomOAuth2AuthorizationServiceTests {
     }
 
     @Test
-    @DisplayName("findByToken searches among both authorization codes and access tokens when token type null")
-    public void findByToken_TokenTypeNull_SearchesAmongBothTokenTypes() {
+    @DisplayName("findByToken searches among all token types when token type null")
+    public void findByToken_TokenTypeNull_SearchesAmongAllTokenTypes() {
         var token = "test-token-value";
 
         // given
-        given(authorizationRepository.findByAuthorizationCodeValue(token)).willReturn(Optional.empty());
-        given(authorizationRepository.findByAccessTokenValue(token)).willReturn(Optional.empty());
+        given(authorizationRepository.findByTokenValue(token)).willReturn(Optional.empty());
 
         // when
         var auth = authorizationService.findByToken(token, null);
 
         // then
         assertNull(auth);
+        verify(authorizationRepository, times(0)).findByAuthorizationCodeValue(token);
+        verify(authorizationRepository, times(0)).findByAccessTokenValue(token);
+        verify(authorizationRepository, times(0)).findByRefreshTokenValue(token);
     }
 
     @Test
@@ -159,6 +308,23 @@ public class CustomOAuth2AuthorizationServiceTests {
         assertNull(auth);
     }
 
+    @Test
+    @DisplayName("findByToken searches among refresh tokens when token type 'refresh_token'")
+    public void findByToken_TokenTypeRefreshToken_SearchesAmongRefreshTokens() {
+        var redisAuth = Redis.createValidRedisOAuth2Authorization();
+
+        // given
+        given(authorizationRepository.findByRefreshTokenValue(Redis.REFRESH_TOKEN_VALUE)).willReturn(Optional.of(redisAuth));
+        given(authorizationMapper.unflatten(redisAuth)).willReturn(Auth.createValidOAuth2Authorization());
+
+        // when
+        var auth = authorizationService.findByToken(Redis.REFRESH_TOKEN_VALUE, OAuth2TokenType.REFRESH_TOKEN);
+
+        // then
+        assertNotNull(auth);
+        assertEquals(Redis.REFRESH_TOKEN_VALUE, auth.getRefreshToken().getToken().getTokenValue());
+    }
+
     @Test
     @DisplayName("findByToken does not search repository when token type unknown")
     public void findByToken_TokenTypeUnknown_DoesNotSearchRepository() {
@@ -170,4 +336,44 @@ public class CustomOAuth2AuthorizationServiceTests {
         // then
         assertNull(auth);
     }
+
+    @Test
+    @DisplayName("findByToken removes the authorization when its rotated refresh token is used again")
+    public void findByToken_RefreshTokenRotated_RemovesAuthorization() {
+        var redisAuth = Redis.createValidRedisOAuth2Authorization();
+        var auth = Auth.createValidOAuth2Authorization();
+
+        // given
+        given(authorizationRepository.findByRefreshTokenValue("rotated-refresh-token")).willReturn(Optional.empty());
+        given(authorizationRepository.findByRotatedRefreshTokenValue("rotated-refresh-token"))
+                .willReturn(Optional.of(redisAuth));
+        given(authorizationMapper.unflatten(redisAuth)).willReturn(auth);
+
+        // when
+        var found = authorizationService.findByToken("rotated-refresh-token", OAuth2TokenType.REFRESH_TOKEN);
+
+        // then
+        assertNull(found);
+        verify(authorizationRepository, times(1)).deleteById(
+                Redis.AUTH_ID, List.of(Redis.AUTHORIZATION_CODE_VALUE, Redis.ACCESS_TOKEN_VALUE, Redis.REFRESH_TOKEN_VALUE)
+        );
+        verify(tokenRevocationPublisher, times(1)).publishRevocation(Redis.ACCESS_TOKEN_VALUE);
+        verify(precomputedIntrospectionService, times(1)).evict(Redis.ACCESS_TOKEN_VALUE);
+    }
+
+    @Test
+    @DisplayName("findByToken does not remove anything when an unknown refresh token is used")
+    public void findByToken_RefreshTokenUnknown_DoesNotRemoveAuthorization() {
+        // given
+        given(authorizationRepository.findByRefreshTokenValue("unknown-refresh-token")).willReturn(Optional.empty());
+        given(authorizationRepository.findByRotatedRefreshTokenValue("unknown-refresh-token")).willReturn(Optional.empty());
+
+        // when
+        var found = authorizationService.findByToken("unknown-refresh-token", OAuth2TokenType.REFRESH_TOKEN);
+
+        // then
+        assertNull(found);
+        verify(authorizationRepository, times(0)).deleteById(any(), any());
+        verify(tokenRevocationPublisher, times(0)).publishRevocation(any());
+    }
 }
@@ -0,0 +1,216 @@
+package ml.echelon133.microblog.auth.service;
+
+import ml.echelon133.microblog.shared.auth.TokenHash;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+
+import java.net.URL;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static ml.echelon133.microblog.auth.service.AuthTestData.*;
+import static ml.echelon133.microblog.shared.auth.TokenOwnerIdExtractor.TOKEN_OWNER_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of PrecomputedIntrospectionService")
+public class PrecomputedIntrospectionServiceTests {
+
+    private static final String TOKEN_KEY = PrecomputedIntrospectionService.KEY_PREFIX + TokenHash.of(Redis.ACCESS_TOKEN_VALUE);
+    private static final UUID TOKEN_OWNER_ID = UUID.fromString("32c16f5d-aca8-488e-8ce8-65f25866b82b");
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private RegisteredClientRepository registeredClientRepository;
+
+    private PrecomputedIntrospectionService introspectionService;
+
+    @BeforeEach
+    public void beforeEach() {
+        // between the issue and the expiration of the access token from the test data
+        var clock = Clock.fixed(Instant.parse("2023-03-07T20:00:00Z"), ZoneOffset.UTC);
+        introspectionService = new PrecomputedIntrospectionService(redisTemplate, registeredClientRepository, clock);
+    }
+
+    private static OAuth2Authorization createAuthorizationWithClaims() throws Exception {
+        var authorization = Auth.createValidOAuth2Authorization();
+        Map<String, Object> claims = Map.of(
+                "sub", Redis.PRINCIPAL_NAME,
+                "aud", List.of(Client.CLIENT_ID),
+                "nbf", Redis.ACCESS_TOKEN_ISSUED_AT,
+                "scope", Set.of(Client.SCOPE),
+                "iss", new URL("http://localhost:8090"),
+                "exp", Redis.ACCESS_TOKEN_EXPIRES_AT,
+                "iat", Redis.ACCESS_TOKEN_ISSUED_AT,
+                TOKEN_OWNER_KEY, TOKEN_OWNER_ID
+        );
+        return OAuth2Authorization.from(authorization)
+                .token(authorization.getAccessToken().getToken(),
+                        (metadata) -> metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, claims))
+                .build();
+    }
+
+    @Test
+    @DisplayName("store saves claims which expire together with the access token")
+    public void store_AccessTokenActive_SavesClaimsWithTimeToLive() throws Exception {
+        var authorization = createAuthorizationWithClaims();
+
+        // given
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(registeredClientRepository.findById(Client.REGISTERED_CLIENT_ID))
+                .willReturn(Client.createTestRegisteredClient());
+
+        // when
+        introspectionService.store(authorization);
+
+        // then
+        var expectedTtl = Duration.between(Instant.parse("2023-03-07T20:00:00Z"), Redis.ACCESS_TOKEN_EXPIRES_AT);
+        verify(valueOperations, times(1)).set(eq(TOKEN_KEY), anyString(), eq(expectedTtl));
+    }
+
+    @Test
+    @DisplayName("store does not save claims of an expired access token")
+    public void store_AccessTokenExpired_DoesNotSaveClaims() {
+        var authorization = Auth.createValidOAuth2Authorization();
+        var expiredToken = new OAuth2AccessToken(
+                OAuth2AccessToken.TokenType.BEARER,
+                Redis.ACCESS_TOKEN_VALUE,
+                Instant.parse("2023-03-07T16:00:00Z"),
+                Instant.parse("2023-03-07T19:00:00Z")
+        );
+        var expiredAuthorization = OAuth2Authorization.from(authorization).accessToken(expiredToken).build();
+
+        // when
+        introspectionService.store(expiredAuthorization);
+
+        // then
+        verify(valueOperations, times(0)).set(any(), any(), any(Duration.class));
+    }
+
+    @Test
+    @DisplayName("store does not save claims of an invalidated access token")
+    public void store_AccessTokenInvalidated_DoesNotSaveClaims() {
+        var authorization = Auth.createValidOAuth2Authorization();
+        var invalidatedAuthorization = OAuth2Authorization.from(authorization)
+                .token(authorization.getAccessToken().getToken(),
+                        (metadata) -> metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, true))
+                .build();
+
+        // when
+        introspectionService.store(invalidatedAuthorization);
+
+        // then
+        verify(valueOperations, times(0)).set(any(), any(), any(Duration.class));
+    }
+
+    @Test
+    @DisplayName("find returns the same claims as the default introspection")
+    public void find_ClaimsStored_ReturnsSameClaimsAsDefaultIntrospection() throws Exception {
+        var authorization = createAuthorizationWithClaims();
+        var captor = ArgumentCaptor.forClass(String.class);
+
+        // given
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(registeredClientRepository.findById(Client.REGISTERED_CLIENT_ID))
+                .willReturn(Client.createTestRegisteredClient());
+
+        // when
+        introspectionService.store(authorization);
+        verify(valueOperations).set(eq(TOKEN_KEY), captor.capture(), any(Duration.class));
+        given(valueOperations.get(TOKEN_KEY)).willReturn(captor.getValue());
+        var introspection = introspectionService.find(Redis.ACCESS_TOKEN_VALUE).orElseThrow();
+
+        // then
+        assertTrue(introspection.isActive());
+        assertEquals(Client.CLIENT_ID, introspection.getClientId());
+        assertEquals("Bearer", introspection.getTokenType());
+        assertEquals(List.of(Client.SCOPE), introspection.getScopes());
+        assertEquals(List.of(Client.CLIENT_ID), introspection.getAudience());
+        assertEquals(Redis.PRINCIPAL_NAME, introspection.getSubject());
+        assertEquals("http://localhost:8090", introspection.getIssuer().toString());
+        assertEquals(Redis.ACCESS_TOKEN_EXPIRES_AT.getEpochSecond(), introspection.getExpiresAt().getEpochSecond());
+        assertEquals(Redis.ACCESS_TOKEN_ISSUED_AT.getEpochSecond(), introspection.getIssuedAt().getEpochSecond());
+        assertEquals(TOKEN_OWNER_ID.toString(), introspection.getClaims().get(TOKEN_OWNER_KEY));
+    }
+
+    @Test
+    @DisplayName("find returns empty when no claims are stored")
+    public void find_ClaimsNotStored_ReturnsEmpty() {
+        // given
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.get(TOKEN_KEY)).willReturn(null);
+
+        // when
+        var introspection = introspectionService.find(Redis.ACCESS_TOKEN_VALUE);
+
+        // then
+        assertTrue(introspection.isEmpty());
+    }
+
+    @Test
+    @DisplayName("find returns empty when the stored claims have expired")
+    public void find_ClaimsExpired_ReturnsEmpty() {
+        var claims = "{\"active\":true,\"client_id\":\"public-client\",\"exp\":1678212000}"; // 2023-03-07T18:00:00Z
+
+        // given
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.get(TOKEN_KEY)).willReturn(claims);
+
+        // when
+        var introspection = introspectionService.find(Redis.ACCESS_TOKEN_VALUE);
+
+        // then
+        assertTrue(introspection.isEmpty());
+    }
+
+    @Test
+    @DisplayName("find returns empty when the stored claims cannot be decoded")
+    public void find_ClaimsMalformed_ReturnsEmpty() {
+        // given
+        given(redisTemplate.opsForValue()).willReturn(valueOperations);
+        given(valueOperations.get(TOKEN_KEY)).willReturn("{\"active\":");
+
+        // when
+        var introspection = introspectionService.find(Redis.ACCESS_TOKEN_VALUE);
+
+        // then
+        assertTrue(introspection.isEmpty());
+    }
+
+    @Test
+    @DisplayName("evict deletes stored claims of the token")
+    public void evict_TokenProvided_DeletesClaims() {
+        // when
+        introspectionService.evict(Redis.ACCESS_TOKEN_VALUE);
+
+        // then
+        verify(redisTemplate, times(1)).delete(TOKEN_KEY);
+    }
+}
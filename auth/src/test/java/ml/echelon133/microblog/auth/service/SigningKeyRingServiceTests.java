@@ -0,0 +1,213 @@
+package ml.echelon133.microblog.auth.service;
+
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static ml.echelon133.microblog.auth.service.SigningKeyRingService.KEY_RING_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of SigningKeyRingService")
+public class SigningKeyRingServiceTests {
+
+    // 2023-03-08T00:00:00Z belongs to the rotation period which starts at 2023-03-02T00:00:00Z
+    private static final Instant NOW = Instant.parse("2023-03-08T00:00:00Z");
+    private static final String CURRENT_PERIOD = "2774";
+    private static final String PREVIOUS_PERIOD = "2773";
+    private static final String OLDEST_PERIOD = "2772";
+    private static final String ENCRYPTION_KEY = "MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY=";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    private SigningKeyRingService keyRingService;
+
+    @BeforeEach
+    public void beforeEach() {
+        keyRingService = new SigningKeyRingService(redisTemplate, Clock.fixed(NOW, ZoneOffset.UTC));
+        keyRingService.rotationPeriod = Duration.ofDays(7);
+        keyRingService.activationDelay = Duration.ofMinutes(10);
+        keyRingService.retention = Duration.ofHours(6);
+        keyRingService.encryptionKey = ENCRYPTION_KEY;
+        lenient().when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+    }
+
+    private static RSAKey generateKey(String keyId) throws Exception {
+        return new RSAKeyGenerator(2048).keyID(keyId).generate();
+    }
+
+    private String storedKey(String keyId, Instant createdAt) throws Exception {
+        return keyRingService.encode(new SigningKeyRingService.RingKey(generateKey(keyId), createdAt));
+    }
+
+    private Set<String> publishedKeyIds() {
+        return keyRingService.get(new JWKSelector(new JWKMatcher.Builder().build()), null)
+                .stream()
+                .map(jwk -> jwk.getKeyID())
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    @DisplayName("refresh generates the key of the current rotation period when it does not exist")
+    public void refresh_CurrentKeyMissing_GeneratesKey() {
+        Map<Object, Object> storedKeys = new HashMap<>();
+        var captor = ArgumentCaptor.forClass(Object.class);
+
+        // given
+        given(hashOperations.entries(KEY_RING_KEY)).willReturn(storedKeys);
+        given(hashOperations.putIfAbsent(eq(KEY_RING_KEY), eq(CURRENT_PERIOD), captor.capture())).will(invocation -> {
+            storedKeys.put(CURRENT_PERIOD, invocation.getArgument(2));
+            return true;
+        });
+
+        // when
+        keyRingService.refresh();
+
+        // then
+        var generated = keyRingService.decode((String) captor.getValue());
+        assertEquals(NOW, generated.createdAt());
+        assertTrue(generated.key().isPrivate());
+        assertEquals(generated.key().getKeyID(), keyRingService.getSigningKeyId());
+        assertEquals(Set.of(generated.key().getKeyID()), publishedKeyIds());
+    }
+
+    @Test
+    @DisplayName("refresh does not generate a key when the key of the current rotation period exists")
+    public void refresh_CurrentKeyExists_DoesNotGenerateKey() throws Exception {
+        // given
+        given(hashOperations.entries(KEY_RING_KEY)).willReturn(Map.of(
+                CURRENT_PERIOD, storedKey("current", NOW.minus(Duration.ofDays(1)))
+        ));
+
+        // when
+        keyRingService.refresh();
+
+        // then
+        verify(hashOperations, times(0)).putIfAbsent(anyString(), any(), any());
+        assertEquals("current", keyRingService.getSigningKeyId());
+    }
+
+    @Test
+    @DisplayName("refresh publishes a new key, but keeps signing with the previous key until the new one is active")
+    public void refresh_NewKeyNotActive_SignsWithPreviousKey() throws Exception {
+        // given
+        given(hashOperations.entries(KEY_RING_KEY)).willReturn(Map.of(
+                PREVIOUS_PERIOD, storedKey("previous", NOW.minus(Duration.ofDays(7))),
+                CURRENT_PERIOD, storedKey("current", NOW.minus(Duration.ofMinutes(5)))
+        ));
+
+        // when
+        keyRingService.refresh();
+
+        // then
+        assertEquals("previous", keyRingService.getSigningKeyId());
+        assertEquals(Set.of("previous", "current"), publishedKeyIds());
+    }
+
+    @Test
+    @DisplayName("refresh keeps publishing the previous key during the retention")
+    public void refresh_PreviousKeyWithinRetention_PublishesPreviousKey() throws Exception {
+        // given
+        given(hashOperations.entries(KEY_RING_KEY)).willReturn(Map.of(
+                PREVIOUS_PERIOD, storedKey("previous", NOW.minus(Duration.ofDays(7))),
+                CURRENT_PERIOD, storedKey("current", NOW.minus(Duration.ofHours(1)))
+        ));
+
+        // when
+        keyRingService.refresh();
+
+        // then
+        assertEquals("current", keyRingService.getSigningKeyId());
+        assertEquals(Set.of("previous", "current"), publishedKeyIds());
+        verify(hashOperations, times(0)).delete(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("refresh removes keys after the retention")
+    public void refresh_KeyAfterRetention_RemovesKey() throws Exception {
+        // given
+        given(hashOperations.entries(KEY_RING_KEY)).willReturn(Map.of(
+                OLDEST_PERIOD, storedKey("oldest", NOW.minus(Duration.ofDays(14))),
+                PREVIOUS_PERIOD, storedKey("previous", NOW.minus(Duration.ofDays(7))),
+                CURRENT_PERIOD, storedKey("current", NOW.minus(Duration.ofHours(1)))
+        ));
+
+        // when
+        keyRingService.refresh();
+
+        // then
+        verify(hashOperations, times(1)).delete(KEY_RING_KEY, OLDEST_PERIOD);
+        assertEquals(Set.of("previous", "current"), publishedKeyIds());
+    }
+
+    @Test
+    @DisplayName("get loads the ring when it has not been loaded yet")
+    public void get_RingNotLoaded_LoadsRing() throws Exception {
+        // given
+        given(hashOperations.entries(KEY_RING_KEY)).willReturn(Map.of(
+                CURRENT_PERIOD, storedKey("current", NOW.minus(Duration.ofDays(1)))
+        ));
+
+        // when
+        var published = publishedKeyIds();
+
+        // then
+        assertEquals(Set.of("current"), published);
+    }
+
+    @Test
+    @DisplayName("encode does not store the private key in plaintext")
+    public void encode_KeyProvided_EncryptsPrivateKey() throws Exception {
+        var key = generateKey("current");
+
+        // when
+        var stored = keyRingService.encode(new SigningKeyRingService.RingKey(key, NOW));
+
+        // then
+        assertFalse(stored.contains(key.getPrivateExponent().toString()));
+        assertFalse(stored.contains(key.getModulus().toString()));
+        var decoded = keyRingService.decode(stored);
+        assertEquals(key, decoded.key());
+        assertEquals(NOW, decoded.createdAt());
+    }
+
+    @Test
+    @DisplayName("decode throws when the key was encrypted with a different encryption key")
+    public void decode_DifferentEncryptionKey_Throws() throws Exception {
+        var stored = storedKey("current", NOW);
+        keyRingService.encryptionKey = "ZmVkY2JhOTg3NjU0MzIxMGZlZGNiYTk4NzY1NDMyMTA=";
+
+        // when
+        assertThrows(IllegalStateException.class, () -> keyRingService.decode(stored));
+    }
+}
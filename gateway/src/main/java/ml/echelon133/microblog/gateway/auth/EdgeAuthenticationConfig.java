@@ -0,0 +1,144 @@
+package ml.echelon133.microblog.gateway.auth;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.proc.DefaultJOSEObjectTypeVerifier;
+import io.micrometer.core.instrument.MeterRegistry;
+import ml.echelon133.microblog.shared.auth.AccessTokens;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.introspection.SpringReactiveOpaqueTokenIntrospector;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Configures authentication of access tokens at the edge of the cluster (see {@link EdgeAuthenticationFilter}),
+ * which is enabled by {@code edge-auth.enabled}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "edge-auth", name = "enabled", havingValue = "true")
+public class EdgeAuthenticationConfig {
+
+    private static final Logger LOGGER = LogManager.getLogger(EdgeAuthenticationConfig.class);
+
+    private static final ChannelTopic TOKEN_REVOCATION = new ChannelTopic(AccessTokens.REVOCATION_TOPIC);
+
+    /*
+    Patterns of paths of requests whose tokens are authenticated by the gateway.
+     */
+    @Value("${edge-auth.paths}")
+    List<String> paths;
+
+    @Value("${edge-auth.introspection-uri}")
+    String introspectionUri;
+
+    @Value("${edge-auth.introspection-client-id}")
+    String clientId;
+
+    @Value("${edge-auth.introspection-client-secret}")
+    String clientSecret;
+
+    @Value("${edge-auth.jwk-set-uri}")
+    String jwkSetUri;
+
+    /*
+    Issuer of self-contained access tokens, tokens of other issuers are rejected.
+     */
+    @Value("${edge-auth.issuer}")
+    String issuer;
+
+    /*
+    How long identities of token owners are cached at most (they are never cached beyond the expiration of a token).
+    Revoked tokens are evicted from the cache as soon as their revocation is published by the auth service.
+     */
+    @Value("${edge-auth.cache.max-ttl}")
+    Duration cacheMaxTtl;
+
+    @Value("${edge-auth.cache.max-entries}")
+    int cacheMaxEntries;
+
+    /*
+    Secret shared with resource servers, which verify signed identities with it.
+     */
+    @Value("${edge-auth.identity.secret}")
+    String identitySecret;
+
+    /*
+    How long resource servers accept a signed identity.
+     */
+    @Value("${edge-auth.identity.time-to-live}")
+    Duration identityTimeToLive;
+
+    @Bean
+    public EdgeTokenAuthenticator edgeTokenAuthenticator(MeterRegistry meterRegistry) {
+        return new EdgeTokenAuthenticator(
+                new SpringReactiveOpaqueTokenIntrospector(introspectionUri, clientId, clientSecret),
+                jwtDecoder(),
+                Clock.systemDefaultZone(),
+                cacheMaxTtl,
+                cacheMaxEntries,
+                meterRegistry
+        );
+    }
+
+    /**
+     * Creates a decoder of self-contained access tokens, which checks their issuer and only accepts JWTs whose
+     * {@code typ} header is {@link AccessTokens#JWT_TYPE} (which the auth service sets on access tokens only),
+     * besides their signatures and timestamps.
+     */
+    private ReactiveJwtDecoder jwtDecoder() {
+        var decoder = NimbusReactiveJwtDecoder.withJwkSetUri(jwkSetUri)
+                .jwtProcessorCustomizer(processor -> processor.setJWSTypeVerifier(
+                        new DefaultJOSEObjectTypeVerifier<>(new JOSEObjectType(AccessTokens.JWT_TYPE))
+                ))
+                .build();
+        decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuer));
+        return decoder;
+    }
+
+    @Bean
+    public EdgeAuthenticationFilter edgeAuthenticationFilter(EdgeTokenAuthenticator authenticator) {
+        var signer = new EdgeIdentitySigner(identitySecret, Clock.systemDefaultZone(), identityTimeToLive);
+        return new EdgeAuthenticationFilter(authenticator, signer, paths);
+    }
+
+    /**
+     * Evicts cached identities of tokens whose revocation is published by the auth service
+     * (see {@link AccessTokens#REVOCATION_TOPIC}).
+     */
+    @Bean(destroyMethod = "dispose")
+    public Disposable tokenRevocationSubscription(ReactiveRedisConnectionFactory connectionFactory,
+                                                  EdgeTokenAuthenticator authenticator) {
+        // the container connects to Redis as soon as it's created, so it's created by every (re)subscription,
+        // which means that the gateway starts (and keeps retrying) even when the queue is not available
+        return Flux
+                .using(
+                        () -> new ReactiveRedisMessageListenerContainer(connectionFactory),
+                        container -> container.receive(
+                                List.of(TOKEN_REVOCATION),
+                                SerializationPair.fromSerializer(RedisSerializer.string()),
+                                SerializationPair.fromSerializer(RedisSerializer.java())
+                        ),
+                        container -> container.destroyLater().subscribe()
+                )
+                .doOnError(e -> LOGGER.warn("Lost the subscription of token revocations: " + e.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofMinutes(1)))
+                .subscribe(message -> authenticator.evict((String) message.getMessage()));
+    }
+}
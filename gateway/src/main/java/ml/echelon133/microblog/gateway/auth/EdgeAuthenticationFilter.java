@@ -0,0 +1,107 @@
+package ml.echelon133.microblog.gateway.auth;
+
+import ml.echelon133.microblog.shared.auth.EdgeIdentityHeader;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link GlobalFilter} which authenticates access tokens of requests at the edge of the cluster, and forwards
+ * signed identities of token owners to resource servers, which trust them instead of authenticating
+ * the same tokens again.
+ *
+ * Only requests whose paths match {@code paths} are authenticated. Requests with invalid tokens are rejected
+ * with {@code 401}, just like resource servers would reject them. Requests whose tokens cannot be authenticated
+ * by the gateway (e.g. because the auth service is not available) are forwarded without an identity,
+ * so that resource servers authenticate their tokens.
+ *
+ * Identity headers sent by clients are always removed.
+ */
+public class EdgeAuthenticationFilter implements GlobalFilter, Ordered {
+
+    /**
+     * Runs after filters of routes (which are ordered by their position in the configuration), and before
+     * the gateway starts routing the request.
+     */
+    public static final int ORDER = 1000;
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final EdgeTokenAuthenticator authenticator;
+    private final EdgeIdentitySigner signer;
+    private final List<PathPattern> paths;
+
+    /**
+     * @param authenticator authenticator of access tokens
+     * @param signer signer of identities of token owners
+     * @param paths patterns of paths of requests which are authenticated by the gateway
+     */
+    public EdgeAuthenticationFilter(EdgeTokenAuthenticator authenticator, EdgeIdentitySigner signer, List<String> paths) {
+        this.authenticator = authenticator;
+        this.signer = signer;
+        this.paths = paths.stream().map(PathPatternParser.defaultInstance::parse).toList();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        var request = exchange.getRequest().mutate()
+                .headers(headers -> headers.remove(EdgeIdentityHeader.NAME))
+                .build();
+
+        var token = resolveBearerToken(request);
+        var path = request.getPath().pathWithinApplication();
+        if (token == null || paths.stream().noneMatch(pattern -> pattern.matches(path))) {
+            return chain.filter(exchange.mutate().request(request).build());
+        }
+
+        return authenticator.authenticate(token)
+                .map(identity -> Optional.of(signer.sign(identity, token)))
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(identityHeader -> {
+                    var forwardedRequest = request;
+                    if (identityHeader.isPresent()) {
+                        forwardedRequest = request.mutate()
+                                .header(EdgeIdentityHeader.NAME, identityHeader.get())
+                                .build();
+                    }
+                    return chain.filter(exchange.mutate().request(forwardedRequest).build());
+                })
+                .onErrorResume(EdgeTokenAuthenticator.InvalidTokenException.class, e -> {
+                    var response = exchange.getResponse();
+                    response.setStatusCode(HttpStatus.UNAUTHORIZED);
+                    response.getHeaders().set(
+                            HttpHeaders.WWW_AUTHENTICATE,
+                            "Bearer error=\"invalid_token\", error_description=\"The access token is invalid\""
+                    );
+                    return response.setComplete();
+                });
+    }
+
+    /**
+     * @param request request which might contain a bearer token
+     * @return value of the bearer token of the request, or {@code null} if the request does not contain one
+     */
+    public static String resolveBearerToken(ServerHttpRequest request) {
+        var authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authorization == null || !authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            return null;
+        }
+        var token = authorization.substring(BEARER_PREFIX.length()).trim();
+        return token.isEmpty() ? null : token;
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
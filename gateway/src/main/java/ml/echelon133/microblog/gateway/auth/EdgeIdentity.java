@@ -0,0 +1,50 @@
+package ml.echelon133.microblog.gateway.auth;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Identity of the owner of an access token which has been authenticated by the gateway.
+ *
+ * @param subject username of the token owner
+ * @param tokenOwnerId id of the token owner
+ * @param scopes scopes granted to the token
+ * @param expiresAt expiration of the token, {@code null} if the token does not expire
+ */
+public record EdgeIdentity(String subject, String tokenOwnerId, List<String> scopes, Instant expiresAt) {
+
+    static final String TOKEN_OWNER_KEY = "token-owner-id";
+
+    /**
+     * Creates an identity from claims of a token, which are either attributes of an introspected opaque token,
+     * or claims of a verified JWT.
+     *
+     * @param claims claims of the token
+     * @return identity of the token owner
+     * @throws IllegalArgumentException when claims do not contain the subject or the id of the token owner
+     */
+    public static EdgeIdentity fromClaims(Map<String, Object> claims) {
+        var subject = claims.get("sub");
+        var tokenOwnerId = claims.get(TOKEN_OWNER_KEY);
+        if (subject == null || tokenOwnerId == null) {
+            throw new IllegalArgumentException("Token does not contain the identity of its owner");
+        }
+
+        List<String> scopes = new ArrayList<>();
+        var scope = claims.get("scope");
+        if (scope instanceof Collection<?> scopeCollection) {
+            scopeCollection.forEach(s -> scopes.add(s.toString()));
+        } else if (scope instanceof String scopeString && !scopeString.isBlank()) {
+            scopes.addAll(Arrays.asList(scopeString.split(" ")));
+        }
+
+        Instant expiresAt = null;
+        var exp = claims.get("exp");
+        if (exp instanceof Instant expInstant) {
+            expiresAt = expInstant;
+        } else if (exp instanceof Number expNumber) {
+            expiresAt = Instant.ofEpochSecond(expNumber.longValue());
+        }
+        return new EdgeIdentity(subject.toString(), tokenOwnerId.toString(), List.copyOf(scopes), expiresAt);
+    }
+}
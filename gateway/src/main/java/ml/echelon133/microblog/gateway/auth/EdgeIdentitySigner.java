@@ -0,0 +1,57 @@
+package ml.echelon133.microblog.gateway.auth;
+
+import ml.echelon133.microblog.shared.auth.EdgeIdentityHeader;
+import ml.echelon133.microblog.shared.auth.TokenHash;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Signs identities of token owners, which the gateway forwards to resource servers in the
+ * {@link EdgeIdentityHeader#NAME} header (see {@link EdgeIdentityHeader} for the format, which resource servers
+ * verify with {@code EdgeIdentityVerifier} of the shared module).
+ *
+ * Every header carries the hash of the token it has been signed for, so resource servers only accept it together
+ * with that token. Headers expire after {@code timeToLive} (or together with the token, if it expires sooner),
+ * which limits how long a header which leaks out of the cluster could be reused.
+ */
+public class EdgeIdentitySigner {
+
+    private final EdgeIdentityHeader identityHeader;
+    private final Clock clock;
+    private final Duration timeToLive;
+
+    /**
+     * @param secret secret shared with resource servers
+     * @param clock clock which decides when headers expire
+     * @param timeToLive how long resource servers accept a header
+     */
+    public EdgeIdentitySigner(String secret, Clock clock, Duration timeToLive) {
+        this.identityHeader = new EdgeIdentityHeader(secret);
+        this.clock = clock;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * @param identity identity of the owner of an authenticated token
+     * @param token the authenticated token
+     * @return value of the {@link EdgeIdentityHeader#NAME} header
+     */
+    public String sign(EdgeIdentity identity, String token) {
+        var expiresAt = Instant.now(clock).plus(timeToLive);
+        if (identity.expiresAt() != null && identity.expiresAt().isBefore(expiresAt)) {
+            expiresAt = identity.expiresAt();
+        }
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put(EdgeIdentityHeader.SUBJECT, identity.subject());
+        payload.put(EdgeIdentityHeader.TOKEN_OWNER_ID, identity.tokenOwnerId());
+        payload.put(EdgeIdentityHeader.SCOPE, identity.scopes());
+        payload.put(EdgeIdentityHeader.EXPIRES_AT, expiresAt.getEpochSecond());
+        payload.put(EdgeIdentityHeader.TOKEN_HASH, TokenHash.of(token));
+        return identityHeader.encode(payload);
+    }
+}
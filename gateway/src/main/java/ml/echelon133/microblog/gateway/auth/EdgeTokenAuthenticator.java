@@ -0,0 +1,193 @@
+package ml.echelon133.microblog.gateway.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import ml.echelon133.microblog.shared.auth.AccessTokens;
+import ml.echelon133.microblog.shared.auth.TokenHash;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.introspection.BadOpaqueTokenException;
+import org.springframework.security.oauth2.server.resource.introspection.ReactiveOpaqueTokenIntrospector;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Authenticates access tokens at the edge of the cluster, and caches identities of their owners, so that
+ * a token used by many requests is introspected (or verified) by the gateway once in a while, instead of being
+ * introspected by every resource server which handles each of these requests.
+ *
+ * Opaque tokens are introspected by the auth service, self-contained (JWT) tokens are verified locally with keys
+ * from the JWK set of the auth service. Identities are cached under hashes of tokens, for at most {@code maxTtl}
+ * and never beyond the expiration of the token. Tokens revoked before they expire are evicted with
+ * {@link #evict(String)}, whenever the auth service publishes their revocation.
+ *
+ * Hits and misses of the cache are counted by the {@code gateway.edge-auth.cache} metric (tagged with
+ * {@code result}).
+ */
+public class EdgeTokenAuthenticator {
+
+    private static final Logger LOGGER = LogManager.getLogger(EdgeTokenAuthenticator.class);
+
+    private final ReactiveOpaqueTokenIntrospector introspector;
+    private final ReactiveJwtDecoder jwtDecoder;
+    private final Clock clock;
+    private final Duration maxTtl;
+    private final Cache<String, CachedIdentity> cache;
+    // hashes of revoked tokens, which prevent caching of authentications that started before the revocation
+    // and finished after it. They are only forgotten once they are older than maxTtl (which is much longer than
+    // any authentication can take), never because many other tokens have been revoked
+    private final Cache<String, Boolean> revokedTokenHashes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private record CachedIdentity(EdgeIdentity identity, Instant expiresAt) {}
+
+    /**
+     * Thrown when a token is invalid (e.g. it has expired, has been revoked, or has an invalid signature),
+     * which means that the request can be rejected by the gateway.
+     */
+    public static class InvalidTokenException extends RuntimeException {
+        public InvalidTokenException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * @param introspector introspector of opaque tokens
+     * @param jwtDecoder decoder of self-contained tokens
+     * @param clock clock which decides when cached identities expire
+     * @param maxTtl how long identities can be cached at most
+     * @param maxEntries how many identities can be cached at once, the least used ones are evicted first
+     * @param meterRegistry registry of the metrics of the cache
+     */
+    public EdgeTokenAuthenticator(ReactiveOpaqueTokenIntrospector introspector,
+                                  ReactiveJwtDecoder jwtDecoder,
+                                  Clock clock,
+                                  Duration maxTtl,
+                                  int maxEntries,
+                                  MeterRegistry meterRegistry) {
+        this.introspector = introspector;
+        this.jwtDecoder = jwtDecoder;
+        this.clock = clock;
+        this.maxTtl = maxTtl;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new UntilExpiresAt())
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+                .build();
+        this.revokedTokenHashes = Caffeine.newBuilder()
+                .expireAfterWrite(maxTtl)
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+                .build();
+
+        FunctionCounter.builder("gateway.edge-auth.cache", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("Tokens authenticated using the cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.edge-auth.cache", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("Tokens introspected or verified by the gateway")
+                .register(meterRegistry);
+        Gauge.builder("gateway.edge-auth.cache.size", cache, Cache::estimatedSize)
+                .description("Number of cached identities")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Finds the identity of the owner of the token.
+     *
+     * @param token value of the access token
+     * @return identity of the token owner, or empty when the token cannot be authenticated by the gateway
+     * (e.g. because the auth service is not available, or the token is not owned by a user), in which case
+     * resource servers should authenticate the token themselves
+     * @throws InvalidTokenException (emitted by the returned {@link Mono}) when the token is invalid
+     */
+    public Mono<EdgeIdentity> authenticate(String token) {
+        var tokenHash = TokenHash.of(token);
+        var now = Instant.now(clock);
+
+        var cached = cache.getIfPresent(tokenHash);
+        if (cached != null) {
+            hits.increment();
+            return Mono.just(cached.identity());
+        }
+
+        misses.increment();
+        // decoders can throw before they return a Mono (e.g. when a JWT is malformed)
+        return Mono.defer(() -> findClaims(token))
+                .map(EdgeIdentity::fromClaims)
+                .doOnNext(identity -> store(tokenHash, identity, now))
+                .onErrorMap(e -> e instanceof BadOpaqueTokenException || e instanceof BadJwtException,
+                        e -> new InvalidTokenException(e.getMessage(), e))
+                .onErrorResume(e -> !(e instanceof InvalidTokenException), e -> {
+                    LOGGER.warn("Failed to authenticate a token at the edge: " + e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Map<String, Object>> findClaims(String token) {
+        if (AccessTokens.isJwt(token)) {
+            return jwtDecoder.decode(token).map(jwt -> jwt.getClaims());
+        }
+        return introspector.introspect(token).map(principal -> principal.getAttributes());
+    }
+
+    private void store(String tokenHash, EdgeIdentity identity, Instant now) {
+        var expiresAt = now.plus(maxTtl);
+        if (identity.expiresAt() != null && identity.expiresAt().isBefore(expiresAt)) {
+            expiresAt = identity.expiresAt();
+        }
+        if (expiresAt.isAfter(now)) {
+            cache.put(tokenHash, new CachedIdentity(identity, expiresAt));
+            // the token is checked after it's cached, because a revocation could happen between a check
+            // and caching. Either the check sees the revocation, or the eviction removes the cached identity
+            if (revokedTokenHashes.getIfPresent(tokenHash) != null) {
+                cache.invalidate(tokenHash);
+            }
+        }
+    }
+
+    /**
+     * Removes the cached identity of a revoked token, so that the next request with the token is
+     * authenticated again (and rejected).
+     *
+     * @param tokenHash hex-encoded SHA-256 hash of the revoked token
+     */
+    public void evict(String tokenHash) {
+        revokedTokenHashes.put(tokenHash, true);
+        cache.invalidate(tokenHash);
+    }
+
+    /**
+     * Expires every cached identity at its own {@code expiresAt}.
+     */
+    private class UntilExpiresAt implements Expiry<String, CachedIdentity> {
+
+        @Override
+        public long expireAfterCreate(String tokenHash, CachedIdentity cached, long currentTime) {
+            return Duration.between(Instant.now(clock), cached.expiresAt()).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String tokenHash, CachedIdentity cached, long currentTime, long currentDuration) {
+            return expireAfterCreate(tokenHash, cached, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String tokenHash, CachedIdentity cached, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package ml.echelon133.microblog.gateway.cache;
+
+import ml.echelon133.microblog.gateway.ratelimit.TokenBucketRateLimiter;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Caches responses of a route for anonymous requests (i.e. {@code GET} requests without
+ * the {@code Authorization} header), whose responses are identical for every visitor who is not logged in.
+ *
+ * Responses are cached under the path of the request and the values of {@link #KEY_PARAMETERS} (the only parameters
+ * which cached endpoints read), for {@code timeToLive}. Other parameters do not create new entries, so clients cannot
+ * evict popular responses by adding random parameters to their requests. Only {@code 200} responses are cached.
+ * Requests of logged in users are always routed.
+ *
+ * Usage: {@code AnonymousResponseCache=10s}
+ */
+public class AnonymousResponseCacheGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<AnonymousResponseCacheGatewayFilterFactory.Config> {
+
+    // headers which only make sense in the response they have been sent with
+    private static final List<String> UNCACHEABLE_HEADERS = List.of(
+            HttpHeaders.SET_COOKIE, HttpHeaders.CONTENT_LENGTH, HttpHeaders.TRANSFER_ENCODING, HttpHeaders.CONNECTION,
+            TokenBucketRateLimiter.REMAINING_HEADER
+    );
+
+    /**
+     * Parameters of requests which are part of keys of cached responses, sorted by name.
+     */
+    static final List<String> KEY_PARAMETERS = List.of("last", "page", "popular", "size", "sort");
+
+    private final ResponseCache cache;
+    private final Clock clock;
+
+    public static class Config {
+        private Duration timeToLive;
+
+        public Duration getTimeToLive() {
+            return timeToLive;
+        }
+
+        public void setTimeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+    }
+
+    /**
+     * @param cache cache shared by all routes
+     * @param clock clock which decides when responses expire
+     */
+    public AnonymousResponseCacheGatewayFilterFactory(ResponseCache cache, Clock clock) {
+        super(Config.class);
+        this.cache = cache;
+        this.clock = clock;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("timeToLive");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // the filter has to decorate the response before NettyWriteResponseFilter starts writing it
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            var request = exchange.getRequest();
+            if (request.getMethod() != HttpMethod.GET || request.getHeaders().containsKey(HttpHeaders.AUTHORIZATION)) {
+                return chain.filter(exchange);
+            }
+
+            var key = cacheKey(request.getURI());
+            var lookup = cache.lookup(key);
+            if (lookup.cached() != null) {
+                return write(exchange.getResponse(), lookup.cached());
+            }
+            if (lookup.pending() != null) {
+                // the response of the concurrent request might not be cacheable, in which case this request
+                // is routed on its own
+                return lookup.pending().flatMap(response -> response.isPresent() ?
+                        write(exchange.getResponse(), response.get()) : chain.filter(exchange));
+            }
+
+            var sink = lookup.sink();
+            var completed = new AtomicBoolean();
+            var response = new CachingResponseDecorator(exchange.getResponse(), cachedResponse -> {
+                if (completed.compareAndSet(false, true)) {
+                    cache.complete(key, sink, cachedResponse);
+                }
+            }, config.getTimeToLive());
+            return chain.filter(exchange.mutate().response(response).build())
+                    // requests waiting for the response must never wait forever, even if routing fails,
+                    // or the response is not written at all
+                    .doFinally(signal -> {
+                        if (completed.compareAndSet(false, true)) {
+                            cache.complete(key, sink, null);
+                        }
+                    });
+        }, NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    /**
+     * @param uri uri of a request
+     * @return path of the request, followed by values of {@link #KEY_PARAMETERS} in a fixed order
+     */
+    static String cacheKey(URI uri) {
+        var queryParams = UriComponentsBuilder.fromUri(uri).build(true).getQueryParams();
+        var key = new StringBuilder(uri.getRawPath());
+        var separator = '?';
+        for (var name : KEY_PARAMETERS) {
+            var values = queryParams.get(name);
+            if (values == null) {
+                continue;
+            }
+            for (var value : values) {
+                key.append(separator).append(name).append('=').append(value == null ? "" : value);
+                separator = '&';
+            }
+        }
+        return key.toString();
+    }
+
+    private static Mono<Void> write(ServerHttpResponse response, ResponseCache.CachedResponse cachedResponse) {
+        response.setStatusCode(cachedResponse.status());
+        response.getHeaders().putAll(cachedResponse.headers());
+        response.getHeaders().setContentLength(cachedResponse.body().length);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(cachedResponse.body())));
+    }
+
+    /**
+     * Collects the body of the response, so that it can be cached, and then writes it to the client.
+     */
+    private class CachingResponseDecorator extends ServerHttpResponseDecorator {
+
+        private final Consumer<ResponseCache.CachedResponse> consumer;
+        private final Duration timeToLive;
+
+        CachingResponseDecorator(ServerHttpResponse delegate, Consumer<ResponseCache.CachedResponse> consumer, Duration timeToLive) {
+            super(delegate);
+            this.consumer = consumer;
+            this.timeToLive = timeToLive;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            if (getStatusCode() != HttpStatus.OK) {
+                consumer.accept(null);
+                return super.writeWith(body);
+            }
+
+            return DataBufferUtils.join(Flux.from(body))
+                    .flatMap(joined -> {
+                        var bytes = new byte[joined.readableByteCount()];
+                        joined.read(bytes);
+                        DataBufferUtils.release(joined);
+
+                        var headers = new HttpHeaders();
+                        headers.putAll(getHeaders());
+                        UNCACHEABLE_HEADERS.forEach(headers::remove);
+                        consumer.accept(new ResponseCache.CachedResponse(
+                                HttpStatus.OK,
+                                HttpHeaders.readOnlyHttpHeaders(headers),
+                                bytes,
+                                Instant.now(clock).plus(timeToLive)
+                        ));
+                        return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                    });
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package ml.echelon133.microblog.gateway.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory cache of responses, shared by all routes which use the {@link AnonymousResponseCacheGatewayFilterFactory}.
+ *
+ * Memory used by the cache is bounded by {@code maxEntries} and {@code maxBytes} (the total size of cached bodies).
+ * Responses expire on their own, and when the cache is full, the least used responses are evicted first.
+ *
+ * Concurrent misses of the same key are coalesced: only the first request is routed, and the others wait for
+ * (and are served with) its response.
+ *
+ * Hits, misses and coalesced requests are counted by the {@code gateway.response-cache} metric (tagged with
+ * {@code result}).
+ */
+public class ResponseCache {
+
+    private final Clock clock;
+    private final long maxBytes;
+    private final Cache<String, CachedResponse> entries;
+    private final Map<String, Sinks.One<CachedResponse>> pending = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Response which can be served to many requests.
+     *
+     * @param status status of the response
+     * @param headers headers of the response (without headers which are specific to a single response,
+     *                such as {@code Set-Cookie})
+     * @param body body of the response
+     * @param expiresAt when the response stops being served
+     */
+    public record CachedResponse(HttpStatus status, HttpHeaders headers, byte[] body, Instant expiresAt) {}
+
+    /**
+     * Result of a lookup of a key, which either contains a cached response, a pending response of a request
+     * which is already being routed, or a sink which has to be completed by the caller, whose request is the first
+     * one to miss the key.
+     */
+    public record Lookup(CachedResponse cached, Mono<Optional<CachedResponse>> pending, Sinks.One<CachedResponse> sink) {}
+
+    /**
+     * @param clock clock which decides when responses expire
+     * @param maxEntries how many responses can be cached at once
+     * @param maxBytes total size of bodies of responses which can be cached at once
+     * @param meterRegistry registry of the metrics of the cache
+     */
+    public ResponseCache(Clock clock, int maxEntries, long maxBytes, MeterRegistry meterRegistry) {
+        this.clock = clock;
+        this.maxBytes = maxBytes;
+        // every response weighs at least maxBytes / maxEntries, so that the bound on the total weight also
+        // bounds the number of responses
+        var minWeight = maxBytes / maxEntries;
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .<String, CachedResponse>weigher((key, response) -> (int) Math.max(response.body().length, minWeight))
+                .expireAfter(new UntilExpiresAt())
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+                .build();
+
+        FunctionCounter.builder("gateway.response-cache", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("Requests served with cached responses")
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.response-cache", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("Requests routed because their responses were not cached")
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.response-cache", coalesced, LongAdder::sum)
+                .tag("result", "coalesced")
+                .description("Requests served with responses of concurrent requests")
+                .register(meterRegistry);
+        Gauge.builder("gateway.response-cache.bytes", entries, ResponseCache::weightOf)
+                .description("Total weight of cached responses, i.e. the size of their bodies")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Looks up the response cached under the key.
+     *
+     * @param key key of the response
+     * @return lookup whose {@code cached} response is set on a hit, whose {@code pending} response is set
+     * when another request with the same key is being routed, and whose {@code sink} is set otherwise (in which case
+     * the caller must call {@link #complete(String, Sinks.One, CachedResponse)} once the response is known)
+     */
+    public Lookup lookup(String key) {
+        var cached = entries.getIfPresent(key);
+        if (cached != null) {
+            hits.increment();
+            return new Lookup(cached, null, null);
+        }
+
+        var sink = Sinks.<CachedResponse>one();
+        var pendingSink = pending.putIfAbsent(key, sink);
+        if (pendingSink != null) {
+            coalesced.increment();
+            var pendingResponse = pendingSink.asMono()
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty());
+            return new Lookup(null, pendingResponse, null);
+        }
+        misses.increment();
+        return new Lookup(null, null, sink);
+    }
+
+    /**
+     * Stores the response of the request which has missed the key, and passes it to requests waiting for it.
+     *
+     * @param key key of the response
+     * @param sink sink returned by {@link #lookup(String)}
+     * @param response response to cache, or {@code null} if the response cannot be cached, in which case
+     *                 waiting requests need to be routed on their own
+     */
+    public void complete(String key, Sinks.One<CachedResponse> sink, CachedResponse response) {
+        if (response != null) {
+            store(key, response);
+            sink.tryEmitValue(response);
+        } else {
+            sink.tryEmitEmpty();
+        }
+        pending.remove(key, sink);
+    }
+
+    private void store(String key, CachedResponse response) {
+        if (response.body().length <= maxBytes && response.expiresAt().isAfter(Instant.now(clock))) {
+            entries.put(key, response);
+        }
+    }
+
+    /**
+     * Runs maintenance of the cache (e.g. evictions of responses which do not fit), which is otherwise done
+     * asynchronously after writes.
+     */
+    void cleanUp() {
+        entries.cleanUp();
+    }
+
+    private static long weightOf(Cache<String, CachedResponse> entries) {
+        return entries.policy().eviction().orElseThrow().weightedSize().orElse(0);
+    }
+
+    /**
+     * Expires every cached response at its own {@code expiresAt}.
+     */
+    private class UntilExpiresAt implements Expiry<String, CachedResponse> {
+
+        @Override
+        public long expireAfterCreate(String key, CachedResponse response, long currentTime) {
+            return Duration.between(Instant.now(clock), response.expiresAt()).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CachedResponse response, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, response, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CachedResponse response, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
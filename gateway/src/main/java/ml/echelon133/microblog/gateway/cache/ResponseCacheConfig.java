@@ -0,0 +1,35 @@
+package ml.echelon133.microblog.gateway.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Clock;
+
+/**
+ * Configures the cache of responses to anonymous requests (see {@link AnonymousResponseCacheGatewayFilterFactory}).
+ */
+@Configuration
+public class ResponseCacheConfig {
+
+    @Value("${response-cache.max-entries}")
+    int maxEntries;
+
+    /*
+    Total size of bodies of cached responses.
+     */
+    @Value("${response-cache.max-size}")
+    DataSize maxSize;
+
+    @Bean
+    public ResponseCache responseCache(MeterRegistry meterRegistry) {
+        return new ResponseCache(Clock.systemDefaultZone(), maxEntries, maxSize.toBytes(), meterRegistry);
+    }
+
+    @Bean
+    public AnonymousResponseCacheGatewayFilterFactory anonymousResponseCacheGatewayFilterFactory(ResponseCache cache) {
+        return new AnonymousResponseCacheGatewayFilterFactory(cache, Clock.systemDefaultZone());
+    }
+}
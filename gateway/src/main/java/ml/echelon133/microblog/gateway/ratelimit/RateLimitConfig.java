@@ -0,0 +1,40 @@
+package ml.echelon133.microblog.gateway.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import ml.echelon133.microblog.gateway.auth.EdgeTokenAuthenticator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+/**
+ * Configures the rate limiter and the key resolver used by {@code RequestRateLimiter} filters of routes.
+ */
+@Configuration
+public class RateLimitConfig {
+
+    /*
+    How many token buckets (one per route and client) can be kept at once.
+     */
+    @Value("${rate-limit.max-buckets}")
+    int maxBuckets;
+
+    @Value("${rate-limit.sync.enabled}")
+    boolean syncEnabled;
+
+    @Bean
+    public TokenBucketRateLimiter tokenBucketRateLimiter(ConfigurationService configurationService,
+                                                         MeterRegistry meterRegistry) {
+        return new TokenBucketRateLimiter(
+                configurationService, Clock.systemDefaultZone(), maxBuckets, syncEnabled, meterRegistry
+        );
+    }
+
+    @Bean
+    public RateLimitKeyResolver rateLimitKeyResolver(ObjectProvider<EdgeTokenAuthenticator> authenticator) {
+        return new RateLimitKeyResolver(authenticator.getIfAvailable());
+    }
+}
@@ -0,0 +1,63 @@
+package ml.echelon133.microblog.gateway.ratelimit;
+
+import ml.echelon133.microblog.gateway.auth.EdgeAuthenticationFilter;
+import ml.echelon133.microblog.gateway.auth.EdgeTokenAuthenticator;
+import ml.echelon133.microblog.shared.auth.TokenHash;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Resolves keys of clients whose requests are rate limited:
+ * <ul>
+ *     <li>requests with tokens are limited per token owner ({@code user:<id>}), whose identity is found by
+ *     the {@link EdgeTokenAuthenticator} (which caches it, so that the request is authenticated only once)</li>
+ *     <li>requests with tokens whose owner cannot be found by the gateway (e.g. when edge authentication is
+ *     disabled) are limited per token ({@code token:<hash>})</li>
+ *     <li>requests with invalid tokens, and requests without tokens, are limited per client
+ *     IP ({@code ip:<address>}), so that sending random tokens does not bypass the limit</li>
+ * </ul>
+ *
+ * The client IP is the remote address of the connection, not a value of the {@code X-Forwarded-For} header, which
+ * clients could set to anything. The gateway's service uses {@code externalTrafficPolicy: Local}, so that
+ * connections reach the gateway from the addresses of clients, instead of the addresses of nodes.
+ */
+public class RateLimitKeyResolver implements KeyResolver {
+
+    private final EdgeTokenAuthenticator authenticator;
+
+    /**
+     * @param authenticator authenticator of access tokens, {@code null} if tokens are not authenticated by the gateway
+     */
+    public RateLimitKeyResolver(EdgeTokenAuthenticator authenticator) {
+        this.authenticator = authenticator;
+    }
+
+    @Override
+    public Mono<String> resolve(ServerWebExchange exchange) {
+        var token = EdgeAuthenticationFilter.resolveBearerToken(exchange.getRequest());
+        if (token == null) {
+            return Mono.just(clientIpKey(exchange));
+        }
+        if (authenticator == null) {
+            return Mono.just(tokenKey(token));
+        }
+        return authenticator.authenticate(token)
+                .map(identity -> "user:" + identity.tokenOwnerId())
+                .defaultIfEmpty(tokenKey(token))
+                .onErrorResume(EdgeTokenAuthenticator.InvalidTokenException.class,
+                        e -> Mono.just(clientIpKey(exchange)));
+    }
+
+    private static String tokenKey(String token) {
+        return "token:" + TokenHash.of(token);
+    }
+
+    private static String clientIpKey(ServerWebExchange exchange) {
+        var remoteAddress = exchange.getRequest().getRemoteAddress();
+        if (remoteAddress == null || remoteAddress.getAddress() == null) {
+            return "ip:unknown";
+        }
+        return "ip:" + remoteAddress.getAddress().getHostAddress();
+    }
+}
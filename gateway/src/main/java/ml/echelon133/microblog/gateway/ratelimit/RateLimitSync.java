@@ -0,0 +1,83 @@
+package ml.echelon133.microblog.gateway.ratelimit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Approximate synchronization of token buckets of all replicas of the gateway. Every replica periodically publishes
+ * numbers of requests it has admitted, and takes the same numbers of tokens out of its own buckets when it
+ * receives numbers published by other replicas.
+ *
+ * Buckets of replicas differ by at most the requests admitted during a single synchronization interval,
+ * and limits are enforced locally even when Redis is unavailable.
+ */
+public class RateLimitSync {
+
+    private static final Logger LOGGER = LogManager.getLogger(RateLimitSync.class);
+
+    public static final ChannelTopic RATE_LIMIT_SYNC = new ChannelTopic("rate-limit-sync");
+
+    private final TokenBucketRateLimiter rateLimiter;
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // messages published by this replica are also received by it, and have to be ignored
+    private final String replicaId = UUID.randomUUID().toString();
+
+    record Admitted(String route, String key, long count) {}
+
+    record SyncMessage(String replica, List<Admitted> admitted) {}
+
+    public RateLimitSync(TokenBucketRateLimiter rateLimiter, ReactiveStringRedisTemplate redisTemplate) {
+        this.rateLimiter = rateLimiter;
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Publishes numbers of requests admitted since the last call.
+     *
+     * @return completes once the numbers are published
+     */
+    public Mono<Void> publish() {
+        var admitted = rateLimiter.drainAdmitted().entrySet().stream()
+                .map(e -> new Admitted(e.getKey().routeId(), e.getKey().key(), e.getValue()))
+                .toList();
+        if (admitted.isEmpty()) {
+            return Mono.empty();
+        }
+        try {
+            var message = objectMapper.writeValueAsString(new SyncMessage(replicaId, admitted));
+            return redisTemplate.convertAndSend(RATE_LIMIT_SYNC.getTopic(), message).then();
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+    }
+
+    /**
+     * Takes tokens used by requests admitted by other replicas out of buckets of this replica.
+     *
+     * @param message message published by a replica
+     */
+    public void receive(String message) {
+        try {
+            var syncMessage = objectMapper.readValue(message, SyncMessage.class);
+            if (replicaId.equals(syncMessage.replica())) {
+                return;
+            }
+            for (var admitted : syncMessage.admitted()) {
+                rateLimiter.absorb(
+                        new TokenBucketRateLimiter.BucketKey(admitted.route(), admitted.key()), admitted.count()
+                );
+            }
+        } catch (JsonProcessingException e) {
+            LOGGER.error("Failed to deserialize a message from topic " + RATE_LIMIT_SYNC.getTopic());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ml.echelon133.microblog.gateway.ratelimit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+/**
+ * Configures the approximate synchronization of token buckets between replicas (see {@link RateLimitSync}),
+ * which is enabled by {@code rate-limit.sync.enabled}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "rate-limit.sync", name = "enabled", havingValue = "true")
+public class RateLimitSyncConfig {
+
+    private static final Logger LOGGER = LogManager.getLogger(RateLimitSyncConfig.class);
+
+    /*
+    How often replicas publish numbers of requests they have admitted.
+     */
+    @Value("${rate-limit.sync.interval}")
+    Duration interval;
+
+    @Bean
+    public RateLimitSync rateLimitSync(TokenBucketRateLimiter rateLimiter, ReactiveStringRedisTemplate redisTemplate) {
+        return new RateLimitSync(rateLimiter, redisTemplate);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public Disposable rateLimitSyncPublication(RateLimitSync rateLimitSync) {
+        // publishing can hang while Redis is unavailable, so it's given at most one interval, and ticks which
+        // come while the previous publication is still running are dropped
+        return Flux.interval(interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> rateLimitSync.publish().timeout(interval).onErrorResume(e -> {
+                    // requests admitted in this interval are not sent to other replicas, which only makes
+                    // the limit of the cluster less accurate
+                    LOGGER.warn("Failed to publish admitted requests: " + e.getMessage());
+                    return Mono.empty();
+                }), 0)
+                .subscribe();
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public Disposable rateLimitSyncSubscription(ReactiveRedisConnectionFactory connectionFactory,
+                                                RateLimitSync rateLimitSync) {
+        // the container connects to Redis as soon as it's created, so it's created by every (re)subscription
+        return Flux
+                .using(
+                        () -> new ReactiveRedisMessageListenerContainer(connectionFactory),
+                        container -> container.receive(RateLimitSync.RATE_LIMIT_SYNC),
+                        container -> container.destroyLater().subscribe()
+                )
+                .doOnError(e -> LOGGER.warn("Lost the subscription of admitted requests: " + e.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofMinutes(1)))
+                .subscribe(message -> rateLimitSync.receive(message.getMessage()));
+    }
+}
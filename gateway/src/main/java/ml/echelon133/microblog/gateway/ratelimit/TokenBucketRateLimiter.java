@@ -0,0 +1,248 @@
+package ml.echelon133.microblog.gateway.ratelimit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.validation.annotation.Validated;
+import reactor.core.publisher.Mono;
+
+import javax.validation.constraints.Min;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link org.springframework.cloud.gateway.filter.ratelimit.RateLimiter} which keeps token buckets in the memory
+ * of the gateway, one bucket per route and key (see {@link RateLimitKeyResolver}).
+ *
+ * Every bucket is a single {@link AtomicLong} holding the moment at which the bucket will be full again
+ * (the theoretical arrival time of the generic cell rate algorithm, which is equivalent to a token bucket), updated
+ * with compare-and-set, so that checking a request never takes a lock (unless a new bucket does not fit). A bucket:
+ * <ul>
+ *     <li>holds at most {@code burstCapacity} tokens</li>
+ *     <li>gets {@code replenishRate} tokens every second</li>
+ *     <li>admits a request if it holds a token, and tells denied requests when they can retry</li>
+ * </ul>
+ * Full buckets do not differ from buckets which have not been created yet, which means that they are removed
+ * first when the number of buckets reaches {@code maxBuckets}. If that's not enough, buckets which are going to be
+ * full the soonest are removed, a tenth of {@code maxBuckets} at a time, so that clients gain as few tokens as
+ * possible, and buckets of clients which are being limited are kept.
+ *
+ * When every replica keeps its own buckets, the limit of the whole cluster is the limit of a single replica
+ * multiplied by the number of replicas. Replicas can exchange numbers of admitted requests
+ * (see {@link RateLimitSync}), which brings buckets of all replicas close to a single bucket of the cluster.
+ *
+ * Denied requests are counted by the {@code gateway.rate-limit.limited} metric (tagged with {@code route}).
+ */
+public class TokenBucketRateLimiter extends AbstractRateLimiter<TokenBucketRateLimiter.Config> {
+
+    public static final String CONFIGURATION_PROPERTY_NAME = "token-bucket-rate-limiter";
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    public static final String RETRY_AFTER_HEADER = "Retry-After";
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final int EVICTED_FRACTION = 10;
+
+    private final Clock clock;
+    private final int maxBuckets;
+    private final boolean trackAdmitted;
+    private final MeterRegistry meterRegistry;
+    private final Map<BucketKey, AtomicLong> buckets = new ConcurrentHashMap<>();
+    // requests admitted since the last synchronization, only tracked when replicas synchronize their buckets
+    private final Map<BucketKey, LongAdder> admitted = new ConcurrentHashMap<>();
+
+    /**
+     * Identifies a bucket.
+     *
+     * @param routeId id of the route
+     * @param key key of the client (see {@link RateLimitKeyResolver})
+     */
+    public record BucketKey(String routeId, String key) {}
+
+    @Validated
+    public static class Config {
+
+        /*
+        How many tokens are added to a bucket every second.
+         */
+        @Min(1)
+        private int replenishRate;
+
+        /*
+        How many tokens a bucket holds at most, i.e. how many requests can be admitted in a burst.
+         */
+        @Min(1)
+        private int burstCapacity;
+
+        public int getReplenishRate() {
+            return replenishRate;
+        }
+
+        public void setReplenishRate(int replenishRate) {
+            this.replenishRate = replenishRate;
+        }
+
+        public int getBurstCapacity() {
+            return burstCapacity;
+        }
+
+        public void setBurstCapacity(int burstCapacity) {
+            this.burstCapacity = burstCapacity;
+        }
+
+        long emissionInterval() {
+            return NANOS_PER_SECOND / replenishRate;
+        }
+
+        long tolerance() {
+            return emissionInterval() * burstCapacity;
+        }
+    }
+
+    /**
+     * @param configurationService service which binds arguments of {@code RequestRateLimiter} filters of routes
+     * @param clock clock which decides how many tokens buckets have
+     * @param maxBuckets how many buckets can be kept at once
+     * @param trackAdmitted whether admitted requests are tracked, so that they can be sent to other replicas
+     * @param meterRegistry registry of the metrics of the rate limiter
+     */
+    public TokenBucketRateLimiter(ConfigurationService configurationService,
+                                  Clock clock,
+                                  int maxBuckets,
+                                  boolean trackAdmitted,
+                                  MeterRegistry meterRegistry) {
+        super(Config.class, CONFIGURATION_PROPERTY_NAME, configurationService);
+        this.clock = clock;
+        this.maxBuckets = maxBuckets;
+        this.trackAdmitted = trackAdmitted;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("gateway.rate-limit.buckets", buckets, Map::size)
+                .description("Number of token buckets")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        var config = getConfig().get(routeId);
+        if (config == null) {
+            return Mono.error(new IllegalArgumentException("No rate limit configured for route " + routeId));
+        }
+
+        var bucketKey = new BucketKey(routeId, id);
+        var now = nanosNow();
+        var bucket = findBucket(bucketKey, now);
+        var interval = config.emissionInterval();
+        var tolerance = config.tolerance();
+
+        while (true) {
+            var fullAt = bucket.get();
+            var newFullAt = Math.max(fullAt, now) + interval;
+            var wait = newFullAt - now - tolerance;
+            if (wait > 0) {
+                meterRegistry.counter("gateway.rate-limit.limited", "route", routeId).increment();
+                // clients retry after whole seconds, so waits are rounded up
+                var retryAfter = (wait + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND;
+                return Mono.just(new Response(false, headers(0, retryAfter)));
+            }
+            if (bucket.compareAndSet(fullAt, newFullAt)) {
+                if (trackAdmitted) {
+                    admitted.computeIfAbsent(bucketKey, k -> new LongAdder()).increment();
+                }
+                var remaining = (tolerance - (newFullAt - now)) / interval;
+                return Mono.just(new Response(true, headers(remaining, null)));
+            }
+        }
+    }
+
+    private AtomicLong findBucket(BucketKey bucketKey, long now) {
+        var bucket = buckets.get(bucketKey);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxBuckets) {
+            evictBuckets(now);
+        }
+        return buckets.computeIfAbsent(bucketKey, k -> new AtomicLong(now));
+    }
+
+    private synchronized void evictBuckets(long now) {
+        // another thread might have already made room
+        if (buckets.size() < maxBuckets) {
+            return;
+        }
+        buckets.values().removeIf(bucket -> bucket.get() <= now);
+        var excess = buckets.size() - maxBuckets;
+        if (excess < 0) {
+            return;
+        }
+        var evicted = excess + Math.max(1, maxBuckets / EVICTED_FRACTION);
+        buckets.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue().get()))
+                .sorted(Map.Entry.comparingByValue())
+                .limit(evicted)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(buckets::remove);
+    }
+
+    /**
+     * Takes tokens which have been used by requests admitted by other replicas out of a bucket. Buckets never go
+     * below zero tokens, so that requests admitted by other replicas never make clients wait longer than
+     * they would wait for a single bucket.
+     *
+     * Only buckets which already exist are updated. A missing bucket is full (which is what clients which have not
+     * sent requests to this replica get anyway), and creating it would let keys reported by other replicas evict
+     * buckets of clients which are being limited by this one.
+     *
+     * @param bucketKey key of the bucket
+     * @param count number of requests admitted by other replicas
+     */
+    public void absorb(BucketKey bucketKey, long count) {
+        var config = getConfig().get(bucketKey.routeId());
+        if (config == null) {
+            return;
+        }
+        var bucket = buckets.get(bucketKey);
+        if (bucket == null) {
+            return;
+        }
+        var now = nanosNow();
+        bucket.getAndUpdate(fullAt ->
+                Math.min(Math.max(fullAt, now) + count * config.emissionInterval(), now + config.tolerance())
+        );
+    }
+
+    /**
+     * @return numbers of requests admitted since the last call, by bucket
+     */
+    public Map<BucketKey, Long> drainAdmitted() {
+        Map<BucketKey, Long> drained = new HashMap<>();
+        for (var bucketKey : admitted.keySet()) {
+            var counter = admitted.remove(bucketKey);
+            if (counter != null) {
+                drained.put(bucketKey, counter.sum());
+            }
+        }
+        return drained;
+    }
+
+    private long nanosNow() {
+        var now = Instant.now(clock);
+        return now.getEpochSecond() * NANOS_PER_SECOND + now.getNano();
+    }
+
+    private static Map<String, String> headers(long remaining, Long retryAfter) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(REMAINING_HEADER, Long.toString(remaining));
+        if (retryAfter != null) {
+            headers.put(RETRY_AFTER_HEADER, Long.toString(retryAfter));
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,152 @@
+package ml.echelon133.microblog.gateway.auth;
+
+import ml.echelon133.microblog.shared.auth.EdgeIdentityHeader;
+import ml.echelon133.microblog.shared.auth.EdgeIdentityVerifier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of EdgeAuthenticationFilter")
+public class EdgeAuthenticationFilterTests {
+
+    private static final String SECRET = "test-secret";
+    private static final String TOKEN = "opaque-token";
+    private static final Instant NOW = Instant.parse("2023-03-08T00:00:00Z");
+
+    @Mock
+    private EdgeTokenAuthenticator authenticator;
+
+    @Mock
+    private GatewayFilterChain chain;
+
+    private EdgeAuthenticationFilter filter;
+
+    @BeforeEach
+    public void beforeEach() {
+        var signer = new EdgeIdentitySigner(SECRET, Clock.fixed(NOW, ZoneOffset.UTC), Duration.ofSeconds(30));
+        filter = new EdgeAuthenticationFilter(authenticator, signer, List.of("/api/**"));
+        lenient().when(chain.filter(any())).thenReturn(Mono.empty());
+    }
+
+    private static MockServerWebExchange createExchange(String path, String token, String identityHeader) {
+        var request = MockServerHttpRequest.get(path);
+        if (token != null) {
+            request.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        }
+        if (identityHeader != null) {
+            request.header(EdgeIdentityHeader.NAME, identityHeader);
+        }
+        return MockServerWebExchange.from(request);
+    }
+
+    // the exchange which the filter passed to the rest of the chain
+    private ServerWebExchange forwardedExchange() {
+        var captor = ArgumentCaptor.forClass(ServerWebExchange.class);
+        verify(chain, times(1)).filter(captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    @DisplayName("filter removes identity headers sent by clients without a token")
+    public void filter_NoToken_RemovesIdentityHeader() {
+        var exchange = createExchange("/api/posts", null, "forged");
+
+        // when
+        StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+        // then
+        assertNull(forwardedExchange().getRequest().getHeaders().getFirst(EdgeIdentityHeader.NAME));
+        verify(authenticator, never()).authenticate(any());
+    }
+
+    @Test
+    @DisplayName("filter removes identity headers sent by clients to paths which are not authenticated")
+    public void filter_PathNotAuthenticated_RemovesIdentityHeader() {
+        var exchange = createExchange("/oauth2/token", TOKEN, "forged");
+
+        // when
+        StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+        // then
+        assertNull(forwardedExchange().getRequest().getHeaders().getFirst(EdgeIdentityHeader.NAME));
+        verify(authenticator, never()).authenticate(any());
+    }
+
+    @Test
+    @DisplayName("filter replaces identity headers sent by clients with the signed identity of the token owner")
+    public void filter_TokenAuthenticated_ForwardsSignedIdentity() {
+        var exchange = createExchange("/api/posts", TOKEN, "forged");
+        var identity = new EdgeIdentity("user", "1b7e3d2c-4c4d-4b4e-8e3a-0d3c2b1a0f9e", List.of("read"), null);
+        var verifier = new EdgeIdentityVerifier(SECRET, Clock.fixed(NOW, ZoneOffset.UTC));
+
+        // given
+        given(authenticator.authenticate(TOKEN)).willReturn(Mono.just(identity));
+
+        // when
+        StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+        // then
+        var identityHeaders = forwardedExchange().getRequest().getHeaders().get(EdgeIdentityHeader.NAME);
+        assertEquals(1, identityHeaders.size());
+        var principal = verifier.verify(identityHeaders.get(0), TOKEN).orElseThrow();
+        assertEquals("user", principal.getName());
+    }
+
+    @Test
+    @DisplayName("filter forwards requests without an identity when the token cannot be authenticated")
+    public void filter_TokenNotAuthenticated_ForwardsWithoutIdentity() {
+        var exchange = createExchange("/api/posts", TOKEN, "forged");
+
+        // given
+        given(authenticator.authenticate(TOKEN)).willReturn(Mono.empty());
+
+        // when
+        StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+        // then
+        assertNull(forwardedExchange().getRequest().getHeaders().getFirst(EdgeIdentityHeader.NAME));
+    }
+
+    @Test
+    @DisplayName("filter rejects requests with invalid tokens with 401")
+    public void filter_TokenInvalid_RespondsWithUnauthorized() {
+        var exchange = createExchange("/api/posts", TOKEN, null);
+
+        // given
+        given(authenticator.authenticate(TOKEN)).willReturn(Mono.error(
+                new EdgeTokenAuthenticator.InvalidTokenException("Token is not active", null)
+        ));
+
+        // when
+        StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+
+        // then
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+        assertTrue(exchange.getResponse().getHeaders().getFirst(HttpHeaders.WWW_AUTHENTICATE).contains("invalid_token"));
+        verify(chain, never()).filter(any());
+    }
+}
@@ -0,0 +1,95 @@
+package ml.echelon133.microblog.gateway.auth;
+
+import ml.echelon133.microblog.shared.auth.EdgeIdentityHeader;
+import ml.echelon133.microblog.shared.auth.EdgeIdentityVerifier;
+import ml.echelon133.microblog.shared.auth.TokenHash;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests of EdgeIdentitySigner")
+public class EdgeIdentitySignerTests {
+
+    private static final String SECRET = "test-secret";
+    private static final String TOKEN = "opaque-token";
+    private static final Instant NOW = Instant.parse("2023-03-08T00:00:00Z");
+    private static final Duration TIME_TO_LIVE = Duration.ofSeconds(30);
+
+    private final EdgeIdentitySigner signer = new EdgeIdentitySigner(SECRET, Clock.fixed(NOW, ZoneOffset.UTC), TIME_TO_LIVE);
+
+    private static EdgeIdentity createIdentity(Instant expiresAt) {
+        return new EdgeIdentity("user", "1b7e3d2c-4c4d-4b4e-8e3a-0d3c2b1a0f9e", List.of("read", "write"), expiresAt);
+    }
+
+    @Test
+    @DisplayName("sign creates headers which resource servers accept together with the signed token")
+    public void sign_IdentityProvided_VerifierAcceptsHeader() {
+        var verifier = new EdgeIdentityVerifier(SECRET, Clock.fixed(NOW, ZoneOffset.UTC));
+
+        // when
+        var headerValue = signer.sign(createIdentity(NOW.plusSeconds(3600)), TOKEN);
+
+        // then
+        var principal = verifier.verify(headerValue, TOKEN).orElseThrow();
+        assertEquals("user", principal.getName());
+        assertEquals("1b7e3d2c-4c4d-4b4e-8e3a-0d3c2b1a0f9e", principal.getAttribute("token-owner-id"));
+        assertEquals(List.of("read", "write"), principal.getAttribute("scope"));
+    }
+
+    @Test
+    @DisplayName("sign creates headers which resource servers reject together with a different token")
+    public void sign_IdentityProvided_VerifierRejectsHeaderWithDifferentToken() {
+        var verifier = new EdgeIdentityVerifier(SECRET, Clock.fixed(NOW, ZoneOffset.UTC));
+
+        // when
+        var headerValue = signer.sign(createIdentity(NOW.plusSeconds(3600)), TOKEN);
+
+        // then
+        assertTrue(verifier.verify(headerValue, "other-token").isEmpty());
+    }
+
+    @Test
+    @DisplayName("sign creates headers which resource servers reject once they expire")
+    public void sign_TimeToLivePassed_VerifierRejectsHeader() {
+        var verifier = new EdgeIdentityVerifier(SECRET, Clock.fixed(NOW.plus(TIME_TO_LIVE), ZoneOffset.UTC));
+
+        // when
+        var headerValue = signer.sign(createIdentity(NOW.plusSeconds(3600)), TOKEN);
+
+        // then
+        assertTrue(verifier.verify(headerValue, TOKEN).isEmpty());
+    }
+
+    @Test
+    @DisplayName("sign expires the header together with the token when the token expires sooner")
+    public void sign_TokenExpiresSooner_ExpiresHeaderWithToken() {
+        var header = new EdgeIdentityHeader(SECRET);
+
+        // when
+        var headerValue = signer.sign(createIdentity(NOW.plusSeconds(10)), TOKEN);
+
+        // then
+        var payload = header.decode(headerValue).orElseThrow();
+        assertEquals(NOW.plusSeconds(10).getEpochSecond(), ((Number) payload.get(EdgeIdentityHeader.EXPIRES_AT)).longValue());
+        assertEquals(TokenHash.of(TOKEN), payload.get(EdgeIdentityHeader.TOKEN_HASH));
+    }
+
+    @Test
+    @DisplayName("sign creates headers which resource servers with a different secret reject")
+    public void sign_DifferentSecret_VerifierRejectsHeader() {
+        var verifier = new EdgeIdentityVerifier("other-secret", Clock.fixed(NOW, ZoneOffset.UTC));
+
+        // when
+        var headerValue = signer.sign(createIdentity(NOW.plusSeconds(3600)), TOKEN);
+
+        // then
+        assertTrue(verifier.verify(headerValue, TOKEN).isEmpty());
+    }
+}
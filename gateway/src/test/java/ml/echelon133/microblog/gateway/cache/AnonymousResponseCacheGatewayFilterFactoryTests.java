@@ -0,0 +1,166 @@
+package ml.echelon133.microblog.gateway.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ml.echelon133.microblog.gateway.ratelimit.TokenBucketRateLimiter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of AnonymousResponseCacheGatewayFilterFactory")
+public class AnonymousResponseCacheGatewayFilterFactoryTests {
+
+    private static final Instant NOW = Instant.parse("2023-03-08T00:00:00Z");
+    private static final String BODY = "[]";
+
+    @Mock
+    private GatewayFilterChain chain;
+
+    private GatewayFilter filter;
+
+    @BeforeEach
+    public void beforeEach() {
+        var clock = Clock.fixed(NOW, ZoneOffset.UTC);
+        var cache = new ResponseCache(clock, 10, 1000, new SimpleMeterRegistry());
+        var factory = new AnonymousResponseCacheGatewayFilterFactory(cache, clock);
+        var config = new AnonymousResponseCacheGatewayFilterFactory.Config();
+        config.setTimeToLive(Duration.ofSeconds(10));
+        filter = factory.apply(config);
+    }
+
+    // makes the chain respond like a routed service would
+    private void givenRoutedResponse(HttpStatus status) {
+        given(chain.filter(any())).willAnswer(invocation -> {
+            ServerWebExchange exchange = invocation.getArgument(0);
+            var response = exchange.getResponse();
+            response.setStatusCode(status);
+            response.getHeaders().add(HttpHeaders.SET_COOKIE, "session=1");
+            response.getHeaders().add(TokenBucketRateLimiter.REMAINING_HEADER, "9");
+            var buffer = response.bufferFactory().wrap(BODY.getBytes(StandardCharsets.UTF_8));
+            return response.writeWith(Mono.just(buffer));
+        });
+    }
+
+    private MockServerWebExchange filterRequest(MockServerHttpRequest request) {
+        var exchange = MockServerWebExchange.from(request);
+        StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+        return exchange;
+    }
+
+    @Test
+    @DisplayName("cacheKey keeps only parameters read by cached endpoints, in a fixed order")
+    public void cacheKey_RandomParameters_IgnoresThem() {
+        // when
+        var key = AnonymousResponseCacheGatewayFilterFactory.cacheKey(
+                URI.create("/api/feed?random=123&popular=true&last=6&cb=x")
+        );
+
+        // then
+        assertEquals("/api/feed?last=6&popular=true", key);
+    }
+
+    @Test
+    @DisplayName("cacheKey maps requests differing only in ignored parameters to the same key")
+    public void cacheKey_DifferentIgnoredParameters_ReturnsSameKey() {
+        // when
+        var first = AnonymousResponseCacheGatewayFilterFactory.cacheKey(URI.create("/api/feed?page=1&size=5&a=1"));
+        var second = AnonymousResponseCacheGatewayFilterFactory.cacheKey(URI.create("/api/feed?b=2&size=5&page=1"));
+
+        // then
+        assertEquals("/api/feed?page=1&size=5", first);
+        assertEquals(first, second);
+    }
+
+    @Test
+    @DisplayName("cacheKey keeps encoded values of parameters")
+    public void cacheKey_EncodedValue_KeepsEncodedValue() {
+        // when
+        var key = AnonymousResponseCacheGatewayFilterFactory.cacheKey(URI.create("/api/feed?sort=date%2Cdesc"));
+
+        // then
+        assertEquals("/api/feed?sort=date%2Cdesc", key);
+    }
+
+    @Test
+    @DisplayName("filter serves cached responses without routing requests")
+    public void filter_RepeatedRequest_ServesCachedResponse() {
+        givenRoutedResponse(HttpStatus.OK);
+        filterRequest(MockServerHttpRequest.get("/api/feed?popular=true&cb=1").build());
+
+        // when
+        var exchange = filterRequest(MockServerHttpRequest.get("/api/feed?popular=true&cb=2").build());
+
+        // then
+        verify(chain, times(1)).filter(any());
+        var response = exchange.getResponse();
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        StepVerifier.create(response.getBodyAsString()).expectNext(BODY).verifyComplete();
+    }
+
+    @Test
+    @DisplayName("filter does not cache headers which belong to a single response")
+    public void filter_RepeatedRequest_StripsUncacheableHeaders() {
+        givenRoutedResponse(HttpStatus.OK);
+        filterRequest(MockServerHttpRequest.get("/api/feed").build());
+
+        // when
+        var exchange = filterRequest(MockServerHttpRequest.get("/api/feed").build());
+
+        // then
+        var headers = exchange.getResponse().getHeaders();
+        assertFalse(headers.containsKey(HttpHeaders.SET_COOKIE));
+        assertFalse(headers.containsKey(TokenBucketRateLimiter.REMAINING_HEADER));
+        assertEquals(BODY.length(), headers.getContentLength());
+    }
+
+    @Test
+    @DisplayName("filter does not cache responses whose status is not 200")
+    public void filter_NotOkResponse_RoutesEveryRequest() {
+        givenRoutedResponse(HttpStatus.SERVICE_UNAVAILABLE);
+        filterRequest(MockServerHttpRequest.get("/api/feed").build());
+
+        // when
+        var exchange = filterRequest(MockServerHttpRequest.get("/api/feed").build());
+
+        // then
+        verify(chain, times(2)).filter(any());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    @DisplayName("filter routes requests of logged in users even if their responses are cached")
+    public void filter_AuthorizationHeader_RoutesRequest() {
+        givenRoutedResponse(HttpStatus.OK);
+        filterRequest(MockServerHttpRequest.get("/api/feed").build());
+
+        // when
+        filterRequest(MockServerHttpRequest.get("/api/feed").header(HttpHeaders.AUTHORIZATION, "Bearer token").build());
+
+        // then
+        verify(chain, times(2)).filter(any());
+    }
+}
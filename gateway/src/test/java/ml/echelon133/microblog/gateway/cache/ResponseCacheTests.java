@@ -0,0 +1,197 @@
+package ml.echelon133.microblog.gateway.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of ResponseCache")
+public class ResponseCacheTests {
+
+    private static final int MAX_ENTRIES = 10;
+    private static final long MAX_BYTES = 100;
+
+    @Mock
+    private Clock clock;
+
+    private Instant now = Instant.parse("2023-03-08T00:00:00Z");
+    private SimpleMeterRegistry meterRegistry;
+    private ResponseCache cache;
+
+    @BeforeEach
+    public void beforeEach() {
+        lenient().when(clock.instant()).thenAnswer(invocation -> now);
+        lenient().when(clock.millis()).thenAnswer(invocation -> now.toEpochMilli());
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ResponseCache(clock, MAX_ENTRIES, MAX_BYTES, meterRegistry);
+    }
+
+    private ResponseCache.CachedResponse createResponse(int bodySize, Duration timeToLive) {
+        return new ResponseCache.CachedResponse(HttpStatus.OK, new HttpHeaders(), new byte[bodySize], now.plus(timeToLive));
+    }
+
+    private void store(String key, ResponseCache.CachedResponse response) {
+        var lookup = cache.lookup(key);
+        cache.complete(key, lookup.sink(), response);
+    }
+
+    private double counter(String result) {
+        return meterRegistry.get("gateway.response-cache").tag("result", result).functionCounter().count();
+    }
+
+    @Test
+    @DisplayName("lookup returns a sink when the key is missed for the first time")
+    public void lookup_FirstMiss_ReturnsSink() {
+        // when
+        var lookup = cache.lookup("/api/feed");
+
+        // then
+        assertNull(lookup.cached());
+        assertNull(lookup.pending());
+        assertNotNull(lookup.sink());
+        assertEquals(1, counter("miss"));
+    }
+
+    @Test
+    @DisplayName("lookup coalesces concurrent misses of the same key")
+    public void lookup_ConcurrentMisses_ReturnsPendingResponse() {
+        var response = createResponse(10, Duration.ofSeconds(10));
+        var first = cache.lookup("/api/feed");
+
+        // when
+        var second = cache.lookup("/api/feed");
+        cache.complete("/api/feed", first.sink(), response);
+
+        // then
+        assertNull(second.cached());
+        assertNull(second.sink());
+        StepVerifier.create(second.pending()).expectNext(Optional.of(response)).verifyComplete();
+        assertEquals(1, counter("miss"));
+        assertEquals(1, counter("coalesced"));
+    }
+
+    @Test
+    @DisplayName("lookup does not coalesce misses of different keys")
+    public void lookup_DifferentKeys_ReturnsSinks() {
+        cache.lookup("/api/feed");
+
+        // when
+        var lookup = cache.lookup("/api/tags/popular");
+
+        // then
+        assertNotNull(lookup.sink());
+        assertEquals(2, counter("miss"));
+    }
+
+    @Test
+    @DisplayName("lookup returns completed responses until they expire")
+    public void lookup_CompletedResponse_ReturnsCachedResponse() {
+        var response = createResponse(10, Duration.ofSeconds(10));
+        store("/api/feed", response);
+
+        // when
+        var lookup = cache.lookup("/api/feed");
+
+        // then
+        assertSame(response, lookup.cached());
+        assertEquals(1, counter("hit"));
+    }
+
+    @Test
+    @DisplayName("lookup does not return expired responses")
+    public void lookup_ExpiredResponse_ReturnsSink() {
+        store("/api/feed", createResponse(10, Duration.ofSeconds(10)));
+        now = now.plusSeconds(11);
+
+        // when
+        var lookup = cache.lookup("/api/feed");
+
+        // then
+        assertNull(lookup.cached());
+        assertNotNull(lookup.sink());
+    }
+
+    @Test
+    @DisplayName("complete without a response empties pending responses and caches nothing")
+    public void complete_NoResponse_EmptiesPendingResponses() {
+        var first = cache.lookup("/api/feed");
+        var second = cache.lookup("/api/feed");
+
+        // when
+        cache.complete("/api/feed", first.sink(), null);
+
+        // then
+        StepVerifier.create(second.pending()).expectNext(Optional.empty()).verifyComplete();
+        var lookup = cache.lookup("/api/feed");
+        assertNull(lookup.cached());
+        assertNotNull(lookup.sink());
+    }
+
+    @Test
+    @DisplayName("complete does not cache responses which are larger than the whole cache")
+    public void complete_OversizedResponse_DoesNotCacheResponse() {
+        var response = createResponse((int) MAX_BYTES + 1, Duration.ofSeconds(10));
+        var first = cache.lookup("/api/feed");
+        var second = cache.lookup("/api/feed");
+
+        // when
+        cache.complete("/api/feed", first.sink(), response);
+
+        // then
+        StepVerifier.create(second.pending()).expectNext(Optional.of(response)).verifyComplete();
+        assertNull(cache.lookup("/api/feed").cached());
+    }
+
+    @Test
+    @DisplayName("complete evicts responses instead of exceeding the byte bound")
+    public void complete_ManyResponses_KeepsBytesWithinBound() {
+        // when
+        for (var i = 0; i < MAX_ENTRIES * 3; i++) {
+            store("/api/feed?page=" + i, createResponse(30, Duration.ofSeconds(10)));
+        }
+        cache.cleanUp();
+
+        // then
+        var bytes = meterRegistry.get("gateway.response-cache.bytes").gauge().value();
+        assertTrue(bytes > 0);
+        assertTrue(bytes <= MAX_BYTES);
+    }
+
+    @Test
+    @DisplayName("complete evicts responses instead of exceeding the entry bound")
+    public void complete_ManySmallResponses_KeepsEntriesWithinBound() {
+        // when
+        for (var i = 0; i < MAX_ENTRIES * 3; i++) {
+            store("/api/feed?page=" + i, createResponse(1, Duration.ofSeconds(10)));
+        }
+        cache.cleanUp();
+
+        // then
+        var bytes = meterRegistry.get("gateway.response-cache.bytes").gauge().value();
+        // every response weighs at least MAX_BYTES / MAX_ENTRIES
+        assertTrue(bytes <= MAX_BYTES);
+        var cached = 0;
+        for (var i = 0; i < MAX_ENTRIES * 3; i++) {
+            if (cache.lookup("/api/feed?page=" + i).cached() != null) {
+                cached++;
+            }
+        }
+        assertTrue(cached > 0);
+        assertTrue(cached <= MAX_ENTRIES);
+    }
+}
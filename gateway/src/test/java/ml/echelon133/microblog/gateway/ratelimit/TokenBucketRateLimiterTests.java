@@ -0,0 +1,297 @@
+package ml.echelon133.microblog.gateway.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of TokenBucketRateLimiter")
+public class TokenBucketRateLimiterTests {
+
+    private static final String ROUTE_ID = "posts";
+    private static final int REPLENISH_RATE = 1;
+    private static final int BURST_CAPACITY = 3;
+
+    @Mock
+    private Clock clock;
+
+    @Mock
+    private ConfigurationService configurationService;
+
+    private Instant now = Instant.parse("2023-03-08T00:00:00Z");
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void beforeEach() {
+        lenient().when(clock.instant()).thenAnswer(invocation -> now);
+        lenient().when(clock.millis()).thenAnswer(invocation -> now.toEpochMilli());
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private TokenBucketRateLimiter createRateLimiter(int maxBuckets, boolean trackAdmitted) {
+        var rateLimiter = new TokenBucketRateLimiter(
+                configurationService, clock, maxBuckets, trackAdmitted, meterRegistry
+        );
+        var config = new TokenBucketRateLimiter.Config();
+        config.setReplenishRate(REPLENISH_RATE);
+        config.setBurstCapacity(BURST_CAPACITY);
+        rateLimiter.getConfig().put(ROUTE_ID, config);
+        return rateLimiter;
+    }
+
+    private static RateLimiter.Response check(TokenBucketRateLimiter rateLimiter, String key) {
+        return rateLimiter.isAllowed(ROUTE_ID, key).block();
+    }
+
+    private static void assertAllowed(RateLimiter.Response response, long remaining) {
+        assertTrue(response.isAllowed());
+        assertEquals(Long.toString(remaining), response.getHeaders().get(TokenBucketRateLimiter.REMAINING_HEADER));
+        assertNull(response.getHeaders().get(TokenBucketRateLimiter.RETRY_AFTER_HEADER));
+    }
+
+    private static void assertDenied(RateLimiter.Response response, long retryAfter) {
+        assertFalse(response.isAllowed());
+        assertEquals("0", response.getHeaders().get(TokenBucketRateLimiter.REMAINING_HEADER));
+        assertEquals(Long.toString(retryAfter), response.getHeaders().get(TokenBucketRateLimiter.RETRY_AFTER_HEADER));
+    }
+
+    private double bucketCount() {
+        return meterRegistry.get("gateway.rate-limit.buckets").gauge().value();
+    }
+
+    @Test
+    @DisplayName("isAllowed admits a burst of requests and then denies them")
+    public void isAllowed_Burst_DeniesRequestsAboveBurstCapacity() {
+        var rateLimiter = createRateLimiter(100, false);
+
+        // when
+        var responses = new RateLimiter.Response[BURST_CAPACITY + 1];
+        for (var i = 0; i < responses.length; i++) {
+            responses[i] = check(rateLimiter, "ip:1");
+        }
+
+        // then
+        assertAllowed(responses[0], 2);
+        assertAllowed(responses[1], 1);
+        assertAllowed(responses[2], 0);
+        assertDenied(responses[3], 1);
+        assertEquals(1, meterRegistry.get("gateway.rate-limit.limited").tag("route", ROUTE_ID).counter().count());
+    }
+
+    @Test
+    @DisplayName("isAllowed rounds Retry-After up to whole seconds")
+    public void isAllowed_PartialWait_RoundsRetryAfterUp() {
+        var rateLimiter = createRateLimiter(100, false);
+        for (var i = 0; i < BURST_CAPACITY; i++) {
+            check(rateLimiter, "ip:1");
+        }
+        now = now.plusMillis(200);
+
+        // when
+        var response = check(rateLimiter, "ip:1");
+
+        // then
+        // the next token is added 800ms later
+        assertDenied(response, 1);
+    }
+
+    @Test
+    @DisplayName("isAllowed tells clients to wait for as long as tokens used by denied requests take to replenish")
+    public void isAllowed_OverusedBucket_ReturnsRetryAfterOfNextToken() {
+        var rateLimiter = createRateLimiter(100, false);
+        for (var i = 0; i < BURST_CAPACITY; i++) {
+            check(rateLimiter, "ip:1");
+        }
+        check(rateLimiter, "ip:1");
+        now = now.plusMillis(1500);
+
+        // when
+        var admitted = check(rateLimiter, "ip:1");
+        var denied = check(rateLimiter, "ip:1");
+
+        // then
+        // denied requests do not use tokens, so a token added after a second admits the next request
+        assertAllowed(admitted, 0);
+        assertDenied(denied, 1);
+    }
+
+    @Test
+    @DisplayName("isAllowed replenishes tokens up to the burst capacity")
+    public void isAllowed_IdleBucket_ReplenishesUpToBurstCapacity() {
+        var rateLimiter = createRateLimiter(100, false);
+        for (var i = 0; i < BURST_CAPACITY; i++) {
+            check(rateLimiter, "ip:1");
+        }
+
+        // when
+        now = now.plusSeconds(1);
+        var afterSecond = check(rateLimiter, "ip:1");
+        now = now.plus(Duration.ofHours(1));
+        var afterHour = check(rateLimiter, "ip:1");
+
+        // then
+        assertAllowed(afterSecond, 0);
+        assertAllowed(afterHour, BURST_CAPACITY - 1);
+    }
+
+    @Test
+    @DisplayName("isAllowed keeps separate buckets for different keys")
+    public void isAllowed_DifferentKeys_UsesSeparateBuckets() {
+        var rateLimiter = createRateLimiter(100, false);
+        for (var i = 0; i <= BURST_CAPACITY; i++) {
+            check(rateLimiter, "ip:1");
+        }
+
+        // when
+        var response = check(rateLimiter, "ip:2");
+
+        // then
+        assertAllowed(response, BURST_CAPACITY - 1);
+    }
+
+    @Test
+    @DisplayName("isAllowed returns an error when the route has no rate limit")
+    public void isAllowed_UnknownRoute_ReturnsError() {
+        var rateLimiter = createRateLimiter(100, false);
+
+        // when
+        var response = rateLimiter.isAllowed("unknown", "ip:1");
+
+        // then
+        StepVerifier.create(response).expectError(IllegalArgumentException.class).verify();
+    }
+
+    @Test
+    @DisplayName("isAllowed removes full buckets when there are too many buckets")
+    public void isAllowed_TooManyBuckets_RemovesFullBuckets() {
+        var rateLimiter = createRateLimiter(2, false);
+        check(rateLimiter, "ip:1");
+        check(rateLimiter, "ip:2");
+        now = now.plusSeconds(1);
+
+        // when
+        check(rateLimiter, "ip:3");
+
+        // then
+        assertEquals(1, bucketCount());
+    }
+
+    @Test
+    @DisplayName("isAllowed removes buckets which are going to be full the soonest when no bucket is full")
+    public void isAllowed_TooManyBuckets_KeepsBucketsOfLimitedClients() {
+        var rateLimiter = createRateLimiter(2, false);
+        check(rateLimiter, "ip:1");
+        for (var i = 0; i < BURST_CAPACITY; i++) {
+            check(rateLimiter, "ip:2");
+        }
+
+        // when
+        check(rateLimiter, "ip:3");
+
+        // then
+        assertEquals(2, bucketCount());
+        assertDenied(check(rateLimiter, "ip:2"), 1);
+    }
+
+    @Test
+    @DisplayName("absorb takes tokens used by other replicas out of existing buckets")
+    public void absorb_ExistingBucket_TakesTokens() {
+        var rateLimiter = createRateLimiter(100, false);
+        check(rateLimiter, "ip:1");
+
+        // when
+        rateLimiter.absorb(new TokenBucketRateLimiter.BucketKey(ROUTE_ID, "ip:1"), 1);
+
+        // then
+        assertAllowed(check(rateLimiter, "ip:1"), 0);
+    }
+
+    @Test
+    @DisplayName("absorb never takes more tokens than a bucket holds")
+    public void absorb_ManyRequests_DoesNotGoBelowZeroTokens() {
+        var rateLimiter = createRateLimiter(100, false);
+        check(rateLimiter, "ip:1");
+
+        // when
+        rateLimiter.absorb(new TokenBucketRateLimiter.BucketKey(ROUTE_ID, "ip:1"), 1000);
+
+        // then
+        assertDenied(check(rateLimiter, "ip:1"), 1);
+        now = now.plusSeconds(1);
+        assertAllowed(check(rateLimiter, "ip:1"), 0);
+    }
+
+    @Test
+    @DisplayName("absorb does not create buckets")
+    public void absorb_MissingBucket_DoesNotCreateBucket() {
+        var rateLimiter = createRateLimiter(100, false);
+
+        // when
+        rateLimiter.absorb(new TokenBucketRateLimiter.BucketKey(ROUTE_ID, "ip:1"), 1);
+
+        // then
+        assertEquals(0, bucketCount());
+        assertAllowed(check(rateLimiter, "ip:1"), BURST_CAPACITY - 1);
+    }
+
+    @Test
+    @DisplayName("absorb ignores buckets of routes without rate limits")
+    public void absorb_UnknownRoute_DoesNothing() {
+        var rateLimiter = createRateLimiter(100, false);
+
+        // when
+        rateLimiter.absorb(new TokenBucketRateLimiter.BucketKey("unknown", "ip:1"), 1);
+
+        // then
+        assertEquals(0, bucketCount());
+    }
+
+    @Test
+    @DisplayName("drainAdmitted returns admitted requests by bucket, and resets them")
+    public void drainAdmitted_AdmittedRequests_ReturnsAndResetsCounts() {
+        var rateLimiter = createRateLimiter(100, true);
+        for (var i = 0; i <= BURST_CAPACITY; i++) {
+            check(rateLimiter, "ip:1");
+        }
+        check(rateLimiter, "ip:2");
+
+        // when
+        var drained = rateLimiter.drainAdmitted();
+
+        // then
+        // the denied request is not counted
+        assertEquals(Map.of(
+                new TokenBucketRateLimiter.BucketKey(ROUTE_ID, "ip:1"), (long) BURST_CAPACITY,
+                new TokenBucketRateLimiter.BucketKey(ROUTE_ID, "ip:2"), 1L
+        ), drained);
+        assertTrue(rateLimiter.drainAdmitted().isEmpty());
+    }
+
+    @Test
+    @DisplayName("drainAdmitted returns nothing when admitted requests are not tracked")
+    public void drainAdmitted_NotTracked_ReturnsNothing() {
+        var rateLimiter = createRateLimiter(100, false);
+        check(rateLimiter, "ip:1");
+
+        // when
+        var drained = rateLimiter.drainAdmitted();
+
+        // then
+        assertTrue(drained.isEmpty());
+    }
+}
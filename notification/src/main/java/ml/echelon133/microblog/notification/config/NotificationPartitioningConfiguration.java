@@ -0,0 +1,31 @@
+package ml.echelon133.microblog.notification.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.init.DataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+@Configuration
+@ConditionalOnProperty(name = "notification.partitioning.enabled", havingValue = "true")
+public class NotificationPartitioningConfiguration {
+
+    /*
+    Spring Boot makes the entity manager factory depend on every initializer of this type, which
+    guarantees that the partitioned table exists before hibernate updates the schema.
+     */
+    @Bean
+    DataSourceScriptDatabaseInitializer notificationPartitioningInitializer(DataSource dataSource) {
+        var settings = new DatabaseInitializationSettings();
+        settings.setSchemaLocations(List.of("classpath:db/notification-partitioning.sql"));
+        settings.setMode(DatabaseInitializationMode.ALWAYS);
+        // the script contains a procedural block, so it has to be sent to the database as a whole
+        settings.setSeparator(ScriptUtils.EOF_STATEMENT_SEPARATOR);
+        return new DataSourceScriptDatabaseInitializer(dataSource, settings);
+    }
+}
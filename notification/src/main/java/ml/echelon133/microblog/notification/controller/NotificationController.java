@@ -1,14 +1,18 @@
 package ml.echelon133.microblog.notification.controller;
 
+import ml.echelon133.microblog.notification.service.NotificationExpansionService;
 import ml.echelon133.microblog.notification.service.NotificationService;
+import ml.echelon133.microblog.notification.service.NotificationStreamService;
 import ml.echelon133.microblog.shared.notification.NotificationDto;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.Map;
 import java.util.UUID;
@@ -20,17 +24,32 @@ import static ml.echelon133.microblog.shared.auth.TokenOwnerIdExtractor.*;
 public class NotificationController {
 
     private NotificationService notificationService;
+    private NotificationStreamService notificationStreamService;
+    private NotificationExpansionService notificationExpansionService;
 
     @Autowired
-    public NotificationController(NotificationService notificationService) {
+    public NotificationController(NotificationService notificationService,
+                                  NotificationStreamService notificationStreamService,
+                                  NotificationExpansionService notificationExpansionService) {
         this.notificationService = notificationService;
+        this.notificationStreamService = notificationStreamService;
+        this.notificationExpansionService = notificationExpansionService;
     }
 
     @GetMapping
-    public Page<NotificationDto> getNotifications(@PageableDefault(size = 20) Pageable pageable,
-                                                  @AuthenticationPrincipal OAuth2AuthenticatedPrincipal principal) {
+    public Page<? extends NotificationDto> getNotifications(@PageableDefault(size = 20) Pageable pageable,
+                                                            @RequestParam(required = false) String expand,
+                                                            @AuthenticationPrincipal OAuth2AuthenticatedPrincipal principal) {
+        if (expand != null && !expand.equals("source")) {
+            throw new IllegalArgumentException("'expand' request param only accepts 'source'");
+        }
+
         var id = extractTokenOwnerIdFromPrincipal(principal);
-        return notificationService.findAllNotificationsOfUser(id, pageable);
+        var notifications = notificationService.findAllNotificationsOfUser(id, pageable);
+        if (expand == null) {
+            return notifications;
+        }
+        return notificationExpansionService.expandSources(notifications);
     }
 
     @GetMapping("/unread-counter")
@@ -39,6 +58,12 @@ public class NotificationController {
         return Map.of("unread", notificationService.countUnreadOfUser(id));
     }
 
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamNotifications(@AuthenticationPrincipal OAuth2AuthenticatedPrincipal principal) {
+        var id = extractTokenOwnerIdFromPrincipal(principal);
+        return notificationStreamService.subscribe(id);
+    }
+
     @PostMapping("/{notificationId}/read")
     public Map<String, Integer> readSingleNotification(@PathVariable UUID notificationId,
                                                        @AuthenticationPrincipal OAuth2AuthenticatedPrincipal principal) throws Exception {
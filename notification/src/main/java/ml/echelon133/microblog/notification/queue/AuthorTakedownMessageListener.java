@@ -0,0 +1,48 @@
+package ml.echelon133.microblog.notification.queue;
+
+import ml.echelon133.microblog.notification.service.NotificationExpansionService;
+import ml.echelon133.microblog.shared.queue.QueueTopic;
+import ml.echelon133.microblog.shared.report.AuthorTakedownDto;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+/**
+ * Listener of author-takedown messages published in Redis.
+ * Each received {@link AuthorTakedownDto} message evicts posts of the taken down author from the cache
+ * used while expanding notifications.
+ */
+public class AuthorTakedownMessageListener implements MessageListener {
+
+    private static final Logger LOGGER = LogManager.getLogger(AuthorTakedownMessageListener.class);
+
+    private final NotificationExpansionService notificationExpansionService;
+
+    public AuthorTakedownMessageListener(NotificationExpansionService notificationExpansionService) {
+        this.notificationExpansionService = notificationExpansionService;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String topicName = new String(message.getChannel());
+
+        try {
+            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(message.getBody()));
+            var takedown = (AuthorTakedownDto)ois.readObject();
+            if (topicName.equals(QueueTopic.AUTHOR_TAKEDOWN.getTopic())) {
+                LOGGER.debug(String.format("Evicting cached posts of author %s", takedown.getAuthorId()));
+                notificationExpansionService.evictPostsOfAuthor(takedown.getAuthorId());
+            } else {
+                LOGGER.warn("Received unexpected topic name: " + topicName);
+            }
+        } catch (ClassNotFoundException | IOException e) {
+            LOGGER.error("Failed to deserialize a message from topic " + topicName);
+            e.printStackTrace();
+        }
+    }
+}
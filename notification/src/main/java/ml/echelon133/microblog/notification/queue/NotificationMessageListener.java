@@ -1,32 +1,53 @@
 package ml.echelon133.microblog.notification.queue;
 
-import ml.echelon133.microblog.notification.repository.NotificationRepository;
+import ml.echelon133.microblog.notification.service.NotificationService;
 import ml.echelon133.microblog.shared.notification.Notification;
 import ml.echelon133.microblog.shared.notification.NotificationCreationDto;
+import ml.echelon133.microblog.shared.notification.NotificationDto;
+import ml.echelon133.microblog.shared.notification.NotificationPushDto;
 import ml.echelon133.microblog.shared.queue.QueueTopic;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.Objects;
 
 /**
  * Listener of notification messages published in Redis.
- * Each received {@link NotificationCreationDto} message is transformed and then saved in the database as a {@link Notification} object.
+ * Each received {@link NotificationCreationDto} message is transformed and then saved in the database as a {@link Notification} object,
+ * unless it can be merged into an already existing {@link Notification} with the same type and target.
+ * Every saved {@link Notification} is then published again, so that it can be pushed to the connected user.
+ *
+ * Messages are dispatched concurrently, so notifications which could be merged into the same group are created
+ * one at a time (otherwise two of them could both create a new group, or one could overwrite the merge of the other).
+ * Merges which still fail because the group has been modified by someone else (e.g. another replica) are retried.
  */
 public class NotificationMessageListener implements MessageListener {
 
     private static final Logger LOGGER = LogManager.getLogger(NotificationMessageListener.class);
 
-    private final NotificationRepository notificationRepository;
+    static final int MAX_ATTEMPTS = 3;
+    private static final int GROUP_LOCK_STRIPES = 64;
+
+    private final NotificationService notificationService;
+    private final NotificationPushPublisher notificationPushPublisher;
+    // notifications of the same group always synchronize on the same stripe
+    private final Object[] groupLocks = new Object[GROUP_LOCK_STRIPES];
 
     @Autowired
-    public NotificationMessageListener(NotificationRepository notificationRepository) {
-        this.notificationRepository = notificationRepository;
+    public NotificationMessageListener(NotificationService notificationService,
+                                       NotificationPushPublisher notificationPushPublisher) {
+        this.notificationService = notificationService;
+        this.notificationPushPublisher = notificationPushPublisher;
+        for (int i = 0; i < groupLocks.length; i++) {
+            groupLocks[i] = new Object();
+        }
     }
 
     @Override
@@ -42,10 +63,13 @@ public class NotificationMessageListener implements MessageListener {
                         "Creating a '%s' notification for user '%s', where notification source is a post '%s'",
                                 notificationType, notification.getUserToNotify(), notification.getNotificationSource()
                         ));
-                notificationRepository.save(new Notification(
-                        notification.getUserToNotify(),
-                        notification.getNotificationSource(),
-                        notification.getType()
+                var saved = createNotification(notification);
+                notificationPushPublisher.publishPush(new NotificationPushDto(
+                        saved.getUserToNotify(),
+                        new NotificationDto(
+                                saved.getId(), saved.getDateCreated(), saved.getDateUpdated(), saved.getNotificationSource(),
+                                saved.getType(), saved.isRead(), saved.getActorCount(), saved.getSampleActors()
+                        )
                 ));
             } else {
                 LOGGER.warn("Received unexpected topic name: " + topicName);
@@ -53,6 +77,31 @@ public class NotificationMessageListener implements MessageListener {
         } catch (ClassNotFoundException | IOException e) {
             LOGGER.error("Failed to deserialize a message from topic " + topicName);
             e.printStackTrace();
+        } catch (OptimisticLockingFailureException e) {
+            LOGGER.error("Failed to merge a notification into its group after " + MAX_ATTEMPTS + " attempts");
+            e.printStackTrace();
+        }
+    }
+
+    Notification createNotification(NotificationCreationDto dto) {
+        // notifications without a target are never merged, so they do not need to wait for each other
+        if (dto.getNotificationTarget() == null) {
+            return notificationService.createNotification(dto);
+        }
+
+        var groupKey = Objects.hash(dto.getUserToNotify(), dto.getType(), dto.getNotificationTarget());
+        synchronized (groupLocks[Math.floorMod(groupKey, groupLocks.length)]) {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    // every attempt runs in a new transaction, which reads the current version of the group
+                    return notificationService.createNotification(dto);
+                } catch (OptimisticLockingFailureException e) {
+                    if (attempt >= MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                    LOGGER.debug("Group of a notification has been modified concurrently, retrying the merge");
+                }
+            }
         }
     }
 }
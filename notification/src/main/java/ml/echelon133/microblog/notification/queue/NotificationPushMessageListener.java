@@ -0,0 +1,49 @@
+package ml.echelon133.microblog.notification.queue;
+
+import ml.echelon133.microblog.notification.service.NotificationStreamService;
+import ml.echelon133.microblog.shared.notification.NotificationPushDto;
+import ml.echelon133.microblog.shared.queue.QueueTopic;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+/**
+ * Listener of notification push messages published in Redis.
+ * Every instance of the notification service receives each {@link NotificationPushDto} message, but only the
+ * instance which holds open streams of the notified user actually sends anything.
+ */
+public class NotificationPushMessageListener implements MessageListener {
+
+    private static final Logger LOGGER = LogManager.getLogger(NotificationPushMessageListener.class);
+
+    private final NotificationStreamService notificationStreamService;
+
+    @Autowired
+    public NotificationPushMessageListener(NotificationStreamService notificationStreamService) {
+        this.notificationStreamService = notificationStreamService;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String topicName = new String(message.getChannel());
+
+        try {
+            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(message.getBody()));
+            var push = (NotificationPushDto)ois.readObject();
+            if (topicName.equals(QueueTopic.NOTIFICATION_PUSH.getTopic())) {
+                notificationStreamService.pushToLocalStreams(push.getUserToNotify(), push.getNotification());
+            } else {
+                LOGGER.warn("Received unexpected topic name: " + topicName);
+            }
+        } catch (ClassNotFoundException | IOException e) {
+            LOGGER.error("Failed to deserialize a message from topic " + topicName);
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ml.echelon133.microblog.notification.queue;
+
+import ml.echelon133.microblog.shared.notification.NotificationPushDto;
+import ml.echelon133.microblog.shared.queue.QueueTopic;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Publishes already saved notifications to a redis queue, so that every instance of the notification service
+ * can push them to users whose streams are connected to that instance.
+ */
+@Service
+public class NotificationPushPublisher {
+
+    private static final Logger LOGGER = LogManager.getLogger(NotificationPushPublisher.class);
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    public NotificationPushPublisher(RedisTemplate<String, Object> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Publishes messages containing notifications which need to be pushed to connected users.
+     * @param dto contains the id of the user to notify and the notification itself
+     */
+    public void publishPush(NotificationPushDto dto) {
+        LOGGER.debug(String.format(
+                "Publishing a push of notification '%s' to user '%s'",
+                dto.getNotification().getNotificationId(), dto.getUserToNotify()
+        ));
+        redisTemplate.convertAndSend(QueueTopic.NOTIFICATION_PUSH.getTopic(), dto);
+    }
+}
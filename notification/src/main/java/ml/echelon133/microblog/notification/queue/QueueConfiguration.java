@@ -1,6 +1,10 @@
 package ml.echelon133.microblog.notification.queue;
 
-import ml.echelon133.microblog.notification.repository.NotificationRepository;
+import ml.echelon133.microblog.notification.service.NotificationExpansionService;
+import ml.echelon133.microblog.notification.service.NotificationService;
+import ml.echelon133.microblog.notification.service.NotificationStreamService;
+import ml.echelon133.microblog.shared.auth.CachingOpaqueTokenIntrospector;
+import ml.echelon133.microblog.shared.auth.TokenRevocationMessageListener;
 import ml.echelon133.microblog.shared.queue.QueueTopic;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,6 +13,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisPassword;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
 
@@ -21,11 +26,17 @@ public class QueueConfiguration {
     @Value("${spring.redis.password}")
     String password;
 
-    private NotificationRepository notificationRepository;
+    private NotificationService notificationService;
+    private NotificationStreamService notificationStreamService;
+    private NotificationExpansionService notificationExpansionService;
 
     @Autowired
-    public QueueConfiguration(NotificationRepository notificationRepository) {
-        this.notificationRepository = notificationRepository;
+    public QueueConfiguration(NotificationService notificationService,
+                              NotificationStreamService notificationStreamService,
+                              NotificationExpansionService notificationExpansionService) {
+        this.notificationService = notificationService;
+        this.notificationStreamService = notificationStreamService;
+        this.notificationExpansionService = notificationExpansionService;
     }
 
     @Bean
@@ -36,15 +47,47 @@ public class QueueConfiguration {
     }
 
     @Bean
-    MessageListenerAdapter messageListener() {
-        return new MessageListenerAdapter(new NotificationMessageListener(notificationRepository));
+    RedisTemplate<String, Object> redisTemplate() {
+        RedisTemplate<String, Object> template = new RedisTemplate<>();
+        template.setConnectionFactory(jedisConnectionFactory());
+        return template;
     }
 
+    // the publisher is injected into the bean method (instead of the constructor), because it
+    // depends on the redisTemplate bean defined in this configuration
     @Bean
-    RedisMessageListenerContainer redisContainer() {
+    MessageListenerAdapter messageListener(NotificationPushPublisher notificationPushPublisher) {
+        return new MessageListenerAdapter(
+                new NotificationMessageListener(notificationService, notificationPushPublisher)
+        );
+    }
+
+    @Bean
+    MessageListenerAdapter pushMessageListener() {
+        return new MessageListenerAdapter(new NotificationPushMessageListener(notificationStreamService));
+    }
+
+    @Bean
+    MessageListenerAdapter authorTakedownMessageListener() {
+        return new MessageListenerAdapter(new AuthorTakedownMessageListener(notificationExpansionService));
+    }
+
+    @Bean
+    MessageListenerAdapter tokenRevocationMessageListener(CachingOpaqueTokenIntrospector introspector) {
+        return new MessageListenerAdapter(new TokenRevocationMessageListener(introspector));
+    }
+
+    @Bean
+    RedisMessageListenerContainer redisContainer(MessageListenerAdapter messageListener,
+                                                 MessageListenerAdapter pushMessageListener,
+                                                 MessageListenerAdapter authorTakedownMessageListener,
+                                                 MessageListenerAdapter tokenRevocationMessageListener) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(jedisConnectionFactory());
-        container.addMessageListener(messageListener(), QueueTopic.NOTIFICATION);
+        container.addMessageListener(messageListener, QueueTopic.NOTIFICATION);
+        container.addMessageListener(pushMessageListener, QueueTopic.NOTIFICATION_PUSH);
+        container.addMessageListener(authorTakedownMessageListener, QueueTopic.AUTHOR_TAKEDOWN);
+        container.addMessageListener(tokenRevocationMessageListener, QueueTopic.TOKEN_REVOCATION);
         return container;
     }
 }
@@ -9,46 +9,85 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Date;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface NotificationRepository extends JpaRepository<Notification, UUID> {
 
     /**
-     * Counts all unread notifications of a user with {@code userId}.
+     * Counts all unread notifications of a user with {@code userId} which had been created after {@code since}.
+     * Limiting the date lets the database skip partitions with older notifications.
+     *
      * @param userId id of the user whose unread notifications will be counted
+     * @param since date after which counted notifications had to be created
      * @return number of unread notifications
      */
-    int countByUserToNotifyAndReadFalse(UUID userId);
+    int countByUserToNotifyAndReadFalseAndDateCreatedAfter(UUID userId, Date since);
 
     /**
-     * Finds a {@link Page} of notifications of a user.
+     * Finds a {@link Page} of notifications of a user which had been created after {@code since}, the most recently
+     * updated (i.e. created or merged into) first. Limiting the date of creation lets the database skip partitions
+     * with older notifications. Notifications saved before the date of update had existed (whose date of update
+     * is null) come last, the most recently created first.
      *
      * @param userId id of the user whose notifications will be fetched
+     * @param since date after which fetched notifications had to be created
      * @param pageable all information about the wanted page
      * @return a {@link Page} of notifications
      */
-    @Query("SELECT NEW ml.echelon133.microblog.shared.notification.NotificationDto(n.id, n.dateCreated, n.notificationSource, n.type, n.read) " +
-            "FROM Notification n WHERE n.userToNotify = ?1 ORDER BY n.dateCreated DESC")
-    Page<NotificationDto> findNotificationsOfUser(UUID userId, Pageable pageable);
+    @Query("SELECT NEW ml.echelon133.microblog.shared.notification.NotificationDto(n.id, n.dateCreated, n.dateUpdated, n.notificationSource, n.type, n.read, n.actorCount, n.sampleActors) " +
+            "FROM Notification n WHERE n.userToNotify = ?1 AND n.dateCreated > ?2 " +
+            "ORDER BY n.dateUpdated DESC NULLS LAST, n.dateCreated DESC")
+    Page<NotificationDto> findNotificationsOfUser(UUID userId, Date since, Pageable pageable);
+
+    /**
+     * Finds the most recent notification of a user which had been created after {@code openSince} and
+     * which has the same type and target as a new notification. Such a notification is still open, which means
+     * that notifications with the same type and target can be merged into it instead of being saved separately.
+     *
+     * @param userToNotify id of the user who is the recipient of the notification
+     * @param type type of the notification
+     * @param notificationTarget id of the object which the notification is about
+     * @param openSince date after which the notification had to be created to still be open
+     * @return an optional which may or may not contain a notification that is still open
+     */
+    Optional<Notification> findFirstByUserToNotifyAndTypeAndNotificationTargetAndDateCreatedAfterOrderByDateCreatedDesc(
+            UUID userToNotify, Notification.Type type, UUID notificationTarget, Date openSince);
+
+    /**
+     * Finds a notification with {@code id} which had been created after {@code since}. The primary key of
+     * the partitioned table also contains the date of creation, so limiting the date lets the database look
+     * the id up only in partitions with recent notifications.
+     *
+     * @param id id of the notification
+     * @param since date after which the notification had to be created
+     * @return an optional which may or may not contain the notification
+     */
+    Optional<Notification> findByIdAndDateCreatedAfter(UUID id, Date since);
 
     /**
-     * Marks a single notification with {@code notificationId} as read.
+     * Marks a single notification with {@code notificationId} which had been created after {@code since} as read.
+     * Limiting the date lets the database skip partitions with older notifications.
      *
      * @param notificationId id of the notification to read
+     * @param since date after which the notification had to be created
      * @return how many notifications have been marked as read
      */
     @Modifying(clearAutomatically = true)
-    @Query("UPDATE Notification n SET n.read = true WHERE n.id = ?1 ")
-    int readSingleNotification(UUID notificationId);
+    @Query("UPDATE Notification n SET n.read = true WHERE n.id = ?1 AND n.dateCreated > ?2")
+    int readSingleNotification(UUID notificationId, Date since);
 
     /**
-     * Marks all notifications of a user with {@code userId} as read.
+     * Marks all notifications of a user with {@code userId} which had been created after {@code since} as read.
+     * Limiting the date lets the database skip partitions with older notifications.
      *
      * @param userId id of the user whose all notification will be marked as read
+     * @param since date after which marked notifications had to be created
      * @return how many notifications have been marked as read
      */
     @Modifying(clearAutomatically = true)
-    @Query("UPDATE Notification n SET read = true WHERE n.userToNotify = ?1 ")
-    int readAllNotificationsOfUser(UUID userId);
+    @Query("UPDATE Notification n SET read = true WHERE n.userToNotify = ?1 AND n.dateCreated > ?2")
+    int readAllNotificationsOfUser(UUID userId, Date since);
 }
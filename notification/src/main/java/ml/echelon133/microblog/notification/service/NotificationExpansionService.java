@@ -0,0 +1,188 @@
+package ml.echelon133.microblog.notification.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import ml.echelon133.microblog.notification.web.PostServiceClient;
+import ml.echelon133.microblog.notification.web.UserServiceClient;
+import ml.echelon133.microblog.shared.notification.ExpandedNotificationDto;
+import ml.echelon133.microblog.shared.notification.Notification;
+import ml.echelon133.microblog.shared.notification.NotificationDto;
+import ml.echelon133.microblog.shared.post.PostDto;
+import ml.echelon133.microblog.shared.user.UserDto;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Resolves sources of notifications into data which clients need to render them, i.e. names and avatars
+ * of users who caused notifications and snippets of posts which notifications are about.
+ *
+ * A page of notifications is resolved with at most one call to the post service and one call to the user service.
+ * Resolved users and posts are kept in a short-lived local cache, because the same actors and posts tend to appear
+ * on consecutive pages and in consecutive requests of the same user.
+ */
+@Service
+public class NotificationExpansionService {
+
+    private static final Logger LOGGER = LogManager.getLogger(NotificationExpansionService.class);
+
+    /**
+     * How many characters (code points, so that characters such as emojis are never split in half) of the content
+     * of a post are included in an expanded notification.
+     */
+    public static final int SNIPPET_LENGTH = 100;
+
+    // the least used entries are evicted if a cache ever grows beyond this many entries, which only
+    // happens when entries are added faster than they expire
+    private static final int MAX_CACHED_ENTRIES = 10000;
+
+    private UserServiceClient userServiceClient;
+    private PostServiceClient postServiceClient;
+    private Clock clock;
+    private Cache<UUID, UserDto> userCache;
+    private Cache<UUID, PostDto> postCache;
+
+    /*
+    How long resolved users and posts are cached. Changes of displayed names, avatars and post deletions
+    become visible in expanded notifications after at most this long.
+     */
+    @Value("${notification.expansion.cache-ttl}")
+    Duration cacheTtl;
+
+    @Autowired
+    public NotificationExpansionService(UserServiceClient userServiceClient,
+                                        PostServiceClient postServiceClient,
+                                        Clock clock) {
+        this.userServiceClient = userServiceClient;
+        this.postServiceClient = postServiceClient;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    void createCaches() {
+        userCache = newCache();
+        postCache = newCache();
+    }
+
+    private <V> Cache<UUID, V> newCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(MAX_CACHED_ENTRIES)
+                .expireAfterWrite(cacheTtl)
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+                .build();
+    }
+
+    /**
+     * Expands every notification on the page with information about its source.
+     *
+     * Notifications about posts (mentions, quotes, responses) receive a snippet of the post which caused them.
+     * All notifications receive the users from their sample of actors. Notifications created before actors had been
+     * tracked fall back to the follower (for follows) or to the author of the source post (for everything else).
+     * Sources which cannot be resolved (e.g. deleted posts, or a service being unavailable) are left empty.
+     *
+     * @param page page of notifications to expand
+     * @return page of expanded notifications, in the same order
+     */
+    public Page<ExpandedNotificationDto> expandSources(Page<NotificationDto> page) {
+        var notifications = page.getContent();
+
+        var postIds = new HashSet<UUID>();
+        for (var notification : notifications) {
+            if (notification.getType() != Notification.Type.FOLLOW) {
+                postIds.add(notification.getNotificationSource());
+            }
+        }
+        var posts = resolve(postIds, postCache, postServiceClient::getPosts, PostDto::getId, "post");
+
+        var actorIdsOfNotifications = new HashMap<UUID, List<UUID>>();
+        var userIds = new HashSet<UUID>();
+        for (var notification : notifications) {
+            var actorIds = findActorIds(notification, posts);
+            actorIdsOfNotifications.put(notification.getNotificationId(), actorIds);
+            userIds.addAll(actorIds);
+        }
+        var users = resolve(userIds, userCache, userServiceClient::getUsers, UserDto::getId, "user");
+
+        return page.map(notification -> {
+            var actors = actorIdsOfNotifications.get(notification.getNotificationId())
+                    .stream().map(users::get).filter(Objects::nonNull).toList();
+            var post = posts.get(notification.getNotificationSource());
+            var snippet = notification.getType() != Notification.Type.FOLLOW && post != null
+                    ? snippetOf(post.getContent()) : null;
+            return new ExpandedNotificationDto(notification, actors, snippet);
+        });
+    }
+
+    /**
+     * Removes all cached posts of the author with {@code authorId}, so that posts which have been taken down
+     * immediately stop appearing in expanded notifications.
+     *
+     * @param authorId id of the author whose posts have been taken down
+     */
+    public void evictPostsOfAuthor(UUID authorId) {
+        postCache.asMap().values().removeIf(post -> authorId.equals(post.getAuthorId()));
+    }
+
+    private static List<UUID> findActorIds(NotificationDto notification, Map<UUID, PostDto> posts) {
+        var sampleActors = notification.getSampleActors();
+        if (sampleActors != null && !sampleActors.isEmpty()) {
+            return sampleActors;
+        }
+        if (notification.getType() == Notification.Type.FOLLOW) {
+            return List.of(notification.getNotificationSource());
+        }
+        var post = posts.get(notification.getNotificationSource());
+        return post == null ? List.of() : List.of(post.getAuthorId());
+    }
+
+    private static String snippetOf(String content) {
+        if (content == null || content.codePointCount(0, content.length()) <= SNIPPET_LENGTH) {
+            return content;
+        }
+        return content.substring(0, content.offsetByCodePoints(0, SNIPPET_LENGTH));
+    }
+
+    /**
+     * Finds values with {@code ids}, first in the cache, then (for ids which are missing from the cache or expired)
+     * with a single bulk lookup.
+     */
+    private <V> Map<UUID, V> resolve(Set<UUID> ids,
+                                     Cache<UUID, V> cache,
+                                     Function<Collection<UUID>, List<V>> bulkLookup,
+                                     Function<V, UUID> idOf,
+                                     String kind) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+
+        var resolved = new HashMap<UUID, V>(cache.getAllPresent(ids));
+        var missing = new HashSet<UUID>(ids);
+        missing.removeAll(resolved.keySet());
+
+        if (!missing.isEmpty()) {
+            List<V> fetched;
+            try {
+                fetched = bulkLookup.apply(missing);
+            } catch (RuntimeException e) {
+                LOGGER.warn(String.format("Failed to fetch %d %s(s), leaving them unresolved", missing.size(), kind), e);
+                fetched = List.of();
+            }
+            for (var value : fetched) {
+                var id = idOf.apply(value);
+                resolved.put(id, value);
+                cache.put(id, value);
+            }
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,146 @@
+package ml.echelon133.microblog.notification.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains monthly partitions of the notification table.
+ *
+ * Partitions of the upcoming months are created ahead of time, so that inserts never fail because of a missing
+ * partition. Partitions which only contain notifications older than the retention period are dropped as a whole,
+ * which is much cheaper than deleting rows and leaves nothing behind for the vacuum.
+ */
+@Service
+@ConditionalOnProperty(name = "notification.partitioning.enabled", havingValue = "true")
+public class NotificationPartitionService {
+
+    private static final Logger LOGGER = LogManager.getLogger(NotificationPartitionService.class);
+
+    static final String PARENT_TABLE = "notification";
+    /*
+    Key of the advisory lock held during partition maintenance, also taken by db/notification-partitioning.sql
+    and db/notification-unpartitioned-migration.sql.
+     */
+    static final long MAINTENANCE_LOCK_KEY = 7460233172043601521L;
+    private static final DateTimeFormatter SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final Pattern PARTITION_NAME = Pattern.compile(PARENT_TABLE + "_p(\\d{6})");
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private Clock clock;
+
+    /*
+    How many months of notifications are kept. A partition is dropped once its whole month is older than this.
+     */
+    @Value("${notification.partitioning.retention-months}")
+    int retentionMonths;
+
+    /*
+    How many partitions of the upcoming months exist at any moment.
+     */
+    @Value("${notification.partitioning.premade-months}")
+    int premadeMonths;
+
+    @Autowired
+    public NotificationPartitionService(JdbcTemplate jdbcTemplate,
+                                        PlatformTransactionManager transactionManager,
+                                        Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+    }
+
+    /**
+     * Prepares partitions before the service starts receiving notifications.
+     *
+     * Notifications from a table which had existed before partitioning are not moved here. That is done once,
+     * by a separate job running db/notification-unpartitioned-migration.sql, so that replicas neither race to
+     * move the same rows nor wait for the copy before they become ready.
+     */
+    @PostConstruct
+    public void initializePartitions() {
+        maintainPartitions();
+    }
+
+    /**
+     * Creates missing partitions of the current and upcoming months, then drops partitions older than
+     * the retention period.
+     *
+     * Every replica runs the maintenance, but only the replica which gets the advisory lock does it, while others
+     * skip it. The lock is released together with the transaction.
+     *
+     * @return whether this replica has done the maintenance
+     */
+    @Scheduled(cron = "${notification.partitioning.maintenance-cron}")
+    public boolean maintainPartitions() {
+        return Boolean.TRUE.equals(transactionTemplate.execute((status) -> {
+            var locked = jdbcTemplate.queryForObject(
+                    "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, MAINTENANCE_LOCK_KEY
+            );
+            if (!Boolean.TRUE.equals(locked)) {
+                LOGGER.debug("Partitions are being maintained by another replica");
+                return false;
+            }
+            createAndDropPartitions();
+            return true;
+        }));
+    }
+
+    private void createAndDropPartitions() {
+        var currentMonth = YearMonth.now(clock);
+        for (int i = 0; i <= premadeMonths; i++) {
+            createPartition(currentMonth.plusMonths(i));
+        }
+
+        var oldestRetainedMonth = oldestRetainedMonth();
+        for (var partition : findPartitionNames()) {
+            var matcher = PARTITION_NAME.matcher(partition);
+            if (matcher.matches() && YearMonth.parse(matcher.group(1), SUFFIX_FORMAT).isBefore(oldestRetainedMonth)) {
+                LOGGER.info(String.format("Dropping partition '%s' older than %d months", partition, retentionMonths));
+                jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+            }
+        }
+    }
+
+    private void createPartition(YearMonth month) {
+        var from = month.atDay(1);
+        var to = month.plusMonths(1).atDay(1);
+        jdbcTemplate.execute(String.format(
+                "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                partitionName(month), PARENT_TABLE, from, to
+        ));
+    }
+
+    private List<String> findPartitionNames() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "JOIN pg_class p ON p.oid = i.inhparent " +
+                        "WHERE p.relname = ?",
+                String.class, PARENT_TABLE
+        );
+    }
+
+    private YearMonth oldestRetainedMonth() {
+        return YearMonth.now(clock).minusMonths(retentionMonths);
+    }
+
+    static String partitionName(YearMonth month) {
+        return PARENT_TABLE + "_p" + month.format(SUFFIX_FORMAT);
+    }
+}
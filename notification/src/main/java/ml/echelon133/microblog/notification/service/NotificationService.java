@@ -4,13 +4,20 @@ import ml.echelon133.microblog.notification.exception.NotificationReadingForbidd
 import ml.echelon133.microblog.notification.repository.NotificationRepository;
 import ml.echelon133.microblog.shared.exception.ResourceNotFoundException;
 import ml.echelon133.microblog.shared.notification.Notification;
+import ml.echelon133.microblog.shared.notification.NotificationCreationDto;
 import ml.echelon133.microblog.shared.notification.NotificationDto;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.UUID;
 
 @Service
@@ -18,37 +25,123 @@ import java.util.UUID;
 public class NotificationService {
 
     private NotificationRepository notificationRepository;
+    private Clock clock;
+
+    /*
+    How long a notification stays open for merging new notifications of the same type and target into it.
+    Zero disables merging, which means that every notification is saved separately.
+     */
+    @Value("${notification.coalescing-window}")
+    Duration coalescingWindow;
+
+    /*
+    How old notifications can be to still be listed and counted. Keeping this window shorter than the retention
+    of notification partitions means that reads only touch the most recent partitions.
+     */
+    @Value("${notification.query-window}")
+    Duration queryWindow;
 
     @Autowired
-    public NotificationService(NotificationRepository notificationRepository) {
+    public NotificationService(NotificationRepository notificationRepository, Clock clock) {
         this.notificationRepository = notificationRepository;
+        this.clock = clock;
+    }
+
+    /**
+     * Saves a notification described by {@code dto}.
+     *
+     * If the dto has a target and there is a notification of the same type, about the same target, which
+     * had been sent to the same user within the coalescing window, the new notification is merged into the existing
+     * one instead of being saved as a separate row. Merging increments the actor count of the existing notification,
+     * places the new actor at the front of its bounded sample of actors, marks it as unread again and sets its date
+     * of update to now, so that the group comes back to the top of the list of notifications. The date of creation
+     * of the group never changes, so the group only stays open for merging for a single coalescing window after
+     * it had been created, and it leaves the query window (and its partition) like any other notification created
+     * at the same time.
+     *
+     * Merging reads and then updates the group, which means that callers have to make sure that notifications of
+     * the same group are not created concurrently, and have to retry when the update fails because the group has
+     * been modified in the meantime (see {@code NotificationMessageListener}).
+     *
+     * @param dto information about the notification to save
+     * @return the saved notification, or the notification into which the new one has been merged
+     */
+    public Notification createNotification(NotificationCreationDto dto) {
+        if (dto.getNotificationTarget() != null && !coalescingWindow.isZero() && !coalescingWindow.isNegative()) {
+            var openSince = Date.from(Instant.now(clock).minus(coalescingWindow));
+            var openGroup = notificationRepository
+                    .findFirstByUserToNotifyAndTypeAndNotificationTargetAndDateCreatedAfterOrderByDateCreatedDesc(
+                            dto.getUserToNotify(), dto.getType(), dto.getNotificationTarget(), openSince
+                    );
+            if (openGroup.isPresent()) {
+                var group = openGroup.get();
+                mergeIntoGroup(group, dto, Date.from(Instant.now(clock)));
+                return notificationRepository.save(group);
+            }
+        }
+
+        return notificationRepository.save(new Notification(
+                dto.getUserToNotify(),
+                dto.getNotificationSource(),
+                dto.getNotificationTarget(),
+                dto.getActor(),
+                dto.getType()
+        ));
+    }
+
+    private void mergeIntoGroup(Notification group, NotificationCreationDto dto, Date mergedAt) {
+        var sampleActors = new ArrayList<>(group.getSampleActors());
+        var actor = dto.getActor();
+
+        // an actor who is already in the sample (e.g. someone who unfollowed and followed again)
+        // is only moved to the front, so that they are not counted twice
+        if (actor == null || !sampleActors.remove(actor)) {
+            group.setActorCount(group.getActorCount() + 1);
+        }
+        if (actor != null) {
+            sampleActors.add(0, actor);
+        }
+        if (sampleActors.size() > Notification.MAX_SAMPLE_ACTORS) {
+            sampleActors = new ArrayList<>(sampleActors.subList(0, Notification.MAX_SAMPLE_ACTORS));
+        }
+
+        group.setSampleActors(sampleActors);
+        group.setNotificationSource(dto.getNotificationSource());
+        group.setRead(false);
+        group.setDateUpdated(mergedAt);
     }
 
     /**
      * Creates a {@link Page} containing projections of notifications of user {@code userId}.
      * The most recent notifications appear first, and the state of a notification (i.e. whether it is marked as
-     * read or not) does not matter when it comes to ordering.
+     * read or not) does not matter when it comes to ordering. Notifications older than the query window are skipped.
      *
      * @param userId id of the user whose notifications will be fetched
      * @param pageable information about the wanted page
      * @return a {@link Page} containing user's notifications
      */
     public Page<NotificationDto> findAllNotificationsOfUser(UUID userId, Pageable pageable) {
-        return notificationRepository.findNotificationsOfUser(userId, pageable);
+        return notificationRepository.findNotificationsOfUser(userId, queryWindowStart(), pageable);
     }
 
     /**
-     * Counts all unread notification of a user with {@code userId}.
+     * Counts all unread notification of a user with {@code userId}. Notifications older than the query window
+     * are not counted.
      *
      * @param userId id of the user whose unread notification have to be counted
      * @return count of unread notifications
      */
     public Integer countUnreadOfUser(UUID userId) {
-        return notificationRepository.countByUserToNotifyAndReadFalse(userId);
+        return notificationRepository.countByUserToNotifyAndReadFalseAndDateCreatedAfter(userId, queryWindowStart());
+    }
+
+    private Date queryWindowStart() {
+        return Date.from(Instant.now(clock).minus(queryWindow));
     }
 
     /**
-     * Marks a single notification with {@code notificationId} as read.
+     * Marks a single notification with {@code notificationId} as read. Notifications older than the query window
+     * are not listed, which is why they cannot be found here either.
      *
      * @param userRequesting id of the user who requests a notification be marked as read
      * @param notificationId id of the notification to read
@@ -60,23 +153,25 @@ public class NotificationService {
     public Integer readSingleNotification(UUID userRequesting, UUID notificationId)
             throws ResourceNotFoundException, NotificationReadingForbiddenException {
 
-        var notificationToRead = notificationRepository.findById(notificationId)
+        var since = queryWindowStart();
+        var notificationToRead = notificationRepository.findByIdAndDateCreatedAfter(notificationId, since)
                 .orElseThrow(() -> new ResourceNotFoundException(Notification.class, notificationId));
 
         if (!notificationToRead.getUserToNotify().equals(userRequesting)) {
             throw new NotificationReadingForbiddenException();
         }
 
-        return notificationRepository.readSingleNotification(notificationId);
+        return notificationRepository.readSingleNotification(notificationId, since);
     }
 
     /**
-     * Marks all notifications of user {@code userId} as read.
+     * Marks all notifications of user {@code userId} as read. Notifications older than the query window
+     * are skipped.
      *
      * @param userId id of the user whose all notification will be marked as read
      * @return how many notifications have been marked as read
      */
     public Integer readAllNotificationsOfUser(UUID userId) {
-        return notificationRepository.readAllNotificationsOfUser(userId);
+        return notificationRepository.readAllNotificationsOfUser(userId, queryWindowStart());
     }
 }
@@ -0,0 +1,191 @@
+package ml.echelon133.microblog.notification.service;
+
+import ml.echelon133.microblog.shared.notification.NotificationDto;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps track of Server-Sent Events streams opened by users connected to this instance of the service.
+ *
+ * Streams are held in memory, which means that each instance only knows about its own connections. Notifications
+ * reach every instance through a Redis topic, and only the instance holding streams of the notified user pushes
+ * anything to them.
+ */
+@Service
+public class NotificationStreamService {
+
+    private static final Logger LOGGER = LogManager.getLogger(NotificationStreamService.class);
+
+    public static final String NOTIFICATION_EVENT = "notification";
+    public static final String UNREAD_COUNTER_EVENT = "unread-counter";
+
+    private NotificationService notificationService;
+    private final Map<UUID, Set<SseEmitter>> streams = new ConcurrentHashMap<>();
+    // streams whose latest heartbeat has been handed to the executor but not written yet
+    private final Set<SseEmitter> pendingHeartbeats = ConcurrentHashMap.newKeySet();
+    Executor heartbeatExecutor;
+
+    /*
+    How long a single stream stays open. Clients are expected to reconnect after a stream times out, which
+    also forces a periodic re-authentication of long-lived connections.
+     */
+    @Value("${notification.stream.timeout}")
+    Duration streamTimeout;
+
+    /*
+    How many threads write heartbeats. A write to a client which does not read its stream blocks the thread
+    until the socket times out, so heartbeats are written outside the scheduler thread, and a few stuck clients
+    cannot delay heartbeats of everyone else.
+     */
+    @Value("${notification.stream.heartbeat-threads}")
+    int heartbeatThreads;
+
+    @Autowired
+    public NotificationStreamService(NotificationService notificationService) {
+        this.notificationService = notificationService;
+    }
+
+    @PostConstruct
+    void startHeartbeatExecutor() {
+        heartbeatExecutor = Executors.newFixedThreadPool(
+                heartbeatThreads, new CustomizableThreadFactory("notification-heartbeat-")
+        );
+    }
+
+    @PreDestroy
+    void stopHeartbeatExecutor() {
+        if (heartbeatExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Opens a new stream of notifications of the user with {@code userId}. The first event sent through the stream
+     * contains the current value of the unread counter, so that clients do not need to fetch it separately.
+     *
+     * @param userId id of the user who opens the stream
+     * @return a stream which receives events whenever the user gets notified
+     */
+    public SseEmitter subscribe(UUID userId) {
+        var emitter = new SseEmitter(streamTimeout.toMillis());
+        emitter.onCompletion(() -> unsubscribe(userId, emitter));
+        emitter.onTimeout(() -> unsubscribe(userId, emitter));
+        emitter.onError((e) -> unsubscribe(userId, emitter));
+        streams.computeIfAbsent(userId, (k) -> ConcurrentHashMap.newKeySet()).add(emitter);
+
+        send(userId, emitter, unreadCounterEvent(userId));
+        return emitter;
+    }
+
+    /**
+     * Pushes a notification to all streams of the user with {@code userId} which are open on this instance.
+     * If the user does not have any open streams here, nothing happens and the database is not queried.
+     *
+     * @param userId id of the notified user
+     * @param notification notification to push
+     */
+    public void pushToLocalStreams(UUID userId, NotificationDto notification) {
+        var userStreams = streams.get(userId);
+        if (userStreams == null || userStreams.isEmpty()) {
+            return;
+        }
+
+        var notificationEvent = SseEmitter.event()
+                .id(notification.getNotificationId().toString())
+                .name(NOTIFICATION_EVENT)
+                .data(notification);
+        var counterEvent = unreadCounterEvent(userId);
+
+        LOGGER.debug(String.format(
+                "Pushing notification '%s' to %d stream(s) of user '%s'",
+                notification.getNotificationId(), userStreams.size(), userId
+        ));
+        for (var emitter : userStreams) {
+            if (send(userId, emitter, notificationEvent)) {
+                send(userId, emitter, counterEvent);
+            }
+        }
+    }
+
+    /**
+     * Sends a comment through every open stream. Comments are ignored by clients, but they keep idle connections
+     * from being closed by proxies and let the service notice streams of clients which have disconnected.
+     *
+     * Heartbeats are written asynchronously. A stream whose previous heartbeat still has not been written when
+     * the next one is due belongs to a client which does not read it, and such a stream is closed instead of
+     * receiving another heartbeat.
+     */
+    @Scheduled(fixedRateString = "${notification.stream.heartbeat-interval}")
+    public void sendHeartbeats() {
+        streams.forEach((userId, userStreams) -> {
+            for (var emitter : userStreams) {
+                if (!pendingHeartbeats.add(emitter)) {
+                    LOGGER.debug(String.format("Closing a stream of user '%s' which is too slow to read heartbeats", userId));
+                    pendingHeartbeats.remove(emitter);
+                    unsubscribe(userId, emitter);
+                    emitter.complete();
+                    continue;
+                }
+                heartbeatExecutor.execute(() -> {
+                    try {
+                        send(userId, emitter, SseEmitter.event().comment("heartbeat"));
+                    } finally {
+                        pendingHeartbeats.remove(emitter);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Counts streams which are open on this instance.
+     *
+     * @return number of open streams
+     */
+    public int countOpenStreams() {
+        return streams.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private SseEmitter.SseEventBuilder unreadCounterEvent(UUID userId) {
+        return SseEmitter.event()
+                .name(UNREAD_COUNTER_EVENT)
+                .data(Map.of("unread", notificationService.countUnreadOfUser(userId)));
+    }
+
+    private boolean send(UUID userId, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // the client has disconnected, or the stream has already been completed
+            unsubscribe(userId, emitter);
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private void unsubscribe(UUID userId, SseEmitter emitter) {
+        streams.computeIfPresent(userId, (k, userStreams) -> {
+            userStreams.remove(emitter);
+            return userStreams.isEmpty() ? null : userStreams;
+        });
+    }
+}
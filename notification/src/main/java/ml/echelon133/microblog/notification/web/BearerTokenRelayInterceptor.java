@@ -0,0 +1,24 @@
+package ml.echelon133.microblog.notification.web;
+
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.AbstractOAuth2TokenAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+/**
+ * Relays the Bearer token of the request which is currently being handled to other services, so that
+ * they can be called on behalf of the user who made that request.
+ */
+@Component
+public class BearerTokenRelayInterceptor implements RequestInterceptor {
+
+    @Override
+    public void apply(RequestTemplate template) {
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication instanceof AbstractOAuth2TokenAuthenticationToken<?> tokenAuthentication) {
+            template.header(HttpHeaders.AUTHORIZATION, "Bearer " + tokenAuthentication.getToken().getTokenValue());
+        }
+    }
+}
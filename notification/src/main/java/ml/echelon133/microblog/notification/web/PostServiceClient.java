@@ -0,0 +1,20 @@
+package ml.echelon133.microblog.notification.web;
+
+import ml.echelon133.microblog.shared.post.PostDto;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A client for fetching posts from the post service.
+ */
+@FeignClient(name = "post-service", url = "http://post:80")
+public interface PostServiceClient {
+
+    @GetMapping(value = "/api/posts")
+    List<PostDto> getPosts(@RequestParam(name = "ids") Collection<UUID> ids);
+}
@@ -0,0 +1,20 @@
+package ml.echelon133.microblog.notification.web;
+
+import ml.echelon133.microblog.shared.user.UserDto;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A client for fetching users from the user service.
+ */
+@FeignClient(name = "user-service", url = "http://user:80")
+public interface UserServiceClient {
+
+    @GetMapping(value = "/api/users")
+    List<UserDto> getUsers(@RequestParam(name = "ids") Collection<UUID> ids);
+}
@@ -0,0 +1,47 @@
+-- Turns the notification table into a table partitioned by the date of creation of notifications (PostgreSQL 11+).
+-- This script runs before hibernate updates the schema, which means that hibernate only adds
+-- indexes (and any new columns) to an already partitioned table. Monthly partitions themselves are created and
+-- dropped by NotificationPartitionService.
+--
+-- Every replica runs this script when it starts, which is why the whole script is a single block that first takes
+-- the advisory lock of partition maintenance. Replicas which start at the same time wait for each other, and only
+-- the first one renames and creates tables.
+DO $$
+BEGIN
+    PERFORM pg_advisory_xact_lock(7460233172043601521);
+
+    -- a notification table created before partitioning had been introduced is set aside, and its rows are
+    -- moved into partitions by the one-shot job from k8s/notification/notification-migration-job.yml
+    IF EXISTS (SELECT 1 FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace
+               WHERE c.relname = 'notification' AND c.relkind = 'r' AND n.nspname = current_schema()) THEN
+        ALTER TABLE notification RENAME TO notification_unpartitioned;
+        ALTER INDEX IF EXISTS user_to_notify_index RENAME TO user_to_notify_index_unpartitioned;
+        ALTER INDEX IF EXISTS notification_group_index RENAME TO notification_group_index_unpartitioned;
+    END IF;
+
+    -- the primary key of a partitioned table has to contain the partitioning column, which is why
+    -- notifications are looked up by their id only within the query window, so that old partitions are pruned
+    CREATE TABLE IF NOT EXISTS notification (
+        id uuid NOT NULL,
+        version int8,
+        date_created timestamp NOT NULL,
+        user_to_notify uuid NOT NULL,
+        notification_source uuid NOT NULL,
+        type varchar(255) NOT NULL,
+        read boolean NOT NULL,
+        notification_target uuid,
+        actor_count int4 DEFAULT 1 NOT NULL,
+        sample_actors varchar(200),
+        date_updated timestamp,
+        PRIMARY KEY (id, date_created)
+    ) PARTITION BY RANGE (date_created);
+
+    -- partitioned tables created before merged notifications had their own date of update get the column here
+    -- (instead of from hibernate), so that existing notifications can be listed by their date of creation
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+                   WHERE table_schema = current_schema() AND table_name = 'notification'
+                     AND column_name = 'date_updated') THEN
+        ALTER TABLE notification ADD COLUMN date_updated timestamp;
+        UPDATE notification SET date_updated = date_created;
+    END IF;
+END $$;
@@ -0,0 +1,55 @@
+-- Moves notifications which are still within the retention period from a table which had existed before
+-- partitioning had been introduced (set aside as notification_unpartitioned by notification-partitioning.sql)
+-- into partitions, then drops that table.
+--
+-- This script is not run by the service. It is run once, by the job from k8s/notification/notification-migration-job.yml,
+-- so that replicas neither race to move the same rows nor wait for the copy before they become ready:
+--
+--   psql -v retention_months=12 -f notification-unpartitioned-migration.sql
+--
+-- The whole script is a single transaction holding the advisory lock of partition maintenance, which makes it
+-- safe to run again. Once the old table is gone, it does nothing.
+SELECT set_config('notification.retention_months', :'retention_months', false);
+
+DO $$
+DECLARE
+    retained_since timestamp := date_trunc('month', now())
+            - make_interval(months => current_setting('notification.retention_months')::int);
+    partition_month timestamp;
+    moved bigint;
+BEGIN
+    PERFORM pg_advisory_xact_lock(7460233172043601521);
+
+    IF to_regclass('notification_unpartitioned') IS NULL THEN
+        RAISE NOTICE 'There is no unpartitioned notification table to migrate';
+        RETURN;
+    END IF;
+
+    -- tables created before notifications could be merged do not have these columns yet
+    ALTER TABLE notification_unpartitioned ADD COLUMN IF NOT EXISTS notification_target uuid;
+    ALTER TABLE notification_unpartitioned ADD COLUMN IF NOT EXISTS actor_count int4 DEFAULT 1 NOT NULL;
+    ALTER TABLE notification_unpartitioned ADD COLUMN IF NOT EXISTS sample_actors varchar(200);
+    ALTER TABLE notification_unpartitioned ADD COLUMN IF NOT EXISTS date_updated timestamp;
+
+    -- partitions of every month which still has retained notifications, NotificationPartitionService
+    -- only creates partitions of the current and upcoming months
+    FOR partition_month IN
+        SELECT generate_series(date_trunc('month', min(date_created)), date_trunc('month', max(date_created)), interval '1 month')
+        FROM notification_unpartitioned WHERE date_created >= retained_since
+    LOOP
+        EXECUTE format(
+            'CREATE TABLE IF NOT EXISTS %I PARTITION OF notification FOR VALUES FROM (%L) TO (%L)',
+            'notification_p' || to_char(partition_month, 'YYYYMM'), partition_month, partition_month + interval '1 month'
+        );
+    END LOOP;
+
+    INSERT INTO notification (id, version, date_created, user_to_notify, notification_source, type, read,
+                              notification_target, actor_count, sample_actors, date_updated)
+    SELECT id, version, date_created, user_to_notify, notification_source, type, read,
+           notification_target, actor_count, sample_actors, coalesce(date_updated, date_created)
+    FROM notification_unpartitioned WHERE date_created >= retained_since;
+    GET DIAGNOSTICS moved = ROW_COUNT;
+
+    DROP TABLE notification_unpartitioned;
+    RAISE NOTICE 'Moved % notification(s) into partitions', moved;
+END $$;
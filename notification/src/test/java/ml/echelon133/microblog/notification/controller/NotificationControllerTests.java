@@ -1,11 +1,15 @@
 package ml.echelon133.microblog.notification.controller;
 
 import ml.echelon133.microblog.notification.exception.NotificationReadingForbiddenException;
+import ml.echelon133.microblog.notification.service.NotificationExpansionService;
 import ml.echelon133.microblog.notification.service.NotificationService;
+import ml.echelon133.microblog.notification.service.NotificationStreamService;
 import ml.echelon133.microblog.shared.auth.test.TestOpaqueTokenData;
 import ml.echelon133.microblog.shared.exception.ResourceNotFoundException;
 import ml.echelon133.microblog.shared.notification.Notification;
+import ml.echelon133.microblog.shared.notification.ExpandedNotificationDto;
 import ml.echelon133.microblog.shared.notification.NotificationDto;
+import ml.echelon133.microblog.shared.user.UserDto;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -21,6 +25,7 @@ import org.springframework.http.MediaType;
 import org.springframework.security.web.method.annotation.AuthenticationPrincipalArgumentResolver;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.Date;
 import java.util.List;
@@ -34,6 +39,7 @@ import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -48,6 +54,12 @@ public class NotificationControllerTests {
     @Mock
     private NotificationService notificationService;
 
+    @Mock
+    private NotificationStreamService notificationStreamService;
+
+    @Mock
+    private NotificationExpansionService notificationExpansionService;
+
     @InjectMocks
     private NotificationController notificationController;
 
@@ -82,6 +94,61 @@ public class NotificationControllerTests {
                 .andExpect(jsonPath("$", hasEntry("unread", unreadCounter)));
     }
 
+    @Test
+    @DisplayName("streamNotifications starts an asynchronous stream of the token owner")
+    public void streamNotifications_TokenProvided_StartsAsyncStreamOfTokenOwner() throws Exception {
+        var userId = UUID.fromString(TestOpaqueTokenData.PRINCIPAL_ID);
+        when(notificationStreamService.subscribe(userId)).thenReturn(new SseEmitter());
+
+        mvc.perform(
+                        get("/api/notifications/stream")
+                                .accept(MediaType.TEXT_EVENT_STREAM)
+                                .with(customBearerToken())
+                )
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    @DisplayName("getNotifications returns error when expand has an unsupported value")
+    public void getNotifications_UnsupportedExpand_ReturnsExpectedError() throws Exception {
+        mvc.perform(
+                        get("/api/notifications")
+                                .param("expand", "target")
+                                .accept(MediaType.APPLICATION_JSON)
+                                .with(customBearerToken())
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.messages", hasItem("'expand' request param only accepts 'source'")));
+    }
+
+    @Test
+    @DisplayName("getNotifications returns expanded notifications when expand is 'source'")
+    public void getNotifications_ExpandSource_ReturnsExpandedNotifications() throws Exception {
+        var userId = UUID.fromString(TestOpaqueTokenData.PRINCIPAL_ID);
+        var actor = new UserDto(UUID.randomUUID(), "actor", "Actor", "avi", "");
+        var dto = new NotificationDto(UUID.randomUUID(), new Date(), UUID.randomUUID(), Notification.Type.MENTION, false);
+        var page = new PageImpl<>(List.of(dto), Pageable.ofSize(20), 1);
+        var expandedPage = new PageImpl<>(
+                List.of(new ExpandedNotificationDto(dto, List.of(actor), "snippet")), Pageable.ofSize(20), 1
+        );
+
+        when(notificationService.findAllNotificationsOfUser(eq(userId), ArgumentMatchers.any())).thenReturn(page);
+        when(notificationExpansionService.expandSources(page)).thenReturn(expandedPage);
+
+        mvc.perform(
+                        get("/api/notifications")
+                                .param("expand", "source")
+                                .accept(MediaType.APPLICATION_JSON)
+                                .with(customBearerToken())
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].notificationId", is(dto.getNotificationId().toString())))
+                .andExpect(jsonPath("$.content[0].sourcePostSnippet", is("snippet")))
+                .andExpect(jsonPath("$.content[0].actors[0].username", is(actor.getUsername())))
+                .andExpect(jsonPath("$.content[0].actors[0].aviUrl", is(actor.getAviUrl())));
+    }
+
     @Test
     @DisplayName("getNotifications sets default page size to 20 and returns ok when there are notifications")
     public void getNotifications_PageSizeNotProvided_SetsDefaultSizeAndReturnsOk() throws Exception {
@@ -0,0 +1,161 @@
+package ml.echelon133.microblog.notification.queue;
+
+import ml.echelon133.microblog.notification.service.NotificationService;
+import ml.echelon133.microblog.shared.notification.Notification;
+import ml.echelon133.microblog.shared.notification.NotificationCreationDto;
+import ml.echelon133.microblog.shared.queue.QueueTopic;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of NotificationMessageListener")
+public class NotificationMessageListenerTests {
+
+    @Mock
+    private NotificationService notificationService;
+
+    @Mock
+    private NotificationPushPublisher notificationPushPublisher;
+
+    private NotificationMessageListener listener;
+
+    @BeforeEach
+    public void beforeEach() {
+        listener = new NotificationMessageListener(notificationService, notificationPushPublisher);
+    }
+
+    private static Message message(NotificationCreationDto dto) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(dto);
+        }
+        return new DefaultMessage(QueueTopic.NOTIFICATION.getTopic().getBytes(), bytes.toByteArray());
+    }
+
+    private static NotificationCreationDto followOf(UUID target) {
+        var actor = UUID.randomUUID();
+        return new NotificationCreationDto(target, actor, target, actor, Notification.Type.FOLLOW);
+    }
+
+    @Test
+    @DisplayName("onMessage retries creating the notification when its group has been modified concurrently")
+    public void onMessage_GroupModifiedConcurrently_RetriesAndPublishes() throws Exception {
+        var dto = followOf(UUID.randomUUID());
+        var group = new Notification(dto.getUserToNotify(), dto.getNotificationSource(), Notification.Type.FOLLOW);
+
+        // given
+        given(notificationService.createNotification(any()))
+                .willThrow(new ObjectOptimisticLockingFailureException(Notification.class, group.getId()))
+                .willReturn(group);
+
+        // when
+        listener.onMessage(message(dto), null);
+
+        // then
+        verify(notificationService, times(2)).createNotification(any());
+        verify(notificationPushPublisher, times(1)).publishPush(any());
+    }
+
+    @Test
+    @DisplayName("onMessage gives up after the maximum number of attempts without publishing the notification")
+    public void onMessage_GroupAlwaysModifiedConcurrently_GivesUp() throws Exception {
+        var dto = followOf(UUID.randomUUID());
+
+        // given
+        given(notificationService.createNotification(any()))
+                .willThrow(new ObjectOptimisticLockingFailureException(Notification.class, UUID.randomUUID()));
+
+        // when
+        listener.onMessage(message(dto), null);
+
+        // then
+        verify(notificationService, times(NotificationMessageListener.MAX_ATTEMPTS)).createNotification(any());
+        verify(notificationPushPublisher, never()).publishPush(any());
+    }
+
+    @Test
+    @DisplayName("onMessage merges concurrently received notifications of the same group into a single group")
+    public void onMessage_ConcurrentNotificationsOfSameGroup_CreatesSingleGroup() throws Exception {
+        var target = UUID.randomUUID();
+        var messageCount = 50;
+        // imitates the database: the first notification creates a group, the following ones read it, and then
+        // write it back, failing like an optimistic lock would if someone else had written it in the meantime
+        List<Notification> groups = new ArrayList<>();
+
+        // given
+        given(notificationService.createNotification(any())).willAnswer(invocation -> {
+            NotificationCreationDto dto = invocation.getArgument(0);
+            Notification current;
+            synchronized (groups) {
+                current = groups.isEmpty() ? null : groups.get(0);
+            }
+            if (current == null) {
+                Thread.yield();
+                var group = new Notification(target, dto.getNotificationSource(), target, dto.getActor(), dto.getType());
+                group.setVersion(0L);
+                synchronized (groups) {
+                    groups.add(group);
+                }
+                return group;
+            }
+
+            long readVersion;
+            int readCount;
+            synchronized (current) {
+                readVersion = current.getVersion();
+                readCount = current.getActorCount();
+            }
+            Thread.yield();
+            synchronized (current) {
+                if (current.getVersion() != readVersion) {
+                    throw new ObjectOptimisticLockingFailureException(Notification.class, current.getId());
+                }
+                current.setActorCount(readCount + 1);
+                current.setVersion(readVersion + 1);
+            }
+            return current;
+        });
+
+        // when
+        var executor = Executors.newFixedThreadPool(8);
+        var start = new CountDownLatch(1);
+        for (int i = 0; i < messageCount; i++) {
+            var message = message(followOf(target));
+            executor.submit(() -> {
+                start.await();
+                listener.onMessage(message, null);
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // then
+        assertEquals(1, groups.size());
+        assertEquals(messageCount, groups.get(0).getActorCount());
+        verify(notificationPushPublisher, times(messageCount)).publishPush(any());
+    }
+}
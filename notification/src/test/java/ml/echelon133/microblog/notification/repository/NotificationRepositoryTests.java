@@ -28,6 +28,9 @@ import static org.junit.jupiter.api.Assertions.*;
 @DisplayName("Tests of NotificationRepository")
 public class NotificationRepositoryTests {
 
+    // date which is older than all notifications created in these tests
+    private static final Date ALL_TIME = new Date(0);
+
     @Autowired
     private NotificationRepository notificationRepository;
 
@@ -74,8 +77,8 @@ public class NotificationRepositoryTests {
     }
 
     @Test
-    @DisplayName("Derived countByUserToNotifyAndReadFalse returns zero when there are only read notifications")
-    public void countByUserToNotifyAndReadFalse_OnlyReadNotifications_ReturnsZero() {
+    @DisplayName("Derived countByUserToNotifyAndReadFalseAndDateCreatedAfter returns zero when there are only read notifications")
+    public void countByUserToNotifyAndReadFalseAndDateCreatedAfter_OnlyReadNotifications_ReturnsZero() {
         var userToNotify = UUID.randomUUID();
         var numberOfNotifications = 10;
 
@@ -85,15 +88,15 @@ public class NotificationRepositoryTests {
         }
 
         // when
-        var countUnread = notificationRepository.countByUserToNotifyAndReadFalse(userToNotify);
+        var countUnread = notificationRepository.countByUserToNotifyAndReadFalseAndDateCreatedAfter(userToNotify, ALL_TIME);
 
         // then
         assertEquals(0, countUnread);
     }
 
     @Test
-    @DisplayName("Derived countByUserToNotifyAndReadFalse counts only unread notifications of a specified user")
-    public void countByUserToNotifyAndReadFalse_UnreadNotificationsOfAnotherUser_ReturnsZero() {
+    @DisplayName("Derived countByUserToNotifyAndReadFalseAndDateCreatedAfter counts only unread notifications of a specified user")
+    public void countByUserToNotifyAndReadFalseAndDateCreatedAfter_UnreadNotificationsOfAnotherUser_ReturnsZero() {
         var userToNotify = UUID.randomUUID();
         var anotherUser = UUID.randomUUID();
         var numberOfNotifications = 10;
@@ -106,15 +109,15 @@ public class NotificationRepositoryTests {
 
         // when
         // but check notifications for anotherUser, who does not have any notifications
-        var countUnread = notificationRepository.countByUserToNotifyAndReadFalse(anotherUser);
+        var countUnread = notificationRepository.countByUserToNotifyAndReadFalseAndDateCreatedAfter(anotherUser, ALL_TIME);
 
         // then
         assertEquals(0, countUnread);
     }
 
     @Test
-    @DisplayName("Derived countByUserToNotifyAndReadFalse correctly counts unread notifications of a user")
-    public void countByUserToNotifyAndReadFalse_MixedReadAndUnreadNotifications_OnlyCountsUnread() {
+    @DisplayName("Derived countByUserToNotifyAndReadFalseAndDateCreatedAfter correctly counts unread notifications of a user")
+    public void countByUserToNotifyAndReadFalseAndDateCreatedAfter_MixedReadAndUnreadNotifications_OnlyCountsUnread() {
         var userToNotify = UUID.randomUUID();
         var numberOfReadNotifications = 10;
         var numberOfUnreadNotifications = 25;
@@ -128,7 +131,7 @@ public class NotificationRepositoryTests {
         }
 
         // when
-        var countUnread = notificationRepository.countByUserToNotifyAndReadFalse(userToNotify);
+        var countUnread = notificationRepository.countByUserToNotifyAndReadFalseAndDateCreatedAfter(userToNotify, ALL_TIME);
 
         // then
         assertEquals(numberOfUnreadNotifications, countUnread);
@@ -140,7 +143,7 @@ public class NotificationRepositoryTests {
         var userId = UUID.randomUUID();
 
         // when
-        var page = notificationRepository.findNotificationsOfUser(userId, Pageable.unpaged());
+        var page = notificationRepository.findNotificationsOfUser(userId, ALL_TIME, Pageable.unpaged());
 
         // then
         assertEquals(0, page.getTotalElements());
@@ -156,7 +159,7 @@ public class NotificationRepositoryTests {
         notificationRepository.save(TestNotification.builder().userToNotify(userToNotify).build());
 
         // when
-        var page = notificationRepository.findNotificationsOfUser(userToNotify, Pageable.unpaged());
+        var page = notificationRepository.findNotificationsOfUser(userToNotify, ALL_TIME, Pageable.unpaged());
 
         // then
         assertEquals(2, page.getTotalElements());
@@ -182,7 +185,7 @@ public class NotificationRepositoryTests {
         );
 
         // when
-        var page = notificationRepository.findNotificationsOfUser(userToNotify, Pageable.unpaged());
+        var page = notificationRepository.findNotificationsOfUser(userToNotify, ALL_TIME, Pageable.unpaged());
 
         // then
         assertEquals(4, page.getTotalElements());
@@ -205,32 +208,30 @@ public class NotificationRepositoryTests {
         }
 
         // when
-        var page = notificationRepository.findNotificationsOfUser(user1, Pageable.unpaged());
+        var page = notificationRepository.findNotificationsOfUser(user1, ALL_TIME, Pageable.unpaged());
 
         // then
         assertEquals(numberOfUser1Notifications, page.getTotalElements());
     }
 
     @Test
-    @DisplayName("Custom findNotificationsOfUser returns most recent notifications first")
+    @DisplayName("Custom findNotificationsOfUser returns most recently updated notifications first")
     public void findNotificationsOfUser_NotificationsWithDifferentDates_ReturnsInCorrectOrder() {
         var user = UUID.randomUUID();
         var numberOfNotifications = 10;
 
         // given
         List<UUID> expectedNotificationIdsOrdering = new ArrayList<>();
-        // create notifications, each next notification being one hour older than the previous one
+        // create notifications, each next notification being updated one hour before the previous one
         for (int i = 0; i < numberOfNotifications; i++) {
             var notif = notificationRepository.save(TestNotification.builder().userToNotify(user).build());
-            // by default, jpa auditing sets the initial dateCreated, and overwriting it
-            // requires a second save
-            notif.setDateCreated(Date.from(Instant.now().minus(i, ChronoUnit.HOURS)));
+            notif.setDateUpdated(Date.from(Instant.now().minus(i, ChronoUnit.HOURS)));
             notificationRepository.save(notif);
             expectedNotificationIdsOrdering.add(notif.getId());
         }
 
         // when
-        var page = notificationRepository.findNotificationsOfUser(user, Pageable.unpaged());
+        var page = notificationRepository.findNotificationsOfUser(user, ALL_TIME, Pageable.unpaged());
 
         // then
         assertEquals(numberOfNotifications, page.getTotalElements());
@@ -240,11 +241,197 @@ public class NotificationRepositoryTests {
         }
     }
 
+    @Test
+    @DisplayName("Saving a new notification sets its date of update to its date of creation")
+    public void save_NewNotification_SetsDateUpdated() {
+        // when
+        var saved = notificationRepository.save(TestNotification.builder().userToNotify(UUID.randomUUID()).build());
+
+        // then
+        assertNotNull(saved.getDateUpdated());
+        assertEquals(saved.getDateCreated(), saved.getDateUpdated());
+    }
+
+    @Test
+    @DisplayName("Custom findNotificationsOfUser lists a merged group by its date of update, not creation")
+    public void findNotificationsOfUser_MergedGroup_ComesFirst() {
+        var user = UUID.randomUUID();
+
+        // given
+        var group = notificationRepository.save(TestNotification.builder().userToNotify(user).build());
+        // by default, jpa auditing sets the initial dateCreated, and overwriting it requires a second save
+        group.setDateCreated(Date.from(Instant.now().minus(2, ChronoUnit.HOURS)));
+        group.setDateUpdated(Date.from(Instant.now()));
+        notificationRepository.save(group);
+        var other = notificationRepository.save(TestNotification.builder().userToNotify(user).build());
+        other.setDateCreated(Date.from(Instant.now().minus(1, ChronoUnit.HOURS)));
+        other.setDateUpdated(other.getDateCreated());
+        notificationRepository.save(other);
+
+        // when
+        var page = notificationRepository.findNotificationsOfUser(user, ALL_TIME, Pageable.unpaged());
+
+        // then
+        var ids = page.getContent().stream().map(NotificationDto::getNotificationId).toList();
+        assertEquals(List.of(group.getId(), other.getId()), ids);
+    }
+
+    @Test
+    @DisplayName("Custom findNotificationsOfUser lists notifications without a date of update last, by date of creation")
+    public void findNotificationsOfUser_NoDateUpdated_ComesLast() {
+        var user = UUID.randomUUID();
+
+        // given
+        var legacy1 = notificationRepository.save(TestNotification.builder().userToNotify(user).build());
+        legacy1.setDateUpdated(null);
+        legacy1.setDateCreated(Date.from(Instant.now().minus(1, ChronoUnit.HOURS)));
+        notificationRepository.save(legacy1);
+        var legacy2 = notificationRepository.save(TestNotification.builder().userToNotify(user).build());
+        legacy2.setDateUpdated(null);
+        legacy2.setDateCreated(Date.from(Instant.now().minus(2, ChronoUnit.HOURS)));
+        notificationRepository.save(legacy2);
+        var updated = notificationRepository.save(TestNotification.builder().userToNotify(user).build());
+        updated.setDateUpdated(Date.from(Instant.now().minus(3, ChronoUnit.HOURS)));
+        notificationRepository.save(updated);
+
+        // when
+        var page = notificationRepository.findNotificationsOfUser(user, ALL_TIME, Pageable.unpaged());
+
+        // then
+        var ids = page.getContent().stream().map(NotificationDto::getNotificationId).toList();
+        assertEquals(List.of(updated.getId(), legacy1.getId(), legacy2.getId()), ids);
+    }
+
+    @Test
+    @DisplayName("Custom findNotificationsOfUser skips notifications created before the specified date")
+    public void findNotificationsOfUser_NotificationsOlderThanSince_SkipsOldNotifications() {
+        var user = UUID.randomUUID();
+
+        // given
+        var old = notificationRepository.save(TestNotification.builder().userToNotify(user).build());
+        old.setDateCreated(Date.from(Instant.now().minus(100, ChronoUnit.DAYS)));
+        notificationRepository.save(old);
+        var recent = notificationRepository.save(TestNotification.builder().userToNotify(user).build());
+
+        // when
+        var page = notificationRepository.findNotificationsOfUser(
+                user, Date.from(Instant.now().minus(90, ChronoUnit.DAYS)), Pageable.unpaged()
+        );
+
+        // then
+        assertEquals(1, page.getTotalElements());
+        assertEquals(recent.getId(), page.getContent().get(0).getNotificationId());
+    }
+
+    @Test
+    @DisplayName("Derived countByUserToNotifyAndReadFalseAndDateCreatedAfter does not count notifications created before the specified date")
+    public void countByUserToNotifyAndReadFalseAndDateCreatedAfter_UnreadNotificationsOlderThanSince_DoesNotCountOld() {
+        var user = UUID.randomUUID();
+
+        // given
+        var old = notificationRepository.save(TestNotification.builder().userToNotify(user).build());
+        old.setDateCreated(Date.from(Instant.now().minus(100, ChronoUnit.DAYS)));
+        notificationRepository.save(old);
+        notificationRepository.save(TestNotification.builder().userToNotify(user).build());
+
+        // when
+        var countUnread = notificationRepository.countByUserToNotifyAndReadFalseAndDateCreatedAfter(
+                user, Date.from(Instant.now().minus(90, ChronoUnit.DAYS))
+        );
+
+        // then
+        assertEquals(1, countUnread);
+    }
+
+    @Test
+    @DisplayName("Custom findNotificationsOfUser returns the actor count and the sample of actors of merged notifications")
+    public void findNotificationsOfUser_MergedNotification_ReturnsActorCountAndSample() {
+        var user = UUID.randomUUID();
+        var actors = List.of(UUID.randomUUID(), UUID.randomUUID());
+
+        // given
+        var notification = new Notification(user, actors.get(0), user, actors.get(0), Notification.Type.FOLLOW);
+        notification.setActorCount(24);
+        notification.setSampleActors(actors);
+        notificationRepository.save(notification);
+
+        // when
+        var page = notificationRepository.findNotificationsOfUser(user, ALL_TIME, Pageable.unpaged());
+
+        // then
+        assertEquals(1, page.getTotalElements());
+        var dto = page.getContent().get(0);
+        assertEquals(24, dto.getActorCount());
+        assertEquals(actors, dto.getSampleActors());
+    }
+
+    @Test
+    @DisplayName("Derived findFirst...OrderByDateCreatedDesc finds the most recent open notification with the same type and target")
+    public void findOpenGroup_MultipleCandidates_ReturnsOnlyMatchingOpenNotification() {
+        var user = UUID.randomUUID();
+        var target = UUID.randomUUID();
+        var openSince = Date.from(Instant.now().minus(1, ChronoUnit.HOURS));
+
+        // given
+        // notification about the same target, but too old to still be open
+        var closed = notificationRepository.save(
+                new Notification(user, UUID.randomUUID(), target, UUID.randomUUID(), Notification.Type.QUOTE)
+        );
+        closed.setDateCreated(Date.from(Instant.now().minus(2, ChronoUnit.HOURS)));
+        notificationRepository.save(closed);
+        // notifications which are open, but have a different type, target, or recipient
+        notificationRepository.save(
+                new Notification(user, UUID.randomUUID(), target, UUID.randomUUID(), Notification.Type.RESPONSE)
+        );
+        notificationRepository.save(
+                new Notification(user, UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), Notification.Type.QUOTE)
+        );
+        notificationRepository.save(
+                new Notification(UUID.randomUUID(), UUID.randomUUID(), target, UUID.randomUUID(), Notification.Type.QUOTE)
+        );
+        var open = notificationRepository.save(
+                new Notification(user, UUID.randomUUID(), target, UUID.randomUUID(), Notification.Type.QUOTE)
+        );
+
+        // when
+        var found = notificationRepository
+                .findFirstByUserToNotifyAndTypeAndNotificationTargetAndDateCreatedAfterOrderByDateCreatedDesc(
+                        user, Notification.Type.QUOTE, target, openSince
+                );
+
+        // then
+        assertTrue(found.isPresent());
+        assertEquals(open.getId(), found.get().getId());
+    }
+
+    @Test
+    @DisplayName("Derived findFirst...OrderByDateCreatedDesc does not find notifications which are no longer open")
+    public void findOpenGroup_OnlyOldNotification_ReturnsEmpty() {
+        var user = UUID.randomUUID();
+        var target = UUID.randomUUID();
+
+        // given
+        var closed = notificationRepository.save(
+                new Notification(user, UUID.randomUUID(), target, UUID.randomUUID(), Notification.Type.QUOTE)
+        );
+        closed.setDateCreated(Date.from(Instant.now().minus(2, ChronoUnit.HOURS)));
+        notificationRepository.save(closed);
+
+        // when
+        var found = notificationRepository
+                .findFirstByUserToNotifyAndTypeAndNotificationTargetAndDateCreatedAfterOrderByDateCreatedDesc(
+                        user, Notification.Type.QUOTE, target, Date.from(Instant.now().minus(1, ChronoUnit.HOURS))
+                );
+
+        // then
+        assertTrue(found.isEmpty());
+    }
+
     @Test
     @DisplayName("Custom readSingleNotification does not read a notification that does not exist")
     public void readSingleNotification_NotificationNotFound_ReadsZero() {
         // when
-        var readCount = notificationRepository.readSingleNotification(UUID.randomUUID());
+        var readCount = notificationRepository.readSingleNotification(UUID.randomUUID(), ALL_TIME);
 
         // then
         assertEquals(0, readCount);
@@ -259,7 +446,7 @@ public class NotificationRepositoryTests {
         var n3 = notificationRepository.save(TestNotification.builder().build());
 
         // when
-        var readCount = notificationRepository.readSingleNotification(n1.getId());
+        var readCount = notificationRepository.readSingleNotification(n1.getId(), ALL_TIME);
 
         // then
         assertEquals(1, readCount);
@@ -268,11 +455,49 @@ public class NotificationRepositoryTests {
         assertFalse(notificationRepository.findById(n3.getId()).get().isRead());
     }
 
+    @Test
+    @DisplayName("Custom readSingleNotification does not read a notification created before the specified date")
+    public void readSingleNotification_NotificationOlderThanSince_ReadsZero() {
+        // given
+        var old = notificationRepository.save(TestNotification.builder().build());
+        old.setDateCreated(Date.from(Instant.now().minus(100, ChronoUnit.DAYS)));
+        notificationRepository.save(old);
+
+        // when
+        var readCount = notificationRepository.readSingleNotification(
+                old.getId(), Date.from(Instant.now().minus(90, ChronoUnit.DAYS))
+        );
+
+        // then
+        assertEquals(0, readCount);
+        assertFalse(notificationRepository.findById(old.getId()).get().isRead());
+    }
+
+    @Test
+    @DisplayName("Derived findByIdAndDateCreatedAfter only finds a notification created after the specified date")
+    public void findByIdAndDateCreatedAfter_RecentAndOldNotifications_FindsOnlyRecent() {
+        var since = Date.from(Instant.now().minus(90, ChronoUnit.DAYS));
+
+        // given
+        var recent = notificationRepository.save(TestNotification.builder().build());
+        var old = notificationRepository.save(TestNotification.builder().build());
+        old.setDateCreated(Date.from(Instant.now().minus(100, ChronoUnit.DAYS)));
+        notificationRepository.save(old);
+
+        // when
+        var foundRecent = notificationRepository.findByIdAndDateCreatedAfter(recent.getId(), since);
+        var foundOld = notificationRepository.findByIdAndDateCreatedAfter(old.getId(), since);
+
+        // then
+        assertTrue(foundRecent.isPresent());
+        assertTrue(foundOld.isEmpty());
+    }
+
     @Test
     @DisplayName("Custom readAllNotificationsOfUser does not read notifications of a user that does not exist")
     public void readAllNotificationsOfUser_UserNotFound_ReadsZero() {
         // when
-        var readCount = notificationRepository.readAllNotificationsOfUser(UUID.randomUUID());
+        var readCount = notificationRepository.readAllNotificationsOfUser(UUID.randomUUID(), ALL_TIME);
 
         // then
         assertEquals(0, readCount);
@@ -293,7 +518,7 @@ public class NotificationRepositoryTests {
 
         // when
         var user1 = users.get(0);
-        var readCountOfUser1 = notificationRepository.readAllNotificationsOfUser(user1);
+        var readCountOfUser1 = notificationRepository.readAllNotificationsOfUser(user1, ALL_TIME);
 
         // then
         assertEquals(10, readCountOfUser1);
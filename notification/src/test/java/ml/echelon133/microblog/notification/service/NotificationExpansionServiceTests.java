@@ -0,0 +1,226 @@
+package ml.echelon133.microblog.notification.service;
+
+import ml.echelon133.microblog.notification.web.PostServiceClient;
+import ml.echelon133.microblog.notification.web.UserServiceClient;
+import ml.echelon133.microblog.shared.notification.Notification;
+import ml.echelon133.microblog.shared.notification.NotificationDto;
+import ml.echelon133.microblog.shared.post.PostDto;
+import ml.echelon133.microblog.shared.user.UserDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of NotificationExpansionService")
+public class NotificationExpansionServiceTests {
+
+    @Mock
+    private UserServiceClient userServiceClient;
+
+    @Mock
+    private PostServiceClient postServiceClient;
+
+    @Mock
+    private Clock clock;
+
+    @InjectMocks
+    private NotificationExpansionService notificationExpansionService;
+
+    private Instant now = Instant.now();
+
+    @BeforeEach
+    public void beforeEach() {
+        lenient().when(clock.millis()).thenAnswer(i -> now.toEpochMilli());
+        notificationExpansionService.cacheTtl = Duration.ofSeconds(30);
+        notificationExpansionService.createCaches();
+    }
+
+    private static UserDto createUser(UUID id) {
+        return new UserDto(id, "user", "User", "avi", "");
+    }
+
+    private static NotificationDto createNotification(UUID source, Notification.Type type, List<UUID> sampleActors) {
+        return new NotificationDto(UUID.randomUUID(), new Date(), source, type, false, sampleActors.size(), sampleActors);
+    }
+
+    @Test
+    @DisplayName("expandSources resolves all posts and all users with a single call each")
+    public void expandSources_MultipleNotifications_CallsEachServiceOnce() {
+        var actor1 = UUID.randomUUID();
+        var actor2 = UUID.randomUUID();
+        var post1 = new PostDto(UUID.randomUUID(), new Date(), "a".repeat(150), actor1, null, null);
+        var post2 = new PostDto(UUID.randomUUID(), new Date(), "short", actor2, null, null);
+        var notifications = List.of(
+                createNotification(post1.getId(), Notification.Type.MENTION, List.of(actor1)),
+                createNotification(post2.getId(), Notification.Type.RESPONSE, List.of(actor2, actor1)),
+                createNotification(actor2, Notification.Type.FOLLOW, List.of(actor2))
+        );
+
+        // given
+        given(postServiceClient.getPosts(Set.of(post1.getId(), post2.getId()))).willReturn(List.of(post1, post2));
+        given(userServiceClient.getUsers(Set.of(actor1, actor2))).willReturn(
+                List.of(createUser(actor1), createUser(actor2))
+        );
+
+        // when
+        var page = notificationExpansionService.expandSources(new PageImpl<>(notifications));
+
+        // then
+        verify(postServiceClient, times(1)).getPosts(any());
+        verify(userServiceClient, times(1)).getUsers(any());
+        var expanded = page.getContent();
+        assertEquals(3, expanded.size());
+        assertEquals("a".repeat(NotificationExpansionService.SNIPPET_LENGTH), expanded.get(0).getSourcePostSnippet());
+        assertEquals("short", expanded.get(1).getSourcePostSnippet());
+        assertNull(expanded.get(2).getSourcePostSnippet());
+        assertEquals(List.of(actor2, actor1), expanded.get(1).getActors().stream().map(UserDto::getId).toList());
+        assertEquals(List.of(actor2), expanded.get(2).getActors().stream().map(UserDto::getId).toList());
+    }
+
+    @Test
+    @DisplayName("expandSources never splits characters which are encoded as surrogate pairs")
+    public void expandSources_EmojiAtCut_KeepsWholeCharacters() {
+        var actor = UUID.randomUUID();
+        var emoji = "\uD83D\uDE00";
+        var content = "a".repeat(NotificationExpansionService.SNIPPET_LENGTH - 1) + emoji + "b";
+        var post = new PostDto(UUID.randomUUID(), new Date(), content, actor, null, null);
+        var page = new PageImpl<>(List.of(createNotification(post.getId(), Notification.Type.MENTION, List.of(actor))));
+
+        // given
+        given(postServiceClient.getPosts(Set.of(post.getId()))).willReturn(List.of(post));
+        given(userServiceClient.getUsers(Set.of(actor))).willReturn(List.of(createUser(actor)));
+
+        // when
+        var expanded = notificationExpansionService.expandSources(page).getContent().get(0);
+
+        // then
+        var expectedSnippet = "a".repeat(NotificationExpansionService.SNIPPET_LENGTH - 1) + emoji;
+        assertEquals(expectedSnippet, expanded.getSourcePostSnippet());
+    }
+
+    @Test
+    @DisplayName("expandSources does not fetch users and posts again before the cache expires")
+    public void expandSources_CachedValuesNotExpired_DoesNotFetchAgain() {
+        var actor = UUID.randomUUID();
+        var post = new PostDto(UUID.randomUUID(), new Date(), "content", actor, null, null);
+        var page = new PageImpl<>(List.of(createNotification(post.getId(), Notification.Type.QUOTE, List.of(actor))));
+
+        // given
+        given(postServiceClient.getPosts(Set.of(post.getId()))).willReturn(List.of(post));
+        given(userServiceClient.getUsers(Set.of(actor))).willReturn(List.of(createUser(actor)));
+
+        // when
+        notificationExpansionService.expandSources(page);
+        now = now.plusSeconds(10);
+        var expanded = notificationExpansionService.expandSources(page).getContent().get(0);
+
+        // then
+        verify(postServiceClient, times(1)).getPosts(any());
+        verify(userServiceClient, times(1)).getUsers(any());
+        assertEquals("content", expanded.getSourcePostSnippet());
+        assertEquals(actor, expanded.getActors().get(0).getId());
+    }
+
+    @Test
+    @DisplayName("expandSources fetches users and posts again after the cache expires")
+    public void expandSources_CachedValuesExpired_FetchesAgain() {
+        var actor = UUID.randomUUID();
+        var page = new PageImpl<>(List.of(createNotification(actor, Notification.Type.FOLLOW, List.of(actor))));
+
+        // given
+        given(userServiceClient.getUsers(Set.of(actor))).willReturn(List.of(createUser(actor)));
+
+        // when
+        notificationExpansionService.expandSources(page);
+        now = now.plusSeconds(31);
+        notificationExpansionService.expandSources(page);
+
+        // then
+        verify(userServiceClient, times(2)).getUsers(any());
+        verify(postServiceClient, never()).getPosts(any());
+    }
+
+    @Test
+    @DisplayName("expandSources uses the follower or the post author when notification has no sample of actors")
+    public void expandSources_NoSampleActors_FallsBackToSourceOrPostAuthor() {
+        var follower = UUID.randomUUID();
+        var author = UUID.randomUUID();
+        var post = new PostDto(UUID.randomUUID(), new Date(), "content", author, null, null);
+        var notifications = List.of(
+                createNotification(follower, Notification.Type.FOLLOW, List.of()),
+                createNotification(post.getId(), Notification.Type.MENTION, List.of())
+        );
+
+        // given
+        given(postServiceClient.getPosts(Set.of(post.getId()))).willReturn(List.of(post));
+        given(userServiceClient.getUsers(Set.of(follower, author))).willReturn(
+                List.of(createUser(follower), createUser(author))
+        );
+
+        // when
+        var expanded = notificationExpansionService.expandSources(new PageImpl<>(notifications)).getContent();
+
+        // then
+        assertEquals(follower, expanded.get(0).getActors().get(0).getId());
+        assertEquals(author, expanded.get(1).getActors().get(0).getId());
+    }
+
+    @Test
+    @DisplayName("expandSources leaves sources unresolved when a service call fails")
+    public void expandSources_ServiceCallFails_LeavesSourcesUnresolved() {
+        var actor = UUID.randomUUID();
+        var postId = UUID.randomUUID();
+        var page = new PageImpl<>(List.of(createNotification(postId, Notification.Type.QUOTE, List.of(actor))));
+
+        // given
+        given(postServiceClient.getPosts(any())).willThrow(new RuntimeException("unavailable"));
+        given(userServiceClient.getUsers(Set.of(actor))).willReturn(List.of(createUser(actor)));
+
+        // when
+        var expanded = notificationExpansionService.expandSources(page).getContent().get(0);
+
+        // then
+        assertNull(expanded.getSourcePostSnippet());
+        assertEquals(actor, expanded.getActors().get(0).getId());
+    }
+
+    @Test
+    @DisplayName("evictPostsOfAuthor makes posts of the author get fetched again")
+    public void evictPostsOfAuthor_PostsCached_FetchesPostsAgain() {
+        var actor = UUID.randomUUID();
+        var post = new PostDto(UUID.randomUUID(), new Date(), "content", actor, null, null);
+        var page = new PageImpl<>(List.of(createNotification(post.getId(), Notification.Type.QUOTE, List.of(actor))));
+
+        // given
+        given(postServiceClient.getPosts(Set.of(post.getId()))).willReturn(List.of(post), List.of());
+        given(userServiceClient.getUsers(Set.of(actor))).willReturn(List.of(createUser(actor)));
+
+        // when
+        notificationExpansionService.expandSources(page);
+        notificationExpansionService.evictPostsOfAuthor(actor);
+        var expanded = notificationExpansionService.expandSources(page).getContent().get(0);
+
+        // then
+        verify(postServiceClient, times(2)).getPosts(any());
+        verify(userServiceClient, times(1)).getUsers(any());
+        assertNull(expanded.getSourcePostSnippet());
+    }
+}
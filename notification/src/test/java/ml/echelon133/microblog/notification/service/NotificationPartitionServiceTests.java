@@ -0,0 +1,127 @@
+package ml.echelon133.microblog.notification.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of NotificationPartitionService")
+public class NotificationPartitionServiceTests {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private Clock clock;
+
+    @InjectMocks
+    private NotificationPartitionService notificationPartitionService;
+
+    @BeforeEach
+    public void beforeEach() {
+        notificationPartitionService.retentionMonths = 12;
+        notificationPartitionService.premadeMonths = 2;
+    }
+
+    private void givenNow(String instant) {
+        given(clock.instant()).willReturn(Instant.parse(instant));
+        given(clock.getZone()).willReturn(ZoneOffset.UTC);
+    }
+
+    private void givenMaintenanceLock(boolean locked) {
+        given(jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, NotificationPartitionService.MAINTENANCE_LOCK_KEY
+        )).willReturn(locked);
+    }
+
+    @Test
+    @DisplayName("partitionName uses the year and the month")
+    public void partitionName_MonthProvided_ReturnsNameWithYearAndMonth() {
+        // when
+        var name = NotificationPartitionService.partitionName(YearMonth.of(2023, 4));
+
+        // then
+        assertEquals("notification_p202304", name);
+    }
+
+    @Test
+    @DisplayName("maintainPartitions creates partitions of the current and upcoming months")
+    public void maintainPartitions_NoPartitions_CreatesCurrentAndUpcoming() {
+        // given
+        givenNow("2023-11-15T10:00:00Z");
+        givenMaintenanceLock(true);
+        given(jdbcTemplate.queryForList(anyString(), eq(String.class), any())).willReturn(List.of());
+
+        // when
+        var maintained = notificationPartitionService.maintainPartitions();
+
+        // then
+        assertTrue(maintained);
+        verify(transactionManager).commit(any());
+        verify(jdbcTemplate).execute(
+                "CREATE TABLE IF NOT EXISTS notification_p202311 PARTITION OF notification FOR VALUES FROM ('2023-11-01') TO ('2023-12-01')"
+        );
+        verify(jdbcTemplate).execute(
+                "CREATE TABLE IF NOT EXISTS notification_p202312 PARTITION OF notification FOR VALUES FROM ('2023-12-01') TO ('2024-01-01')"
+        );
+        verify(jdbcTemplate).execute(
+                "CREATE TABLE IF NOT EXISTS notification_p202401 PARTITION OF notification FOR VALUES FROM ('2024-01-01') TO ('2024-02-01')"
+        );
+        verify(jdbcTemplate, never()).execute(startsWith("DROP"));
+    }
+
+    @Test
+    @DisplayName("maintainPartitions only drops partitions older than the retention period")
+    public void maintainPartitions_PartitionsOlderThanRetention_DropsOnlyOldPartitions() {
+        // given
+        givenNow("2023-11-15T10:00:00Z");
+        givenMaintenanceLock(true);
+        given(jdbcTemplate.queryForList(anyString(), eq(String.class), any())).willReturn(List.of(
+                "notification_p202209", "notification_p202210", "notification_p202211", "notification_p202311",
+                "notification_other"
+        ));
+
+        // when
+        notificationPartitionService.maintainPartitions();
+
+        // then
+        verify(jdbcTemplate).execute("DROP TABLE IF EXISTS notification_p202209");
+        verify(jdbcTemplate).execute("DROP TABLE IF EXISTS notification_p202210");
+        verify(jdbcTemplate, times(2)).execute(startsWith("DROP"));
+    }
+
+    @Test
+    @DisplayName("maintainPartitions does nothing when another replica holds the maintenance lock")
+    public void maintainPartitions_LockHeldByAnotherReplica_DoesNothing() {
+        // given
+        givenMaintenanceLock(false);
+
+        // when
+        var maintained = notificationPartitionService.maintainPartitions();
+
+        // then
+        assertFalse(maintained);
+        verify(jdbcTemplate, never()).execute(anyString());
+        verify(jdbcTemplate, never()).queryForList(anyString(), eq(String.class), any());
+    }
+}
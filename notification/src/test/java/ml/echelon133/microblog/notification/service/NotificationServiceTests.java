@@ -4,7 +4,9 @@ import ml.echelon133.microblog.notification.exception.NotificationReadingForbidd
 import ml.echelon133.microblog.notification.repository.NotificationRepository;
 import ml.echelon133.microblog.shared.exception.ResourceNotFoundException;
 import ml.echelon133.microblog.shared.notification.Notification;
+import ml.echelon133.microblog.shared.notification.NotificationCreationDto;
 import ml.echelon133.microblog.shared.notification.NotificationDto;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,15 +16,18 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 
-import java.util.Date;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.IntStream;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 @DisplayName("Tests of NotificationService")
@@ -31,16 +36,28 @@ public class NotificationServiceTests {
     @Mock
     private NotificationRepository notificationRepository;
 
+    @Mock
+    private Clock clock;
+
     @InjectMocks
     private NotificationService notificationService;
 
+    @BeforeEach
+    public void beforeEach() {
+        notificationService.coalescingWindow = Duration.ofHours(1);
+        notificationService.queryWindow = Duration.ofDays(90);
+    }
+
     @Test
     @DisplayName("countUnreadOfUser correctly calls repository")
     public void countUnreadOfUser_UserIdProvided_CorrectlyCallsRepository() {
         var userId = UUID.randomUUID();
+        var now = Instant.now();
+        var windowStart = Date.from(now.minus(90, ChronoUnit.DAYS));
 
         // given
-        given(notificationRepository.countByUserToNotifyAndReadFalse(userId)).willReturn(100);
+        given(clock.instant()).willReturn(now);
+        given(notificationRepository.countByUserToNotifyAndReadFalseAndDateCreatedAfter(userId, windowStart)).willReturn(100);
 
         // when
         var count = notificationService.countUnreadOfUser(userId);
@@ -55,9 +72,12 @@ public class NotificationServiceTests {
         var userId = UUID.randomUUID();
         var pageable = Pageable.ofSize(20);
         var dto = new NotificationDto(UUID.randomUUID(), new Date(), UUID.randomUUID(), Notification.Type.MENTION, false);
+        var now = Instant.now();
+        var windowStart = Date.from(now.minus(90, ChronoUnit.DAYS));
 
         // given
-        given(notificationRepository.findNotificationsOfUser(userId, pageable)).willReturn(
+        given(clock.instant()).willReturn(now);
+        given(notificationRepository.findNotificationsOfUser(userId, windowStart, pageable)).willReturn(
                 new PageImpl<>(List.of(dto), pageable, 1)
         );
 
@@ -74,7 +94,8 @@ public class NotificationServiceTests {
         var notificationId = UUID.randomUUID();
 
         // given
-        given(notificationRepository.findById(any())).willReturn(Optional.empty());
+        given(clock.instant()).willReturn(Instant.now());
+        given(notificationRepository.findByIdAndDateCreatedAfter(eq(notificationId), any())).willReturn(Optional.empty());
 
         // when
         String message = assertThrows(ResourceNotFoundException.class, () ->
@@ -93,7 +114,8 @@ public class NotificationServiceTests {
         var notification = new Notification(UUID.randomUUID(), UUID.randomUUID(), Notification.Type.MENTION);
 
         // given
-        given(notificationRepository.findById(notificationId)).willReturn(Optional.of(notification));
+        given(clock.instant()).willReturn(Instant.now());
+        given(notificationRepository.findByIdAndDateCreatedAfter(eq(notificationId), any())).willReturn(Optional.of(notification));
 
         // when
         String message = assertThrows(NotificationReadingForbiddenException.class, () ->
@@ -110,10 +132,13 @@ public class NotificationServiceTests {
         var notificationId = UUID.randomUUID();
         var userId = UUID.randomUUID();
         var notification = new Notification(userId, UUID.randomUUID(), Notification.Type.MENTION);
+        var now = Instant.now();
+        var windowStart = Date.from(now.minus(90, ChronoUnit.DAYS));
 
         // given
-        given(notificationRepository.findById(notificationId)).willReturn(Optional.of(notification));
-        given(notificationRepository.readSingleNotification(notificationId)).willReturn(1);
+        given(clock.instant()).willReturn(now);
+        given(notificationRepository.findByIdAndDateCreatedAfter(notificationId, windowStart)).willReturn(Optional.of(notification));
+        given(notificationRepository.readSingleNotification(notificationId, windowStart)).willReturn(1);
 
         // when
         var readCount = notificationService.readSingleNotification(userId, notificationId);
@@ -126,9 +151,12 @@ public class NotificationServiceTests {
     @DisplayName("readAllNotificationsOfUser calls the repository when user tries to read all of their notifications")
     public void readAllNotificationsOfUser_UserReadsAllNotifications_CorrectlyCallsRepository() {
         var userId = UUID.randomUUID();
+        var now = Instant.now();
+        var windowStart = Date.from(now.minus(90, ChronoUnit.DAYS));
 
         // given
-        given(notificationRepository.readAllNotificationsOfUser(userId)).willReturn(20);
+        given(clock.instant()).willReturn(now);
+        given(notificationRepository.readAllNotificationsOfUser(userId, windowStart)).willReturn(20);
 
         // when
         var readCount = notificationService.readAllNotificationsOfUser(userId);
@@ -136,4 +164,169 @@ public class NotificationServiceTests {
         // then
         assertEquals(20, readCount);
     }
+
+    @Test
+    @DisplayName("createNotification saves a new notification when the dto does not have a target")
+    public void createNotification_NoTarget_SavesNewNotification() {
+        var dto = new NotificationCreationDto(UUID.randomUUID(), UUID.randomUUID(), Notification.Type.MENTION);
+
+        // given
+        given(notificationRepository.save(any())).willAnswer(a -> a.getArgument(0));
+
+        // when
+        var notification = notificationService.createNotification(dto);
+
+        // then
+        verify(notificationRepository, never())
+                .findFirstByUserToNotifyAndTypeAndNotificationTargetAndDateCreatedAfterOrderByDateCreatedDesc(
+                        any(), any(), any(), any()
+                );
+        assertEquals(dto.getUserToNotify(), notification.getUserToNotify());
+        assertEquals(dto.getNotificationSource(), notification.getNotificationSource());
+        assertEquals(1, notification.getActorCount());
+        assertTrue(notification.getSampleActors().isEmpty());
+    }
+
+    @Test
+    @DisplayName("createNotification saves a new notification when coalescing is disabled")
+    public void createNotification_CoalescingDisabled_SavesNewNotification() {
+        var actor = UUID.randomUUID();
+        var target = UUID.randomUUID();
+        var dto = new NotificationCreationDto(target, actor, target, actor, Notification.Type.FOLLOW);
+        notificationService.coalescingWindow = Duration.ZERO;
+
+        // given
+        given(notificationRepository.save(any())).willAnswer(a -> a.getArgument(0));
+
+        // when
+        var notification = notificationService.createNotification(dto);
+
+        // then
+        verify(notificationRepository, never())
+                .findFirstByUserToNotifyAndTypeAndNotificationTargetAndDateCreatedAfterOrderByDateCreatedDesc(
+                        any(), any(), any(), any()
+                );
+        assertEquals(target, notification.getNotificationTarget());
+        assertEquals(List.of(actor), notification.getSampleActors());
+    }
+
+    @Test
+    @DisplayName("createNotification only looks for notifications created within the coalescing window")
+    public void createNotification_TargetProvided_LooksForGroupsWithinWindow() {
+        var now = Instant.now();
+        var actor = UUID.randomUUID();
+        var target = UUID.randomUUID();
+        var dto = new NotificationCreationDto(target, actor, target, actor, Notification.Type.FOLLOW);
+
+        // given
+        given(clock.instant()).willReturn(now);
+        given(notificationRepository
+                .findFirstByUserToNotifyAndTypeAndNotificationTargetAndDateCreatedAfterOrderByDateCreatedDesc(
+                        any(), any(), any(), any()
+                )).willReturn(Optional.empty());
+        given(notificationRepository.save(any())).willAnswer(a -> a.getArgument(0));
+
+        // when
+        var notification = notificationService.createNotification(dto);
+
+        // then
+        verify(notificationRepository, times(1))
+                .findFirstByUserToNotifyAndTypeAndNotificationTargetAndDateCreatedAfterOrderByDateCreatedDesc(
+                        eq(target), eq(Notification.Type.FOLLOW), eq(target),
+                        eq(Date.from(now.minus(1, ChronoUnit.HOURS)))
+                );
+        assertEquals(1, notification.getActorCount());
+        assertEquals(List.of(actor), notification.getSampleActors());
+    }
+
+    @Test
+    @DisplayName("createNotification merges a notification into an open group with a new actor")
+    public void createNotification_OpenGroupExists_MergesIntoGroup() {
+        var now = Instant.now();
+        var target = UUID.randomUUID();
+        var firstActor = UUID.randomUUID();
+        var secondActor = UUID.randomUUID();
+        var group = new Notification(target, firstActor, target, firstActor, Notification.Type.FOLLOW);
+        group.setRead(true);
+        var createdAt = Date.from(now.minus(30, ChronoUnit.MINUTES));
+        group.setDateCreated(createdAt);
+        var dto = new NotificationCreationDto(target, secondActor, target, secondActor, Notification.Type.FOLLOW);
+
+        // given
+        given(clock.instant()).willReturn(now);
+        given(notificationRepository
+                .findFirstByUserToNotifyAndTypeAndNotificationTargetAndDateCreatedAfterOrderByDateCreatedDesc(
+                        any(), any(), any(), any()
+                )).willReturn(Optional.of(group));
+        given(notificationRepository.save(group)).willReturn(group);
+
+        // when
+        var notification = notificationService.createNotification(dto);
+
+        // then
+        assertEquals(group.getId(), notification.getId());
+        assertEquals(2, notification.getActorCount());
+        assertEquals(List.of(secondActor, firstActor), notification.getSampleActors());
+        assertEquals(secondActor, notification.getNotificationSource());
+        assertFalse(notification.isRead());
+        // the group comes back to the top of the list of notifications, but its window is not extended
+        assertEquals(Date.from(now), notification.getDateUpdated());
+        assertEquals(createdAt, notification.getDateCreated());
+    }
+
+    @Test
+    @DisplayName("createNotification does not count an actor who is already in the sample twice")
+    public void createNotification_ActorAlreadyInSample_DoesNotIncrementCount() {
+        var target = UUID.randomUUID();
+        var firstActor = UUID.randomUUID();
+        var secondActor = UUID.randomUUID();
+        var group = new Notification(target, secondActor, target, secondActor, Notification.Type.FOLLOW);
+        group.setActorCount(2);
+        group.setSampleActors(List.of(secondActor, firstActor));
+        var dto = new NotificationCreationDto(target, firstActor, target, firstActor, Notification.Type.FOLLOW);
+
+        // given
+        given(clock.instant()).willReturn(Instant.now());
+        given(notificationRepository
+                .findFirstByUserToNotifyAndTypeAndNotificationTargetAndDateCreatedAfterOrderByDateCreatedDesc(
+                        any(), any(), any(), any()
+                )).willReturn(Optional.of(group));
+        given(notificationRepository.save(group)).willReturn(group);
+
+        // when
+        var notification = notificationService.createNotification(dto);
+
+        // then
+        assertEquals(2, notification.getActorCount());
+        assertEquals(List.of(firstActor, secondActor), notification.getSampleActors());
+    }
+
+    @Test
+    @DisplayName("createNotification keeps only a bounded sample of the most recent actors")
+    public void createNotification_SampleFull_DropsOldestActor() {
+        var target = UUID.randomUUID();
+        var sample = IntStream.range(0, Notification.MAX_SAMPLE_ACTORS).mapToObj(i -> UUID.randomUUID()).toList();
+        var group = new Notification(target, sample.get(0), target, sample.get(0), Notification.Type.FOLLOW);
+        group.setActorCount(100);
+        group.setSampleActors(sample);
+        var newActor = UUID.randomUUID();
+        var dto = new NotificationCreationDto(target, newActor, target, newActor, Notification.Type.FOLLOW);
+
+        // given
+        given(clock.instant()).willReturn(Instant.now());
+        given(notificationRepository
+                .findFirstByUserToNotifyAndTypeAndNotificationTargetAndDateCreatedAfterOrderByDateCreatedDesc(
+                        any(), any(), any(), any()
+                )).willReturn(Optional.of(group));
+        given(notificationRepository.save(group)).willReturn(group);
+
+        // when
+        var notification = notificationService.createNotification(dto);
+
+        // then
+        assertEquals(101, notification.getActorCount());
+        assertEquals(Notification.MAX_SAMPLE_ACTORS, notification.getSampleActors().size());
+        assertEquals(newActor, notification.getSampleActors().get(0));
+        assertFalse(notification.getSampleActors().contains(sample.get(Notification.MAX_SAMPLE_ACTORS - 1)));
+    }
 }
@@ -0,0 +1,166 @@
+package ml.echelon133.microblog.notification.service;
+
+import ml.echelon133.microblog.shared.notification.Notification;
+import ml.echelon133.microblog.shared.notification.NotificationDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of NotificationStreamService")
+public class NotificationStreamServiceTests {
+
+    @Mock
+    private NotificationService notificationService;
+
+    @InjectMocks
+    private NotificationStreamService notificationStreamService;
+
+    @BeforeEach
+    public void beforeEach() {
+        notificationStreamService.streamTimeout = Duration.ofMinutes(30);
+        notificationStreamService.heartbeatExecutor = Runnable::run;
+    }
+
+    private static NotificationDto createNotificationDto() {
+        return new NotificationDto(UUID.randomUUID(), new Date(), UUID.randomUUID(), Notification.Type.FOLLOW, false);
+    }
+
+    @Test
+    @DisplayName("subscribe registers a stream and sends the current unread counter")
+    public void subscribe_UserIdProvided_RegistersStreamAndSendsUnreadCounter() {
+        var userId = UUID.randomUUID();
+
+        // given
+        given(notificationService.countUnreadOfUser(userId)).willReturn(5);
+
+        // when
+        notificationStreamService.subscribe(userId);
+        notificationStreamService.subscribe(userId);
+
+        // then
+        assertEquals(2, notificationStreamService.countOpenStreams());
+        verify(notificationService, times(2)).countUnreadOfUser(userId);
+    }
+
+    @Test
+    @DisplayName("pushToLocalStreams does not query the database when user has no streams on this instance")
+    public void pushToLocalStreams_UserHasNoLocalStreams_DoesNotQueryDatabase() {
+        var userId = UUID.randomUUID();
+
+        // when
+        notificationStreamService.pushToLocalStreams(userId, createNotificationDto());
+
+        // then
+        verify(notificationService, never()).countUnreadOfUser(any());
+    }
+
+    @Test
+    @DisplayName("pushToLocalStreams counts unread notifications once per push when user has streams on this instance")
+    public void pushToLocalStreams_UserHasLocalStreams_CountsUnreadOncePerPush() {
+        var userId = UUID.randomUUID();
+
+        // given
+        given(notificationService.countUnreadOfUser(userId)).willReturn(1);
+        notificationStreamService.subscribe(userId);
+        notificationStreamService.subscribe(userId);
+
+        // when
+        notificationStreamService.pushToLocalStreams(userId, createNotificationDto());
+
+        // then
+        // two counts during subscriptions, a single one during the push
+        verify(notificationService, times(3)).countUnreadOfUser(userId);
+    }
+
+    @Test
+    @DisplayName("pushToLocalStreams ignores streams of other users")
+    public void pushToLocalStreams_OnlyOtherUsersHaveStreams_DoesNotQueryDatabase() {
+        var userId = UUID.randomUUID();
+        var otherUserId = UUID.randomUUID();
+
+        // given
+        given(notificationService.countUnreadOfUser(otherUserId)).willReturn(1);
+        notificationStreamService.subscribe(otherUserId);
+
+        // when
+        notificationStreamService.pushToLocalStreams(userId, createNotificationDto());
+
+        // then
+        verify(notificationService, never()).countUnreadOfUser(userId);
+    }
+
+    @Test
+    @DisplayName("sendHeartbeats keeps streams whose heartbeats get written")
+    public void sendHeartbeats_HeartbeatsWritten_KeepsStreams() {
+        var userId = UUID.randomUUID();
+
+        // given
+        given(notificationService.countUnreadOfUser(userId)).willReturn(0);
+        notificationStreamService.subscribe(userId);
+
+        // when
+        notificationStreamService.sendHeartbeats();
+        notificationStreamService.sendHeartbeats();
+
+        // then
+        assertEquals(1, notificationStreamService.countOpenStreams());
+    }
+
+    @Test
+    @DisplayName("sendHeartbeats does not write heartbeats on the calling thread")
+    public void sendHeartbeats_StreamsOpen_HandsHeartbeatsToExecutor() {
+        var userId = UUID.randomUUID();
+        List<Runnable> queuedHeartbeats = new ArrayList<>();
+        notificationStreamService.heartbeatExecutor = queuedHeartbeats::add;
+
+        // given
+        given(notificationService.countUnreadOfUser(userId)).willReturn(0);
+        notificationStreamService.subscribe(userId);
+        notificationStreamService.subscribe(userId);
+
+        // when
+        notificationStreamService.sendHeartbeats();
+
+        // then
+        assertEquals(2, queuedHeartbeats.size());
+        assertEquals(2, notificationStreamService.countOpenStreams());
+    }
+
+    @Test
+    @DisplayName("sendHeartbeats closes a stream whose previous heartbeat has not been written yet")
+    public void sendHeartbeats_PreviousHeartbeatPending_ClosesStream() {
+        var userId = UUID.randomUUID();
+        var otherUserId = UUID.randomUUID();
+        List<Runnable> queuedHeartbeats = new ArrayList<>();
+        notificationStreamService.heartbeatExecutor = queuedHeartbeats::add;
+
+        // given
+        given(notificationService.countUnreadOfUser(any())).willReturn(0);
+        notificationStreamService.subscribe(userId);
+        notificationStreamService.sendHeartbeats();
+        // only the heartbeat of the first stream gets stuck, the second stream is opened after it
+        notificationStreamService.subscribe(otherUserId);
+
+        // when
+        notificationStreamService.sendHeartbeats();
+
+        // then
+        assertEquals(1, notificationStreamService.countOpenStreams());
+        assertEquals(2, queuedHeartbeats.size());
+    }
+}
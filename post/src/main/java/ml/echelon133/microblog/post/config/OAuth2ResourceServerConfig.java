@@ -1,8 +1,10 @@
 package ml.echelon133.microblog.post.config;
 
-import org.springframework.beans.factory.annotation.Value;
+import ml.echelon133.microblog.shared.auth.TokenAuthenticationConfig;
+import ml.echelon133.microblog.shared.auth.TokenFormatAuthenticationManagerResolver;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpMethod;
@@ -14,20 +16,14 @@ import static ml.echelon133.microblog.shared.auth.MultiAuthorizationManager.hasA
 import static org.springframework.security.authorization.AuthorityAuthorizationManager.hasAuthority;
 
 @Configuration
+@Import(TokenAuthenticationConfig.class)
 public class OAuth2ResourceServerConfig {
 
-    @Value("${spring.security.oauth2.resourceserver.opaque.introspection-uri}")
-    String introspectionUri;
-
-    @Value("${spring.security.oauth2.resourceserver.opaque.introspection-client-id}")
-    String clientId;
-
-    @Value("${spring.security.oauth2.resourceserver.opaque.introspection-client-secret}")
-    String clientSecret;
-
     @Bean
     @Order(Ordered.HIGHEST_PRECEDENCE)
-    public SecurityFilterChain resourceSecurityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain resourceSecurityFilterChain(HttpSecurity http,
+                                                           TokenFormatAuthenticationManagerResolver authenticationManagerResolver)
+            throws Exception {
         http
                 .csrf().disable()
                 .authorizeHttpRequests((authorize) -> authorize
@@ -65,12 +61,8 @@ public class OAuth2ResourceServerConfig {
                         .antMatchers(HttpMethod.POST, "/api/posts").hasAuthority(prefix(POST_WRITE))
                         .antMatchers(HttpMethod.GET, "/actuator/health/**").permitAll()
                         .anyRequest().denyAll())
-                .oauth2ResourceServer((oauth2) -> oauth2
-                        .opaqueToken((opaque) -> opaque
-                                .introspectionUri(this.introspectionUri)
-                                .introspectionClientCredentials(this.clientId, this.clientSecret)
-                        )
-                );
+                .oauth2ResourceServer((oauth2) -> oauth2.authenticationManagerResolver(authenticationManagerResolver));
         return http.build();
     }
+
 }
@@ -17,6 +17,7 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -59,6 +60,11 @@ public class PostController {
         return postService.findMostRecentPostsOfUser(userId, pageable);
     }
 
+    @GetMapping(params = "ids")
+    public List<PostDto> getPosts(@RequestParam List<UUID> ids) {
+        return postService.findByIds(ids);
+    }
+
     @PostMapping
     public Map<String, UUID> createPost(@Valid @RequestBody PostCreationDto dto, BindingResult result,
                                         @AuthenticationPrincipal OAuth2AuthenticatedPrincipal principal)
@@ -0,0 +1,48 @@
+package ml.echelon133.microblog.post.queue;
+
+import ml.echelon133.microblog.post.service.PostTakedownService;
+import ml.echelon133.microblog.shared.queue.QueueTopic;
+import ml.echelon133.microblog.shared.report.AuthorTakedownDto;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+/**
+ * Listener of author-takedown messages published in Redis.
+ * Each received {@link AuthorTakedownDto} message contains an id of an author whose all posts need to be
+ * marked as deleted.
+ */
+public class AuthorTakedownMessageListener implements MessageListener {
+
+    private static final Logger LOGGER = LogManager.getLogger(AuthorTakedownMessageListener.class);
+
+    private final PostTakedownService postTakedownService;
+
+    public AuthorTakedownMessageListener(PostTakedownService postTakedownService) {
+        this.postTakedownService = postTakedownService;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String topicName = new String(message.getChannel());
+
+        try {
+            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(message.getBody()));
+            var takedown = (AuthorTakedownDto)ois.readObject();
+            if (topicName.equals(QueueTopic.AUTHOR_TAKEDOWN.getTopic())) {
+                LOGGER.debug(String.format("Deleting all posts of author %s", takedown.getAuthorId()));
+                postTakedownService.takeDownPostsOfAuthor(takedown.getAuthorId());
+            } else {
+                LOGGER.warn("Received unexpected topic name: " + topicName);
+            }
+        } catch (ClassNotFoundException | IOException e) {
+            LOGGER.error("Failed to deserialize a message from topic " + topicName);
+            e.printStackTrace();
+        }
+    }
+}
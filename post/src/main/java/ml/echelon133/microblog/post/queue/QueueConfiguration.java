@@ -2,6 +2,9 @@ package ml.echelon133.microblog.post.queue;
 
 import ml.echelon133.microblog.post.repository.FollowRepository;
 import ml.echelon133.microblog.post.repository.PostRepository;
+import ml.echelon133.microblog.post.service.PostTakedownService;
+import ml.echelon133.microblog.shared.auth.CachingOpaqueTokenIntrospector;
+import ml.echelon133.microblog.shared.auth.TokenRevocationMessageListener;
 import ml.echelon133.microblog.shared.queue.QueueTopic;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -25,11 +28,15 @@ public class QueueConfiguration {
 
     private FollowRepository followRepository;
     private PostRepository postRepository;
+    private PostTakedownService postTakedownService;
 
     @Autowired
-    public QueueConfiguration(FollowRepository followRepository, PostRepository postRepository) {
+    public QueueConfiguration(FollowRepository followRepository,
+                              PostRepository postRepository,
+                              PostTakedownService postTakedownService) {
         this.followRepository = followRepository;
         this.postRepository = postRepository;
+        this.postTakedownService = postTakedownService;
     }
 
     @Bean
@@ -50,12 +57,24 @@ public class QueueConfiguration {
     }
 
     @Bean
-    RedisMessageListenerContainer redisContainer() {
+    MessageListenerAdapter authorTakedownMessageListener() {
+        return new MessageListenerAdapter(new AuthorTakedownMessageListener(postTakedownService));
+    }
+
+    @Bean
+    MessageListenerAdapter tokenRevocationMessageListener(CachingOpaqueTokenIntrospector introspector) {
+        return new MessageListenerAdapter(new TokenRevocationMessageListener(introspector));
+    }
+
+    @Bean
+    RedisMessageListenerContainer redisContainer(CachingOpaqueTokenIntrospector introspector) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(jedisConnectionFactory());
         container.addMessageListener(followMessageListener(), QueueTopic.FOLLOW);
         container.addMessageListener(followMessageListener(), QueueTopic.UNFOLLOW);
         container.addMessageListener(reportActionMessageListener(), QueueTopic.REPORT_ACTION);
+        container.addMessageListener(authorTakedownMessageListener(), QueueTopic.AUTHOR_TAKEDOWN);
+        container.addMessageListener(tokenRevocationMessageListener(introspector), QueueTopic.TOKEN_REVOCATION);
         return container;
     }
 
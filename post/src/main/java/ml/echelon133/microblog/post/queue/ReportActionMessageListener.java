@@ -2,6 +2,7 @@ package ml.echelon133.microblog.post.queue;
 
 import ml.echelon133.microblog.post.repository.PostRepository;
 import ml.echelon133.microblog.shared.queue.QueueTopic;
+import ml.echelon133.microblog.shared.report.ReportActionBatchDto;
 import ml.echelon133.microblog.shared.report.ReportActionDto;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -11,11 +12,13 @@ import org.springframework.data.redis.connection.MessageListener;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.List;
 
 /**
  * Listener of report-action messages published in Redis.
- * Each received {@link ReportActionDto} message contains information about a post which is scheduled for deletion.
- * If the post from the message exists, it will be marked as deleted.
+ * Each received message is either a single {@link ReportActionDto} or a {@link ReportActionBatchDto}, which contain
+ * information about posts which are scheduled for deletion. All existing posts from the message are marked
+ * as deleted with a single statement.
  */
 public class ReportActionMessageListener implements MessageListener {
 
@@ -33,22 +36,27 @@ public class ReportActionMessageListener implements MessageListener {
 
         try {
             ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(message.getBody()));
-            var reportAction = (ReportActionDto)ois.readObject();
+            var received = ois.readObject();
             if (topicName.equals(QueueTopic.REPORT_ACTION.getTopic())) {
-                var post = postRepository.findById(reportAction.getPostToDelete());
-                if (post.isPresent()) {
+                List<ReportActionDto> reportActions;
+                if (received instanceof ReportActionBatchDto batch) {
+                    reportActions = batch.getActions();
+                } else {
+                    reportActions = List.of((ReportActionDto)received);
+                }
+
+                for (var reportAction : reportActions) {
                     LOGGER.debug(String.format(
                             "Deleting a post %s for reason: %s",
                             reportAction.getPostToDelete(), reportAction.getReason()
                     ));
-
-                    var unwrappedPost = post.get();
-                    unwrappedPost.setDeleted(true);
-                    postRepository.save(unwrappedPost);
-                } else {
+                }
+                var postIds = reportActions.stream().map(ReportActionDto::getPostToDelete).toList();
+                var deleted = postRepository.markPostsDeleted(postIds);
+                if (deleted < postIds.size()) {
                     LOGGER.debug(String.format(
-                            "Post %s could not be deleted because it could not be found",
-                            reportAction.getPostToDelete()
+                            "%d post(s) could not be deleted because they could not be found",
+                            postIds.size() - deleted
                     ));
                 }
             } else {
@@ -5,10 +5,14 @@ import ml.echelon133.microblog.shared.post.PostDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -28,6 +32,16 @@ public interface PostRepository extends JpaRepository<Post, UUID> {
             "FROM Post p WHERE p.id = ?1 AND p.deleted = false")
     Optional<PostDto> findByPostId(UUID id);
 
+    /**
+     * Finds all posts with given ids which are not marked as deleted.
+     *
+     * @param ids ids of the posts to find
+     * @return a list of found posts, in no particular order
+     */
+    @Query("SELECT NEW ml.echelon133.microblog.shared.post.PostDto(p.id, p.dateCreated, p.content, p.authorId, p.quotedPost.id, p.parentPost.id) " +
+            "FROM Post p WHERE p.id IN ?1 AND p.deleted = false")
+    List<PostDto> findByPostIds(Collection<UUID> ids);
+
     /**
      * Finds a {@link Page} of posts of {@code userId} sorted by their recency.
      * Posts which are marked as deleted will be ignored, as the results of this
@@ -126,4 +140,26 @@ public interface PostRepository extends JpaRepository<Post, UUID> {
             "AND p.deleted = false AND p.dateCreated BETWEEN ?2 AND ?3 " +
             "ORDER BY p.dateCreated DESC")
     Page<PostDto> generateFeedWithMostRecentPostsForUser(UUID userId, Date start, Date end, Pageable pageable);
+
+    /**
+     * Finds ids of posts of {@code authorId} which are not marked as deleted.
+     *
+     * @param authorId id of the author of posts
+     * @param pageable information about the wanted page, which limits the number of ids
+     * @return a list of ids of posts, in no particular order
+     */
+    @Query("SELECT p.id FROM Post p WHERE p.authorId = ?1 AND p.deleted = false")
+    List<UUID> findUndeletedPostIdsOfAuthor(UUID authorId, Pageable pageable);
+
+    /**
+     * Marks all posts with given ids as deleted, in a single statement. Posts which are already deleted
+     * are left untouched.
+     *
+     * @param ids ids of the posts to delete
+     * @return how many posts have been deleted
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Post p SET p.deleted = true WHERE p.id IN ?1 AND p.deleted = false")
+    int markPostsDeleted(Collection<UUID> ids);
 }
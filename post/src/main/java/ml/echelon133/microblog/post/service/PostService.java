@@ -38,6 +38,11 @@ import java.util.regex.Pattern;
 @Transactional
 public class PostService {
 
+    /**
+     * How many posts can be fetched at once by their ids.
+     */
+    public static final int MAX_IDS_PER_LOOKUP = 100;
+
     private Pattern usernamePattern = Pattern.compile("@([A-Za-z0-9]{1,30})");
     private PostRepository postRepository;
     private LikeRepository likeRepository;
@@ -70,6 +75,26 @@ public class PostService {
         }
     }
 
+    /**
+     * Projects all posts/quotes/responses with specified ids into DTO objects, using a single query.
+     * Posts which do not exist or are marked as deleted are skipped.
+     *
+     * @param ids ids of the posts/quotes/responses
+     * @return DTO projections of the found posts, in no particular order
+     * @throws IllegalArgumentException when more than {@link #MAX_IDS_PER_LOOKUP} ids are provided
+     */
+    public List<PostDto> findByIds(List<UUID> ids) throws IllegalArgumentException {
+        if (ids.size() > MAX_IDS_PER_LOOKUP) {
+            throw new IllegalArgumentException(
+                    String.format("at most %d posts can be fetched at once", MAX_IDS_PER_LOOKUP)
+            );
+        }
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return postRepository.findByPostIds(Set.copyOf(ids));
+    }
+
     /**
      * Projects the post/quote/response with specified {@link java.util.UUID} into a DTO object.
      *
@@ -255,9 +280,12 @@ public class PostService {
 
         // do not notify the user if they are quoting their own post
         if (!quoteAuthorId.equals(unwrappedPost.getAuthorId())) {
+            // quotes of the same post can be merged into a single notification
             notificationPublisher.publishNotification(new NotificationCreationDto(
                     unwrappedPost.getAuthorId(),
                     savedQuotingPost.getId(),
+                    unwrappedPost.getId(),
+                    quoteAuthorId,
                     Notification.Type.QUOTE)
             );
         }
@@ -296,9 +324,12 @@ public class PostService {
 
         // do not notify the user if they are responding to their own post
         if (!responseAuthorId.equals(unwrappedPost.getAuthorId())) {
+            // responses to the same post can be merged into a single notification
             notificationPublisher.publishNotification(new NotificationCreationDto(
                     parentPost.get().getAuthorId(),
                     savedResponsePost.getId(),
+                    unwrappedPost.getId(),
+                    responseAuthorId,
                     Notification.Type.RESPONSE)
             );
         }
@@ -403,8 +434,14 @@ public class PostService {
                     // only publish the notification if the user to be notified is not the
                     // author of the post
                     if (!userToBeNotified.getId().equals(notifyingPost.getAuthorId())) {
+                        // the target is the mentioning post itself, so mentions from different posts
+                        // are never merged
                         notificationPublisher.publishNotification(new NotificationCreationDto(
-                                userToBeNotified.getId(), notifyingPost.getId(), Notification.Type.MENTION
+                                userToBeNotified.getId(),
+                                notifyingPost.getId(),
+                                notifyingPost.getId(),
+                                notifyingPost.getAuthorId(),
+                                Notification.Type.MENTION
                         ));
                     }
                 }
@@ -487,7 +524,10 @@ public class PostService {
                 Report.Reason.valueOf(dto.getReason().toUpperCase()),
                 dto.getContext(),
                 reportedPost,
-                reportingUser
+                reportingUser,
+                // moderators see the post even if it gets deleted before they check the report
+                foundPost.getAuthorId(),
+                foundPost.getContent()
         ));
     }
 }
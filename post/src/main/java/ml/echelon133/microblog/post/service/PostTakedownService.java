@@ -0,0 +1,63 @@
+package ml.echelon133.microblog.post.service;
+
+import ml.echelon133.microblog.post.repository.PostRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+
+/**
+ * Deletes all posts of an author at once, e.g. when the author's account gets banned.
+ *
+ * Posts are deleted in chunks, and every chunk is deleted in its own short transaction. This way, deleting
+ * tens of thousands of posts of a prolific spammer never holds locks on a large part of the table at once.
+ * This service is intentionally not transactional as a whole.
+ */
+@Service
+public class PostTakedownService {
+
+    private static final Logger LOGGER = LogManager.getLogger(PostTakedownService.class);
+
+    private PostRepository postRepository;
+
+    /*
+    How many posts are marked as deleted by a single statement.
+     */
+    @Value("${post.takedown.chunk-size}")
+    int chunkSize;
+
+    @Autowired
+    public PostTakedownService(PostRepository postRepository) {
+        this.postRepository = postRepository;
+    }
+
+    /**
+     * Marks all posts of the author with {@code authorId} as deleted.
+     *
+     * @param authorId id of the author whose posts are deleted
+     * @return how many posts have been deleted
+     */
+    public int takeDownPostsOfAuthor(UUID authorId) {
+        var deletedTotal = 0;
+        while (true) {
+            var postIds = postRepository.findUndeletedPostIdsOfAuthor(authorId, PageRequest.ofSize(chunkSize));
+            if (postIds.isEmpty()) {
+                break;
+            }
+            var deleted = postRepository.markPostsDeleted(postIds);
+            if (deleted == 0) {
+                // all posts from the chunk have been deleted concurrently, which can only
+                // happen when the takedown of the same author is already in progress elsewhere
+                break;
+            }
+            deletedTotal += deleted;
+        }
+
+        LOGGER.info(String.format("Took down %d post(s) of author '%s'", deletedTotal, authorId));
+        return deletedTotal;
+    }
+}
@@ -569,6 +569,44 @@ public class PostControllerTests {
                 .andExpect(jsonPath("$.parentPost", is(postDto.getParentPost().toString())));
     }
 
+    @Test
+    @DisplayName("getPosts returns ok when posts found")
+    public void getPosts_PostsFound_ReturnsOk() throws Exception {
+        var id1 = UUID.randomUUID();
+        var id2 = UUID.randomUUID();
+        var dto = new PostDto(id1, new Date(), "post", UUID.randomUUID(), null, null);
+
+        when(postService.findByIds(List.of(id1, id2))).thenReturn(List.of(dto));
+
+        mvc.perform(
+                        get("/api/posts")
+                                .param("ids", id1.toString(), id2.toString())
+                                .accept(MediaType.APPLICATION_JSON)
+                                .with(customBearerToken())
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(id1.toString())))
+                .andExpect(jsonPath("$[0].content", is(dto.getContent())));
+    }
+
+    @Test
+    @DisplayName("getPosts returns error when service throws IllegalArgumentException")
+    public void getPosts_ServiceThrows_ReturnsExpectedError() throws Exception {
+        var id = UUID.randomUUID();
+
+        when(postService.findByIds(List.of(id))).thenThrow(new IllegalArgumentException("test message"));
+
+        mvc.perform(
+                        get("/api/posts")
+                                .param("ids", id.toString())
+                                .accept(MediaType.APPLICATION_JSON)
+                                .with(customBearerToken())
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.messages", hasItem("test message")));
+    }
+
     @Test
     @DisplayName("getMostRecentUserPosts returns ok when posts found")
     public void getMostRecentUserPosts_PostsFound_ReturnsOk() throws Exception {
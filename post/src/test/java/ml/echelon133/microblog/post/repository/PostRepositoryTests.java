@@ -135,6 +135,71 @@ public class PostRepositoryTests {
         assertNull(post.getQuotedPost());
     }
 
+    @Test
+    @DisplayName("Custom findByPostIds query returns only existing posts which are not marked as deleted")
+    public void findByPostIds_MixedPosts_ReturnsOnlyExistingNotDeleted() {
+        var authorId = UUID.randomUUID();
+        var post1 = createTestPost(UUID.randomUUID(), authorId, "test1");
+        var post2 = createTestPost(UUID.randomUUID(), authorId, "test2");
+        var deletedPost = createTestPost(UUID.randomUUID(), authorId, "deleted");
+        deletedPost.setDeleted(true);
+        postRepository.save(deletedPost);
+
+        // when
+        var result = postRepository.findByPostIds(
+                List.of(post1.getId(), post2.getId(), deletedPost.getId(), UUID.randomUUID())
+        );
+
+        // then
+        assertEquals(2, result.size());
+        var foundIds = result.stream().map(PostDto::getId).toList();
+        assertTrue(foundIds.containsAll(List.of(post1.getId(), post2.getId())));
+    }
+
+    @Test
+    @DisplayName("Custom findUndeletedPostIdsOfAuthor query returns a limited number of ids of not deleted posts of the author")
+    public void findUndeletedPostIdsOfAuthor_MixedPosts_ReturnsLimitedIds() {
+        var authorId = UUID.randomUUID();
+        var post1 = createTestPost(UUID.randomUUID(), authorId, "test1");
+        var post2 = createTestPost(UUID.randomUUID(), authorId, "test2");
+        createTestPost(UUID.randomUUID(), UUID.randomUUID(), "other");
+        var deletedPost = createTestPost(UUID.randomUUID(), authorId, "deleted");
+        deletedPost.setDeleted(true);
+        postRepository.save(deletedPost);
+
+        // when
+        var all = postRepository.findUndeletedPostIdsOfAuthor(authorId, Pageable.ofSize(10));
+        var limited = postRepository.findUndeletedPostIdsOfAuthor(authorId, Pageable.ofSize(1));
+
+        // then
+        assertEquals(2, all.size());
+        assertTrue(all.containsAll(List.of(post1.getId(), post2.getId())));
+        assertEquals(1, limited.size());
+    }
+
+    @Test
+    @DisplayName("Custom markPostsDeleted query only deletes given posts which are not deleted yet")
+    public void markPostsDeleted_MixedPosts_DeletesGivenPosts() {
+        var authorId = UUID.randomUUID();
+        var post1 = createTestPost(UUID.randomUUID(), authorId, "test1");
+        var post2 = createTestPost(UUID.randomUUID(), authorId, "test2");
+        var otherPost = createTestPost(UUID.randomUUID(), authorId, "other");
+        var deletedPost = createTestPost(UUID.randomUUID(), authorId, "deleted");
+        deletedPost.setDeleted(true);
+        postRepository.save(deletedPost);
+
+        // when
+        var deleted = postRepository.markPostsDeleted(
+                List.of(post1.getId(), post2.getId(), deletedPost.getId(), UUID.randomUUID())
+        );
+
+        // then
+        assertEquals(2, deleted);
+        var result = postRepository.findByPostIds(List.of(post1.getId(), post2.getId(), otherPost.getId()));
+        assertEquals(1, result.size());
+        assertEquals(otherPost.getId(), result.get(0).getId());
+    }
+
     @Test
     @DisplayName("Custom findByPostId query returns not empty when quote post exists")
     public void findByPostId_QuotePostExists_ReturnsNonEmpty() {
@@ -894,6 +894,36 @@ public class PostServiceTests {
         assertEquals(dto, foundPost);
     }
 
+    @Test
+    @DisplayName("findByIds throws an IllegalArgumentException when too many ids are provided")
+    public void findByIds_TooManyIds_ThrowsException() {
+        var ids = IntStream.rangeClosed(0, PostService.MAX_IDS_PER_LOOKUP).mapToObj(i -> UUID.randomUUID()).toList();
+
+        // when
+        String message = assertThrows(IllegalArgumentException.class, () -> {
+            postService.findByIds(ids);
+        }).getMessage();
+
+        // then
+        assertEquals(String.format("at most %d posts can be fetched at once", PostService.MAX_IDS_PER_LOOKUP), message);
+    }
+
+    @Test
+    @DisplayName("findByIds calls the repository method once with unique ids")
+    public void findByIds_DuplicateIds_CallsRepositoryOnceWithUniqueIds() {
+        var id = UUID.randomUUID();
+        var dto = new PostDto(id, new Date(), "", UUID.randomUUID(), null, null);
+
+        // given
+        given(postRepository.findByPostIds(Set.of(id))).willReturn(List.of(dto));
+
+        // when
+        var posts = postService.findByIds(List.of(id, id));
+
+        // then
+        assertEquals(List.of(dto), posts);
+    }
+
     @Test
     @DisplayName("findMostRecentPostsOfUser calls the repository method")
     public void findMostRecentPostsOfUser_ProvidedArguments_CallsRepository() {
@@ -1165,7 +1195,9 @@ public class PostServiceTests {
                         a.getReason().equals(Report.Reason.SPAM) &&
                         a.getContext().equals(dto.getContext()) &&
                         a.getReportingUser().equals(userId) &&
-                        a.getReportedPost().equals(postId)
+                        a.getReportedPost().equals(postId) &&
+                        a.getReportedPostAuthor().equals(post.getAuthorId()) &&
+                        a.getReportedPostContent().equals(post.getContent())
                 )
         );
     }
@@ -0,0 +1,92 @@
+package ml.echelon133.microblog.post.service;
+
+import ml.echelon133.microblog.post.repository.PostRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of PostTakedownService")
+public class PostTakedownServiceTests {
+
+    @Mock
+    private PostRepository postRepository;
+
+    @InjectMocks
+    private PostTakedownService postTakedownService;
+
+    @BeforeEach
+    public void beforeEach() {
+        postTakedownService.chunkSize = 2;
+    }
+
+    @Test
+    @DisplayName("takeDownPostsOfAuthor does not update anything when the author does not have any posts")
+    public void takeDownPostsOfAuthor_NoPosts_ReturnsZero() {
+        var authorId = UUID.randomUUID();
+
+        // given
+        given(postRepository.findUndeletedPostIdsOfAuthor(eq(authorId), any())).willReturn(List.of());
+
+        // when
+        var deleted = postTakedownService.takeDownPostsOfAuthor(authorId);
+
+        // then
+        assertEquals(0, deleted);
+        verify(postRepository, times(0)).markPostsDeleted(any());
+    }
+
+    @Test
+    @DisplayName("takeDownPostsOfAuthor deletes posts in chunks until there are none left")
+    public void takeDownPostsOfAuthor_MultipleChunks_DeletesAllChunks() {
+        var authorId = UUID.randomUUID();
+        var chunk1 = List.of(UUID.randomUUID(), UUID.randomUUID());
+        var chunk2 = List.of(UUID.randomUUID());
+
+        // given
+        given(postRepository.findUndeletedPostIdsOfAuthor(eq(authorId), argThat(a -> a.getPageSize() == 2)))
+                .willReturn(chunk1, chunk2, List.of());
+        given(postRepository.markPostsDeleted(chunk1)).willReturn(2);
+        given(postRepository.markPostsDeleted(chunk2)).willReturn(1);
+
+        // when
+        var deleted = postTakedownService.takeDownPostsOfAuthor(authorId);
+
+        // then
+        assertEquals(3, deleted);
+        verify(postRepository, times(2)).markPostsDeleted(any());
+    }
+
+    @Test
+    @DisplayName("takeDownPostsOfAuthor stops when a chunk has been deleted concurrently")
+    public void takeDownPostsOfAuthor_ChunkDeletedConcurrently_Stops() {
+        var authorId = UUID.randomUUID();
+        var chunk = List.of(UUID.randomUUID(), UUID.randomUUID());
+
+        // given
+        given(postRepository.findUndeletedPostIdsOfAuthor(eq(authorId), any())).willReturn(chunk);
+        given(postRepository.markPostsDeleted(chunk)).willReturn(0);
+
+        // when
+        var deleted = postTakedownService.takeDownPostsOfAuthor(authorId);
+
+        // then
+        assertEquals(0, deleted);
+        verify(postRepository, times(1)).markPostsDeleted(any());
+    }
+}
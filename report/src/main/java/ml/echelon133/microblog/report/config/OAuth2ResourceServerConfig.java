@@ -1,9 +1,11 @@
 package ml.echelon133.microblog.report.config;
 
+import ml.echelon133.microblog.shared.auth.TokenAuthenticationConfig;
+import ml.echelon133.microblog.shared.auth.TokenFormatAuthenticationManagerResolver;
 import ml.echelon133.microblog.shared.scope.MicroblogScope.Admin;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpMethod;
@@ -13,33 +15,24 @@ import org.springframework.security.web.SecurityFilterChain;
 import static ml.echelon133.microblog.shared.scope.MicroblogScope.prefix;
 
 @Configuration
+@Import(TokenAuthenticationConfig.class)
 public class OAuth2ResourceServerConfig {
 
-    @Value("${spring.security.oauth2.resourceserver.opaque.introspection-uri}")
-    String introspectionUri;
-
-    @Value("${spring.security.oauth2.resourceserver.opaque.introspection-client-id}")
-    String clientId;
-
-    @Value("${spring.security.oauth2.resourceserver.opaque.introspection-client-secret}")
-    String clientSecret;
-
     @Bean
     @Order(Ordered.HIGHEST_PRECEDENCE)
-    public SecurityFilterChain resourceSecurityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain resourceSecurityFilterChain(HttpSecurity http,
+                                                           TokenFormatAuthenticationManagerResolver authenticationManagerResolver)
+            throws Exception {
         http
                 .csrf().disable()
                 .authorizeHttpRequests((authorize) -> authorize
                         .antMatchers(HttpMethod.GET, "/api/reports*").hasAuthority(prefix(Admin.REPORT_READ))
+                        .antMatchers(HttpMethod.GET, "/api/reports/groups").hasAuthority(prefix(Admin.REPORT_READ))
                         .antMatchers(HttpMethod.POST, "/api/reports/**").hasAuthority(prefix(Admin.REPORT_WRITE))
                         .antMatchers(HttpMethod.GET, "/actuator/health/**").permitAll()
                         .anyRequest().denyAll())
-                .oauth2ResourceServer((oauth2) -> oauth2
-                        .opaqueToken((opaque) -> opaque
-                                .introspectionUri(this.introspectionUri)
-                                .introspectionClientCredentials(this.clientId, this.clientSecret)
-                        )
-                );
+                .oauth2ResourceServer((oauth2) -> oauth2.authenticationManagerResolver(authenticationManagerResolver));
         return http.build();
     }
+
 }
@@ -3,13 +3,16 @@ package ml.echelon133.microblog.report.controller;
 import ml.echelon133.microblog.report.exception.ReportAlreadyCheckedException;
 import ml.echelon133.microblog.report.service.ReportService;
 import ml.echelon133.microblog.shared.exception.ResourceNotFoundException;
+import ml.echelon133.microblog.shared.report.ReportDecisionsDto;
 import ml.echelon133.microblog.shared.report.ReportDto;
+import ml.echelon133.microblog.shared.report.ReportGroupDto;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
 import java.util.UUID;
 
 @RestController
@@ -29,10 +32,32 @@ public class ReportController {
         return reportService.findReports(checked, pageable);
     }
 
+    @PostMapping("/bulk")
+    public Map<String, Integer> checkReports(@RequestBody ReportDecisionsDto dto) {
+        return reportService.checkReports(dto);
+    }
+
     @PostMapping("/{reportId}")
     public void checkReport(@PathVariable UUID reportId, @RequestParam Boolean accept)
             throws ResourceNotFoundException, ReportAlreadyCheckedException {
 
         reportService.checkReport(reportId, accept);
     }
+
+    @GetMapping("/groups")
+    public Page<ReportGroupDto> getModerationQueue(@PageableDefault(size = 20) Pageable pageable) {
+        return reportService.findModerationQueue(pageable);
+    }
+
+    @PostMapping("/groups/{reportedPostId}")
+    public void checkReportGroup(@PathVariable UUID reportedPostId, @RequestParam Boolean accept)
+            throws ResourceNotFoundException, ReportAlreadyCheckedException {
+
+        reportService.checkReportGroup(reportedPostId, accept);
+    }
+
+    @PostMapping("/authors/{authorId}/takedown")
+    public Map<String, Integer> takeDownAuthor(@PathVariable UUID authorId) {
+        return Map.of("accepted", reportService.takeDownAuthor(authorId));
+    }
 }
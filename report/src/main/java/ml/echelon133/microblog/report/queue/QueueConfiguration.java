@@ -1,8 +1,9 @@
 package ml.echelon133.microblog.report.queue;
 
-import ml.echelon133.microblog.report.repository.ReportRepository;
+import ml.echelon133.microblog.report.service.ReportService;
+import ml.echelon133.microblog.shared.auth.CachingOpaqueTokenIntrospector;
+import ml.echelon133.microblog.shared.auth.TokenRevocationMessageListener;
 import ml.echelon133.microblog.shared.queue.QueueTopic;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -22,13 +23,6 @@ public class QueueConfiguration {
     @Value("${spring.redis.password}")
     String password;
 
-    private ReportRepository reportRepository;
-
-    @Autowired
-    public QueueConfiguration(ReportRepository reportRepository) {
-        this.reportRepository = reportRepository;
-    }
-
     @Bean
     JedisConnectionFactory jedisConnectionFactory() {
         RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(host);
@@ -36,16 +30,25 @@ public class QueueConfiguration {
         return new JedisConnectionFactory(config);
     }
 
+    // the service is injected into the bean method (instead of the constructor), because it
+    // depends on the publisher which depends on the redisTemplate bean defined in this configuration
+    @Bean
+    MessageListenerAdapter messageListener(ReportService reportService) {
+        return new MessageListenerAdapter(new ReportMessageListener(reportService));
+    }
+
     @Bean
-    MessageListenerAdapter messageListener() {
-        return new MessageListenerAdapter(new ReportMessageListener(reportRepository));
+    MessageListenerAdapter tokenRevocationMessageListener(CachingOpaqueTokenIntrospector introspector) {
+        return new MessageListenerAdapter(new TokenRevocationMessageListener(introspector));
     }
 
     @Bean
-    RedisMessageListenerContainer redisContainer() {
+    RedisMessageListenerContainer redisContainer(MessageListenerAdapter messageListener,
+                                                 MessageListenerAdapter tokenRevocationMessageListener) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(jedisConnectionFactory());
-        container.addMessageListener(messageListener(), QueueTopic.REPORT);
+        container.addMessageListener(messageListener, QueueTopic.REPORT);
+        container.addMessageListener(tokenRevocationMessageListener, QueueTopic.TOKEN_REVOCATION);
         return container;
     }
 
@@ -1,6 +1,8 @@
 package ml.echelon133.microblog.report.queue;
 
 import ml.echelon133.microblog.shared.queue.QueueTopic;
+import ml.echelon133.microblog.shared.report.AuthorTakedownDto;
+import ml.echelon133.microblog.shared.report.ReportActionBatchDto;
 import ml.echelon133.microblog.shared.report.ReportActionDto;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -8,6 +10,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 /**
  * Publishes report-action messages to a redis queue.
  */
@@ -33,4 +37,23 @@ public class ReportActionPublisher {
         ));
         redisTemplate.convertAndSend(QueueTopic.REPORT_ACTION.getTopic(), dto);
     }
+
+    /**
+     * Publishes a single message containing multiple report-actions, which lets the post service delete
+     * all reported posts at once.
+     * @param dtos contain information required to delete posts because of accepted reports
+     */
+    public void publishReportActions(List<ReportActionDto> dtos) {
+        LOGGER.debug(String.format("Publishing a batch of %d report-action(s)", dtos.size()));
+        redisTemplate.convertAndSend(QueueTopic.REPORT_ACTION.getTopic(), new ReportActionBatchDto(dtos));
+    }
+
+    /**
+     * Publishes a message which makes the post service delete all posts of an author.
+     * @param dto contains the id of the author whose posts need to be deleted
+     */
+    public void publishAuthorTakedown(AuthorTakedownDto dto) {
+        LOGGER.debug(String.format("Publishing a takedown of all posts of author '%s'", dto.getAuthorId()));
+        redisTemplate.convertAndSend(QueueTopic.AUTHOR_TAKEDOWN.getTopic(), dto);
+    }
 }
@@ -1,12 +1,13 @@
 package ml.echelon133.microblog.report.queue;
 
-import ml.echelon133.microblog.report.repository.ReportRepository;
+import ml.echelon133.microblog.report.service.ReportService;
 import ml.echelon133.microblog.shared.queue.QueueTopic;
 import ml.echelon133.microblog.shared.report.Report;
 import ml.echelon133.microblog.shared.report.ReportCreationDto;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
 
@@ -16,17 +17,18 @@ import java.io.ObjectInputStream;
 
 /**
  * Listener of report messages published in Redis.
- * Each received {@link ReportCreationDto} message is transformed and then saved in the database as a {@link Report} object.
+ * Each received {@link ReportCreationDto} message is transformed and then saved in the database as a {@link Report} object,
+ * which is also counted in the group of reports of the reported post.
  */
 public class ReportMessageListener implements MessageListener {
 
     private static final Logger LOGGER = LogManager.getLogger(ReportMessageListener.class);
 
-    private final ReportRepository reportRepository;
+    private final ReportService reportService;
 
     @Autowired
-    public ReportMessageListener(ReportRepository reportRepository) {
-        this.reportRepository = reportRepository;
+    public ReportMessageListener(ReportService reportService) {
+        this.reportService = reportService;
     }
 
     @Override
@@ -41,9 +43,13 @@ public class ReportMessageListener implements MessageListener {
                         "Creating a report of post '%s', on behalf of user '%s' for '%s' reason",
                         report.getReportedPost(), report.getReportingUser(), report.getReason()
                 ));
-                reportRepository.save(new Report(
-                        report.getReason(), report.getContext(), report.getReportedPost(), report.getReportingUser()
-                ));
+                try {
+                    reportService.createReport(report);
+                } catch (DataIntegrityViolationException e) {
+                    // another report of the same post has created its group concurrently, which means
+                    // that the group exists now and the report can be counted in it
+                    reportService.createReport(report);
+                }
             } else {
                 LOGGER.warn("Received unexpected topic name: " + topicName);
             }
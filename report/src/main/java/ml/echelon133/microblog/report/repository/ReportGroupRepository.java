@@ -0,0 +1,61 @@
+package ml.echelon133.microblog.report.repository;
+
+import ml.echelon133.microblog.shared.report.ReportGroup;
+import ml.echelon133.microblog.shared.report.ReportGroupDto;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface ReportGroupRepository extends JpaRepository<ReportGroup, UUID> {
+
+    Optional<ReportGroup> findByReportedPost(UUID reportedPost);
+
+    /**
+     * Finds a {@link Page} of groups which contain unchecked reports. Posts with the most unchecked reports
+     * come first, and posts with the same number of them are ordered from the most recently reported.
+     * The ordering matches the moderation queue index, which means that no sorting happens in the database.
+     *
+     * @param pageable information about the wanted page
+     * @return a {@link Page} of report groups
+     */
+    @Query(value = "SELECT NEW ml.echelon133.microblog.shared.report.ReportGroupDto(g.reportedPost, g.reportedPostAuthor, g.reportedPostContent, " +
+            "g.pendingReports, g.spamReports, g.harassmentReports, g.impersonationReports, g.disturbingContentReports, g.lastReportedAt) " +
+            "FROM ReportGroup g WHERE g.pendingReports > 0 ORDER BY g.pendingReports DESC, g.lastReportedAt DESC",
+            countQuery = "SELECT COUNT(g) FROM ReportGroup g WHERE g.pendingReports > 0")
+    Page<ReportGroupDto> findModerationQueue(Pageable pageable);
+
+    /**
+     * Atomically counts a new report in the group of the post with {@code reportedPost} id. Every reason argument
+     * is either 1 (the reason of the new report) or 0 (every other reason).
+     *
+     * @return how many groups have been updated, 0 if the post has never been reported before
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ReportGroup g SET g.pendingReports = g.pendingReports + 1, " +
+            "g.spamReports = g.spamReports + ?2, g.harassmentReports = g.harassmentReports + ?3, " +
+            "g.impersonationReports = g.impersonationReports + ?4, " +
+            "g.disturbingContentReports = g.disturbingContentReports + ?5, g.lastReportedAt = ?6 " +
+            "WHERE g.reportedPost = ?1")
+    int countReport(UUID reportedPost, int spam, int harassment, int impersonation, int disturbingContent, Date reportedAt);
+
+    /**
+     * Atomically removes checked reports from the counters of the group of the post with {@code reportedPost} id.
+     * Every reason argument holds the number of checked reports with that reason. Counters never go below zero,
+     * even if they had drifted from the actual number of unchecked reports.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ReportGroup g SET " +
+            "g.pendingReports = CASE WHEN g.pendingReports > ?2 THEN (g.pendingReports - ?2) ELSE 0 END, " +
+            "g.spamReports = CASE WHEN g.spamReports > ?3 THEN (g.spamReports - ?3) ELSE 0 END, " +
+            "g.harassmentReports = CASE WHEN g.harassmentReports > ?4 THEN (g.harassmentReports - ?4) ELSE 0 END, " +
+            "g.impersonationReports = CASE WHEN g.impersonationReports > ?5 THEN (g.impersonationReports - ?5) ELSE 0 END, " +
+            "g.disturbingContentReports = CASE WHEN g.disturbingContentReports > ?6 THEN (g.disturbingContentReports - ?6) ELSE 0 END " +
+            "WHERE g.reportedPost = ?1")
+    void uncountReports(UUID reportedPost, int pending, int spam, int harassment, int impersonation, int disturbingContent);
+}
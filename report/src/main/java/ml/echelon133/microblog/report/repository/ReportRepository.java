@@ -5,8 +5,13 @@ import ml.echelon133.microblog.shared.report.ReportDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 public interface ReportRepository extends JpaRepository<Report, UUID> {
@@ -21,4 +26,50 @@ public interface ReportRepository extends JpaRepository<Report, UUID> {
     @Query("SELECT NEW ml.echelon133.microblog.shared.report.ReportDto(r.id, r.dateCreated, r.reason, r.context, r.reportedPost, r.reportingUser, r.accepted, r.checked) " +
             "FROM Report r WHERE r.checked = ?1")
     Page<ReportDto> findReports(boolean checked, Pageable pageable);
+
+    /**
+     * Finds unchecked reports of the post with {@code reportedPost} id and locks them until the end of
+     * the transaction. Reports which arrive later are not locked, which means that they stay counted in
+     * the group of the post.
+     *
+     * @param reportedPost id of the post whose reports are being checked
+     * @return unchecked reports of the post
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Report r WHERE r.reportedPost = ?1 AND r.checked = false")
+    List<Report> findUncheckedOfPostForUpdate(UUID reportedPost);
+
+    /**
+     * Finds unchecked reports with given ids and locks them until the end of the transaction, so that
+     * they cannot be checked concurrently.
+     *
+     * @param ids ids of reports to find
+     * @return unchecked reports
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Report r WHERE r.id IN ?1 AND r.checked = false")
+    List<Report> findUncheckedForUpdate(Collection<UUID> ids);
+
+    /**
+     * Marks unchecked reports with given ids as checked, in a single statement.
+     *
+     * @param ids ids of reports which are being checked
+     * @param accept whether the reports are accepted or rejected
+     * @return how many reports have been checked
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Report r SET r.checked = true, r.accepted = ?2 WHERE r.id IN ?1 AND r.checked = false")
+    int checkReports(Collection<UUID> ids, boolean accept);
+
+    /**
+     * Finds a chunk of unchecked reports of posts of {@code authorId} and locks them until the end of the transaction.
+     *
+     * @param authorId id of the author whose reported posts are being taken down
+     * @param pageable how many reports are found at most
+     * @return unchecked reports of posts of the author
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Report r WHERE r.checked = false AND r.reportedPost IN " +
+            "(SELECT g.reportedPost FROM ReportGroup g WHERE g.reportedPostAuthor = ?1)")
+    List<Report> findUncheckedOfAuthorForUpdate(UUID authorId, Pageable pageable);
 }
@@ -2,30 +2,88 @@ package ml.echelon133.microblog.report.service;
 
 import ml.echelon133.microblog.report.exception.ReportAlreadyCheckedException;
 import ml.echelon133.microblog.report.queue.ReportActionPublisher;
+import ml.echelon133.microblog.report.repository.ReportGroupRepository;
 import ml.echelon133.microblog.report.repository.ReportRepository;
 import ml.echelon133.microblog.shared.exception.ResourceNotFoundException;
+import ml.echelon133.microblog.shared.report.AuthorTakedownDto;
 import ml.echelon133.microblog.shared.report.Report;
 import ml.echelon133.microblog.shared.report.ReportActionDto;
+import ml.echelon133.microblog.shared.report.ReportCreationDto;
+import ml.echelon133.microblog.shared.report.ReportDecisionsDto;
 import ml.echelon133.microblog.shared.report.ReportDto;
+import ml.echelon133.microblog.shared.report.ReportGroup;
+import ml.echelon133.microblog.shared.report.ReportGroupDto;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.transaction.Transactional;
-import java.util.UUID;
+import java.util.*;
 
 @Service
 @Transactional
 public class ReportService {
 
+    /**
+     * How many reports can be checked with a single bulk request.
+     */
+    public static final int MAX_REPORTS_PER_BULK_CHECK = 500;
+
     private ReportRepository reportRepository;
+    private ReportGroupRepository reportGroupRepository;
     private ReportActionPublisher reportActionPublisher;
+    private TransactionTemplate transactionTemplate;
 
     @Autowired
-    public ReportService(ReportRepository reportRepository, ReportActionPublisher reportActionPublisher) {
+    public ReportService(ReportRepository reportRepository,
+                         ReportGroupRepository reportGroupRepository,
+                         ReportActionPublisher reportActionPublisher,
+                         PlatformTransactionManager transactionManager) {
         this.reportRepository = reportRepository;
+        this.reportGroupRepository = reportGroupRepository;
         this.reportActionPublisher = reportActionPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Saves a new report and counts it in the group of reports of the reported post. The group is created
+     * when the post is reported for the first time, and it holds the snapshot of the post's content from that moment.
+     *
+     * Creation of the group can fail if another report of the same post creates it concurrently,
+     * in which case the whole operation can be safely retried.
+     *
+     * @param dto report which had been published by the post service
+     */
+    public void createReport(ReportCreationDto dto) {
+        var reason = dto.getReason();
+        var report = reportRepository.save(
+                new Report(reason, dto.getContext(), dto.getReportedPost(), dto.getReportingUser())
+        );
+
+        var updatedGroups = reportGroupRepository.countReport(
+                dto.getReportedPost(),
+                flag(reason, Report.Reason.SPAM),
+                flag(reason, Report.Reason.HARASSMENT),
+                flag(reason, Report.Reason.IMPERSONATION),
+                flag(reason, Report.Reason.DISTURBING_CONTENT),
+                report.getDateCreated()
+        );
+        if (updatedGroups == 0) {
+            var group = new ReportGroup(dto.getReportedPost(), dto.getReportedPostAuthor(), dto.getReportedPostContent());
+            group.setPendingReports(1);
+            group.setSpamReports(flag(reason, Report.Reason.SPAM));
+            group.setHarassmentReports(flag(reason, Report.Reason.HARASSMENT));
+            group.setImpersonationReports(flag(reason, Report.Reason.IMPERSONATION));
+            group.setDisturbingContentReports(flag(reason, Report.Reason.DISTURBING_CONTENT));
+            group.setLastReportedAt(report.getDateCreated());
+            reportGroupRepository.saveAndFlush(group);
+        }
     }
 
     /**
@@ -44,7 +102,7 @@ public class ReportService {
      * results in deletion of the reported post. Rejection of a report does not impact the reported post in any way.
      *
      * When a decision regarding a report is taken, report's {@code checked} flag is set and the report cannot be
-     * evaluated again.
+     * evaluated again. Deletion of the post is only requested once the decision is committed.
      *
      * @param reportId id of the report which is being checked
      * @param accept flag which decides whether the report will be accepted or rejected
@@ -63,12 +121,232 @@ public class ReportService {
 
         if (accept) {
             foundReport.setAccepted(true);
-            reportActionPublisher.publishReportAction(new ReportActionDto(
-                    foundReport.getReportedPost(), foundReport.getReason()
-            ));
+            var action = new ReportActionDto(foundReport.getReportedPost(), foundReport.getReason());
+            afterCommit(() -> reportActionPublisher.publishReportAction(action));
         }
 
         foundReport.setChecked(true);
         reportRepository.save(foundReport);
+
+        var reason = foundReport.getReason();
+        reportGroupRepository.uncountReports(
+                foundReport.getReportedPost(),
+                1,
+                flag(reason, Report.Reason.SPAM),
+                flag(reason, Report.Reason.HARASSMENT),
+                flag(reason, Report.Reason.IMPERSONATION),
+                flag(reason, Report.Reason.DISTURBING_CONTENT)
+        );
+    }
+
+    /**
+     * Accepts and rejects multiple reports at once. Reports are marked with one statement per decision,
+     * and posts reported by accepted reports are deleted with a single message, which contains
+     * one report-action per post, and which is only published once the decisions are committed.
+     *
+     * Reports which do not exist or which had already been checked are skipped.
+     *
+     * @param dto ids of reports to accept and ids of reports to reject
+     * @return how many reports have actually been accepted and rejected
+     * @throws IllegalArgumentException thrown when there are too many reports, some id is null, or the same report
+     * is both accepted and rejected
+     */
+    public Map<String, Integer> checkReports(ReportDecisionsDto dto) {
+        var accepted = toIdSet(dto.getAccepted());
+        var rejected = toIdSet(dto.getRejected());
+
+        if (accepted.size() + rejected.size() > MAX_REPORTS_PER_BULK_CHECK) {
+            throw new IllegalArgumentException(
+                    String.format("at most %d reports can be checked at once", MAX_REPORTS_PER_BULK_CHECK)
+            );
+        }
+        if (!Collections.disjoint(accepted, rejected)) {
+            throw new IllegalArgumentException("reports cannot be both accepted and rejected");
+        }
+
+        var allIds = new HashSet<>(accepted);
+        allIds.addAll(rejected);
+        if (allIds.isEmpty()) {
+            return Map.of("accepted", 0, "rejected", 0);
+        }
+        var uncheckedReports = reportRepository.findUncheckedForUpdate(allIds);
+
+        var acceptedCount = accepted.isEmpty() ? 0 : reportRepository.checkReports(accepted, true);
+        var rejectedCount = rejected.isEmpty() ? 0 : reportRepository.checkReports(rejected, false);
+
+        // checked reports are removed from counters of their groups with one statement per post
+        var actions = new ArrayList<ReportActionDto>();
+        groupByPost(uncheckedReports).forEach((reportedPost, reports) -> {
+            uncountReportsOfPost(reportedPost, reports);
+            // a post reported multiple times is only deleted once
+            reports.stream()
+                    .filter((report) -> accepted.contains(report.getId()))
+                    .findFirst()
+                    .ifPresent((report) -> actions.add(new ReportActionDto(reportedPost, report.getReason())));
+        });
+
+        if (!actions.isEmpty()) {
+            afterCommit(() -> reportActionPublisher.publishReportActions(actions));
+        }
+        return Map.of("accepted", acceptedCount, "rejected", rejectedCount);
+    }
+
+    /**
+     * Finds a {@link Page} of the moderation queue, i.e. groups of reports of posts which have unchecked reports.
+     * Posts with the most unchecked reports come first, then the most recently reported ones.
+     *
+     * @param pageable information about the wanted page
+     * @return a {@link Page} of report groups
+     */
+    public Page<ReportGroupDto> findModerationQueue(Pageable pageable) {
+        return reportGroupRepository.findModerationQueue(pageable);
+    }
+
+    /**
+     * Accepts or rejects all unchecked reports of a post at once, based on the {@code accept} flag. All reports
+     * are marked with a single statement, and accepting them results in a single deletion of the reported post,
+     * no matter how many reports there were (requested once the decision is committed).
+     *
+     * Only the reports which have been examined are removed from the counters of the group, so reports which
+     * arrive while the group is being checked stay in the moderation queue.
+     *
+     * @param reportedPost id of the post whose reports are being checked
+     * @param accept flag which decides whether the reports will be accepted or rejected
+     * @throws ResourceNotFoundException thrown when the post has never been reported
+     * @throws ReportAlreadyCheckedException thrown when all reports of the post have already been checked
+     */
+    public void checkReportGroup(UUID reportedPost, boolean accept)
+            throws ResourceNotFoundException, ReportAlreadyCheckedException {
+
+        var foundGroup = reportGroupRepository.findByReportedPost(reportedPost)
+                .orElseThrow(() -> new ResourceNotFoundException(ReportGroup.class, reportedPost));
+
+        var uncheckedReports = reportRepository.findUncheckedOfPostForUpdate(reportedPost);
+        if (uncheckedReports.isEmpty()) {
+            throw new ReportAlreadyCheckedException();
+        }
+        reportRepository.checkReports(ids(uncheckedReports), accept);
+        uncountReportsOfPost(reportedPost, uncheckedReports);
+
+        if (accept) {
+            var action = new ReportActionDto(reportedPost, mostCommonReason(foundGroup));
+            afterCommit(() -> reportActionPublisher.publishReportAction(action));
+        }
+    }
+
+    /**
+     * Deletes all posts of an author, e.g. a spammer whose posts keep getting reported. Unchecked reports of
+     * their posts are accepted and removed from the moderation queue, and the post service is asked to delete
+     * all posts of the author with a single message, no matter how many posts there are.
+     *
+     * Only the reports which have been examined are removed from the counters of groups, so reports which
+     * arrive during the takedown stay in the moderation queue.
+     *
+     * Reports are locked and accepted in chunks of {@link #MAX_REPORTS_PER_BULK_CHECK}, and every chunk is accepted
+     * in its own short transaction, so that the takedown of a prolific spammer never locks all of their reports
+     * at once. The takedown is published only after all chunks have been committed. If any chunk fails, posts
+     * are not deleted, and the whole takedown can be safely retried.
+     *
+     * @param authorId id of the author whose posts are taken down
+     * @return how many unchecked reports have been accepted
+     */
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public int takeDownAuthor(UUID authorId) {
+        var acceptedReports = 0;
+        while (true) {
+            var accepted = transactionTemplate.execute(status -> acceptReportsOfAuthor(authorId));
+            if (accepted == null || accepted == 0) {
+                break;
+            }
+            acceptedReports += accepted;
+        }
+        reportActionPublisher.publishAuthorTakedown(new AuthorTakedownDto(authorId));
+        return acceptedReports;
+    }
+
+    private int acceptReportsOfAuthor(UUID authorId) {
+        var uncheckedReports = reportRepository.findUncheckedOfAuthorForUpdate(
+                authorId, PageRequest.ofSize(MAX_REPORTS_PER_BULK_CHECK)
+        );
+        if (uncheckedReports.isEmpty()) {
+            return 0;
+        }
+        var accepted = reportRepository.checkReports(ids(uncheckedReports), true);
+        groupByPost(uncheckedReports).forEach(this::uncountReportsOfPost);
+        return accepted;
+    }
+
+    private void uncountReportsOfPost(UUID reportedPost, List<Report> reports) {
+        var counts = new EnumMap<Report.Reason, Integer>(Report.Reason.class);
+        for (var report : reports) {
+            counts.merge(report.getReason(), 1, Integer::sum);
+        }
+        reportGroupRepository.uncountReports(
+                reportedPost,
+                reports.size(),
+                counts.getOrDefault(Report.Reason.SPAM, 0),
+                counts.getOrDefault(Report.Reason.HARASSMENT, 0),
+                counts.getOrDefault(Report.Reason.IMPERSONATION, 0),
+                counts.getOrDefault(Report.Reason.DISTURBING_CONTENT, 0)
+        );
+    }
+
+    /**
+     * Runs {@code action} after the current transaction commits, or immediately if there is no transaction.
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static Map<UUID, List<Report>> groupByPost(List<Report> reports) {
+        var reportsByPost = new HashMap<UUID, List<Report>>();
+        for (var report : reports) {
+            reportsByPost.computeIfAbsent(report.getReportedPost(), (k) -> new ArrayList<>()).add(report);
+        }
+        return reportsByPost;
+    }
+
+    private static Set<UUID> toIdSet(List<UUID> ids) throws IllegalArgumentException {
+        if (ids == null) {
+            return Set.of();
+        }
+        if (ids.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("ids of checked reports cannot be null");
+        }
+        return Set.copyOf(ids);
+    }
+
+    private static List<UUID> ids(List<Report> reports) {
+        return reports.stream().map(Report::getId).toList();
+    }
+
+    private static int flag(Report.Reason reason, Report.Reason expected) {
+        return reason == expected ? 1 : 0;
+    }
+
+    private static Report.Reason mostCommonReason(ReportGroup group) {
+        var reason = Report.Reason.SPAM;
+        var count = group.getSpamReports();
+        if (group.getHarassmentReports() > count) {
+            reason = Report.Reason.HARASSMENT;
+            count = group.getHarassmentReports();
+        }
+        if (group.getImpersonationReports() > count) {
+            reason = Report.Reason.IMPERSONATION;
+            count = group.getImpersonationReports();
+        }
+        if (group.getDisturbingContentReports() > count) {
+            reason = Report.Reason.DISTURBING_CONTENT;
+        }
+        return reason;
     }
 }
@@ -5,6 +5,8 @@ import ml.echelon133.microblog.report.service.ReportService;
 import ml.echelon133.microblog.shared.exception.ResourceNotFoundException;
 import ml.echelon133.microblog.shared.report.Report;
 import ml.echelon133.microblog.shared.report.ReportDto;
+import ml.echelon133.microblog.shared.report.ReportGroup;
+import ml.echelon133.microblog.shared.report.ReportGroupDto;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -21,14 +23,15 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static ml.echelon133.microblog.shared.auth.test.OAuth2RequestPostProcessor.customBearerToken;
 import static org.hamcrest.Matchers.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.doThrow;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -193,4 +196,130 @@ public class ReportControllerTests {
                 )
                 .andExpect(status().isOk());
     }
+
+    @Test
+    @DisplayName("getModerationQueue sets default page size and returns ok")
+    public void getModerationQueue_RequestParamsNotProvided_SetsDefaultValuesAndReturnsOk() throws Exception {
+        var expectedPageSize = 20;
+        var dto = new ReportGroupDto(UUID.randomUUID(), UUID.randomUUID(), "test content", 5, 1, 2, 0, 2, new Date());
+
+        when(reportService.findModerationQueue(
+                argThat(a -> a.getPageSize() == expectedPageSize)
+        )).thenReturn(new PageImpl<>(List.of(dto), Pageable.ofSize(expectedPageSize), 1));
+
+        mvc.perform(
+                        get("/api/reports/groups")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size", is(expectedPageSize)))
+                .andExpect(jsonPath("$.totalElements", is(1)))
+                .andExpect(jsonPath("$.content[0].reportedPostId", is(dto.getReportedPostId().toString())))
+                .andExpect(jsonPath("$.content[0].reportedPostAuthorId", is(dto.getReportedPostAuthorId().toString())))
+                .andExpect(jsonPath("$.content[0].reportedPostContent", is(dto.getReportedPostContent())))
+                .andExpect(jsonPath("$.content[0].pendingReports", is(5)))
+                .andExpect(jsonPath("$.content[0].spamReports", is(1)))
+                .andExpect(jsonPath("$.content[0].harassmentReports", is(2)))
+                .andExpect(jsonPath("$.content[0].impersonationReports", is(0)))
+                .andExpect(jsonPath("$.content[0].disturbingContentReports", is(2)))
+                .andExpect(jsonPath("$.content[0].lastReportedAt", is(dto.getLastReportedAt().toInstant().toEpochMilli())));
+    }
+
+    @Test
+    @DisplayName("checkReportGroup returns error when the post has never been reported")
+    public void checkReportGroup_GroupNotFound_ReturnsExpectedError() throws Exception {
+        var postId = UUID.randomUUID();
+
+        doThrow(new ResourceNotFoundException(ReportGroup.class, postId))
+                .when(reportService).checkReportGroup(postId, true);
+
+        mvc.perform(
+                        post("/api/reports/groups/" + postId)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                                .with(customBearerToken())
+                                .param("accept", "true")
+                )
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.messages", hasSize(1)))
+                .andExpect(jsonPath("$.messages", hasItem(
+                        String.format("reportgroup %s could not be found", postId))
+                ));
+    }
+
+    @Test
+    @DisplayName("checkReportGroup returns ok when reports are checked")
+    public void checkReportGroup_ReportsChecked_ReturnsOk() throws Exception {
+        var postId = UUID.randomUUID();
+
+        mvc.perform(
+                        post("/api/reports/groups/" + postId)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                                .with(customBearerToken())
+                                .param("accept", "false")
+                )
+                .andExpect(status().isOk());
+
+        verify(reportService, times(1)).checkReportGroup(postId, false);
+    }
+
+    @Test
+    @DisplayName("checkReports returns counts of checked reports")
+    public void checkReports_DecisionsProvided_ReturnsCounts() throws Exception {
+        var acceptedId = UUID.randomUUID();
+        var rejectedId = UUID.randomUUID();
+
+        when(reportService.checkReports(argThat(a ->
+                a.getAccepted().equals(List.of(acceptedId)) && a.getRejected().equals(List.of(rejectedId))
+        ))).thenReturn(Map.of("accepted", 1, "rejected", 0));
+
+        mvc.perform(
+                        post("/api/reports/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                                .with(customBearerToken())
+                                .content(String.format(
+                                        "{\"accepted\": [\"%s\"], \"rejected\": [\"%s\"]}", acceptedId, rejectedId
+                                ))
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted", is(1)))
+                .andExpect(jsonPath("$.rejected", is(0)));
+    }
+
+    @Test
+    @DisplayName("checkReports returns error when too many reports are checked at once")
+    public void checkReports_TooManyReports_ReturnsExpectedError() throws Exception {
+        when(reportService.checkReports(any()))
+                .thenThrow(new IllegalArgumentException("at most 500 reports can be checked at once"));
+
+        mvc.perform(
+                        post("/api/reports/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                                .with(customBearerToken())
+                                .content("{\"accepted\": []}")
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.messages", hasItem("at most 500 reports can be checked at once")));
+    }
+
+    @Test
+    @DisplayName("takeDownAuthor returns the number of accepted reports")
+    public void takeDownAuthor_AuthorProvided_ReturnsOk() throws Exception {
+        var authorId = UUID.randomUUID();
+
+        when(reportService.takeDownAuthor(authorId)).thenReturn(3);
+
+        mvc.perform(
+                        post("/api/reports/authors/" + authorId + "/takedown")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                                .with(customBearerToken())
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted", is(3)));
+    }
 }
@@ -0,0 +1,119 @@
+package ml.echelon133.microblog.report.repository;
+
+import ml.echelon133.microblog.shared.report.ReportGroup;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+    Disable kubernetes during tests to make local execution of tests possible.
+    If kubernetes is not disabled, tests won't execute at all because Spring will
+    fail to configure kubernetes when run outside it.
+ */
+@TestPropertySource(properties = "spring.cloud.kubernetes.enabled=false")
+@DataJpaTest
+@DisplayName("Tests of ReportGroupRepository")
+public class ReportGroupRepositoryTests {
+
+    @Autowired
+    private ReportGroupRepository reportGroupRepository;
+
+    private ReportGroup createGroup(int pendingReports, Date lastReportedAt) {
+        var group = new ReportGroup(UUID.randomUUID(), UUID.randomUUID(), "test content");
+        group.setPendingReports(pendingReports);
+        group.setSpamReports(pendingReports);
+        group.setLastReportedAt(lastReportedAt);
+        return reportGroupRepository.save(group);
+    }
+
+    @Test
+    @DisplayName("Custom findModerationQueue orders groups by the number of pending reports, then by recency")
+    public void findModerationQueue_MultipleGroups_ReturnsGroupsInExpectedOrder() {
+        // given
+        var olderGroup = createGroup(2, new Date(1000));
+        var newerGroup = createGroup(2, new Date(2000));
+        var biggestGroup = createGroup(10, new Date(0));
+        createGroup(0, new Date(3000));
+
+        // when
+        var page = reportGroupRepository.findModerationQueue(Pageable.unpaged());
+
+        // then
+        assertEquals(3, page.getTotalElements());
+        var content = page.getContent();
+        assertEquals(biggestGroup.getReportedPost(), content.get(0).getReportedPostId());
+        assertEquals(newerGroup.getReportedPost(), content.get(1).getReportedPostId());
+        assertEquals(olderGroup.getReportedPost(), content.get(2).getReportedPostId());
+        assertEquals("test content", content.get(0).getReportedPostContent());
+    }
+
+    @Test
+    @DisplayName("Custom countReport returns 0 when the post does not have a group")
+    public void countReport_GroupDoesNotExist_ReturnsZero() {
+        // when
+        var updated = reportGroupRepository.countReport(UUID.randomUUID(), 1, 0, 0, 0, new Date());
+
+        // then
+        assertEquals(0, updated);
+    }
+
+    @Test
+    @DisplayName("Custom countReport increments counters and updates the date of the last report")
+    public void countReport_GroupExists_IncrementsCounters() {
+        var reportedAt = new Date(5000);
+
+        // given
+        var group = createGroup(1, new Date(1000));
+
+        // when
+        var updated = reportGroupRepository.countReport(group.getReportedPost(), 0, 1, 0, 0, reportedAt);
+
+        // then
+        assertEquals(1, updated);
+        var found = reportGroupRepository.findByReportedPost(group.getReportedPost()).orElseThrow();
+        assertEquals(2, found.getPendingReports());
+        assertEquals(1, found.getSpamReports());
+        assertEquals(1, found.getHarassmentReports());
+        assertEquals(reportedAt.getTime(), found.getLastReportedAt().getTime());
+    }
+
+    @Test
+    @DisplayName("Custom uncountReports decrements counters")
+    public void uncountReports_GroupExists_DecrementsCounters() {
+        // given
+        var group = createGroup(3, new Date());
+
+        // when
+        reportGroupRepository.uncountReports(group.getReportedPost(), 2, 2, 0, 0, 0);
+
+        // then
+        var found = reportGroupRepository.findByReportedPost(group.getReportedPost()).orElseThrow();
+        assertEquals(1, found.getPendingReports());
+        assertEquals(1, found.getSpamReports());
+    }
+
+    @Test
+    @DisplayName("Custom uncountReports clamps counters at zero when they have drifted")
+    public void uncountReports_CountersLowerThanUncounted_ClampsAtZero() {
+        // given
+        var group = createGroup(1, new Date());
+
+        // when
+        reportGroupRepository.uncountReports(group.getReportedPost(), 3, 2, 1, 0, 0);
+
+        // then
+        var found = reportGroupRepository.findByReportedPost(group.getReportedPost()).orElseThrow();
+        assertEquals(0, found.getPendingReports());
+        assertEquals(0, found.getSpamReports());
+        assertEquals(0, found.getHarassmentReports());
+        assertEquals(0, reportGroupRepository.findModerationQueue(Pageable.unpaged()).getTotalElements());
+    }
+}
@@ -1,16 +1,21 @@
 package ml.echelon133.microblog.report.repository;
 
 import ml.echelon133.microblog.shared.report.Report;
+import ml.echelon133.microblog.shared.report.ReportGroup;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.TestPropertySource;
 
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 /*
     Disable kubernetes during tests to make local execution of tests possible.
@@ -25,6 +30,9 @@ public class ReportRepositoryTests {
     @Autowired
     private ReportRepository reportRepository;
 
+    @Autowired
+    private ReportGroupRepository reportGroupRepository;
+
     @Test
     @DisplayName("Custom findReports returns an empty page when there aren't any reports")
     public void findReports_NoReports_ReturnsEmptyPage() {
@@ -78,4 +86,108 @@ public class ReportRepositoryTests {
         var r1ReceivedId = page.getContent().get(0).getReportId();
         assertEquals(report1.getId(), r1ReceivedId);
     }
+
+    @Test
+    @DisplayName("Custom findUncheckedOfPostForUpdate only returns unchecked reports of the specified post")
+    public void findUncheckedOfPostForUpdate_ReportsOfMultiplePosts_ReturnsUncheckedReportsOfPost() {
+        var reportedPost = UUID.randomUUID();
+
+        // given
+        var report1 = reportRepository.save(new Report(Report.Reason.SPAM, "", reportedPost, UUID.randomUUID()));
+        var report2 = reportRepository.save(new Report(Report.Reason.HARASSMENT, "", reportedPost, UUID.randomUUID()));
+        var checkedReport = new Report(Report.Reason.SPAM, "", reportedPost, UUID.randomUUID());
+        checkedReport.setChecked(true);
+        reportRepository.save(checkedReport);
+        reportRepository.save(new Report(Report.Reason.SPAM, "", UUID.randomUUID(), UUID.randomUUID()));
+
+        // when
+        var found = reportRepository.findUncheckedOfPostForUpdate(reportedPost);
+
+        // then
+        assertEquals(Set.of(report1.getId(), report2.getId()), found.stream().map(Report::getId).collect(Collectors.toSet()));
+    }
+
+    @Test
+    @DisplayName("Custom findUncheckedForUpdate only returns unchecked reports with given ids")
+    public void findUncheckedForUpdate_MixedReports_ReturnsUncheckedReports() {
+        // given
+        var report1 = reportRepository.save(new Report(Report.Reason.SPAM, "", UUID.randomUUID(), UUID.randomUUID()));
+        var checkedReport = new Report(Report.Reason.SPAM, "", UUID.randomUUID(), UUID.randomUUID());
+        checkedReport.setChecked(true);
+        reportRepository.save(checkedReport);
+        reportRepository.save(new Report(Report.Reason.SPAM, "", UUID.randomUUID(), UUID.randomUUID()));
+
+        // when
+        var found = reportRepository.findUncheckedForUpdate(List.of(report1.getId(), checkedReport.getId()));
+
+        // then
+        assertEquals(1, found.size());
+        assertEquals(report1.getId(), found.get(0).getId());
+    }
+
+    @Test
+    @DisplayName("Custom checkReports only checks unchecked reports with given ids")
+    public void checkReports_MixedReports_OnlyChecksUncheckedReports() {
+        // given
+        var report1 = reportRepository.save(new Report(Report.Reason.SPAM, "", UUID.randomUUID(), UUID.randomUUID()));
+        var report2 = reportRepository.save(new Report(Report.Reason.SPAM, "", UUID.randomUUID(), UUID.randomUUID()));
+        var checkedReport = new Report(Report.Reason.SPAM, "", UUID.randomUUID(), UUID.randomUUID());
+        checkedReport.setChecked(true);
+        reportRepository.save(checkedReport);
+        var otherReport = reportRepository.save(new Report(Report.Reason.SPAM, "", UUID.randomUUID(), UUID.randomUUID()));
+
+        // when
+        var checked = reportRepository.checkReports(
+                List.of(report1.getId(), report2.getId(), checkedReport.getId()), false
+        );
+
+        // then
+        assertEquals(2, checked);
+        assertTrue(reportRepository.findById(report1.getId()).orElseThrow().isChecked());
+        assertFalse(reportRepository.findById(report2.getId()).orElseThrow().isAccepted());
+        assertFalse(reportRepository.findById(otherReport.getId()).orElseThrow().isChecked());
+    }
+
+    @Test
+    @DisplayName("Custom findUncheckedOfAuthorForUpdate only returns unchecked reports of posts of the author")
+    public void findUncheckedOfAuthorForUpdate_MixedReports_ReturnsReportsOfAuthor() {
+        var authorId = UUID.randomUUID();
+        var postOfAuthor = UUID.randomUUID();
+        var otherPost = UUID.randomUUID();
+
+        // given
+        reportGroupRepository.save(new ReportGroup(postOfAuthor, authorId, ""));
+        reportGroupRepository.save(new ReportGroup(otherPost, UUID.randomUUID(), ""));
+        var report1 = reportRepository.save(new Report(Report.Reason.SPAM, "", postOfAuthor, UUID.randomUUID()));
+        var report2 = reportRepository.save(new Report(Report.Reason.SPAM, "", postOfAuthor, UUID.randomUUID()));
+        var checkedReport = new Report(Report.Reason.SPAM, "", postOfAuthor, UUID.randomUUID());
+        checkedReport.setChecked(true);
+        reportRepository.save(checkedReport);
+        reportRepository.save(new Report(Report.Reason.SPAM, "", otherPost, UUID.randomUUID()));
+
+        // when
+        var found = reportRepository.findUncheckedOfAuthorForUpdate(authorId, PageRequest.ofSize(10));
+
+        // then
+        assertEquals(Set.of(report1.getId(), report2.getId()), found.stream().map(Report::getId).collect(Collectors.toSet()));
+    }
+
+    @Test
+    @DisplayName("Custom findUncheckedOfAuthorForUpdate returns at most a chunk of reports")
+    public void findUncheckedOfAuthorForUpdate_MoreReportsThanChunk_ReturnsChunk() {
+        var authorId = UUID.randomUUID();
+        var postOfAuthor = UUID.randomUUID();
+
+        // given
+        reportGroupRepository.save(new ReportGroup(postOfAuthor, authorId, ""));
+        for (var i = 0; i < 3; i++) {
+            reportRepository.save(new Report(Report.Reason.SPAM, "", postOfAuthor, UUID.randomUUID()));
+        }
+
+        // when
+        var found = reportRepository.findUncheckedOfAuthorForUpdate(authorId, PageRequest.ofSize(2));
+
+        // then
+        assertEquals(2, found.size());
+    }
 }
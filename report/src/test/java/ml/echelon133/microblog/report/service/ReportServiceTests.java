@@ -2,9 +2,13 @@ package ml.echelon133.microblog.report.service;
 
 import ml.echelon133.microblog.report.exception.ReportAlreadyCheckedException;
 import ml.echelon133.microblog.report.queue.ReportActionPublisher;
+import ml.echelon133.microblog.report.repository.ReportGroupRepository;
 import ml.echelon133.microblog.report.repository.ReportRepository;
 import ml.echelon133.microblog.shared.exception.ResourceNotFoundException;
 import ml.echelon133.microblog.shared.report.Report;
+import ml.echelon133.microblog.shared.report.ReportCreationDto;
+import ml.echelon133.microblog.shared.report.ReportDecisionsDto;
+import ml.echelon133.microblog.shared.report.ReportGroup;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,14 +16,22 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -30,12 +42,34 @@ public class ReportServiceTests {
     @Mock
     private ReportRepository reportRepository;
 
+    @Mock
+    private ReportGroupRepository reportGroupRepository;
+
     @Mock
     private ReportActionPublisher reportActionPublisher;
 
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private ReportService reportService;
 
+    // runs the action as if it was called within a transaction, which then commits or rolls back
+    private static void runInTransaction(Runnable action, boolean commit) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            action.run();
+            var synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            if (commit) {
+                synchronizations.forEach(TransactionSynchronization::afterCommit);
+            }
+            synchronizations.forEach(sync -> sync.afterCompletion(commit ?
+                    TransactionSynchronization.STATUS_COMMITTED : TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
     @Test
     @DisplayName("findReports correctly calls repository")
     public void findReports_ArgumentsProvided_CorrectlyCallsRepository() {
@@ -160,4 +194,398 @@ public class ReportServiceTests {
                      a.getReason().equals(report.getReason())
         ));
     }
+
+    @Test
+    @DisplayName("checkReport removes the checked report from counters of its group")
+    public void checkReport_ReportChecked_UncountsReportInGroup() throws Exception {
+        var reportId = UUID.randomUUID();
+        var report = new Report(Report.Reason.HARASSMENT, "", UUID.randomUUID(), UUID.randomUUID());
+
+        // given
+        given(reportRepository.findById(reportId)).willReturn(Optional.of(report));
+
+        // when
+        reportService.checkReport(reportId, false);
+
+        // then
+        verify(reportGroupRepository, times(1)).uncountReports(report.getReportedPost(), 1, 0, 1, 0, 0);
+    }
+
+    @Test
+    @DisplayName("createReport counts the report in an existing group")
+    public void createReport_GroupExists_CountsReportInGroup() {
+        var dto = new ReportCreationDto(Report.Reason.IMPERSONATION, "", UUID.randomUUID(), UUID.randomUUID(),
+                UUID.randomUUID(), "test content");
+        var reportedAt = new Date();
+
+        // given
+        given(reportRepository.save(any())).willAnswer(a -> {
+            Report report = a.getArgument(0);
+            report.setDateCreated(reportedAt);
+            return report;
+        });
+        given(reportGroupRepository.countReport(dto.getReportedPost(), 0, 0, 1, 0, reportedAt)).willReturn(1);
+
+        // when
+        reportService.createReport(dto);
+
+        // then
+        verify(reportRepository, times(1)).save(argThat(a ->
+                a.getReason().equals(dto.getReason()) &&
+                a.getReportedPost().equals(dto.getReportedPost()) &&
+                a.getReportingUser().equals(dto.getReportingUser())
+        ));
+        verify(reportGroupRepository, times(0)).saveAndFlush(any());
+    }
+
+    @Test
+    @DisplayName("createReport creates a group when the post is reported for the first time")
+    public void createReport_GroupDoesNotExist_CreatesGroup() {
+        var dto = new ReportCreationDto(Report.Reason.SPAM, "", UUID.randomUUID(), UUID.randomUUID(),
+                UUID.randomUUID(), "test content");
+
+        // given
+        given(reportRepository.save(any())).willAnswer(a -> a.getArgument(0));
+        given(reportGroupRepository.countReport(eq(dto.getReportedPost()), eq(1), eq(0), eq(0), eq(0), any()))
+                .willReturn(0);
+
+        // when
+        reportService.createReport(dto);
+
+        // then
+        verify(reportGroupRepository, times(1)).saveAndFlush(argThat(a ->
+                a.getReportedPost().equals(dto.getReportedPost()) &&
+                a.getReportedPostAuthor().equals(dto.getReportedPostAuthor()) &&
+                a.getReportedPostContent().equals(dto.getReportedPostContent()) &&
+                a.getPendingReports() == 1 &&
+                a.getSpamReports() == 1 &&
+                a.getHarassmentReports() == 0
+        ));
+    }
+
+    @Test
+    @DisplayName("findModerationQueue correctly calls repository")
+    public void findModerationQueue_ArgumentsProvided_CorrectlyCallsRepository() {
+        // when
+        reportService.findModerationQueue(Pageable.ofSize(15));
+
+        // then
+        verify(reportGroupRepository, times(1)).findModerationQueue(argThat(a -> a.getPageSize() == 15));
+    }
+
+    @Test
+    @DisplayName("checkReportGroup throws a ResourceNotFoundException when the post has never been reported")
+    public void checkReportGroup_GroupNotFound_ThrowsException() {
+        var postId = UUID.randomUUID();
+
+        // given
+        given(reportGroupRepository.findByReportedPost(postId)).willReturn(Optional.empty());
+
+        // when
+        String message = assertThrows(ResourceNotFoundException.class, () ->
+                reportService.checkReportGroup(postId, true)
+        ).getMessage();
+
+        // then
+        assertEquals(String.format("reportgroup %s could not be found", postId), message);
+    }
+
+    @Test
+    @DisplayName("checkReportGroup throws a ReportAlreadyCheckedException when all reports are checked")
+    public void checkReportGroup_NoUncheckedReports_ThrowsException() {
+        var postId = UUID.randomUUID();
+
+        // given
+        given(reportGroupRepository.findByReportedPost(postId))
+                .willReturn(Optional.of(new ReportGroup(postId, UUID.randomUUID(), "")));
+        given(reportRepository.findUncheckedOfPostForUpdate(postId)).willReturn(List.of());
+
+        // when
+        String message = assertThrows(ReportAlreadyCheckedException.class, () ->
+                reportService.checkReportGroup(postId, true)
+        ).getMessage();
+
+        // then
+        assertEquals("report has already been checked", message);
+        verify(reportActionPublisher, times(0)).publishReportAction(any());
+    }
+
+    @Test
+    @DisplayName("checkReportGroup rejecting reports uncounts examined reports and does not publish a report action")
+    public void checkReportGroup_RejectReports_DoesNotPublishReportAction() throws Exception {
+        var postId = UUID.randomUUID();
+        var report1 = new Report(Report.Reason.SPAM, "", postId, UUID.randomUUID());
+        var report2 = new Report(Report.Reason.IMPERSONATION, "", postId, UUID.randomUUID());
+
+        // given
+        given(reportGroupRepository.findByReportedPost(postId))
+                .willReturn(Optional.of(new ReportGroup(postId, UUID.randomUUID(), "")));
+        given(reportRepository.findUncheckedOfPostForUpdate(postId)).willReturn(List.of(report1, report2));
+
+        // when
+        reportService.checkReportGroup(postId, false);
+
+        // then
+        verify(reportRepository, times(1)).checkReports(List.of(report1.getId(), report2.getId()), false);
+        // reports which arrive later are not examined, so counters are decremented instead of being reset
+        verify(reportGroupRepository, times(1)).uncountReports(postId, 2, 1, 0, 1, 0);
+        verify(reportActionPublisher, times(0)).publishReportAction(any());
+    }
+
+    @Test
+    @DisplayName("checkReportGroup does not publish a report action when the transaction rolls back")
+    public void checkReportGroup_TransactionRolledBack_DoesNotPublish() {
+        var postId = UUID.randomUUID();
+
+        // given
+        given(reportGroupRepository.findByReportedPost(postId))
+                .willReturn(Optional.of(new ReportGroup(postId, UUID.randomUUID(), "")));
+        given(reportRepository.findUncheckedOfPostForUpdate(postId)).willReturn(
+                List.of(new Report(Report.Reason.SPAM, "", postId, UUID.randomUUID()))
+        );
+
+        // when
+        runInTransaction(() -> {
+            try {
+                reportService.checkReportGroup(postId, true);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }, false);
+
+        // then
+        verify(reportActionPublisher, never()).publishReportAction(any());
+    }
+
+    @Test
+    @DisplayName("checkReportGroup accepting reports publishes a single report action with the most common reason")
+    public void checkReportGroup_AcceptReports_PublishesSingleReportAction() throws Exception {
+        var postId = UUID.randomUUID();
+        var group = new ReportGroup(postId, UUID.randomUUID(), "");
+        group.setPendingReports(5);
+        group.setSpamReports(1);
+        group.setDisturbingContentReports(3);
+        group.setHarassmentReports(1);
+
+        // given
+        given(reportGroupRepository.findByReportedPost(postId)).willReturn(Optional.of(group));
+        given(reportRepository.findUncheckedOfPostForUpdate(postId)).willReturn(
+                List.of(new Report(Report.Reason.DISTURBING_CONTENT, "", postId, UUID.randomUUID()))
+        );
+
+        // when
+        reportService.checkReportGroup(postId, true);
+
+        // then
+        verify(reportGroupRepository, times(1)).uncountReports(postId, 1, 0, 0, 0, 1);
+        verify(reportActionPublisher, times(1)).publishReportAction(argThat(
+                a -> a.getPostToDelete().equals(postId) &&
+                     a.getReason().equals(Report.Reason.DISTURBING_CONTENT)
+        ));
+    }
+
+    @Test
+    @DisplayName("checkReports throws an IllegalArgumentException when there are too many reports")
+    public void checkReports_TooManyReports_ThrowsException() {
+        var accepted = new ArrayList<UUID>();
+        for (int i = 0; i <= ReportService.MAX_REPORTS_PER_BULK_CHECK; i++) {
+            accepted.add(UUID.randomUUID());
+        }
+
+        // when
+        String message = assertThrows(IllegalArgumentException.class, () ->
+                reportService.checkReports(new ReportDecisionsDto(accepted, List.of()))
+        ).getMessage();
+
+        // then
+        assertEquals("at most 500 reports can be checked at once", message);
+    }
+
+    @Test
+    @DisplayName("checkReports throws an IllegalArgumentException when a report is both accepted and rejected")
+    public void checkReports_ConflictingDecisions_ThrowsException() {
+        var reportId = UUID.randomUUID();
+
+        // when
+        String message = assertThrows(IllegalArgumentException.class, () ->
+                reportService.checkReports(new ReportDecisionsDto(List.of(reportId), List.of(reportId)))
+        ).getMessage();
+
+        // then
+        assertEquals("reports cannot be both accepted and rejected", message);
+    }
+
+    @Test
+    @DisplayName("checkReports throws an IllegalArgumentException when some id is null")
+    public void checkReports_NullId_ThrowsException() {
+        var accepted = new ArrayList<UUID>();
+        accepted.add(UUID.randomUUID());
+        accepted.add(null);
+
+        // when
+        String message = assertThrows(IllegalArgumentException.class, () ->
+                reportService.checkReports(new ReportDecisionsDto(accepted, null))
+        ).getMessage();
+
+        // then
+        assertEquals("ids of checked reports cannot be null", message);
+        verify(reportRepository, never()).findUncheckedForUpdate(any());
+    }
+
+    @Test
+    @DisplayName("checkReports checks reports with set-based updates and publishes a single batch of report actions")
+    public void checkReports_AcceptAndRejectReports_PublishesSingleBatch() {
+        var postId = UUID.randomUUID();
+        var otherPostId = UUID.randomUUID();
+        var accepted1 = new Report(Report.Reason.SPAM, "", postId, UUID.randomUUID());
+        var accepted2 = new Report(Report.Reason.HARASSMENT, "", postId, UUID.randomUUID());
+        var rejected = new Report(Report.Reason.SPAM, "", otherPostId, UUID.randomUUID());
+        var acceptedIds = List.of(accepted1.getId(), accepted2.getId());
+        var rejectedIds = List.of(rejected.getId());
+
+        // given
+        given(reportRepository.findUncheckedForUpdate(any())).willReturn(List.of(accepted1, accepted2, rejected));
+        given(reportRepository.checkReports(Set.copyOf(acceptedIds), true)).willReturn(2);
+        given(reportRepository.checkReports(Set.copyOf(rejectedIds), false)).willReturn(1);
+
+        // when
+        var result = reportService.checkReports(new ReportDecisionsDto(acceptedIds, rejectedIds));
+
+        // then
+        assertEquals(2, result.get("accepted"));
+        assertEquals(1, result.get("rejected"));
+        verify(reportGroupRepository, times(1)).uncountReports(postId, 2, 1, 1, 0, 0);
+        verify(reportGroupRepository, times(1)).uncountReports(otherPostId, 1, 1, 0, 0, 0);
+        verify(reportActionPublisher, times(1)).publishReportActions(argThat(a ->
+                a.size() == 1 && a.get(0).getPostToDelete().equals(postId)
+        ));
+        verify(reportActionPublisher, times(0)).publishReportAction(any());
+    }
+
+    @Test
+    @DisplayName("checkReports publishes report actions only after the transaction commits")
+    public void checkReports_TransactionCommitted_PublishesAfterCommit() {
+        var accepted = new Report(Report.Reason.SPAM, "", UUID.randomUUID(), UUID.randomUUID());
+        var dto = new ReportDecisionsDto(List.of(accepted.getId()), null);
+
+        // given
+        given(reportRepository.findUncheckedForUpdate(any())).willReturn(List.of(accepted));
+        given(reportRepository.checkReports(Set.of(accepted.getId()), true)).willReturn(1);
+
+        // when
+        runInTransaction(() -> {
+            reportService.checkReports(dto);
+            verify(reportActionPublisher, never()).publishReportActions(any());
+        }, true);
+
+        // then
+        verify(reportActionPublisher, times(1)).publishReportActions(argThat(a -> a.size() == 1));
+    }
+
+    @Test
+    @DisplayName("checkReports does not publish report actions when the transaction rolls back")
+    public void checkReports_TransactionRolledBack_DoesNotPublish() {
+        var accepted = new Report(Report.Reason.SPAM, "", UUID.randomUUID(), UUID.randomUUID());
+        var dto = new ReportDecisionsDto(List.of(accepted.getId()), null);
+
+        // given
+        given(reportRepository.findUncheckedForUpdate(any())).willReturn(List.of(accepted));
+        given(reportRepository.checkReports(Set.of(accepted.getId()), true)).willReturn(1);
+
+        // when
+        runInTransaction(() -> reportService.checkReports(dto), false);
+
+        // then
+        verify(reportActionPublisher, never()).publishReportActions(any());
+    }
+
+    @Test
+    @DisplayName("checkReports does not publish anything when reports are only rejected")
+    public void checkReports_OnlyRejectReports_DoesNotPublish() {
+        var rejected = new Report(Report.Reason.SPAM, "", UUID.randomUUID(), UUID.randomUUID());
+
+        // given
+        given(reportRepository.findUncheckedForUpdate(any())).willReturn(List.of(rejected));
+        given(reportRepository.checkReports(Set.of(rejected.getId()), false)).willReturn(1);
+
+        // when
+        var result = reportService.checkReports(new ReportDecisionsDto(null, List.of(rejected.getId())));
+
+        // then
+        assertEquals(0, result.get("accepted"));
+        assertEquals(1, result.get("rejected"));
+        verify(reportRepository, times(0)).checkReports(any(), eq(true));
+        verify(reportActionPublisher, times(0)).publishReportActions(any());
+    }
+
+    @Test
+    @DisplayName("takeDownAuthor accepts reports of the author's posts and publishes a single takedown")
+    public void takeDownAuthor_AuthorProvided_PublishesTakedown() {
+        var authorId = UUID.randomUUID();
+        var postId = UUID.randomUUID();
+        var otherPostId = UUID.randomUUID();
+        var report1 = new Report(Report.Reason.SPAM, "", postId, UUID.randomUUID());
+        var report2 = new Report(Report.Reason.SPAM, "", postId, UUID.randomUUID());
+        var report3 = new Report(Report.Reason.HARASSMENT, "", otherPostId, UUID.randomUUID());
+
+        // given
+        given(reportRepository.findUncheckedOfAuthorForUpdate(eq(authorId), any()))
+                .willReturn(List.of(report1, report2, report3), List.of());
+        given(reportRepository.checkReports(List.of(report1.getId(), report2.getId(), report3.getId()), true))
+                .willReturn(3);
+
+        // when
+        var accepted = reportService.takeDownAuthor(authorId);
+
+        // then
+        assertEquals(3, accepted);
+        verify(reportGroupRepository, times(1)).uncountReports(postId, 2, 2, 0, 0, 0);
+        verify(reportGroupRepository, times(1)).uncountReports(otherPostId, 1, 0, 1, 0, 0);
+        verify(reportActionPublisher, times(1)).publishAuthorTakedown(argThat(a -> a.getAuthorId().equals(authorId)));
+    }
+
+    @Test
+    @DisplayName("takeDownAuthor accepts reports in chunks, each in its own transaction")
+    public void takeDownAuthor_ManyReports_AcceptsReportsInChunks() {
+        var authorId = UUID.randomUUID();
+        var postId = UUID.randomUUID();
+        var report1 = new Report(Report.Reason.SPAM, "", postId, UUID.randomUUID());
+        var report2 = new Report(Report.Reason.SPAM, "", postId, UUID.randomUUID());
+
+        // given
+        given(reportRepository.findUncheckedOfAuthorForUpdate(eq(authorId), any()))
+                .willReturn(List.of(report1), List.of(report2), List.of());
+        given(reportRepository.checkReports(List.of(report1.getId()), true)).willReturn(1);
+        given(reportRepository.checkReports(List.of(report2.getId()), true)).willReturn(1);
+
+        // when
+        var accepted = reportService.takeDownAuthor(authorId);
+
+        // then
+        assertEquals(2, accepted);
+        verify(reportRepository, times(3)).findUncheckedOfAuthorForUpdate(
+                eq(authorId),
+                argThat(a -> a.getPageSize() == ReportService.MAX_REPORTS_PER_BULK_CHECK)
+        );
+        verify(transactionManager, times(3)).commit(any());
+        verify(reportGroupRepository, times(2)).uncountReports(postId, 1, 1, 0, 0, 0);
+        verify(reportActionPublisher, times(1)).publishAuthorTakedown(any());
+    }
+
+    @Test
+    @DisplayName("takeDownAuthor does not publish the takedown when accepting reports fails")
+    public void takeDownAuthor_ChunkFails_DoesNotPublishTakedown() {
+        var authorId = UUID.randomUUID();
+
+        // given
+        given(reportRepository.findUncheckedOfAuthorForUpdate(eq(authorId), any()))
+                .willThrow(new RuntimeException("lock timeout"));
+
+        // when
+        assertThrows(RuntimeException.class, () -> reportService.takeDownAuthor(authorId));
+
+        // then
+        verify(transactionManager, times(1)).rollback(any());
+        verify(reportActionPublisher, never()).publishAuthorTakedown(any());
+    }
 }
@@ -0,0 +1,32 @@
+package ml.echelon133.microblog.shared.auth;
+
+/**
+ * Properties of access tokens issued by the auth service, which are recognized by the gateway and by resource servers.
+ */
+public final class AccessTokens {
+
+    /**
+     * Value of the {@code typ} header of self-contained (JWT) access tokens (see RFC 9068), which the auth service
+     * only sets on access tokens.
+     */
+    public static final String JWT_TYPE = "at+jwt";
+
+    /**
+     * Channel on which the auth service publishes hashes (see {@link TokenHash}) of access tokens which have been
+     * revoked, serialized by a {@code RedisTemplate} with the default (JDK) serializer.
+     */
+    public static final String REVOCATION_TOPIC = "token-revocation";
+
+    private AccessTokens() {}
+
+    /**
+     * Signed JWTs consist of three base64url encoded parts separated by dots, whereas opaque tokens never
+     * contain dots.
+     *
+     * @param token value of an access token, might be {@code null}
+     * @return {@code true} if the token is a self-contained access token
+     */
+    public static boolean isJwt(String token) {
+        return token != null && token.chars().filter(c -> c == '.').count() == 2;
+    }
+}
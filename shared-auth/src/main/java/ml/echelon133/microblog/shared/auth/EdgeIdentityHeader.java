@@ -0,0 +1,101 @@
+package ml.echelon133.microblog.shared.auth;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Format of the {@link #NAME} header, in which the gateway forwards identities of owners of access tokens it has
+ * authenticated, and which resource servers trust instead of authenticating the same tokens again.
+ *
+ * The value of the header is {@code <payload>.<signature>}, where:
+ * <ul>
+ *     <li>payload is a base64url encoded JSON object with {@link #SUBJECT}, {@link #TOKEN_OWNER_ID}, {@link #SCOPE}
+ *     (array of scopes of the token), {@link #EXPIRES_AT} (epoch second after which the header is not accepted)
+ *     and {@link #TOKEN_HASH} (hash of the token which has been authenticated, see {@link TokenHash})</li>
+ *     <li>signature is a base64url encoded HMAC-SHA256 of the encoded payload, computed with the secret
+ *     which is shared by the gateway and resource servers</li>
+ * </ul>
+ * The gateway signs headers and resource servers verify them with this class, so that both always agree on the format.
+ */
+public class EdgeIdentityHeader {
+
+    public static final String NAME = "X-Edge-Identity";
+
+    public static final String SUBJECT = "sub";
+    public static final String TOKEN_OWNER_ID = "token-owner-id";
+    public static final String SCOPE = "scope";
+    public static final String EXPIRES_AT = "exp";
+    public static final String TOKEN_HASH = "token-hash";
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param secret secret shared by the gateway and resource servers
+     */
+    public EdgeIdentityHeader(String secret) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM);
+    }
+
+    /**
+     * @param payload claims of the identity
+     * @return signed value of the header
+     */
+    public String encode(Map<String, Object> payload) {
+        try {
+            var encodedPayload = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(objectMapper.writeValueAsBytes(payload));
+            return encodedPayload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(sign(encodedPayload));
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Verifies the signature of the header, without checking any of its claims.
+     *
+     * @param headerValue value of the header, might be {@code null}
+     * @return claims of the identity, or empty if the header is malformed or has an invalid signature
+     */
+    public Optional<Map<String, Object>> decode(String headerValue) {
+        if (headerValue == null) {
+            return Optional.empty();
+        }
+        var parts = headerValue.split("\\.");
+        if (parts.length != 2) {
+            return Optional.empty();
+        }
+
+        try {
+            var signature = Base64.getUrlDecoder().decode(parts[1]);
+            if (!MessageDigest.isEqual(sign(parts[0]), signature)) {
+                return Optional.empty();
+            }
+            return Optional.of(objectMapper.readValue(
+                    Base64.getUrlDecoder().decode(parts[0]), new TypeReference<Map<String, Object>>() {}
+            ));
+        } catch (IOException | GeneralSecurityException | IllegalArgumentException e) {
+            // malformed headers are treated just like headers which have not been signed by the gateway
+            return Optional.empty();
+        }
+    }
+
+    private byte[] sign(String encodedPayload) throws GeneralSecurityException {
+        // instances of Mac are not thread-safe, and creating them is cheap compared to authenticating tokens
+        var mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(key);
+        return mac.doFinal(encodedPayload.getBytes(StandardCharsets.US_ASCII));
+    }
+}
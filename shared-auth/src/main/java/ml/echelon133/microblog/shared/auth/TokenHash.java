@@ -0,0 +1,29 @@
+package ml.echelon133.microblog.shared.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Hashes tokens, so that they can be identified (e.g. in caches and in messages about their revocation)
+ * without being kept or sent anywhere in plain text.
+ */
+public class TokenHash {
+
+    /**
+     * Calculates the SHA-256 hash of {@code token}.
+     *
+     * @param token value of the token
+     * @return hex-encoded hash of the token
+     */
+    public static String of(String token) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // every implementation of the Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
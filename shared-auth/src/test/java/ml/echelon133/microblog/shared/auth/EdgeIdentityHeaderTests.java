@@ -0,0 +1,85 @@
+package ml.echelon133.microblog.shared.auth;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests of EdgeIdentityHeader")
+public class EdgeIdentityHeaderTests {
+
+    private static final String SECRET = "test-secret";
+
+    private final EdgeIdentityHeader identityHeader = new EdgeIdentityHeader(SECRET);
+
+    private static Map<String, Object> createPayload() {
+        return Map.of(
+                EdgeIdentityHeader.SUBJECT, "user",
+                EdgeIdentityHeader.TOKEN_OWNER_ID, "1b7e3d2c-4c4d-4b4e-8e3a-0d3c2b1a0f9e",
+                EdgeIdentityHeader.SCOPE, List.of("read", "write"),
+                EdgeIdentityHeader.EXPIRES_AT, 1678300000,
+                EdgeIdentityHeader.TOKEN_HASH, TokenHash.of("token")
+        );
+    }
+
+    @Test
+    @DisplayName("decode returns the payload of an encoded header")
+    public void decode_EncodedHeader_ReturnsPayload() {
+        var payload = createPayload();
+
+        // when
+        var decoded = identityHeader.decode(identityHeader.encode(payload));
+
+        // then
+        assertEquals(payload, decoded.orElseThrow());
+    }
+
+    @Test
+    @DisplayName("decode returns empty when the header has been signed with a different secret")
+    public void decode_DifferentSecret_ReturnsEmpty() {
+        var headerValue = new EdgeIdentityHeader("other-secret").encode(createPayload());
+
+        // when
+        var decoded = identityHeader.decode(headerValue);
+
+        // then
+        assertTrue(decoded.isEmpty());
+    }
+
+    @Test
+    @DisplayName("decode returns empty when the payload has been tampered with")
+    public void decode_PayloadTampered_ReturnsEmpty() {
+        var signature = identityHeader.encode(createPayload()).split("\\.")[1];
+        var tamperedPayload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("{\"sub\":\"admin\",\"token-owner-id\":\"other\"}".getBytes());
+
+        // when
+        var decoded = identityHeader.decode(tamperedPayload + "." + signature);
+
+        // then
+        assertTrue(decoded.isEmpty());
+    }
+
+    @Test
+    @DisplayName("decode returns empty when the header is malformed")
+    public void decode_MalformedHeader_ReturnsEmpty() {
+        // then
+        assertTrue(identityHeader.decode(null).isEmpty());
+        assertTrue(identityHeader.decode("no-signature").isEmpty());
+        assertTrue(identityHeader.decode("a.b.c").isEmpty());
+        assertTrue(identityHeader.decode("not base64!.not base64!").isEmpty());
+    }
+
+    @Test
+    @DisplayName("isJwt recognizes self-contained access tokens by their structure")
+    public void isJwt_TokensProvided_RecognizesJwts() {
+        // then
+        assertTrue(AccessTokens.isJwt("header.payload.signature"));
+        assertFalse(AccessTokens.isJwt("opaque-token"));
+        assertFalse(AccessTokens.isJwt(null));
+    }
+}
@@ -0,0 +1,159 @@
+package ml.echelon133.microblog.shared.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.core.OAuth2TokenIntrospectionClaimNames;
+import org.springframework.security.oauth2.server.resource.introspection.OpaqueTokenIntrospector;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link OpaqueTokenIntrospector} which caches results of another introspector, so that a token used
+ * by many requests is introspected by the authorization server once in a while, instead of once per request.
+ *
+ * Results are cached under hashes of tokens, for at most {@code maxTtl} and never beyond the expiration
+ * of the token. Tokens revoked before they expire need to be evicted with {@link #evict(String)}, which happens
+ * whenever the authorization server publishes their revocation (see {@link TokenRevocationMessageListener}).
+ * Failed introspections (e.g. of inactive tokens) are never cached.
+ *
+ * Hits and misses of the cache are counted by the {@code auth.introspection.cache} metric (tagged with
+ * {@code result}), and the ratio of hits since the start of the service is exposed as
+ * {@code auth.introspection.cache.hit.ratio}.
+ */
+public class CachingOpaqueTokenIntrospector implements OpaqueTokenIntrospector {
+
+    private final OpaqueTokenIntrospector delegate;
+    private final Clock clock;
+    private final Duration maxTtl;
+    private final Cache<String, CachedPrincipal> cache;
+    // hashes of revoked tokens, which prevent caching of introspections that started before the revocation
+    // and finished after it. They are only forgotten once they are older than maxTtl (which is much longer than
+    // any introspection can take), never because many other tokens have been revoked
+    private final Cache<String, Boolean> revokedTokenHashes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private record CachedPrincipal(OAuth2AuthenticatedPrincipal principal, Instant expiresAt) {}
+
+    /**
+     * @param delegate introspector which calls the authorization server
+     * @param clock clock which decides when cached results expire
+     * @param maxTtl how long results can be cached at most
+     * @param maxEntries how many results can be cached at once, the least used ones are evicted first
+     * @param meterRegistry registry of the metrics of the cache
+     */
+    public CachingOpaqueTokenIntrospector(OpaqueTokenIntrospector delegate,
+                                          Clock clock,
+                                          Duration maxTtl,
+                                          int maxEntries,
+                                          MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.clock = clock;
+        this.maxTtl = maxTtl;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new UntilExpiresAt())
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+                .build();
+        this.revokedTokenHashes = Caffeine.newBuilder()
+                .expireAfterWrite(maxTtl)
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+                .build();
+
+        FunctionCounter.builder("auth.introspection.cache", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("Introspections answered from the cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("auth.introspection.cache", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("Introspections sent to the authorization server")
+                .register(meterRegistry);
+        Gauge.builder("auth.introspection.cache.hit.ratio", this, CachingOpaqueTokenIntrospector::hitRatio)
+                .description("Ratio of introspections answered from the cache")
+                .register(meterRegistry);
+        Gauge.builder("auth.introspection.cache.size", cache, Cache::estimatedSize)
+                .description("Number of cached introspections")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public OAuth2AuthenticatedPrincipal introspect(String token) {
+        var tokenHash = TokenHash.of(token);
+        var now = Instant.now(clock);
+
+        var cached = cache.getIfPresent(tokenHash);
+        if (cached != null) {
+            hits.increment();
+            return cached.principal();
+        }
+
+        misses.increment();
+        // exceptions of the delegate (e.g. caused by inactive tokens) are rethrown without being cached
+        var principal = delegate.introspect(token);
+
+        var expiresAt = now.plus(maxTtl);
+        Instant tokenExpiresAt = principal.getAttribute(OAuth2TokenIntrospectionClaimNames.EXP);
+        if (tokenExpiresAt != null && tokenExpiresAt.isBefore(expiresAt)) {
+            expiresAt = tokenExpiresAt;
+        }
+        if (expiresAt.isAfter(now)) {
+            cache.put(tokenHash, new CachedPrincipal(principal, expiresAt));
+            // the token is checked after it's cached, because a revocation could happen between a check
+            // and caching. Either the check sees the revocation, or the eviction removes the cached principal
+            if (revokedTokenHashes.getIfPresent(tokenHash) != null) {
+                cache.invalidate(tokenHash);
+            }
+        }
+        return principal;
+    }
+
+    /**
+     * Removes the cached introspection of a revoked token, so that the next request with the token is
+     * introspected by the authorization server (and rejected).
+     *
+     * @param tokenHash hash of the revoked token, see {@link TokenHash#of(String)}
+     */
+    public void evict(String tokenHash) {
+        revokedTokenHashes.put(tokenHash, true);
+        cache.invalidate(tokenHash);
+    }
+
+    /**
+     * @return ratio of introspections answered from the cache, 0 if there have not been any introspections yet
+     */
+    public double hitRatio() {
+        var hitCount = hits.sum();
+        var total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Expires every cached principal at its own {@code expiresAt}.
+     */
+    private class UntilExpiresAt implements Expiry<String, CachedPrincipal> {
+
+        @Override
+        public long expireAfterCreate(String tokenHash, CachedPrincipal cached, long currentTime) {
+            return Duration.between(Instant.now(clock), cached.expiresAt()).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String tokenHash, CachedPrincipal cached, long currentTime, long currentDuration) {
+            return expireAfterCreate(tokenHash, cached, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String tokenHash, CachedPrincipal cached, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
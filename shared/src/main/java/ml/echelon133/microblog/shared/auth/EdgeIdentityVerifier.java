@@ -0,0 +1,83 @@
+package ml.echelon133.microblog.shared.auth;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.core.OAuth2TokenIntrospectionClaimNames;
+import org.springframework.security.oauth2.server.resource.introspection.OAuth2IntrospectionAuthenticatedPrincipal;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.*;
+
+import static ml.echelon133.microblog.shared.auth.TokenOwnerIdExtractor.TOKEN_OWNER_KEY;
+
+/**
+ * Verifies identities of token owners which the gateway forwards to resource servers in the
+ * {@link EdgeIdentityHeader#NAME} header, after it has authenticated access tokens at the edge of the cluster.
+ *
+ * A header is only accepted when its signature is valid, it has not expired, and it has been signed for the same
+ * access token which the request carries. Headers sent by clients are removed by the gateway, and clients do not
+ * know the secret, which means that only identities of tokens which the gateway has authenticated are accepted,
+ * and only together with these tokens.
+ */
+public class EdgeIdentityVerifier {
+
+    private static final String SCOPE_AUTHORITY_PREFIX = "SCOPE_";
+
+    private final EdgeIdentityHeader identityHeader;
+    private final Clock clock;
+
+    /**
+     * @param secret secret shared with the gateway
+     * @param clock clock which decides whether headers have expired
+     */
+    public EdgeIdentityVerifier(String secret, Clock clock) {
+        this.identityHeader = new EdgeIdentityHeader(secret);
+        this.clock = clock;
+    }
+
+    /**
+     * Verifies the signature and the expiration of the identity header, and checks that it has been signed
+     * for {@code token}.
+     *
+     * @param headerValue value of the {@link EdgeIdentityHeader#NAME} header
+     * @param token bearer token of the request
+     * @return principal of the token owner, or empty if the header is malformed, has an invalid signature,
+     * has expired or has been signed for a different token
+     */
+    public Optional<OAuth2AuthenticatedPrincipal> verify(String headerValue, String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        return identityHeader.decode(headerValue)
+                .filter(payload -> isValid(payload, token))
+                .map(EdgeIdentityVerifier::toPrincipal);
+    }
+
+    private boolean isValid(Map<String, Object> payload, String token) {
+        if (!(payload.get(EdgeIdentityHeader.EXPIRES_AT) instanceof Number exp) ||
+                !Instant.ofEpochSecond(exp.longValue()).isAfter(Instant.now(clock))) {
+            return false;
+        }
+        return TokenHash.of(token).equals(payload.get(EdgeIdentityHeader.TOKEN_HASH)) &&
+                payload.get(EdgeIdentityHeader.SUBJECT) instanceof String &&
+                payload.get(EdgeIdentityHeader.TOKEN_OWNER_ID) instanceof String;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static OAuth2AuthenticatedPrincipal toPrincipal(Map<String, Object> payload) {
+        var subject = (String) payload.get(EdgeIdentityHeader.SUBJECT);
+        var tokenOwnerId = (String) payload.get(EdgeIdentityHeader.TOKEN_OWNER_ID);
+        var scopes = (List<String>) payload.getOrDefault(EdgeIdentityHeader.SCOPE, List.of());
+
+        Collection<GrantedAuthority> authorities = new ArrayList<>();
+        scopes.forEach(scope -> authorities.add(new SimpleGrantedAuthority(SCOPE_AUTHORITY_PREFIX + scope)));
+
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(OAuth2TokenIntrospectionClaimNames.SUB, subject);
+        attributes.put(TOKEN_OWNER_KEY, tokenOwnerId);
+        attributes.put(OAuth2TokenIntrospectionClaimNames.SCOPE, scopes);
+        return new OAuth2IntrospectionAuthenticatedPrincipal(subject, attributes, authorities);
+    }
+}
@@ -0,0 +1,47 @@
+package ml.echelon133.microblog.shared.auth;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.proc.DefaultJOSEObjectTypeVerifier;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.ConfigurableJWTProcessor;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+
+/**
+ * Verification of self-contained (JWT) access tokens issued by the auth service.
+ *
+ * Besides the signature and timestamps, a token is only accepted when it has been issued by the expected issuer,
+ * and when its {@code typ} header is {@link AccessTokens#JWT_TYPE}, which the auth service only sets on access tokens
+ * (see RFC 9068). Other JWTs signed with the same keys (e.g. ID tokens) cannot be used as access tokens.
+ */
+public final class JwtAccessTokens {
+
+    private JwtAccessTokens() {}
+
+    /**
+     * @param jwkSetUri uri of the JWK set which contains keys used to sign access tokens
+     * @param issuer expected value of the {@code iss} claim of access tokens
+     * @return decoder which only accepts access tokens issued by {@code issuer}
+     */
+    public static NimbusJwtDecoder createDecoder(String jwkSetUri, String issuer) {
+        var decoder = NimbusJwtDecoder.withJwkSetUri(jwkSetUri)
+                .jwtProcessorCustomizer(JwtAccessTokens::requireAccessTokenType)
+                .build();
+        return validateIssuer(decoder, issuer);
+    }
+
+    /**
+     * Makes the decoder validate the issuer of tokens, besides their timestamps.
+     */
+    static NimbusJwtDecoder validateIssuer(NimbusJwtDecoder decoder, String issuer) {
+        decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuer));
+        return decoder;
+    }
+
+    /**
+     * Makes the processor reject tokens whose {@code typ} header is not {@link AccessTokens#JWT_TYPE}.
+     */
+    static void requireAccessTokenType(ConfigurableJWTProcessor<SecurityContext> processor) {
+        processor.setJWSTypeVerifier(new DefaultJOSEObjectTypeVerifier<>(new JOSEObjectType(AccessTokens.JWT_TYPE)));
+    }
+}
@@ -0,0 +1,31 @@
+package ml.echelon133.microblog.shared.auth;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthentication;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import org.springframework.security.oauth2.server.resource.introspection.OAuth2IntrospectionAuthenticatedPrincipal;
+
+/**
+ * Converts a verified self-contained (JWT) access token into the same kind of authentication which is created
+ * from an introspection of an opaque access token, so that controllers (and {@link TokenOwnerIdExtractor})
+ * do not need to know which kind of access token has been used.
+ *
+ * Claims of the token become attributes of the principal, and its scopes become 'SCOPE_' authorities.
+ */
+public class JwtPrincipalConverter implements Converter<Jwt, AbstractAuthenticationToken> {
+
+    private final JwtGrantedAuthoritiesConverter authoritiesConverter = new JwtGrantedAuthoritiesConverter();
+
+    @Override
+    public AbstractAuthenticationToken convert(Jwt jwt) {
+        var authorities = authoritiesConverter.convert(jwt);
+        var principal = new OAuth2IntrospectionAuthenticatedPrincipal(jwt.getSubject(), jwt.getClaims(), authorities);
+        var accessToken = new OAuth2AccessToken(
+                OAuth2AccessToken.TokenType.BEARER, jwt.getTokenValue(), jwt.getIssuedAt(), jwt.getExpiresAt()
+        );
+        return new BearerTokenAuthentication(principal, accessToken, authorities);
+    }
+}
@@ -0,0 +1,74 @@
+package ml.echelon133.microblog.shared.auth;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.security.oauth2.server.resource.introspection.NimbusOpaqueTokenIntrospector;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Authentication of access tokens, which is the same in every resource server. Services import this configuration
+ * into their own security configuration, which only decides which requests need which scopes, and which passes
+ * the {@link TokenFormatAuthenticationManagerResolver} to {@code oauth2ResourceServer}.
+ *
+ * Defaults of all properties (except the introspection endpoint and the credentials of the introspecting client)
+ * are in {@code token-authentication.properties}, and they can be overridden by the configuration of a service.
+ */
+@Configuration
+@PropertySource("classpath:token-authentication.properties")
+public class TokenAuthenticationConfig {
+
+    @Value("${spring.security.oauth2.resourceserver.opaque.introspection-uri}")
+    String introspectionUri;
+
+    @Value("${spring.security.oauth2.resourceserver.opaque.introspection-client-id}")
+    String clientId;
+
+    @Value("${spring.security.oauth2.resourceserver.opaque.introspection-client-secret}")
+    String clientSecret;
+
+    @Value("${access-token.jwk-set-uri}")
+    String jwkSetUri;
+
+    @Value("${access-token.issuer}")
+    String issuer;
+
+    @Value("${introspection-cache.max-ttl}")
+    Duration introspectionCacheMaxTtl;
+
+    @Value("${introspection-cache.max-entries}")
+    int introspectionCacheMaxEntries;
+
+    @Value("${edge-identity.secret:}")
+    String edgeIdentitySecret;
+
+    @Bean
+    public CachingOpaqueTokenIntrospector opaqueTokenIntrospector(MeterRegistry meterRegistry) {
+        return new CachingOpaqueTokenIntrospector(
+                new NimbusOpaqueTokenIntrospector(this.introspectionUri, this.clientId, this.clientSecret),
+                Clock.systemDefaultZone(),
+                introspectionCacheMaxTtl,
+                introspectionCacheMaxEntries,
+                meterRegistry
+        );
+    }
+
+    @Bean
+    public TokenFormatAuthenticationManagerResolver tokenFormatAuthenticationManagerResolver(
+            CachingOpaqueTokenIntrospector introspector) {
+        return new TokenFormatAuthenticationManagerResolver(
+                introspector, this.jwkSetUri, this.issuer, edgeIdentityVerifier()
+        );
+    }
+
+    private EdgeIdentityVerifier edgeIdentityVerifier() {
+        if (edgeIdentitySecret.isEmpty()) {
+            return null;
+        }
+        return new EdgeIdentityVerifier(edgeIdentitySecret, Clock.systemDefaultZone());
+    }
+}
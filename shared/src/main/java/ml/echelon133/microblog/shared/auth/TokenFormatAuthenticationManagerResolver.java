@@ -0,0 +1,96 @@
+package ml.echelon133.microblog.shared.auth;
+
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationManagerResolver;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthentication;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+import org.springframework.security.oauth2.server.resource.authentication.OpaqueTokenAuthenticationProvider;
+import org.springframework.security.oauth2.server.resource.introspection.OpaqueTokenIntrospector;
+import org.springframework.security.oauth2.server.resource.web.BearerTokenResolver;
+import org.springframework.security.oauth2.server.resource.web.DefaultBearerTokenResolver;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Authenticates requests of resource servers with either kind of access token issued by the auth service.
+ *
+ * Self-contained (JWT) access tokens are verified locally, with keys from the JWK set of the auth service
+ * (which is fetched once, cached, and refetched only when a token is signed with an unknown key), and they are only
+ * accepted from the expected issuer (see {@link JwtAccessTokens}).
+ * Opaque access tokens are introspected with the given {@link OpaqueTokenIntrospector}.
+ *
+ * Both kinds of tokens are accepted at the same time, so that the auth service can switch the format of issued
+ * tokens without invalidating tokens which have already been issued.
+ *
+ * When an {@link EdgeIdentityVerifier} is provided, requests whose tokens have already been authenticated
+ * by the gateway (i.e. requests with a valid identity header signed for their token) are authenticated with
+ * that identity, without introspecting or verifying the token again. Requests with a missing or invalid identity
+ * header are authenticated using their tokens.
+ */
+public class TokenFormatAuthenticationManagerResolver implements AuthenticationManagerResolver<HttpServletRequest> {
+
+    private final BearerTokenResolver bearerTokenResolver = new DefaultBearerTokenResolver();
+    private final AuthenticationManager opaqueTokenAuthenticationManager;
+    private final AuthenticationManager jwtAuthenticationManager;
+    private final EdgeIdentityVerifier edgeIdentityVerifier;
+
+    /**
+     * @param introspector introspector of opaque access tokens
+     * @param jwkSetUri uri of the JWK set which contains keys used to sign self-contained access tokens
+     * @param issuer issuer of self-contained access tokens
+     */
+    public TokenFormatAuthenticationManagerResolver(OpaqueTokenIntrospector introspector, String jwkSetUri, String issuer) {
+        this(introspector, jwkSetUri, issuer, null);
+    }
+
+    /**
+     * @param introspector introspector of opaque access tokens
+     * @param jwkSetUri uri of the JWK set which contains keys used to sign self-contained access tokens
+     * @param issuer issuer of self-contained access tokens
+     * @param edgeIdentityVerifier verifier of identities forwarded by the gateway, {@code null} if forwarded
+     *                             identities should not be trusted
+     */
+    public TokenFormatAuthenticationManagerResolver(OpaqueTokenIntrospector introspector,
+                                                    String jwkSetUri,
+                                                    String issuer,
+                                                    EdgeIdentityVerifier edgeIdentityVerifier) {
+        this(introspector, JwtAccessTokens.createDecoder(jwkSetUri, issuer), edgeIdentityVerifier);
+    }
+
+    TokenFormatAuthenticationManagerResolver(OpaqueTokenIntrospector introspector,
+                                             JwtDecoder jwtDecoder,
+                                             EdgeIdentityVerifier edgeIdentityVerifier) {
+        this.edgeIdentityVerifier = edgeIdentityVerifier;
+        this.opaqueTokenAuthenticationManager = new ProviderManager(new OpaqueTokenAuthenticationProvider(introspector));
+
+        var jwtAuthenticationProvider = new JwtAuthenticationProvider(jwtDecoder);
+        jwtAuthenticationProvider.setJwtAuthenticationConverter(new JwtPrincipalConverter());
+        this.jwtAuthenticationManager = new ProviderManager(jwtAuthenticationProvider);
+    }
+
+    @Override
+    public AuthenticationManager resolve(HttpServletRequest request) {
+        var token = bearerTokenResolver.resolve(request);
+        if (edgeIdentityVerifier != null) {
+            var principal = edgeIdentityVerifier.verify(request.getHeader(EdgeIdentityHeader.NAME), token);
+            if (principal.isPresent()) {
+                return authentication -> toBearerTokenAuthentication(principal.get(), authentication);
+            }
+        }
+        return AccessTokens.isJwt(token) ? jwtAuthenticationManager : opaqueTokenAuthenticationManager;
+    }
+
+    // creates the same kind of authentication which is created from an introspection of an opaque access token
+    private static Authentication toBearerTokenAuthentication(OAuth2AuthenticatedPrincipal principal,
+                                                              Authentication authentication) {
+        var token = ((BearerTokenAuthenticationToken) authentication).getToken();
+        var accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, token, null, null);
+        return new BearerTokenAuthentication(principal, accessToken, principal.getAuthorities());
+    }
+}
@@ -0,0 +1,45 @@
+package ml.echelon133.microblog.shared.auth;
+
+import ml.echelon133.microblog.shared.queue.QueueTopic;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+/**
+ * Listener of token revocation messages published in Redis by the authorization server.
+ * Every instance of every resource server receives each message and evicts the cached introspection
+ * of the revoked token.
+ */
+public class TokenRevocationMessageListener implements MessageListener {
+
+    private static final Logger LOGGER = LogManager.getLogger(TokenRevocationMessageListener.class);
+
+    private final CachingOpaqueTokenIntrospector introspector;
+
+    public TokenRevocationMessageListener(CachingOpaqueTokenIntrospector introspector) {
+        this.introspector = introspector;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String topicName = new String(message.getChannel());
+
+        try {
+            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(message.getBody()));
+            var tokenHash = (String)ois.readObject();
+            if (topicName.equals(QueueTopic.TOKEN_REVOCATION.getTopic())) {
+                introspector.evict(tokenHash);
+            } else {
+                LOGGER.warn("Received unexpected topic name: " + topicName);
+            }
+        } catch (ClassNotFoundException | IOException e) {
+            LOGGER.error("Failed to deserialize a message from topic " + topicName);
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package ml.echelon133.microblog.shared.notification;
+
+import ml.echelon133.microblog.shared.user.UserDto;
+
+import java.util.List;
+
+/**
+ * A {@link NotificationDto} with its source resolved, so that clients can render the notification
+ * without fetching users and posts one by one.
+ */
+public class ExpandedNotificationDto extends NotificationDto {
+
+    private List<UserDto> actors;
+    private String sourcePostSnippet;
+
+    public ExpandedNotificationDto() {}
+    public ExpandedNotificationDto(NotificationDto notification, List<UserDto> actors, String sourcePostSnippet) {
+        super(notification.getNotificationId(), notification.getDateCreated(), notification.getDateUpdated(),
+                notification.getNotificationSource(), notification.getType(), notification.isRead(),
+                notification.getActorCount(), notification.getSampleActors());
+        this.actors = actors;
+        this.sourcePostSnippet = sourcePostSnippet;
+    }
+
+    public List<UserDto> getActors() {
+        return actors;
+    }
+
+    public void setActors(List<UserDto> actors) {
+        this.actors = actors;
+    }
+
+    public String getSourcePostSnippet() {
+        return sourcePostSnippet;
+    }
+
+    public void setSourcePostSnippet(String sourcePostSnippet) {
+        this.sourcePostSnippet = sourcePostSnippet;
+    }
+}
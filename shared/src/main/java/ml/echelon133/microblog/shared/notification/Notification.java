@@ -3,12 +3,21 @@ package ml.echelon133.microblog.shared.notification;
 import ml.echelon133.microblog.shared.base.BaseEntity;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
+import org.hibernate.annotations.ColumnDefault;
+
 import javax.persistence.*;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 @Entity
 @Table(
-        indexes = @Index(name = "user_to_notify_index", columnList = "userToNotify")
+        indexes = {
+                @Index(name = "user_to_notify_index", columnList = "userToNotify"),
+                @Index(name = "notification_group_index", columnList = "userToNotify, type, notificationTarget, dateCreated"),
+                @Index(name = "notification_list_index", columnList = "userToNotify, dateUpdated")
+        }
 )
 @EntityListeners(AuditingEntityListener.class)
 public class Notification extends BaseEntity {
@@ -35,6 +44,13 @@ public class Notification extends BaseEntity {
         RESPONSE
     }
 
+    /**
+     * How many ids of users who caused the notification are remembered by a single notification. Notifications
+     * which had been merged into a group only keep this many of the most recent actors, while the total
+     * number of actors is kept in {@code actorCount}.
+     */
+    public static final int MAX_SAMPLE_ACTORS = 5;
+
     @Column(nullable = false, updatable = false)
     private UUID userToNotify;
 
@@ -48,12 +64,44 @@ public class Notification extends BaseEntity {
     @Column(nullable = false)
     private boolean read;
 
+    /*
+    Id of the object which the notification is about (e.g. the followed user or the quoted post).
+    Notifications of the same type which are about the same object can be merged into a single group.
+     */
+    @Column(updatable = false)
+    private UUID notificationTarget;
+
+    @ColumnDefault("1")
+    @Column(nullable = false)
+    private int actorCount;
+
+    // length fits MAX_SAMPLE_ACTORS uuids separated by commas
+    @Convert(converter = UUIDListConverter.class)
+    @Column(length = 200)
+    private List<UUID> sampleActors;
+
+    /*
+    When the last notification had been merged into this one, which orders the list of notifications. The date
+    of creation never changes, because it decides how long the group is open for merging, how long it is listed,
+    and which partition holds it. Nullable only because the column is added to tables which already have rows.
+     */
+    private Date dateUpdated;
+
     public Notification() {}
     public Notification(UUID userToNotify, UUID notificationSource, Type type) {
+        this(userToNotify, notificationSource, null, null, type);
+    }
+    public Notification(UUID userToNotify, UUID notificationSource, UUID notificationTarget, UUID actor, Type type) {
         this.userToNotify = userToNotify;
         this.notificationSource = notificationSource;
+        this.notificationTarget = notificationTarget;
         this.type = type;
         this.read = false;
+        this.actorCount = 1;
+        this.sampleActors = new ArrayList<>();
+        if (actor != null) {
+            this.sampleActors.add(actor);
+        }
     }
 
     public UUID getUserToNotify() {
@@ -87,4 +135,44 @@ public class Notification extends BaseEntity {
     public void setRead(boolean read) {
         this.read = read;
     }
+
+    public UUID getNotificationTarget() {
+        return notificationTarget;
+    }
+
+    public void setNotificationTarget(UUID notificationTarget) {
+        this.notificationTarget = notificationTarget;
+    }
+
+    public int getActorCount() {
+        return actorCount;
+    }
+
+    public void setActorCount(int actorCount) {
+        this.actorCount = actorCount;
+    }
+
+    public Date getDateUpdated() {
+        return dateUpdated;
+    }
+
+    public void setDateUpdated(Date dateUpdated) {
+        this.dateUpdated = dateUpdated;
+    }
+
+    // runs after the auditing listener, which sets the date of creation
+    @PrePersist
+    void initDateUpdated() {
+        if (dateUpdated == null) {
+            dateUpdated = getDateCreated();
+        }
+    }
+
+    public List<UUID> getSampleActors() {
+        return sampleActors;
+    }
+
+    public void setSampleActors(List<UUID> sampleActors) {
+        this.sampleActors = sampleActors;
+    }
 }
@@ -7,11 +7,30 @@ public class NotificationCreationDto implements Serializable {
 
     private UUID userToNotify;
     private UUID notificationSource;
+    private UUID notificationTarget;
+    private UUID actor;
     private Notification.Type type;
 
     public NotificationCreationDto(UUID userToNotify, UUID notificationSource, Notification.Type type) {
+        this(userToNotify, notificationSource, null, null, type);
+    }
+
+    /**
+     * Creates a dto which describes a notification that can be merged with other notifications of the same type
+     * about the same {@code notificationTarget}.
+     *
+     * @param userToNotify id of the user who will receive the notification
+     * @param notificationSource id of the object which caused the notification (e.g. a new post, the following user)
+     * @param notificationTarget id of the object which the notification is about (e.g. the quoted post, the followed user)
+     * @param actor id of the user whose action caused the notification
+     * @param type type of the notification
+     */
+    public NotificationCreationDto(UUID userToNotify, UUID notificationSource, UUID notificationTarget,
+                                   UUID actor, Notification.Type type) {
         this.userToNotify = userToNotify;
         this.notificationSource = notificationSource;
+        this.notificationTarget = notificationTarget;
+        this.actor = actor;
         this.type = type;
     }
 
@@ -31,6 +50,22 @@ public class NotificationCreationDto implements Serializable {
         this.notificationSource = notificationSource;
     }
 
+    public UUID getNotificationTarget() {
+        return notificationTarget;
+    }
+
+    public void setNotificationTarget(UUID notificationTarget) {
+        this.notificationTarget = notificationTarget;
+    }
+
+    public UUID getActor() {
+        return actor;
+    }
+
+    public void setActor(UUID actor) {
+        this.actor = actor;
+    }
+
     public Notification.Type getType() {
         return type;
     }
@@ -1,23 +1,39 @@
 package ml.echelon133.microblog.shared.notification;
 
+import java.io.Serializable;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
-public class NotificationDto {
+public class NotificationDto implements Serializable {
 
     private UUID notificationId;
     private Date dateCreated;
+    private Date dateUpdated;
     private UUID notificationSource;
     private Notification.Type type;
     private boolean read;
+    private int actorCount;
+    private List<UUID> sampleActors;
 
     public NotificationDto() {}
     public NotificationDto(UUID notificationId, Date dateCreated, UUID notificationSource, Notification.Type type, boolean read) {
+        this(notificationId, dateCreated, notificationSource, type, read, 1, List.of());
+    }
+    public NotificationDto(UUID notificationId, Date dateCreated, UUID notificationSource, Notification.Type type,
+                           boolean read, int actorCount, List<UUID> sampleActors) {
+        this(notificationId, dateCreated, dateCreated, notificationSource, type, read, actorCount, sampleActors);
+    }
+    public NotificationDto(UUID notificationId, Date dateCreated, Date dateUpdated, UUID notificationSource,
+                           Notification.Type type, boolean read, int actorCount, List<UUID> sampleActors) {
         this.notificationId = notificationId;
         this.dateCreated = dateCreated;
+        this.dateUpdated = dateUpdated;
         this.notificationSource = notificationSource;
         this.type = type;
         this.read = read;
+        this.actorCount = actorCount;
+        this.sampleActors = sampleActors;
     }
 
     public UUID getNotificationId() {
@@ -36,6 +52,14 @@ public class NotificationDto {
         this.dateCreated = dateCreated;
     }
 
+    public Date getDateUpdated() {
+        return dateUpdated;
+    }
+
+    public void setDateUpdated(Date dateUpdated) {
+        this.dateUpdated = dateUpdated;
+    }
+
     public UUID getNotificationSource() {
         return notificationSource;
     }
@@ -59,4 +83,20 @@ public class NotificationDto {
     public void setRead(boolean read) {
         this.read = read;
     }
+
+    public int getActorCount() {
+        return actorCount;
+    }
+
+    public void setActorCount(int actorCount) {
+        this.actorCount = actorCount;
+    }
+
+    public List<UUID> getSampleActors() {
+        return sampleActors;
+    }
+
+    public void setSampleActors(List<UUID> sampleActors) {
+        this.sampleActors = sampleActors;
+    }
 }
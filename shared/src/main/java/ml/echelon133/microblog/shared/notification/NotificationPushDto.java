@@ -0,0 +1,31 @@
+package ml.echelon133.microblog.shared.notification;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+public class NotificationPushDto implements Serializable {
+
+    private UUID userToNotify;
+    private NotificationDto notification;
+
+    public NotificationPushDto(UUID userToNotify, NotificationDto notification) {
+        this.userToNotify = userToNotify;
+        this.notification = notification;
+    }
+
+    public UUID getUserToNotify() {
+        return userToNotify;
+    }
+
+    public void setUserToNotify(UUID userToNotify) {
+        this.userToNotify = userToNotify;
+    }
+
+    public NotificationDto getNotification() {
+        return notification;
+    }
+
+    public void setNotification(NotificationDto notification) {
+        this.notification = notification;
+    }
+}
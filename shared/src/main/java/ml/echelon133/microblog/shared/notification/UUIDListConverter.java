@@ -0,0 +1,40 @@
+package ml.echelon133.microblog.shared.notification;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Converts a list of {@link UUID}s into a single comma-separated column and back.
+ *
+ * Only meant for short lists which are always read together with their owner, because the stored
+ * value cannot be queried in any meaningful way.
+ */
+@Converter
+public class UUIDListConverter implements AttributeConverter<List<UUID>, String> {
+
+    private static final String SEPARATOR = ",";
+
+    @Override
+    public String convertToDatabaseColumn(List<UUID> attribute) {
+        if (attribute == null || attribute.isEmpty()) {
+            return "";
+        }
+        return attribute.stream().map(UUID::toString).collect(Collectors.joining(SEPARATOR));
+    }
+
+    @Override
+    public List<UUID> convertToEntityAttribute(String dbData) {
+        List<UUID> ids = new ArrayList<>();
+        if (dbData == null || dbData.isBlank()) {
+            return ids;
+        }
+        for (String id : dbData.split(SEPARATOR)) {
+            ids.add(UUID.fromString(id));
+        }
+        return ids;
+    }
+}
@@ -1,5 +1,6 @@
 package ml.echelon133.microblog.shared.queue;
 
+import ml.echelon133.microblog.shared.auth.AccessTokens;
 import org.springframework.data.redis.listener.ChannelTopic;
 
 /**
@@ -22,6 +23,12 @@ public class QueueTopic {
      */
     public final static ChannelTopic NOTIFICATION = new ChannelTopic("notification");
 
+    /**
+     * Topic containing information about notifications which have already been saved and need to be pushed
+     * to users who are connected to any instance of the notification service.
+     */
+    public final static ChannelTopic NOTIFICATION_PUSH = new ChannelTopic("notification-push");
+
     /**
      * Topic containing information about posts being reported.
      */
@@ -32,4 +39,21 @@ public class QueueTopic {
      * has been accepted.
      */
     public final static ChannelTopic REPORT_ACTION = new ChannelTopic("report-action");
+
+    /**
+     * Topic containing information about authors whose all posts need to be deleted at once.
+     */
+    public final static ChannelTopic AUTHOR_TAKEDOWN = new ChannelTopic("author-takedown");
+
+    /**
+     * Topic containing ids of users whose profile info has been updated, and whose cached profiles need to be
+     * evicted by every instance of the user service.
+     */
+    public final static ChannelTopic USER_UPDATE = new ChannelTopic("user-update");
+
+    /**
+     * Topic containing hashes of tokens which have been revoked, and whose cached introspections need to be
+     * evicted by every instance of every resource server.
+     */
+    public final static ChannelTopic TOKEN_REVOCATION = new ChannelTopic(AccessTokens.REVOCATION_TOPIC);
 }
@@ -0,0 +1,21 @@
+package ml.echelon133.microblog.shared.report;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+public class AuthorTakedownDto implements Serializable {
+
+    private UUID authorId;
+
+    public AuthorTakedownDto(UUID authorId) {
+        this.authorId = authorId;
+    }
+
+    public UUID getAuthorId() {
+        return authorId;
+    }
+
+    public void setAuthorId(UUID authorId) {
+        this.authorId = authorId;
+    }
+}
@@ -8,6 +8,7 @@ import java.util.UUID;
 
 @Entity
 @EntityListeners(AuditingEntityListener.class)
+@Table(indexes = @Index(name = "report_post_index", columnList = "reportedPost, checked"))
 public class Report extends BaseEntity {
 
     /**
@@ -0,0 +1,25 @@
+package ml.echelon133.microblog.shared.report;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Multiple {@link ReportActionDto}s which are sent in a single message, so that the post service
+ * can delete all reported posts at once.
+ */
+public class ReportActionBatchDto implements Serializable {
+
+    private List<ReportActionDto> actions;
+
+    public ReportActionBatchDto(List<ReportActionDto> actions) {
+        this.actions = actions;
+    }
+
+    public List<ReportActionDto> getActions() {
+        return actions;
+    }
+
+    public void setActions(List<ReportActionDto> actions) {
+        this.actions = actions;
+    }
+}
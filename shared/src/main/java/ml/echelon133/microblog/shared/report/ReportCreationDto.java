@@ -9,12 +9,17 @@ public class ReportCreationDto implements Serializable {
     private String context;
     private UUID reportedPost;
     private UUID reportingUser;
+    private UUID reportedPostAuthor;
+    private String reportedPostContent;
 
-    public ReportCreationDto(Report.Reason reason, String context, UUID reportedPost, UUID reportingUser) {
+    public ReportCreationDto(Report.Reason reason, String context, UUID reportedPost, UUID reportingUser,
+                             UUID reportedPostAuthor, String reportedPostContent) {
         this.reason = reason;
         this.context = context;
         this.reportedPost = reportedPost;
         this.reportingUser = reportingUser;
+        this.reportedPostAuthor = reportedPostAuthor;
+        this.reportedPostContent = reportedPostContent;
     }
 
     public Report.Reason getReason() {
@@ -48,4 +53,20 @@ public class ReportCreationDto implements Serializable {
     public void setReportingUser(UUID reportingUser) {
         this.reportingUser = reportingUser;
     }
+
+    public UUID getReportedPostAuthor() {
+        return reportedPostAuthor;
+    }
+
+    public void setReportedPostAuthor(UUID reportedPostAuthor) {
+        this.reportedPostAuthor = reportedPostAuthor;
+    }
+
+    public String getReportedPostContent() {
+        return reportedPostContent;
+    }
+
+    public void setReportedPostContent(String reportedPostContent) {
+        this.reportedPostContent = reportedPostContent;
+    }
 }
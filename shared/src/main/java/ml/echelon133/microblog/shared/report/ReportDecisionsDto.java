@@ -0,0 +1,32 @@
+package ml.echelon133.microblog.shared.report;
+
+import java.util.List;
+import java.util.UUID;
+
+public class ReportDecisionsDto {
+
+    private List<UUID> accepted;
+    private List<UUID> rejected;
+
+    public ReportDecisionsDto() {}
+    public ReportDecisionsDto(List<UUID> accepted, List<UUID> rejected) {
+        this.accepted = accepted;
+        this.rejected = rejected;
+    }
+
+    public List<UUID> getAccepted() {
+        return accepted;
+    }
+
+    public void setAccepted(List<UUID> accepted) {
+        this.accepted = accepted;
+    }
+
+    public List<UUID> getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(List<UUID> rejected) {
+        this.rejected = rejected;
+    }
+}
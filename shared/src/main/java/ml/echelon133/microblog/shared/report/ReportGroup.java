@@ -0,0 +1,131 @@
+package ml.echelon133.microblog.shared.report;
+
+import ml.echelon133.microblog.shared.base.BaseEntity;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * All reports of a single post. Counters only include reports which have not been checked yet, and they are
+ * maintained incrementally whenever a report is created or checked, so that the moderation queue never needs
+ * to aggregate individual reports.
+ */
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@Table(
+        indexes = {
+                @Index(name = "report_group_post_index", columnList = "reportedPost", unique = true),
+                @Index(name = "moderation_queue_index", columnList = "pendingReports, lastReportedAt"),
+                @Index(name = "report_group_author_index", columnList = "reportedPostAuthor")
+        }
+)
+public class ReportGroup extends BaseEntity {
+
+    public ReportGroup() {}
+    public ReportGroup(UUID reportedPost, UUID reportedPostAuthor, String reportedPostContent) {
+        this.reportedPost = reportedPost;
+        this.reportedPostAuthor = reportedPostAuthor;
+        this.reportedPostContent = reportedPostContent;
+    }
+
+    @Column(nullable = false, updatable = false)
+    private UUID reportedPost;
+
+    @Column(updatable = false)
+    private UUID reportedPostAuthor;
+
+    // snapshot of the content taken when the post had been reported for the first time
+    @Column(updatable = false, length = 300)
+    private String reportedPostContent;
+
+    @Column(nullable = false)
+    private int pendingReports;
+
+    @Column(nullable = false)
+    private int spamReports;
+
+    @Column(nullable = false)
+    private int harassmentReports;
+
+    @Column(nullable = false)
+    private int impersonationReports;
+
+    @Column(nullable = false)
+    private int disturbingContentReports;
+
+    private Date lastReportedAt;
+
+    public UUID getReportedPost() {
+        return reportedPost;
+    }
+
+    public void setReportedPost(UUID reportedPost) {
+        this.reportedPost = reportedPost;
+    }
+
+    public UUID getReportedPostAuthor() {
+        return reportedPostAuthor;
+    }
+
+    public void setReportedPostAuthor(UUID reportedPostAuthor) {
+        this.reportedPostAuthor = reportedPostAuthor;
+    }
+
+    public String getReportedPostContent() {
+        return reportedPostContent;
+    }
+
+    public void setReportedPostContent(String reportedPostContent) {
+        this.reportedPostContent = reportedPostContent;
+    }
+
+    public int getPendingReports() {
+        return pendingReports;
+    }
+
+    public void setPendingReports(int pendingReports) {
+        this.pendingReports = pendingReports;
+    }
+
+    public int getSpamReports() {
+        return spamReports;
+    }
+
+    public void setSpamReports(int spamReports) {
+        this.spamReports = spamReports;
+    }
+
+    public int getHarassmentReports() {
+        return harassmentReports;
+    }
+
+    public void setHarassmentReports(int harassmentReports) {
+        this.harassmentReports = harassmentReports;
+    }
+
+    public int getImpersonationReports() {
+        return impersonationReports;
+    }
+
+    public void setImpersonationReports(int impersonationReports) {
+        this.impersonationReports = impersonationReports;
+    }
+
+    public int getDisturbingContentReports() {
+        return disturbingContentReports;
+    }
+
+    public void setDisturbingContentReports(int disturbingContentReports) {
+        this.disturbingContentReports = disturbingContentReports;
+    }
+
+    public Date getLastReportedAt() {
+        return lastReportedAt;
+    }
+
+    public void setLastReportedAt(Date lastReportedAt) {
+        this.lastReportedAt = lastReportedAt;
+    }
+}
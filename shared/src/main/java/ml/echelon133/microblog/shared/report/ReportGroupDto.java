@@ -0,0 +1,103 @@
+package ml.echelon133.microblog.shared.report;
+
+import java.util.Date;
+import java.util.UUID;
+
+public class ReportGroupDto {
+
+    private UUID reportedPostId;
+    private UUID reportedPostAuthorId;
+    private String reportedPostContent;
+    private int pendingReports;
+    private int spamReports;
+    private int harassmentReports;
+    private int impersonationReports;
+    private int disturbingContentReports;
+    private Date lastReportedAt;
+
+    public ReportGroupDto(UUID reportedPostId, UUID reportedPostAuthorId, String reportedPostContent,
+                          int pendingReports, int spamReports, int harassmentReports, int impersonationReports,
+                          int disturbingContentReports, Date lastReportedAt) {
+        this.reportedPostId = reportedPostId;
+        this.reportedPostAuthorId = reportedPostAuthorId;
+        this.reportedPostContent = reportedPostContent;
+        this.pendingReports = pendingReports;
+        this.spamReports = spamReports;
+        this.harassmentReports = harassmentReports;
+        this.impersonationReports = impersonationReports;
+        this.disturbingContentReports = disturbingContentReports;
+        this.lastReportedAt = lastReportedAt;
+    }
+
+    public UUID getReportedPostId() {
+        return reportedPostId;
+    }
+
+    public void setReportedPostId(UUID reportedPostId) {
+        this.reportedPostId = reportedPostId;
+    }
+
+    public UUID getReportedPostAuthorId() {
+        return reportedPostAuthorId;
+    }
+
+    public void setReportedPostAuthorId(UUID reportedPostAuthorId) {
+        this.reportedPostAuthorId = reportedPostAuthorId;
+    }
+
+    public String getReportedPostContent() {
+        return reportedPostContent;
+    }
+
+    public void setReportedPostContent(String reportedPostContent) {
+        this.reportedPostContent = reportedPostContent;
+    }
+
+    public int getPendingReports() {
+        return pendingReports;
+    }
+
+    public void setPendingReports(int pendingReports) {
+        this.pendingReports = pendingReports;
+    }
+
+    public int getSpamReports() {
+        return spamReports;
+    }
+
+    public void setSpamReports(int spamReports) {
+        this.spamReports = spamReports;
+    }
+
+    public int getHarassmentReports() {
+        return harassmentReports;
+    }
+
+    public void setHarassmentReports(int harassmentReports) {
+        this.harassmentReports = harassmentReports;
+    }
+
+    public int getImpersonationReports() {
+        return impersonationReports;
+    }
+
+    public void setImpersonationReports(int impersonationReports) {
+        this.impersonationReports = impersonationReports;
+    }
+
+    public int getDisturbingContentReports() {
+        return disturbingContentReports;
+    }
+
+    public void setDisturbingContentReports(int disturbingContentReports) {
+        this.disturbingContentReports = disturbingContentReports;
+    }
+
+    public Date getLastReportedAt() {
+        return lastReportedAt;
+    }
+
+    public void setLastReportedAt(Date lastReportedAt) {
+        this.lastReportedAt = lastReportedAt;
+    }
+}
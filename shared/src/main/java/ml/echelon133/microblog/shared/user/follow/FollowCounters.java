@@ -0,0 +1,57 @@
+package ml.echelon133.microblog.shared.user.follow;
+
+import javax.persistence.*;
+import java.util.UUID;
+
+/**
+ * Stored counters of follows of a single user. They are updated in the same transaction which creates or removes
+ * a follow, so that reading them does not require counting follows of the user. Mandatory self-follows
+ * are not counted.
+ */
+@Entity
+@Table(name = "follow_counters")
+public class FollowCounters {
+
+    @Id
+    private UUID userId;
+
+    @Column(nullable = false)
+    private long following;
+
+    @Column(nullable = false)
+    private long followers;
+
+    public FollowCounters() {}
+    public FollowCounters(UUID userId) {
+        this(userId, 0, 0);
+    }
+    public FollowCounters(UUID userId, long following, long followers) {
+        this.userId = userId;
+        this.following = following;
+        this.followers = followers;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public long getFollowing() {
+        return following;
+    }
+
+    public void setFollowing(long following) {
+        this.following = following;
+    }
+
+    public long getFollowers() {
+        return followers;
+    }
+
+    public void setFollowers(long followers) {
+        this.followers = followers;
+    }
+}
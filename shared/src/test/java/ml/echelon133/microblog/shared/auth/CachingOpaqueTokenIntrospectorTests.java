@@ -0,0 +1,177 @@
+package ml.echelon133.microblog.shared.auth;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.core.OAuth2TokenIntrospectionClaimNames;
+import org.springframework.security.oauth2.server.resource.introspection.BadOpaqueTokenException;
+import org.springframework.security.oauth2.server.resource.introspection.OAuth2IntrospectionAuthenticatedPrincipal;
+import org.springframework.security.oauth2.server.resource.introspection.OpaqueTokenIntrospector;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of CachingOpaqueTokenIntrospector")
+public class CachingOpaqueTokenIntrospectorTests {
+
+    private static final String TOKEN = "token";
+    private static final Duration MAX_TTL = Duration.ofMinutes(5);
+
+    @Mock
+    private OpaqueTokenIntrospector delegate;
+
+    @Mock
+    private Clock clock;
+
+    private Instant now = Instant.parse("2023-01-01T10:00:00Z");
+
+    private CachingOpaqueTokenIntrospector introspector;
+
+    @BeforeEach
+    public void beforeEach() {
+        lenient().when(clock.instant()).thenAnswer(i -> now);
+        lenient().when(clock.millis()).thenAnswer(i -> now.toEpochMilli());
+        introspector = new CachingOpaqueTokenIntrospector(delegate, clock, MAX_TTL, 2, new SimpleMeterRegistry());
+    }
+
+    private static OAuth2AuthenticatedPrincipal createPrincipal(Instant expiresAt) {
+        return new OAuth2IntrospectionAuthenticatedPrincipal(
+                "user", Map.of(OAuth2TokenIntrospectionClaimNames.EXP, expiresAt), List.of()
+        );
+    }
+
+    @Test
+    @DisplayName("introspect introspects a token only once while the result is cached")
+    public void introspect_ResultCached_DoesNotIntrospectAgain() {
+        var principal = createPrincipal(now.plus(Duration.ofHours(1)));
+
+        // given
+        given(delegate.introspect(TOKEN)).willReturn(principal);
+
+        // when
+        var result1 = introspector.introspect(TOKEN);
+        now = now.plus(MAX_TTL).minusSeconds(1);
+        var result2 = introspector.introspect(TOKEN);
+
+        // then
+        assertSame(principal, result1);
+        assertSame(principal, result2);
+        verify(delegate, times(1)).introspect(TOKEN);
+        assertEquals(0.5, introspector.hitRatio());
+    }
+
+    @Test
+    @DisplayName("introspect introspects a token again once the result is older than the max ttl")
+    public void introspect_ResultOlderThanMaxTtl_IntrospectsAgain() {
+        // given
+        given(delegate.introspect(TOKEN)).willReturn(createPrincipal(now.plus(Duration.ofHours(1))));
+
+        // when
+        introspector.introspect(TOKEN);
+        now = now.plus(MAX_TTL);
+        introspector.introspect(TOKEN);
+
+        // then
+        verify(delegate, times(2)).introspect(TOKEN);
+    }
+
+    @Test
+    @DisplayName("introspect does not cache a result beyond the expiration of the token")
+    public void introspect_TokenExpiresBeforeMaxTtl_CachesUntilTokenExpires() {
+        // given
+        given(delegate.introspect(TOKEN)).willReturn(createPrincipal(now.plusSeconds(30)));
+
+        // when
+        introspector.introspect(TOKEN);
+        now = now.plusSeconds(29);
+        introspector.introspect(TOKEN);
+        now = now.plusSeconds(1);
+        introspector.introspect(TOKEN);
+
+        // then
+        verify(delegate, times(2)).introspect(TOKEN);
+    }
+
+    @Test
+    @DisplayName("introspect does not cache failed introspections")
+    public void introspect_IntrospectionFails_DoesNotCache() {
+        // given
+        given(delegate.introspect(TOKEN)).willThrow(new BadOpaqueTokenException("inactive"));
+
+        // when
+        assertThrows(BadOpaqueTokenException.class, () -> introspector.introspect(TOKEN));
+        assertThrows(BadOpaqueTokenException.class, () -> introspector.introspect(TOKEN));
+
+        // then
+        verify(delegate, times(2)).introspect(TOKEN);
+    }
+
+    @Test
+    @DisplayName("evict makes the next request with the revoked token get introspected again")
+    public void evict_ResultCached_IntrospectsAgain() {
+        // given
+        given(delegate.introspect(TOKEN))
+                .willReturn(createPrincipal(now.plus(Duration.ofHours(1))))
+                .willThrow(new BadOpaqueTokenException("revoked"));
+
+        // when
+        introspector.introspect(TOKEN);
+        introspector.evict(TokenHash.of(TOKEN));
+
+        // then
+        assertThrows(BadOpaqueTokenException.class, () -> introspector.introspect(TOKEN));
+        verify(delegate, times(2)).introspect(TOKEN);
+    }
+
+    @Test
+    @DisplayName("introspect does not cache a token which is revoked while it's being introspected")
+    public void introspect_RevokedDuringIntrospection_DoesNotCache() {
+        // given
+        given(delegate.introspect(TOKEN)).willAnswer(i -> {
+            // the revocation arrives after the authorization server has answered, but before the answer is cached
+            introspector.evict(TokenHash.of(TOKEN));
+            return createPrincipal(now.plus(Duration.ofHours(1)));
+        });
+
+        // when
+        introspector.introspect(TOKEN);
+        introspector.introspect(TOKEN);
+
+        // then
+        verify(delegate, times(2)).introspect(TOKEN);
+    }
+
+    @Test
+    @DisplayName("introspect does not cache a token revoked during introspection even after many other revocations")
+    public void introspect_ManyRevocationsDuringIntrospection_DoesNotCache() {
+        // given
+        given(delegate.introspect(TOKEN)).willAnswer(i -> {
+            introspector.evict(TokenHash.of(TOKEN));
+            // more revocations than the cache can hold entries
+            for (int j = 0; j < 10; j++) {
+                introspector.evict(TokenHash.of("other" + j));
+            }
+            return createPrincipal(now.plus(Duration.ofHours(1)));
+        });
+
+        // when
+        introspector.introspect(TOKEN);
+        introspector.introspect(TOKEN);
+
+        // then
+        verify(delegate, times(2)).introspect(TOKEN);
+    }
+}
@@ -0,0 +1,117 @@
+package ml.echelon133.microblog.shared.auth;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static ml.echelon133.microblog.shared.auth.TokenOwnerIdExtractor.TOKEN_OWNER_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests of EdgeIdentityVerifier")
+public class EdgeIdentityVerifierTests {
+
+    private static final String SECRET = "test-secret";
+    private static final String TOKEN = "opaque-token";
+    private static final String TOKEN_OWNER_ID = "1b7e3d2c-4c4d-4b4e-8e3a-0d3c2b1a0f9e";
+    private static final Instant NOW = Instant.parse("2023-03-08T00:00:00Z");
+
+    private final EdgeIdentityHeader identityHeader = new EdgeIdentityHeader(SECRET);
+    private final EdgeIdentityVerifier verifier = new EdgeIdentityVerifier(SECRET, Clock.fixed(NOW, ZoneOffset.UTC));
+
+    private static Map<String, Object> createPayload(Instant expiresAt, String token) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put(EdgeIdentityHeader.SUBJECT, "user");
+        payload.put(EdgeIdentityHeader.TOKEN_OWNER_ID, TOKEN_OWNER_ID);
+        payload.put(EdgeIdentityHeader.SCOPE, List.of("read"));
+        payload.put(EdgeIdentityHeader.EXPIRES_AT, expiresAt.getEpochSecond());
+        payload.put(EdgeIdentityHeader.TOKEN_HASH, TokenHash.of(token));
+        return payload;
+    }
+
+    @Test
+    @DisplayName("verify returns the principal of a valid header signed for the token of the request")
+    public void verify_ValidHeader_ReturnsPrincipal() {
+        var headerValue = identityHeader.encode(createPayload(NOW.plusSeconds(30), TOKEN));
+
+        // when
+        var principal = verifier.verify(headerValue, TOKEN).orElseThrow();
+
+        // then
+        assertEquals("user", principal.getName());
+        assertEquals(TOKEN_OWNER_ID, principal.getAttribute(TOKEN_OWNER_KEY));
+        assertEquals(
+                List.of("SCOPE_read"),
+                principal.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.toList())
+        );
+    }
+
+    @Test
+    @DisplayName("verify returns empty when the header has been signed for a different token")
+    public void verify_DifferentToken_ReturnsEmpty() {
+        var headerValue = identityHeader.encode(createPayload(NOW.plusSeconds(30), "other-token"));
+
+        // when
+        var principal = verifier.verify(headerValue, TOKEN);
+
+        // then
+        assertTrue(principal.isEmpty());
+    }
+
+    @Test
+    @DisplayName("verify returns empty when the request does not carry a token")
+    public void verify_NoToken_ReturnsEmpty() {
+        var headerValue = identityHeader.encode(createPayload(NOW.plusSeconds(30), TOKEN));
+
+        // when
+        var principal = verifier.verify(headerValue, null);
+
+        // then
+        assertTrue(principal.isEmpty());
+    }
+
+    @Test
+    @DisplayName("verify returns empty when the header has expired")
+    public void verify_HeaderExpired_ReturnsEmpty() {
+        var headerValue = identityHeader.encode(createPayload(NOW, TOKEN));
+
+        // when
+        var principal = verifier.verify(headerValue, TOKEN);
+
+        // then
+        assertTrue(principal.isEmpty());
+    }
+
+    @Test
+    @DisplayName("verify returns empty when the header has been signed with a different secret")
+    public void verify_DifferentSecret_ReturnsEmpty() {
+        var headerValue = new EdgeIdentityHeader("other-secret").encode(createPayload(NOW.plusSeconds(30), TOKEN));
+
+        // when
+        var principal = verifier.verify(headerValue, TOKEN);
+
+        // then
+        assertTrue(principal.isEmpty());
+    }
+
+    @Test
+    @DisplayName("verify returns empty when the header does not contain the identity of the token owner")
+    public void verify_OwnerMissing_ReturnsEmpty() {
+        var payload = createPayload(NOW.plusSeconds(30), TOKEN);
+        payload.remove(EdgeIdentityHeader.TOKEN_OWNER_ID);
+        var headerValue = identityHeader.encode(payload);
+
+        // when
+        var principal = verifier.verify(headerValue, TOKEN);
+
+        // then
+        assertTrue(principal.isEmpty());
+    }
+}
@@ -0,0 +1,63 @@
+package ml.echelon133.microblog.shared.auth;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthentication;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static ml.echelon133.microblog.shared.auth.TokenOwnerIdExtractor.TOKEN_OWNER_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests of JwtPrincipalConverter")
+public class JwtPrincipalConverterTests {
+
+    private final JwtPrincipalConverter converter = new JwtPrincipalConverter();
+
+    @Test
+    @DisplayName("convert creates the same kind of authentication as an introspection")
+    public void convert_Jwt_CreatesBearerTokenAuthentication() {
+        var issuedAt = Instant.parse("2023-01-01T10:00:00Z");
+        var tokenOwnerId = UUID.randomUUID().toString();
+        var jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("user")
+                .issuedAt(issuedAt)
+                .expiresAt(issuedAt.plusSeconds(60))
+                .claim("scope", "post.read post.write")
+                .claim(TOKEN_OWNER_KEY, tokenOwnerId)
+                .build();
+
+        // when
+        var authentication = (BearerTokenAuthentication) converter.convert(jwt);
+
+        // then
+        var principal = (OAuth2AuthenticatedPrincipal) authentication.getPrincipal();
+        var authorities = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority).collect(Collectors.toSet());
+        assertEquals("user", authentication.getName());
+        assertEquals(tokenOwnerId, principal.getAttribute(TOKEN_OWNER_KEY));
+        assertEquals(Set.of("SCOPE_post.read", "SCOPE_post.write"), authorities);
+        assertEquals("token", authentication.getToken().getTokenValue());
+        assertEquals(issuedAt, authentication.getToken().getIssuedAt());
+        assertEquals(issuedAt.plusSeconds(60), authentication.getToken().getExpiresAt());
+    }
+
+    @Test
+    @DisplayName("convert creates an authentication without authorities when the token has no scopes")
+    public void convert_JwtWithoutScopes_HasNoAuthorities() {
+        var jwt = Jwt.withTokenValue("token").header("alg", "RS256").subject("user").build();
+
+        // when
+        var authentication = converter.convert(jwt);
+
+        // then
+        assertTrue(authentication.getAuthorities().isEmpty());
+    }
+}
@@ -0,0 +1,212 @@
+package ml.echelon133.microblog.shared.auth;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.introspection.OAuth2IntrospectionAuthenticatedPrincipal;
+import org.springframework.security.oauth2.server.resource.introspection.OpaqueTokenIntrospector;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static ml.echelon133.microblog.shared.auth.TokenOwnerIdExtractor.TOKEN_OWNER_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of TokenFormatAuthenticationManagerResolver")
+public class TokenFormatAuthenticationManagerResolverTests {
+
+    private static final String ISSUER = "http://auth";
+    private static RSAKey signingKey;
+
+    @Mock
+    private OpaqueTokenIntrospector introspector;
+
+    @Mock
+    private EdgeIdentityVerifier edgeIdentityVerifier;
+
+    private TokenFormatAuthenticationManagerResolver resolver;
+
+    @BeforeAll
+    public static void beforeAll() throws Exception {
+        signingKey = new RSAKeyGenerator(2048).keyID("key").generate();
+    }
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        // the same validation as JwtAccessTokens#createDecoder, with a local key instead of a JWK set
+        var decoder = NimbusJwtDecoder.withPublicKey(signingKey.toRSAPublicKey())
+                .jwtProcessorCustomizer(JwtAccessTokens::requireAccessTokenType)
+                .build();
+        JwtAccessTokens.validateIssuer(decoder, ISSUER);
+        resolver = new TokenFormatAuthenticationManagerResolver(introspector, decoder, edgeIdentityVerifier);
+    }
+
+    private static String createJwt(String type, String issuer, Instant expiresAt) throws Exception {
+        var claims = new JWTClaimsSet.Builder()
+                .subject("user")
+                .issuer(issuer)
+                .issueTime(Date.from(expiresAt.minusSeconds(3600)))
+                .expirationTime(Date.from(expiresAt))
+                .claim("scope", List.of("post.read", "post.write"))
+                .claim(TOKEN_OWNER_KEY, UUID.randomUUID().toString())
+                .build();
+        var header = new JWSHeader.Builder(JWSAlgorithm.RS256)
+                .keyID(signingKey.getKeyID())
+                .type(type == null ? null : new JOSEObjectType(type))
+                .build();
+        var jwt = new SignedJWT(header, claims);
+        jwt.sign(new RSASSASigner(signingKey));
+        return jwt.serialize();
+    }
+
+    private static MockHttpServletRequest createRequest(String token) {
+        var request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+
+    private static Set<String> authoritiesOf(org.springframework.security.core.Authentication authentication) {
+        return authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.toSet());
+    }
+
+    @Test
+    @DisplayName("resolve verifies self-contained access tokens locally")
+    public void resolve_JwtAccessToken_AuthenticatesWithClaims() throws Exception {
+        var token = createJwt(AccessTokens.JWT_TYPE, ISSUER, Instant.now().plusSeconds(60));
+
+        // when
+        var authentication = resolver.resolve(createRequest(token))
+                .authenticate(new BearerTokenAuthenticationToken(token));
+
+        // then
+        assertEquals("user", authentication.getName());
+        assertEquals(Set.of("SCOPE_post.read", "SCOPE_post.write"), authoritiesOf(authentication));
+        verify(introspector, never()).introspect(any());
+    }
+
+    @Test
+    @DisplayName("resolve rejects self-contained access tokens of another issuer")
+    public void resolve_JwtOfAnotherIssuer_ThrowsException() throws Exception {
+        var token = createJwt(AccessTokens.JWT_TYPE, "http://other", Instant.now().plusSeconds(60));
+        var manager = resolver.resolve(createRequest(token));
+
+        // when
+        assertThrows(AuthenticationException.class, () -> manager.authenticate(new BearerTokenAuthenticationToken(token)));
+    }
+
+    @Test
+    @DisplayName("resolve rejects JWTs which are not access tokens")
+    public void resolve_JwtWithoutAccessTokenType_ThrowsException() throws Exception {
+        var idToken = createJwt("JWT", ISSUER, Instant.now().plusSeconds(60));
+        var untypedToken = createJwt(null, ISSUER, Instant.now().plusSeconds(60));
+
+        // when
+        var idTokenManager = resolver.resolve(createRequest(idToken));
+        var untypedTokenManager = resolver.resolve(createRequest(untypedToken));
+
+        // then
+        assertThrows(AuthenticationException.class,
+                () -> idTokenManager.authenticate(new BearerTokenAuthenticationToken(idToken)));
+        assertThrows(AuthenticationException.class,
+                () -> untypedTokenManager.authenticate(new BearerTokenAuthenticationToken(untypedToken)));
+    }
+
+    @Test
+    @DisplayName("resolve rejects expired self-contained access tokens")
+    public void resolve_ExpiredJwt_ThrowsException() throws Exception {
+        var token = createJwt(AccessTokens.JWT_TYPE, ISSUER, Instant.now().minusSeconds(3600));
+        var manager = resolver.resolve(createRequest(token));
+
+        // when
+        assertThrows(AuthenticationException.class, () -> manager.authenticate(new BearerTokenAuthenticationToken(token)));
+    }
+
+    @Test
+    @DisplayName("resolve introspects opaque access tokens")
+    public void resolve_OpaqueToken_Introspects() {
+        var token = "opaque-token";
+        var principal = new OAuth2IntrospectionAuthenticatedPrincipal(
+                "user", Map.of("sub", "user"), List.of()
+        );
+
+        // given
+        given(introspector.introspect(token)).willReturn(principal);
+
+        // when
+        var authentication = resolver.resolve(createRequest(token))
+                .authenticate(new BearerTokenAuthenticationToken(token));
+
+        // then
+        assertEquals("user", authentication.getName());
+        verify(introspector, times(1)).introspect(token);
+    }
+
+    @Test
+    @DisplayName("resolve authenticates requests with a valid edge identity without authenticating the token again")
+    public void resolve_ValidEdgeIdentity_UsesIdentity() {
+        var token = "opaque-token";
+        var principal = new OAuth2IntrospectionAuthenticatedPrincipal(
+                "user", Map.of("sub", "user"), List.of()
+        );
+        var request = createRequest(token);
+        request.addHeader(EdgeIdentityHeader.NAME, "identity");
+
+        // given
+        given(edgeIdentityVerifier.verify("identity", token)).willReturn(Optional.of(principal));
+
+        // when
+        var authentication = resolver.resolve(request).authenticate(new BearerTokenAuthenticationToken(token));
+
+        // then
+        assertSame(principal, authentication.getPrincipal());
+        verify(introspector, never()).introspect(any());
+    }
+
+    @Test
+    @DisplayName("resolve authenticates the token when the edge identity is invalid")
+    public void resolve_InvalidEdgeIdentity_AuthenticatesToken() {
+        var token = "opaque-token";
+        var principal = new OAuth2IntrospectionAuthenticatedPrincipal(
+                "user", Map.of("sub", "user"), List.of()
+        );
+        var request = createRequest(token);
+        request.addHeader(EdgeIdentityHeader.NAME, "forged");
+
+        // given
+        given(edgeIdentityVerifier.verify("forged", token)).willReturn(Optional.empty());
+        given(introspector.introspect(token)).willReturn(principal);
+
+        // when
+        resolver.resolve(request).authenticate(new BearerTokenAuthenticationToken(token));
+
+        // then
+        verify(introspector, times(1)).introspect(token);
+    }
+}
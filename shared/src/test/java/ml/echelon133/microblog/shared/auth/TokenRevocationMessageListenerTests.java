@@ -0,0 +1,61 @@
+package ml.echelon133.microblog.shared.auth;
+
+import ml.echelon133.microblog.shared.queue.QueueTopic;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of TokenRevocationMessageListener")
+public class TokenRevocationMessageListenerTests {
+
+    @Mock
+    private CachingOpaqueTokenIntrospector introspector;
+
+    @InjectMocks
+    private TokenRevocationMessageListener listener;
+
+    private static DefaultMessage createMessage(String topic, String tokenHash) {
+        return new DefaultMessage(topic.getBytes(), new JdkSerializationRedisSerializer().serialize(tokenHash));
+    }
+
+    @Test
+    @DisplayName("onMessage evicts the revoked token")
+    public void onMessage_TokenRevoked_EvictsToken() {
+        var tokenHash = TokenHash.of("token");
+
+        // when
+        listener.onMessage(createMessage(QueueTopic.TOKEN_REVOCATION.getTopic(), tokenHash), null);
+
+        // then
+        verify(introspector, times(1)).evict(tokenHash);
+    }
+
+    @Test
+    @DisplayName("onMessage ignores messages from unexpected topics")
+    public void onMessage_UnexpectedTopic_DoesNotEvict() {
+        // when
+        listener.onMessage(createMessage("unexpected", TokenHash.of("token")), null);
+
+        // then
+        verify(introspector, never()).evict(any());
+    }
+
+    @Test
+    @DisplayName("onMessage ignores messages which cannot be deserialized")
+    public void onMessage_InvalidBody_DoesNotEvict() {
+        // when
+        listener.onMessage(new DefaultMessage(QueueTopic.TOKEN_REVOCATION.getTopic().getBytes(), new byte[] {1, 2}), null);
+
+        // then
+        verify(introspector, never()).evict(any());
+    }
+}
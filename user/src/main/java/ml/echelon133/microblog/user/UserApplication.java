@@ -6,13 +6,19 @@ import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.time.Clock;
+
 @SpringBootApplication
 @EntityScan({"ml.echelon133.microblog.shared.user"})
 @EnableDiscoveryClient
 @EnableJpaAuditing
+@EnableScheduling
+@EnableAsync
 public class UserApplication {
 
     public static void main(String[] args) {
@@ -23,4 +29,9 @@ public class UserApplication {
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
     }
+
+    @Bean
+    public Clock clock() {
+        return Clock.systemDefaultZone();
+    }
 }
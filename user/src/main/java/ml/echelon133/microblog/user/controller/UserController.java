@@ -6,16 +6,25 @@ import ml.echelon133.microblog.shared.user.follow.FollowDto;
 import ml.echelon133.microblog.shared.user.UserCreationDto;
 import ml.echelon133.microblog.shared.user.UserDto;
 import ml.echelon133.microblog.shared.user.UserUpdateDto;
+import ml.echelon133.microblog.user.service.FollowSuggestionService;
 import ml.echelon133.microblog.user.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.core.OAuth2AuthenticatedPrincipal;
+import org.springframework.util.DigestUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.Valid;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Stream;
@@ -28,10 +37,12 @@ import static ml.echelon133.microblog.shared.exception.ValidationResultMapper.re
 public class UserController {
 
     private UserService userService;
+    private FollowSuggestionService followSuggestionService;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, FollowSuggestionService followSuggestionService) {
         this.userService = userService;
+        this.followSuggestionService = followSuggestionService;
     }
 
     @GetMapping("/{id}")
@@ -74,6 +85,28 @@ public class UserController {
         return userService.updateUserInfo(id, dto);
     }
 
+    @GetMapping("/me/suggestions")
+    public List<UserDto> getSuggestions(@RequestParam(required = false, defaultValue = "10") Integer limit,
+                                        @AuthenticationPrincipal OAuth2AuthenticatedPrincipal principal) {
+        var id = extractTokenOwnerIdFromPrincipal(principal);
+        return followSuggestionService.suggestFollows(id, limit);
+    }
+
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<UserDto>> getUsers(@RequestParam List<UUID> ids, WebRequest request) {
+        var users = new ArrayList<>(userService.findByIds(ids));
+        // users are found in no particular order, but the etag should only change when they change
+        users.sort(Comparator.comparing(UserDto::getId));
+
+        var etag = etagOf(users);
+        if (request.checkNotModified(etag)) {
+            // the status and the etag header of the 304 response have already been set
+            return null;
+        }
+        // clients may keep the response, but they have to revalidate it, because users can change their profiles
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).eTag(etag).body(users);
+    }
+
     @GetMapping
     public Page<UserDto> searchUser(Pageable pageable,
                                     @RequestParam(value = "username_contains", required = false, defaultValue = "")
@@ -109,6 +142,19 @@ public class UserController {
         }
     }
 
+    @GetMapping("/autocomplete")
+    public List<UserDto> autocomplete(@RequestParam String prefix,
+                                      @RequestParam(required = false, defaultValue = "10") Integer limit) {
+        return userService.autocomplete(prefix, limit);
+    }
+
+    @GetMapping("/follow-status")
+    public Map<UUID, Boolean> getFollowStatuses(@AuthenticationPrincipal OAuth2AuthenticatedPrincipal principal,
+                                                @RequestParam List<UUID> ids) {
+        var id = extractTokenOwnerIdFromPrincipal(principal);
+        return userService.findFollowStatuses(id, ids);
+    }
+
     @GetMapping("/{targetId}/follow")
     public Map<String, Boolean> getFollow(@AuthenticationPrincipal OAuth2AuthenticatedPrincipal principal,
                                           @PathVariable UUID targetId) {
@@ -123,8 +169,9 @@ public class UserController {
                                              @PathVariable UUID targetId) throws ResourceNotFoundException {
         var id = extractTokenOwnerIdFromPrincipal(principal);
 
-        var follows = userService.followUser(id, targetId);
-        return Map.of("follows", follows);
+        // the follow exists after the call, regardless of whether this call has created it
+        userService.followUser(id, targetId);
+        return Map.of("follows", true);
     }
 
     @DeleteMapping("/{targetId}/follow")
@@ -132,10 +179,9 @@ public class UserController {
                                              @PathVariable UUID targetId) {
         var id = extractTokenOwnerIdFromPrincipal(principal);
 
-        // negate the value, because unfollowUser returns true when user gets deleted, whereas this method
-        // returns information about the existence of the follow relationship
-        var follows = !userService.unfollowUser(id, targetId);
-        return Map.of("follows", follows);
+        // the follow does not exist after the call, regardless of whether this call has removed it
+        userService.unfollowUser(id, targetId);
+        return Map.of("follows", false);
     }
 
     @GetMapping("/{id}/profile-counters")
@@ -162,4 +208,16 @@ public class UserController {
         }
         return page;
     }
-}
\ No newline at end of file
+
+    private static String etagOf(List<UserDto> users) {
+        var content = new StringBuilder();
+        for (var user : users) {
+            content.append(user.getId()).append('\0')
+                    .append(user.getUsername()).append('\0')
+                    .append(user.getDisplayedName()).append('\0')
+                    .append(user.getAviUrl()).append('\0')
+                    .append(user.getDescription()).append('\0');
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
@@ -0,0 +1,49 @@
+package ml.echelon133.microblog.user.queue;
+
+import ml.echelon133.microblog.shared.queue.QueueTopic;
+import ml.echelon133.microblog.shared.user.follow.FollowInfoDto;
+import ml.echelon133.microblog.user.service.FollowGraphService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+/**
+ * Listener of follow-related messages published in Redis by any instance of the user service.
+ * Each {@link FollowInfoDto} message received from topics FOLLOW and UNFOLLOW makes the in-memory follow graph
+ * of this instance apply the current state of the follow. Messages are dispatched concurrently, so the topic
+ * of a message is not trusted to be the latest change of the follow (see
+ * {@link FollowGraphService#applyFollowChange(FollowInfoDto)}).
+ */
+public class FollowMessageListener implements MessageListener {
+
+    private static final Logger LOGGER = LogManager.getLogger(FollowMessageListener.class);
+
+    private final FollowGraphService followGraphService;
+
+    public FollowMessageListener(FollowGraphService followGraphService) {
+        this.followGraphService = followGraphService;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String topicName = new String(message.getChannel());
+
+        try {
+            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(message.getBody()));
+            var follow = (FollowInfoDto)ois.readObject();
+            if (topicName.equals(QueueTopic.FOLLOW.getTopic()) || topicName.equals(QueueTopic.UNFOLLOW.getTopic())) {
+                followGraphService.applyFollowChange(follow);
+            } else {
+                LOGGER.warn("Received unexpected topic name: " + topicName);
+            }
+        } catch (ClassNotFoundException | IOException e) {
+            LOGGER.error("Failed to deserialize a message from topic " + topicName);
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,5 +1,10 @@
 package ml.echelon133.microblog.user.queue;
 
+import ml.echelon133.microblog.shared.auth.CachingOpaqueTokenIntrospector;
+import ml.echelon133.microblog.shared.auth.TokenRevocationMessageListener;
+import ml.echelon133.microblog.shared.queue.QueueTopic;
+import ml.echelon133.microblog.user.service.FollowGraphService;
+import ml.echelon133.microblog.user.service.UserCacheService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -7,6 +12,8 @@ import org.springframework.data.redis.connection.RedisPassword;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
 
 @Configuration
 public class QueueConfiguration {
@@ -30,4 +37,32 @@ public class QueueConfiguration {
         template.setConnectionFactory(jedisConnectionFactory());
         return template;
     }
+
+    @Bean
+    MessageListenerAdapter userUpdateMessageListener(UserCacheService userCacheService) {
+        return new MessageListenerAdapter(new UserUpdateMessageListener(userCacheService));
+    }
+
+    @Bean
+    MessageListenerAdapter followMessageListener(FollowGraphService followGraphService) {
+        return new MessageListenerAdapter(new FollowMessageListener(followGraphService));
+    }
+
+    @Bean
+    MessageListenerAdapter tokenRevocationMessageListener(CachingOpaqueTokenIntrospector introspector) {
+        return new MessageListenerAdapter(new TokenRevocationMessageListener(introspector));
+    }
+
+    @Bean
+    RedisMessageListenerContainer redisContainer(MessageListenerAdapter userUpdateMessageListener,
+                                                 MessageListenerAdapter followMessageListener,
+                                                 MessageListenerAdapter tokenRevocationMessageListener) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(jedisConnectionFactory());
+        container.addMessageListener(userUpdateMessageListener, QueueTopic.USER_UPDATE);
+        container.addMessageListener(followMessageListener, QueueTopic.FOLLOW);
+        container.addMessageListener(followMessageListener, QueueTopic.UNFOLLOW);
+        container.addMessageListener(tokenRevocationMessageListener, QueueTopic.TOKEN_REVOCATION);
+        return container;
+    }
 }
@@ -0,0 +1,49 @@
+package ml.echelon133.microblog.user.queue;
+
+import ml.echelon133.microblog.shared.queue.QueueTopic;
+import ml.echelon133.microblog.user.service.UserCacheService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.UUID;
+
+/**
+ * Listener of user update messages published in Redis.
+ * Every instance of the user service (including the one which has updated the user) receives each message
+ * and evicts the cached profile of the updated user.
+ */
+public class UserUpdateMessageListener implements MessageListener {
+
+    private static final Logger LOGGER = LogManager.getLogger(UserUpdateMessageListener.class);
+
+    private final UserCacheService userCacheService;
+
+    @Autowired
+    public UserUpdateMessageListener(UserCacheService userCacheService) {
+        this.userCacheService = userCacheService;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String topicName = new String(message.getChannel());
+
+        try {
+            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(message.getBody()));
+            var userId = (UUID)ois.readObject();
+            if (topicName.equals(QueueTopic.USER_UPDATE.getTopic())) {
+                userCacheService.evict(userId);
+            } else {
+                LOGGER.warn("Received unexpected topic name: " + topicName);
+            }
+        } catch (ClassNotFoundException | IOException e) {
+            LOGGER.error("Failed to deserialize a message from topic " + topicName);
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ml.echelon133.microblog.user.queue;
+
+import ml.echelon133.microblog.shared.queue.QueueTopic;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+
+/**
+ * Publishes ids of users whose profile info has been updated to a redis queue.
+ */
+@Service
+public class UserUpdatePublisher {
+
+    private static final Logger LOGGER = LogManager.getLogger(UserUpdatePublisher.class);
+    private final RedisTemplate<String, Object> userUpdateTemplate;
+
+    @Autowired
+    public UserUpdatePublisher(RedisTemplate<String, Object> userUpdateTemplate) {
+        this.userUpdateTemplate = userUpdateTemplate;
+    }
+
+    /**
+     * Publishes a message which makes every instance of the user service evict the cached profile of the user.
+     * @param userId id of the user whose profile info has been updated
+     */
+    public void publishUserUpdate(UUID userId) {
+        LOGGER.debug(String.format("Publishing an update of user '%s'", userId));
+        userUpdateTemplate.convertAndSend(QueueTopic.USER_UPDATE.getTopic(), userId);
+    }
+}
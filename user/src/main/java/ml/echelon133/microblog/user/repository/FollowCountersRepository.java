@@ -0,0 +1,94 @@
+package ml.echelon133.microblog.user.repository;
+
+import ml.echelon133.microblog.shared.user.follow.FollowCounters;
+import ml.echelon133.microblog.shared.user.follow.FollowDto;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface FollowCountersRepository extends JpaRepository<FollowCounters, UUID> {
+
+    /**
+     * Reads stored counters of the user with {@code userId}.
+     * @param userId id of the user whose counters are being read
+     * @return counters of the user, empty if they have not been created yet
+     */
+    @Query("SELECT NEW ml.echelon133.microblog.shared.user.follow.FollowDto(c.following, c.followers) " +
+            "FROM FollowCounters c WHERE c.userId = ?1")
+    Optional<FollowDto> findCountersOfUser(UUID userId);
+
+    /**
+     * Stores counters of the user with {@code userId}, unless they already exist. Concurrent attempts to store
+     * counters of the same user never fail on the primary key.
+     *
+     * @param userId id of the user whose counters are stored
+     * @param following how many users are being followed by the user
+     * @param followers how many users follow the user
+     * @return 1 if the counters have been stored, 0 if they had already existed
+     */
+    // native, because JPQL has no equivalent of ON CONFLICT DO NOTHING
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT INTO follow_counters (user_id, following, followers) VALUES (?1, ?2, ?3) " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int createCounters(UUID userId, long following, long followers);
+
+    /**
+     * Atomically adds {@code delta} to the 'following' counter of {@code followingUser} and to the 'followers'
+     * counter of {@code followedUser}. Both rows are updated by a single statement.
+     *
+     * @param followingUser id of the user who is on the 'following others' side of the relationship
+     * @param followedUser id of the user who is on the 'being followed' side of the relationship
+     * @param delta 1 when a follow has been created, -1 when it has been removed
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE FollowCounters c " +
+            "SET c.following = c.following + (CASE WHEN c.userId = ?1 THEN ?3 ELSE 0L END), " +
+            "c.followers = c.followers + (CASE WHEN c.userId = ?2 THEN ?3 ELSE 0L END) " +
+            "WHERE c.userId IN (?1, ?2)")
+    void updateCounters(UUID followingUser, UUID followedUser, long delta);
+
+    /**
+     * Creates zeroed counters of users who do not have them yet. Every created row needs to be recounted
+     * with {@link #recountCounters(Collection)}.
+     *
+     * @return how many counters have been created
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("INSERT INTO FollowCounters (userId, following, followers) SELECT u.id, 0L, 0L FROM MBlog_User u " +
+            "WHERE NOT EXISTS (SELECT c.userId FROM FollowCounters c WHERE c.userId = u.id)")
+    int createMissingCounters();
+
+    /**
+     * Finds ids of users whose counters exist, ordered by id and starting right after {@code lastUserId}.
+     *
+     * @param lastUserId id of the last user from the previous chunk
+     * @param pageable how many ids should be found
+     * @return ids of users
+     */
+    @Query("SELECT c.userId FROM FollowCounters c WHERE c.userId > ?1 ORDER BY c.userId")
+    List<UUID> findUserIdsAfter(UUID lastUserId, Pageable pageable);
+
+    /**
+     * Replaces stored counters of users with {@code userIds} with the actual number of their follows.
+     *
+     * @param userIds ids of users whose counters are recounted
+     * @return how many counters have been recounted
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE FollowCounters c SET " +
+            "c.following = (SELECT count(f) FROM Follow f WHERE f.followId.followingUser = c.userId " +
+            "AND f.followId.followedUser <> c.userId), " +
+            "c.followers = (SELECT count(f) FROM Follow f WHERE f.followId.followedUser = c.userId " +
+            "AND f.followId.followingUser <> c.userId) " +
+            "WHERE c.userId IN ?1")
+    int recountCounters(Collection<UUID> userIds);
+}
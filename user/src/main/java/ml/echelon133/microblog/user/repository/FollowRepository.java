@@ -6,8 +6,11 @@ import ml.echelon133.microblog.shared.user.UserDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 public interface FollowRepository extends JpaRepository<Follow, FollowId> {
@@ -30,6 +33,57 @@ public interface FollowRepository extends JpaRepository<Follow, FollowId> {
             "AND f.followId.followingUser <> f.followId.followedUser") // exclude mandatory self-follows from the results
     long countUserFollowers(UUID userId);
 
+    /**
+     * Finds which of {@code followedUsers} are being followed by {@code followingUser}, using a single query.
+     * @param followingUser id of the user who is on the 'following others' side of the relationship
+     * @param followedUsers ids of users who are potentially being followed
+     * @return ids of users who are being followed, in no particular order
+     */
+    @Query("SELECT f.followId.followedUser FROM Follow f " +
+            "WHERE f.followId.followingUser = ?1 AND f.followId.followedUser IN ?2")
+    List<UUID> findFollowedAmong(UUID followingUser, Collection<UUID> followedUsers);
+
+    /**
+     * Finds ids of follows (mandatory self-follows excluded), ordered by the following user and then by
+     * the followed user, and starting right after the follow of {@code lastFollowedUser} by {@code lastFollowingUser}.
+     * Reading all follows in chunks this way does not slow down with every chunk, like offset-based paging would.
+     *
+     * @param lastFollowingUser id of the following user of the last follow from the previous chunk
+     * @param lastFollowedUser id of the followed user of the last follow from the previous chunk
+     * @param pageable how many follows should be found
+     * @return ids of follows
+     */
+    @Query("SELECT f.followId FROM Follow f WHERE f.followId.followingUser <> f.followId.followedUser " +
+            "AND (f.followId.followingUser > ?1 OR (f.followId.followingUser = ?1 AND f.followId.followedUser > ?2)) " +
+            "ORDER BY f.followId.followingUser, f.followId.followedUser")
+    List<FollowId> findFollowIdsAfter(UUID lastFollowingUser, UUID lastFollowedUser, Pageable pageable);
+
+    /**
+     * Creates the follow of {@code followedUser} by {@code followingUser}, using a single statement. The follow
+     * is only created if two distinct users exist and the follow does not exist yet, so concurrent attempts to create
+     * the same follow never fail on the primary key.
+     *
+     * @param followingUser id of the user who is on the 'following others' side of the relationship
+     * @param followedUser id of the user who is on the 'being followed' side of the relationship
+     * @return 1 if the follow has been created, 0 if it had already existed or either user does not exist
+     */
+    // native, because JPQL has no equivalent of ON CONFLICT DO NOTHING
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT INTO follow (following_user, followed_user, date_created) " +
+            "SELECT ?1, ?2, CURRENT_TIMESTAMP WHERE (SELECT count(*) FROM mblog_users u WHERE u.id IN (?1, ?2)) = 2 " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int createFollow(UUID followingUser, UUID followedUser);
+
+    /**
+     * Removes the follow of {@code followedUser} by {@code followingUser}.
+     * @param followingUser id of the user who is on the 'following others' side of the relationship
+     * @param followedUser id of the user who is on the 'being followed' side of the relationship
+     * @return 1 if the follow has been removed, 0 if it had not existed
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Follow f WHERE f.followId.followingUser = ?1 AND f.followId.followedUser = ?2")
+    int deleteFollow(UUID followingUser, UUID followedUser);
+
     /**
      * Finds a {@link Page} of users who are being followed by {@code userId}.
      * @param userId id of the user who is on the 'following others' side of the relationship
@@ -9,10 +9,20 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface UserRepository extends PagingAndSortingRepository<User, UUID> {
+
+    /**
+     * Checks if there is a user with the given username (case is ignored).
+     *
+     * @param username username to check
+     * @return {@code true} if the username is taken
+     */
+    @Query("SELECT count(u) > 0 FROM MBlog_User u WHERE lower(u.username) = lower(?1)")
     boolean existsUserByUsernameIgnoreCase(String username);
 
     /**
@@ -26,34 +36,29 @@ public interface UserRepository extends PagingAndSortingRepository<User, UUID> {
     UserDto findByUserId(UUID id);
 
     /**
-     * Updates the displayed name of the user with specified {@link UUID}.
+     * Finds {@link UserDto}s representing users with specified ids.
      *
-     * @param userId id of the user whose displayed name will be updated
-     * @param displayedName the new displayed name of the user
+     * @param ids ids of the users to find
+     * @return dtos representing the found users, in no particular order
      */
-    @Modifying
-    @Query("UPDATE MBlog_User u SET u.displayedName = ?2 WHERE u.id = ?1")
-    void updateDisplayedName(UUID userId, String displayedName);
+    @Query("SELECT NEW ml.echelon133.microblog.shared.user.UserDto(u.id, u.username, u.displayedName, u.aviURL, u.description) " +
+            "FROM MBlog_User u WHERE u.id IN ?1")
+    List<UserDto> findByUserIds(Collection<UUID> ids);
 
     /**
-     * Updates the avi url of the user with specified {@link UUID}.
+     * Updates the profile info of the user with specified {@link UUID} with a single statement.
+     * Every {@code null} argument leaves the current value of its field unchanged.
      *
-     * @param userId id of the user whose avi url will be updated
+     * @param userId id of the user whose profile info will be updated
+     * @param displayedName the new displayed name of the user
      * @param aviUrl the new avi url of the user
-     */
-    @Modifying
-    @Query("UPDATE MBlog_User u SET u.aviURL = ?2 WHERE u.id = ?1")
-    void updateAviUrl(UUID userId, String aviUrl);
-
-    /**
-     * Updates the description of the user with specified {@link UUID}.
-     *
-     * @param userId id of the user whose description will be updated
      * @param description the new description of the user
+     * @return 1 if the user has been updated, 0 if the user does not exist
      */
-    @Modifying
-    @Query("UPDATE MBlog_User u SET u.description = ?2 WHERE u.id = ?1")
-    void updateDescription(UUID userId, String description);
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE MBlog_User u SET u.displayedName = coalesce(?2, u.displayedName), " +
+            "u.aviURL = coalesce(?3, u.aviURL), u.description = coalesce(?4, u.description) WHERE u.id = ?1")
+    int updateUserInfo(UUID userId, String displayedName, String aviUrl, String description);
 
     /**
      * Finds a {@link Page} of users whose usernames contain a certain phrase.
@@ -77,4 +82,30 @@ public interface UserRepository extends PagingAndSortingRepository<User, UUID> {
     @Query("SELECT NEW ml.echelon133.microblog.shared.user.UserDto(u.id, u.username, u.displayedName, u.aviURL, u.description) " +
             "FROM MBlog_User u WHERE lower(u.username) = lower(?1)")
     Page<UserDto> findByUsernameExact(String username, Pageable pageable);
+
+    /**
+     * Finds users whose usernames start with the given prefix, in the alphabetical order of their usernames.
+     * The user whose username is equal to the prefix always comes first.
+     *
+     * @param prefix lowercase prefix of usernames, which consists only of letters and digits
+     * @param pageable information about the wanted page, which limits the number of results
+     * @return a list of found users
+     */
+    @Query("SELECT NEW ml.echelon133.microblog.shared.user.UserDto(u.id, u.username, u.displayedName, u.aviURL, u.description) " +
+            "FROM MBlog_User u WHERE lower(u.username) LIKE concat(?1, '%') ORDER BY lower(u.username)")
+    List<UserDto> findByUsernamePrefix(String prefix, Pageable pageable);
+
+    /**
+     * Finds users whose displayed names start with the given prefix. Shorter displayed names, which are
+     * closer to the prefix, come first. Ranking by length means that all matching users are sorted before
+     * the page is cut, which is why displayed names are only looked up with prefixes long enough to match few users.
+     *
+     * @param prefix lowercase prefix of displayed names, in which backslashes, '%' and '_' are escaped with a backslash
+     * @param pageable information about the wanted page, which limits the number of results
+     * @return a list of found users
+     */
+    @Query("SELECT NEW ml.echelon133.microblog.shared.user.UserDto(u.id, u.username, u.displayedName, u.aviURL, u.description) " +
+            "FROM MBlog_User u WHERE lower(u.displayedName) LIKE concat(?1, '%') ESCAPE '\\' " +
+            "ORDER BY length(u.displayedName), lower(u.displayedName)")
+    List<UserDto> findByDisplayedNamePrefix(String prefix, Pageable pageable);
 }
@@ -0,0 +1,103 @@
+package ml.echelon133.microblog.user.service;
+
+import ml.echelon133.microblog.user.repository.FollowCountersRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * Periodically recounts stored follow counters of all users.
+ *
+ * Counters are updated together with follows, but they can still drift, e.g. when follows are modified
+ * by hand or when a recount races with a follow. Counters are recounted in chunks, and every chunk is recounted
+ * in its own short transaction, so that the repair never locks counters of many users at once.
+ * This service is intentionally not transactional as a whole.
+ *
+ * Every replica of the service schedules the repair, but only the replica which gets a PostgreSQL advisory lock
+ * runs it. The lock is held by a session, i.e. by a connection which stays open for the whole repair, because
+ * the repair spans many transactions.
+ */
+@Service
+public class FollowCountersRepairService {
+
+    private static final Logger LOGGER = LogManager.getLogger(FollowCountersRepairService.class);
+
+    // the smallest possible uuid, which precedes ids of all users
+    private static final UUID MIN_USER_ID = new UUID(0, 0);
+
+    static final long REPAIR_LOCK_KEY = 2318734211905527374L;
+
+    private FollowCountersRepository followCountersRepository;
+    private JdbcTemplate jdbcTemplate;
+
+    /*
+    How many counters are recounted by a single statement.
+     */
+    @Value("${user.follow-counters.repair-chunk-size}")
+    int chunkSize;
+
+    @Autowired
+    public FollowCountersRepairService(FollowCountersRepository followCountersRepository, JdbcTemplate jdbcTemplate) {
+        this.followCountersRepository = followCountersRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Creates counters of users who do not have them yet, then recounts counters of all users. Nothing happens
+     * when another replica is already repairing counters.
+     *
+     * @return how many counters have been recounted
+     */
+    @Scheduled(cron = "${user.follow-counters.repair-cron}")
+    public int repairCounters() {
+        var recounted = jdbcTemplate.execute((ConnectionCallback<Integer>) (connection) -> {
+            if (!advisoryLock(connection, "SELECT pg_try_advisory_lock(?)")) {
+                LOGGER.debug("Follow counters are being repaired by another replica");
+                return 0;
+            }
+            try {
+                return recountAll();
+            } finally {
+                advisoryLock(connection, "SELECT pg_advisory_unlock(?)");
+            }
+        });
+        return recounted == null ? 0 : recounted;
+    }
+
+    private static boolean advisoryLock(Connection connection, String sql) throws SQLException {
+        try (var statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, REPAIR_LOCK_KEY);
+            try (var resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    private int recountAll() {
+        var created = followCountersRepository.createMissingCounters();
+
+        var recountedTotal = 0;
+        var lastUserId = MIN_USER_ID;
+        while (true) {
+            var userIds = followCountersRepository.findUserIdsAfter(lastUserId, PageRequest.ofSize(chunkSize));
+            if (userIds.isEmpty()) {
+                break;
+            }
+            recountedTotal += followCountersRepository.recountCounters(userIds);
+            lastUserId = userIds.get(userIds.size() - 1);
+        }
+
+        LOGGER.info(String.format("Created %d and recounted %d follow counter(s)", created, recountedTotal));
+        return recountedTotal;
+    }
+}
@@ -0,0 +1,334 @@
+package ml.echelon133.microblog.user.service;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compact in-memory copy of all follows (mandatory self-follows excluded).
+ *
+ * Every user is interned to an int, and both sides of every user's follows are kept as sorted int arrays,
+ * which takes roughly 8 bytes per follow. Intersections of these arrays are computed by binary searching elements
+ * of the smaller one in the larger one, so their cost depends on the smaller side (e.g. how many users are followed
+ * by the user who is asking), not on the number of followers of popular users.
+ *
+ * All methods are thread-safe. Writes are short and hold an exclusive lock, reads share a lock.
+ *
+ * Incremental writes keep arrays sorted by shifting their elements, which is fine for single follows, but not for
+ * loading millions of follows of a popular user. A whole graph is loaded with a {@link Builder}, which appends follows
+ * to unsorted arrays and sorts each array only once.
+ */
+public class FollowGraph {
+
+    /**
+     * Order of user ids in results of {@link #findKnownFollowers(UUID, UUID)}. Ids are compared as unsigned
+     * 128-bit numbers, which is the same order in which PostgreSQL sorts uuids.
+     */
+    public static final Comparator<UUID> USER_ID_ORDER = Comparator
+            .comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+            .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Integer> indexes = new HashMap<>();
+    private final List<UUID> users = new ArrayList<>();
+    private final List<SortedIntSet> following = new ArrayList<>();
+    private final List<SortedIntSet> followers = new ArrayList<>();
+    private long follows;
+
+    /**
+     * Adds a follow of {@code followedUser} by {@code followingUser}. Adding a follow which already exists,
+     * or a self-follow, does nothing.
+     *
+     * @return {@code true} if the follow has been added
+     */
+    public boolean follow(UUID followingUser, UUID followedUser) {
+        if (followingUser.equals(followedUser)) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            var source = intern(followingUser);
+            var target = intern(followedUser);
+            if (!following.get(source).add(target)) {
+                return false;
+            }
+            followers.get(target).add(source);
+            follows++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a follow of {@code followedUser} by {@code followingUser}. Removing a follow which does not exist
+     * does nothing.
+     *
+     * @return {@code true} if the follow has been removed
+     */
+    public boolean unfollow(UUID followingUser, UUID followedUser) {
+        lock.writeLock().lock();
+        try {
+            var source = indexes.get(followingUser);
+            var target = indexes.get(followedUser);
+            if (source == null || target == null || !following.get(source).remove(target)) {
+                return false;
+            }
+            followers.get(target).remove(source);
+            follows--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds users who follow {@code targetUser} and are at the same time followed by {@code sourceUser}.
+     *
+     * @param sourceUser id of the user who wants to know their follows who also follow {@code targetUser}
+     * @param targetUser id of the user who is being followed by people known to {@code sourceUser}
+     * @return ids of found users sorted by {@link #USER_ID_ORDER}, which does not depend on the order in which
+     * follows have been added to the graph (which means that the result can be paged consistently by every
+     * instance of the service, and by the database)
+     */
+    public List<UUID> findKnownFollowers(UUID sourceUser, UUID targetUser) {
+        lock.readLock().lock();
+        try {
+            var source = indexes.get(sourceUser);
+            var target = indexes.get(targetUser);
+            if (source == null || target == null) {
+                return List.of();
+            }
+            // neither the source nor the target can be in the intersection, because self-follows are not kept
+            var intersection = following.get(source).intersect(followers.get(target));
+            var result = new ArrayList<UUID>(intersection.length);
+            for (var user : intersection) {
+                result.add(users.get(user));
+            }
+            // the intersection is sorted by indexes, which differ between graphs
+            result.sort(USER_ID_ORDER);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds users who are followed by users followed by {@code user} (i.e. friends of friends), ranked by how many
+     * users followed by {@code user} follow them. Users who are already followed by {@code user} and {@code user}
+     * themselves are never suggested.
+     *
+     * The amount of work is bounded regardless of how many follows are involved. At most {@code maxSampledFollows}
+     * users followed by {@code user} are visited, and at most {@code maxSampledFollowsOfFollow} users followed
+     * by each of them are counted. Users with more follows than that are sampled at random.
+     *
+     * @param user id of the user who wants suggestions
+     * @param limit how many users should be suggested at most
+     * @param maxSampledFollows how many users followed by {@code user} are visited at most
+     * @param maxSampledFollowsOfFollow how many follows of every visited user are counted at most
+     * @return ids of suggested users, best candidates first
+     */
+    public List<UUID> suggestFollows(UUID user, int limit, int maxSampledFollows, int maxSampledFollowsOfFollow) {
+        lock.readLock().lock();
+        try {
+            var index = indexes.get(user);
+            if (index == null) {
+                return List.of();
+            }
+
+            var followed = following.get(index);
+            var scores = new HashMap<Integer, Integer>();
+            for (var friend : followed.sample(maxSampledFollows)) {
+                for (var candidate : following.get(friend).sample(maxSampledFollowsOfFollow)) {
+                    if (candidate != index && !followed.contains(candidate)) {
+                        scores.merge(candidate, 1, Integer::sum);
+                    }
+                }
+            }
+
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(limit)
+                    .map(e -> users.get(e.getKey()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return how many follows the graph holds
+     */
+    public long countFollows() {
+        lock.readLock().lock();
+        try {
+            return follows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Collects follows of a new graph without keeping arrays sorted, then sorts every array once, so that loading
+     * a user with {@code n} followers takes {@code O(n log n)} instead of {@code O(n^2)}.
+     *
+     * A builder is not thread-safe, and it cannot be used after {@link #build()}.
+     */
+    public static class Builder {
+
+        private FollowGraph graph = new FollowGraph();
+
+        /**
+         * Adds a follow of {@code followedUser} by {@code followingUser}. Self-follows are skipped, and follows
+         * which are added multiple times are only kept once.
+         */
+        public void follow(UUID followingUser, UUID followedUser) {
+            if (followingUser.equals(followedUser)) {
+                return;
+            }
+            var source = graph.intern(followingUser);
+            var target = graph.intern(followedUser);
+            graph.following.get(source).append(target);
+            graph.followers.get(target).append(source);
+        }
+
+        /**
+         * @return graph which contains all added follows
+         */
+        public FollowGraph build() {
+            var built = graph;
+            graph = null;
+            for (var set : built.following) {
+                set.sort();
+                built.follows += set.size();
+            }
+            for (var set : built.followers) {
+                set.sort();
+            }
+            return built;
+        }
+    }
+
+    private int intern(UUID user) {
+        var index = indexes.get(user);
+        if (index == null) {
+            index = users.size();
+            indexes.put(user, index);
+            users.add(user);
+            following.add(new SortedIntSet());
+            followers.add(new SortedIntSet());
+        }
+        return index;
+    }
+
+    /**
+     * Set of ints kept in a sorted array, which grows when it's full.
+     */
+    static class SortedIntSet {
+
+        private static final int[] EMPTY = new int[0];
+
+        private int[] values = EMPTY;
+        private int size;
+
+        boolean add(int value) {
+            var position = Arrays.binarySearch(values, 0, size, value);
+            if (position >= 0) {
+                return false;
+            }
+            var insertAt = -position - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.max(4, size * 2));
+            }
+            System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+            values[insertAt] = value;
+            size++;
+            return true;
+        }
+
+        /**
+         * Adds a value without keeping the array sorted, which means that {@link #sort()} has to be called before
+         * the set is used in any other way.
+         */
+        void append(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.max(4, size * 2));
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * Sorts appended values, removes duplicates among them, and frees unused capacity.
+         */
+        void sort() {
+            Arrays.sort(values, 0, size);
+            var distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if (distinct == 0 || values[distinct - 1] != values[i]) {
+                    values[distinct++] = values[i];
+                }
+            }
+            size = distinct;
+            values = size == 0 ? EMPTY : Arrays.copyOf(values, size);
+        }
+
+        boolean remove(int value) {
+            var position = Arrays.binarySearch(values, 0, size, value);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(values, position + 1, values, position, size - position - 1);
+            size--;
+            return true;
+        }
+
+        boolean contains(int value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * @return all values if there are at most {@code maxValues} of them, otherwise {@code maxValues}
+         * values chosen at random
+         */
+        int[] sample(int maxValues) {
+            if (size <= maxValues) {
+                return Arrays.copyOf(values, size);
+            }
+            // Floyd's algorithm chooses distinct positions in time proportional to maxValues, not to size
+            var random = ThreadLocalRandom.current();
+            var positions = new HashSet<Integer>(maxValues * 2);
+            for (int j = size - maxValues; j < size; j++) {
+                var position = random.nextInt(j + 1);
+                positions.add(positions.contains(position) ? j : position);
+            }
+            var result = new int[maxValues];
+            var i = 0;
+            for (var position : positions) {
+                result[i++] = values[position];
+            }
+            return result;
+        }
+
+        /**
+         * @return sorted values which are present in both sets
+         */
+        int[] intersect(SortedIntSet other) {
+            var smaller = size <= other.size ? this : other;
+            var larger = smaller == this ? other : this;
+            var result = new int[smaller.size];
+            var found = 0;
+            for (int i = 0; i < smaller.size; i++) {
+                if (larger.contains(smaller.values[i])) {
+                    result[found++] = smaller.values[i];
+                }
+            }
+            return Arrays.copyOf(result, found);
+        }
+    }
+}
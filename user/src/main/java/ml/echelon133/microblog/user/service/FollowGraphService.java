@@ -0,0 +1,185 @@
+package ml.echelon133.microblog.user.service;
+
+import ml.echelon133.microblog.shared.user.follow.FollowId;
+import ml.echelon133.microblog.shared.user.follow.FollowInfoDto;
+import ml.echelon133.microblog.user.repository.FollowRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Keeps a {@link FollowGraph} of all follows in memory, so that queries which combine follows of multiple users
+ * do not need to join the follow table with itself.
+ *
+ * The graph is loaded from the database when the service starts and then maintained from follow and unfollow
+ * messages, which every instance of the user service receives. Follows which change while the graph is being
+ * loaded are replayed on the loaded graph, so that it never misses them. Messages can be received out of order
+ * (e.g. an unfollow before the follow which preceded it), so the graph always takes the current state of a changed
+ * follow from the database, instead of trusting the kind of the message. The graph is also periodically rebuilt
+ * from scratch, which fixes it if any message has ever been lost.
+ *
+ * Until the graph is loaded, none of its queries have an answer, and callers need to fall back to the database.
+ */
+@Service
+public class FollowGraphService {
+
+    private static final Logger LOGGER = LogManager.getLogger(FollowGraphService.class);
+
+    // the smallest possible uuid, which precedes ids of all users
+    private static final UUID MIN_USER_ID = new UUID(0, 0);
+
+    private FollowRepository followRepository;
+
+    // null until the graph is loaded for the first time
+    private volatile FollowGraph graph;
+
+    // follows changed while the graph is being loaded, null when the graph is not being loaded
+    private List<FollowChange> changesDuringLoad;
+
+    private record FollowChange(FollowInfoDto follow, boolean followed) {}
+
+    /*
+    How many follows are read from the database by a single query while loading the graph.
+     */
+    @Value("${user.follow-graph.load-chunk-size}")
+    int loadChunkSize;
+
+    @Autowired
+    public FollowGraphService(FollowRepository followRepository) {
+        this.followRepository = followRepository;
+    }
+
+    /**
+     * Loads the graph in the background once the service starts.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        rebuildGraph();
+    }
+
+    /**
+     * Loads all follows into a new graph, then replaces the current graph with it.
+     */
+    @Scheduled(cron = "${user.follow-graph.rebuild-cron}")
+    public void rebuildGraph() {
+        synchronized (this) {
+            if (changesDuringLoad != null) {
+                LOGGER.warn("Follow graph is already being loaded");
+                return;
+            }
+            changesDuringLoad = new ArrayList<>();
+        }
+
+        var builder = new FollowGraph.Builder();
+        FollowGraph newGraph;
+        try {
+            var lastFollowingUser = MIN_USER_ID;
+            var lastFollowedUser = MIN_USER_ID;
+            while (true) {
+                var followIds = followRepository.findFollowIdsAfter(
+                        lastFollowingUser, lastFollowedUser, PageRequest.ofSize(loadChunkSize)
+                );
+                if (followIds.isEmpty()) {
+                    break;
+                }
+                for (var followId : followIds) {
+                    builder.follow(followId.getFollowingUser(), followId.getFollowedUser());
+                }
+                var last = followIds.get(followIds.size() - 1);
+                lastFollowingUser = last.getFollowingUser();
+                lastFollowedUser = last.getFollowedUser();
+            }
+            newGraph = builder.build();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                changesDuringLoad = null;
+            }
+            LOGGER.error("Failed to load the follow graph", e);
+            return;
+        }
+
+        synchronized (this) {
+            for (var change : changesDuringLoad) {
+                apply(newGraph, change);
+            }
+            changesDuringLoad = null;
+            graph = newGraph;
+        }
+        LOGGER.info(String.format("Loaded %d follow(s) into the follow graph", newGraph.countFollows()));
+    }
+
+    /**
+     * Applies the current state of a follow which has been created or removed to the graph.
+     *
+     * The state is read from the database while no other change is being applied, so whichever message about
+     * the follow is applied last, it leaves the graph in the state of the database.
+     *
+     * @param follow contains information about who follows (or unfollows) whom
+     */
+    public synchronized void applyFollowChange(FollowInfoDto follow) {
+        // self-follows are never kept in the graph
+        if (follow.getFollowingUser().equals(follow.getFollowedUser())) {
+            return;
+        }
+        var followed = followRepository.existsById(new FollowId(follow.getFollowingUser(), follow.getFollowedUser()));
+        var change = new FollowChange(follow, followed);
+        if (graph != null) {
+            apply(graph, change);
+        }
+        if (changesDuringLoad != null) {
+            changesDuringLoad.add(change);
+        }
+    }
+
+    private static void apply(FollowGraph graph, FollowChange change) {
+        var follow = change.follow();
+        if (change.followed()) {
+            graph.follow(follow.getFollowingUser(), follow.getFollowedUser());
+        } else {
+            graph.unfollow(follow.getFollowingUser(), follow.getFollowedUser());
+        }
+    }
+
+    /**
+     * Finds users who follow {@code targetUser} and are at the same time followed by {@code sourceUser}.
+     *
+     * @param sourceUser id of the user who wants to know their follows who also follow {@code targetUser}
+     * @param targetUser id of the user who is being followed by people known to {@code sourceUser}
+     * @return ids of found users sorted by {@link FollowGraph#USER_ID_ORDER}, empty if the graph has not been
+     * loaded yet
+     */
+    public Optional<List<UUID>> findKnownFollowers(UUID sourceUser, UUID targetUser) {
+        var currentGraph = graph;
+        if (currentGraph == null) {
+            return Optional.empty();
+        }
+        return Optional.of(currentGraph.findKnownFollowers(sourceUser, targetUser));
+    }
+
+    /**
+     * Finds users who are followed by users followed by {@code user}, best candidates first.
+     * See {@link FollowGraph#suggestFollows(UUID, int, int, int)}.
+     *
+     * @return ids of suggested users, empty if the graph has not been loaded yet
+     */
+    public Optional<List<UUID>> suggestFollows(UUID user, int limit, int maxSampledFollows, int maxSampledFollowsOfFollow) {
+        var currentGraph = graph;
+        if (currentGraph == null) {
+            return Optional.empty();
+        }
+        return Optional.of(currentGraph.suggestFollows(user, limit, maxSampledFollows, maxSampledFollowsOfFollow));
+    }
+}
@@ -0,0 +1,115 @@
+package ml.echelon133.microblog.user.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import ml.echelon133.microblog.shared.user.UserDto;
+import ml.echelon133.microblog.user.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Suggests users to follow, based on who is followed by the users someone already follows.
+ *
+ * Suggestions are computed from the in-memory follow graph with bounded sampling (see
+ * {@link FollowGraph#suggestFollows(UUID, int, int, int)}), which keeps the computation fast even for users who
+ * follow thousands of accounts. They are then cached per user, because they do not need to reflect the latest follows.
+ */
+@Service
+public class FollowSuggestionService {
+
+    /**
+     * How many users can be suggested at once.
+     */
+    public static final int MAX_SUGGESTIONS = 20;
+
+    // the least used entries are evicted if the cache ever grows beyond this many entries, which only
+    // happens when entries are added faster than they expire
+    private static final int MAX_CACHED_ENTRIES = 10000;
+
+    private FollowGraphService followGraphService;
+    private UserRepository userRepository;
+    private Clock clock;
+    private Cache<UUID, List<UserDto>> cache;
+
+    /*
+    How long computed suggestions are cached.
+     */
+    @Value("${user.suggestions.cache-ttl}")
+    Duration cacheTtl;
+
+    /*
+    How many users followed by the user who wants suggestions are visited at most.
+     */
+    @Value("${user.suggestions.max-sampled-follows}")
+    int maxSampledFollows;
+
+    /*
+    How many follows of every visited user are counted at most.
+     */
+    @Value("${user.suggestions.max-sampled-follows-of-follow}")
+    int maxSampledFollowsOfFollow;
+
+    @Autowired
+    public FollowSuggestionService(FollowGraphService followGraphService, UserRepository userRepository, Clock clock) {
+        this.followGraphService = followGraphService;
+        this.userRepository = userRepository;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    void createCache() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(MAX_CACHED_ENTRIES)
+                .expireAfterWrite(cacheTtl)
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+                .build();
+    }
+
+    /**
+     * Suggests users who could be followed by the user with {@code userId}. Users who are already followed
+     * and the user themselves are never suggested.
+     *
+     * @param userId id of the user who wants suggestions
+     * @param limit how many users should be suggested at most
+     * @return suggested users, best candidates first, empty while the follow graph is being loaded
+     * @throws IllegalArgumentException when the limit is not between 1 and {@link #MAX_SUGGESTIONS}
+     */
+    public List<UserDto> suggestFollows(UUID userId, int limit) throws IllegalArgumentException {
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new IllegalArgumentException(
+                    String.format("'limit' has to be between 1 and %d", MAX_SUGGESTIONS)
+            );
+        }
+
+        var suggestions = cache.getIfPresent(userId);
+        if (suggestions == null) {
+            var suggestedIds = followGraphService.suggestFollows(
+                    userId, MAX_SUGGESTIONS, maxSampledFollows, maxSampledFollowsOfFollow
+            );
+            if (suggestedIds.isEmpty()) {
+                return List.of();
+            }
+            suggestions = findUsersInOrder(suggestedIds.get());
+            cache.put(userId, suggestions);
+        }
+        return suggestions.subList(0, Math.min(limit, suggestions.size()));
+    }
+
+    private List<UserDto> findUsersInOrder(List<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        var users = new HashMap<UUID, UserDto>();
+        for (var user : userRepository.findByUserIds(ids)) {
+            users.put(user.getId(), user);
+        }
+        return ids.stream().map(users::get).filter(Objects::nonNull).toList();
+    }
+}
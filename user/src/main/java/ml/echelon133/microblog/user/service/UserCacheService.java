@@ -0,0 +1,98 @@
+package ml.echelon133.microblog.user.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import ml.echelon133.microblog.shared.user.UserDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Local cache of user profiles, which serves most profile reads from memory.
+ *
+ * Profiles are evicted explicitly whenever they are updated (on every instance of the user service, see
+ * {@link ml.echelon133.microblog.user.queue.UserUpdateMessageListener}), and they also expire after a while,
+ * which bounds how long a profile could stay stale if an eviction message was ever lost.
+ */
+@Service
+public class UserCacheService {
+
+    private Cache<UUID, UserDto> cache;
+
+    // incremented on every eviction, so that profiles loaded before an eviction are never cached after it
+    private final AtomicLong evictions = new AtomicLong();
+
+    private Clock clock;
+
+    /*
+    How long cached profiles are kept when they are not evicted explicitly.
+     */
+    @Value("${user.cache.ttl}")
+    Duration ttl;
+
+    /*
+    How many profiles are cached at most, the least used ones are evicted first.
+     */
+    @Value("${user.cache.max-entries}")
+    int maxEntries;
+
+    @Autowired
+    public UserCacheService(Clock clock) {
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    void createCache() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+                .build();
+    }
+
+    /**
+     * Finds the profile of the user with {@code userId} in the cache, or loads it with {@code loader}
+     * and caches it.
+     *
+     * @param userId id of the user whose profile is being read
+     * @param loader loads the profile when it's not cached, returns {@code null} when the user does not exist
+     * @return the profile of the user, empty if the user does not exist
+     */
+    public Optional<UserDto> get(UUID userId, Function<UUID, UserDto> loader) {
+        var cached = cache.getIfPresent(userId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        var evictionsBeforeLoad = evictions.get();
+        var user = loader.apply(userId);
+        if (user == null) {
+            return Optional.empty();
+        }
+
+        // the loaded profile could already be stale if any profile has been evicted in the meantime
+        if (evictions.get() == evictionsBeforeLoad) {
+            cache.put(userId, user);
+        }
+        return Optional.of(user);
+    }
+
+    /**
+     * Removes the profile of the user with {@code userId} from the local cache.
+     *
+     * @param userId id of the user whose profile has been updated
+     */
+    public void evict(UUID userId) {
+        evictions.incrementAndGet();
+        cache.invalidate(userId);
+    }
+}
@@ -5,50 +5,87 @@ import ml.echelon133.microblog.shared.notification.Notification;
 import ml.echelon133.microblog.shared.notification.NotificationCreationDto;
 import ml.echelon133.microblog.shared.user.*;
 import ml.echelon133.microblog.shared.user.follow.Follow;
+import ml.echelon133.microblog.shared.user.follow.FollowCounters;
 import ml.echelon133.microblog.shared.user.follow.FollowDto;
 import ml.echelon133.microblog.shared.user.follow.FollowId;
 import ml.echelon133.microblog.shared.user.follow.FollowInfoDto;
 import ml.echelon133.microblog.user.exception.UsernameTakenException;
 import ml.echelon133.microblog.user.queue.FollowPublisher;
 import ml.echelon133.microblog.user.queue.NotificationPublisher;
+import ml.echelon133.microblog.user.queue.UserUpdatePublisher;
+import ml.echelon133.microblog.user.repository.FollowCountersRepository;
 import ml.echelon133.microblog.user.repository.FollowRepository;
 import ml.echelon133.microblog.user.repository.RoleRepository;
 import ml.echelon133.microblog.user.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.transaction.Transactional;
-import java.util.Optional;
-import java.util.Set;
-import java.util.UUID;
+import java.util.*;
+import java.util.regex.Pattern;
 
 @Service
 @Transactional
 public class UserService {
 
+    /**
+     * How many users can be fetched at once by their ids.
+     */
+    public static final int MAX_IDS_PER_LOOKUP = 100;
+
+    /**
+     * How many users can be suggested by the autocomplete at once.
+     */
+    public static final int MAX_AUTOCOMPLETE_RESULTS = 20;
+
+    /**
+     * How long a prefix has to be to match displayed names. Shorter prefixes match too many displayed names
+     * to be worth suggesting, and usernames are already matched from the first character.
+     */
+    public static final int MIN_DISPLAYED_NAME_PREFIX_LENGTH = 3;
+
+    private static final Pattern USERNAME_PREFIX_PATTERN = Pattern.compile("^[A-Za-z0-9]{1,30}$");
+
     private final UserRepository userRepository;
     private final FollowRepository followRepository;
+    private final FollowCountersRepository followCountersRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
     private final FollowPublisher followPublisher;
     private final NotificationPublisher notificationPublisher;
+    private final UserUpdatePublisher userUpdatePublisher;
+    private final UserCacheService userCacheService;
+    private final FollowGraphService followGraphService;
 
     @Autowired
     public UserService(UserRepository userRepository,
                        FollowRepository followRepository,
+                       FollowCountersRepository followCountersRepository,
                        RoleRepository roleRepository,
                        PasswordEncoder passwordEncoder,
                        FollowPublisher followPublisher,
-                       NotificationPublisher notificationPublisher) {
+                       NotificationPublisher notificationPublisher,
+                       UserUpdatePublisher userUpdatePublisher,
+                       UserCacheService userCacheService,
+                       FollowGraphService followGraphService) {
         this.userRepository = userRepository;
         this.followRepository = followRepository;
+        this.followCountersRepository = followCountersRepository;
         this.roleRepository = roleRepository;
         this.passwordEncoder = passwordEncoder;
         this.followPublisher = followPublisher;
         this.notificationPublisher = notificationPublisher;
+        this.userUpdatePublisher = userUpdatePublisher;
+        this.userCacheService = userCacheService;
+        this.followGraphService = followGraphService;
     }
 
     private void throwIfUserNotFound(UUID id) throws ResourceNotFoundException {
@@ -95,6 +132,7 @@ public class UserService {
 
         // make every user follow themselves to simplify the queries which generate user's feed
         followRepository.save(new Follow(savedUserId, savedUserId));
+        followCountersRepository.save(new FollowCounters(savedUserId));
         followPublisher.publishFollow(new FollowInfoDto(savedUserId, savedUserId));
 
         return savedUserId;
@@ -117,33 +155,69 @@ public class UserService {
      * @throws ResourceNotFoundException thrown when the user with specified id does not exist
      */
     public UserDto updateUserInfo(UUID userId, UserUpdateDto dto) throws ResourceNotFoundException {
-        throwIfUserNotFound(userId);
-
-        if (dto.getDisplayedName() != null) {
-            userRepository.updateDisplayedName(userId, dto.getDisplayedName());
-        }
-
-        if (dto.getDescription() != null) {
-            userRepository.updateDescription(userId, dto.getDescription());
-        }
-
-        if (dto.getAviUrl() != null) {
-            userRepository.updateAviUrl(userId, dto.getAviUrl());
+        var updated = userRepository.updateUserInfo(
+                userId, dto.getDisplayedName(), dto.getAviUrl(), dto.getDescription()
+        );
+        if (updated == 0) {
+            throw new ResourceNotFoundException(User.class, userId);
         }
 
+        userCacheService.evict(userId);
+        // other instances evict the profile once the update is committed, otherwise they could
+        // read the old profile again and cache it
+        afterCommit(() -> userUpdatePublisher.publishUserUpdate(userId));
         return userRepository.findByUserId(userId);
     }
 
     /**
-     * Projects the user with specified {@link java.util.UUID} into a DTO object.
+     * Projects the user with specified {@link java.util.UUID} into a DTO object. Projections are cached
+     * and evicted whenever the user is updated.
      *
      * @param id id of the user
      * @return DTO projection of the user
      * @throws ResourceNotFoundException thrown when the user with specified id does not exist
      */
+    // profiles served from the cache do not need a transaction (and a pooled connection)
+    @Transactional(Transactional.TxType.SUPPORTS)
     public UserDto findById(UUID id) throws ResourceNotFoundException {
-        throwIfUserNotFound(id);
-        return userRepository.findByUserId(id);
+        return userCacheService.get(id, userRepository::findByUserId)
+                .orElseThrow(() -> new ResourceNotFoundException(User.class, id));
+    }
+
+    /**
+     * Runs {@code action} after the current transaction commits, or immediately if there is no transaction.
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Projects all users with specified ids into DTO objects, using a single query.
+     * Ids of users who do not exist are skipped.
+     *
+     * @param ids ids of the users
+     * @return DTO projections of the found users, in no particular order
+     * @throws IllegalArgumentException when more than {@link #MAX_IDS_PER_LOOKUP} ids are provided
+     */
+    public List<UserDto> findByIds(List<UUID> ids) throws IllegalArgumentException {
+        if (ids.size() > MAX_IDS_PER_LOOKUP) {
+            throw new IllegalArgumentException(
+                    String.format("at most %d users can be fetched at once", MAX_IDS_PER_LOOKUP)
+            );
+        }
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return userRepository.findByUserIds(Set.copyOf(ids));
     }
 
     /**
@@ -165,6 +239,60 @@ public class UserService {
         return userRepository.findByUsernameContaining(username, pageable);
     }
 
+    /**
+     * Suggests users whose usernames or displayed names start with the given prefix, e.g. while a user is typing
+     * a mention. Results are ranked:
+     * <ol>
+     *     <li>the user whose username is equal to the prefix</li>
+     *     <li>users whose usernames start with the prefix, in alphabetical order</li>
+     *     <li>users whose displayed names start with the prefix, shortest displayed names first</li>
+     * </ol>
+     *
+     * Username matches are found with an index range scan which stops after {@code limit} rows. Displayed name
+     * matches are found with a trigram index, and only the matching rows are sorted by their length.
+     *
+     * @param prefix what the user has typed so far, optionally preceded by '@'
+     * @param limit how many users to suggest at most
+     * @return ranked list of suggested users
+     * @throws IllegalArgumentException when the prefix is blank or the limit is not between 1 and {@link #MAX_AUTOCOMPLETE_RESULTS}
+     */
+    public List<UserDto> autocomplete(String prefix, int limit) throws IllegalArgumentException {
+        if (limit < 1 || limit > MAX_AUTOCOMPLETE_RESULTS) {
+            throw new IllegalArgumentException(
+                    String.format("'limit' has to be between 1 and %d", MAX_AUTOCOMPLETE_RESULTS)
+            );
+        }
+        var normalizedPrefix = prefix.strip();
+        if (normalizedPrefix.startsWith("@")) {
+            normalizedPrefix = normalizedPrefix.substring(1);
+        }
+        if (normalizedPrefix.isEmpty()) {
+            throw new IllegalArgumentException("'prefix' cannot be blank");
+        }
+        normalizedPrefix = normalizedPrefix.toLowerCase();
+
+        var suggestions = new LinkedHashMap<UUID, UserDto>();
+        // prefixes which could not be a part of any username do not need to be looked up
+        if (USERNAME_PREFIX_PATTERN.matcher(normalizedPrefix).matches()) {
+            for (var user : userRepository.findByUsernamePrefix(normalizedPrefix, PageRequest.ofSize(limit))) {
+                suggestions.put(user.getId(), user);
+            }
+        }
+        if (suggestions.size() < limit && normalizedPrefix.length() >= MIN_DISPLAYED_NAME_PREFIX_LENGTH) {
+            var escapedPrefix = normalizedPrefix
+                    .replace("\\", "\\\\")
+                    .replace("%", "\\%")
+                    .replace("_", "\\_");
+            for (var user : userRepository.findByDisplayedNamePrefix(escapedPrefix, PageRequest.ofSize(limit))) {
+                if (suggestions.size() == limit) {
+                    break;
+                }
+                suggestions.putIfAbsent(user.getId(), user);
+            }
+        }
+        return List.copyOf(suggestions.values());
+    }
+
     /**
      * Checks if there is a follow relationship between the users with given {@link UUID}s.
      *
@@ -176,30 +304,76 @@ public class UserService {
         return followRepository.existsById(new FollowId(followSource, followTarget));
     }
 
+    /**
+     * Checks which users with given {@link UUID}s are being followed by the user with {@code followSource} id,
+     * using a single query.
+     *
+     * @param followSource id of the user who is potentially following
+     * @param followTargets ids of users who are potentially being followed
+     * @return a map which holds {@code true} for every followed user and {@code false} for every other user
+     * @throws IllegalArgumentException when more than {@link #MAX_IDS_PER_LOOKUP} ids are provided
+     */
+    public Map<UUID, Boolean> findFollowStatuses(UUID followSource, List<UUID> followTargets)
+            throws IllegalArgumentException {
+        if (followTargets.size() > MAX_IDS_PER_LOOKUP) {
+            throw new IllegalArgumentException(
+                    String.format("at most %d follows can be checked at once", MAX_IDS_PER_LOOKUP)
+            );
+        }
+
+        var statuses = new HashMap<UUID, Boolean>();
+        for (var target : followTargets) {
+            statuses.put(target, false);
+        }
+        if (!statuses.isEmpty()) {
+            for (var followed : followRepository.findFollowedAmong(followSource, statuses.keySet())) {
+                statuses.put(followed, true);
+            }
+        }
+        return statuses;
+    }
+
     /**
      * Creates a follow relationship between the users with given {@link UUID}s.
      *
+     * The follow is created with a single statement, which does nothing if the follow already exists. Counters,
+     * follow messages and notifications are only updated and sent when the follow has actually been created, so
+     * repeated follows (e.g. double clicks) have no side effects.
+     *
      * @param followSource id of the user following
      * @param followTarget id of the user being followed
-     * @return {@code true} if a follow has been created
+     * @return {@code true} if the follow has been created, {@code false} if it had already existed
      * @throws ResourceNotFoundException when either {@code followSource} or {@code followTarget} does not represent an actual user
      */
     public boolean followUser(UUID followSource, UUID followTarget) throws ResourceNotFoundException {
-        throwIfUserNotFound(followSource);
-        throwIfUserNotFound(followTarget);
-        followRepository.save(new Follow(followSource, followTarget));
-        followPublisher.publishFollow(new FollowInfoDto(followSource, followTarget));
-        notificationPublisher.publishNotification(
-                new NotificationCreationDto(followTarget, followSource, Notification.Type.FOLLOW)
-        );
-        return followExists(followSource, followTarget);
+        if (followRepository.createFollow(followSource, followTarget) == 0) {
+            // the follow either already exists, or one of the users does not exist
+            throwIfUserNotFound(followSource);
+            throwIfUserNotFound(followTarget);
+            return false;
+        }
+
+        followCountersRepository.updateCounters(followSource, followTarget, 1);
+        var follow = new FollowInfoDto(followSource, followTarget);
+        afterCommit(() -> {
+            followPublisher.publishFollow(follow);
+            notificationPublisher.publishNotification(
+                    // follows of the same user can be merged into a single notification
+                    new NotificationCreationDto(followTarget, followSource, followTarget, followSource, Notification.Type.FOLLOW)
+            );
+        });
+        return true;
     }
 
     /**
      * Removes a follow relationship between the users with given {@link UUID}s.
+     *
+     * The follow is removed with a single statement. Counters and unfollow messages are only updated and sent
+     * when the follow has actually been removed.
+     *
      * @param followSource id of the user unfollowing
      * @param followTarget id of the user being unfollowed
-     * @return {@code true} if a follow no longer exists
+     * @return {@code true} if the follow has been removed, {@code false} if it had not existed
      */
     public boolean unfollowUser(UUID followSource, UUID followTarget) {
         // do not let users unfollow themselves, because it breaks the invariant established
@@ -208,23 +382,38 @@ public class UserService {
             throw new IllegalArgumentException("users cannot unfollow themselves");
         }
 
-        followRepository.deleteById(new FollowId(followSource, followTarget));
-        followPublisher.publishUnfollow(new FollowInfoDto(followSource, followTarget));
-        return !followExists(followSource, followTarget);
+        if (followRepository.deleteFollow(followSource, followTarget) == 0) {
+            return false;
+        }
+
+        followCountersRepository.updateCounters(followSource, followTarget, -1);
+        var follow = new FollowInfoDto(followSource, followTarget);
+        afterCommit(() -> followPublisher.publishUnfollow(follow));
+        return true;
     }
 
     /**
      * Returns counters which show how many users are being followed by the user
      * and how many follow the user.
      *
+     * Counters are stored and maintained whenever a follow is created or removed, so this is a read of a single row.
+     * Users whose counters have not been created yet (i.e. users created before counters had been stored) have
+     * them counted and stored on the first read. Concurrent first reads of the same counters store them only once.
+     *
      * @param userId id of the user whose counters are being read
      * @return DTO containing both counters
      * @throws ResourceNotFoundException thrown when the user with specified id does not exist
      */
     public FollowDto getUserProfileCounters(UUID userId) throws ResourceNotFoundException {
+        var counters = followCountersRepository.findCountersOfUser(userId);
+        if (counters.isPresent()) {
+            return counters.get();
+        }
+
         throwIfUserNotFound(userId);
         var following = followRepository.countUserFollowing(userId);
         var followers = followRepository.countUserFollowers(userId);
+        followCountersRepository.createCounters(userId, following, followers);
         return new FollowDto(following, followers);
     }
 
@@ -260,6 +449,11 @@ public class UserService {
      * Creates a {@link Page} containing user projections of users who are following {@code targetId}
      * while being followed by {@code sourceId}.
      *
+     * Known followers are found in the in-memory follow graph, and only users on the wanted page are read from
+     * the database. The total number of known followers is known without reading any of them.
+     * The database is only queried for known followers while the graph is being loaded, or when the page is sorted
+     * by anything else than ids of users (the default order).
+     *
      * @param sourceId the id of the user who asks for known followers
      * @param targetId the id of the user who is targeted for evaluation of users known by {@code sourceId}
      * @param pageable information about the wanted page
@@ -269,6 +463,38 @@ public class UserService {
     public Page<UserDto> findAllKnownUserFollowers(UUID sourceId, UUID targetId, Pageable pageable) throws ResourceNotFoundException {
         throwIfUserNotFound(sourceId);
         throwIfUserNotFound(targetId);
-        return followRepository.findAllKnownUserFollowers(sourceId, targetId, pageable);
+
+        // the graph only knows ids of users, so pages sorted by anything else are read from the database
+        if (pageable.getSort().isSorted()) {
+            return followRepository.findAllKnownUserFollowers(sourceId, targetId, pageable);
+        }
+
+        var knownFollowers = followGraphService.findKnownFollowers(sourceId, targetId);
+        if (knownFollowers.isEmpty()) {
+            // sort by ids like the graph does, so that pages stay consistent when the graph gets loaded
+            var sortedById = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("id"));
+            return followRepository.findAllKnownUserFollowers(sourceId, targetId, sortedById);
+        }
+
+        var allIds = knownFollowers.get();
+        var from = (int) Math.min(pageable.getOffset(), allIds.size());
+        var to = Math.min(from + pageable.getPageSize(), allIds.size());
+        var pageIds = allIds.subList(from, to);
+
+        var content = new ArrayList<UserDto>(pageIds.size());
+        if (!pageIds.isEmpty()) {
+            var users = new HashMap<UUID, UserDto>();
+            for (var user : userRepository.findByUserIds(pageIds)) {
+                users.put(user.getId(), user);
+            }
+            // keep the order of the graph, so that consecutive pages never overlap
+            for (var id : pageIds) {
+                var user = users.get(id);
+                if (user != null) {
+                    content.add(user);
+                }
+            }
+        }
+        return new PageImpl<>(content, pageable, allIds.size());
     }
 }
@@ -0,0 +1,38 @@
+-- Creates PostgreSQL-specific indexes which make searching users by their usernames and displayed names
+-- cheap, no matter how many users there are. Hibernate cannot create expression or trigram indexes.
+--
+-- * usernames only consist of ASCII letters and digits, so they are stored with the "C" collation, which lets
+--   a single btree index on lower(username) serve exact lookups, prefix matching and ordered prefix scans used
+--   by the autocomplete
+-- * trigram indexes serve searches of phrases which occur anywhere within usernames and displayed names
+--
+-- This script is not run by the service. It is run by the job from k8s/user/user-migration-job.yml, so that
+-- replicas neither rewrite the table nor build indexes whenever they start:
+--
+--   psql -v ON_ERROR_STOP=1 -f user-search-indexes.sql
+--
+-- Indexes are built concurrently, so that building them for the first time does not block registrations.
+-- Such statements cannot run in a transaction, which is why psql must not be given the --single-transaction flag.
+-- Every statement is a no-op once it has been applied, so the script is safe to run again.
+
+-- the table is created by hibernate, and the job keeps failing (and being retried) until the service creates it
+DO $$
+BEGIN
+    IF to_regclass('mblog_users') IS NULL THEN
+        RAISE EXCEPTION 'Table mblog_users does not exist yet';
+    END IF;
+
+    IF (SELECT collation_name FROM information_schema.columns
+        WHERE table_schema = current_schema() AND table_name = 'mblog_users' AND column_name = 'username')
+            IS DISTINCT FROM 'C' THEN
+        RAISE NOTICE 'Switching usernames to the ''C'' collation';
+        ALTER TABLE mblog_users ALTER COLUMN username TYPE varchar(30) COLLATE "C";
+    END IF;
+END $$;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS username_lower_index ON mblog_users (lower(username));
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS username_trigram_index ON mblog_users
+    USING gin (lower(username) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS displayed_name_trigram_index ON mblog_users
+    USING gin (lower(displayed_name) gin_trgm_ops);
@@ -8,6 +8,7 @@ import ml.echelon133.microblog.shared.user.UserCreationDto;
 import ml.echelon133.microblog.shared.user.UserDto;
 import ml.echelon133.microblog.shared.user.UserUpdateDto;
 import ml.echelon133.microblog.user.exception.UsernameTakenException;
+import ml.echelon133.microblog.user.service.FollowSuggestionService;
 import ml.echelon133.microblog.user.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
@@ -30,6 +31,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.hamcrest.Matchers.*;
@@ -38,6 +40,8 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -53,6 +57,9 @@ public class UserControllerTests {
     @Mock
     private UserService userService;
 
+    @Mock
+    private FollowSuggestionService followSuggestionService;
+
     @InjectMocks
     private UserController userController;
 
@@ -301,6 +308,106 @@ public class UserControllerTests {
                 .andExpect(jsonPath("$.messages", hasItem(String.format("user %s could not be found", uuid))));
     }
 
+    @Test
+    @DisplayName("getUsers returns ok when users found")
+    public void getUsers_UsersFound_ReturnsOk() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        UserDto foundUser = new UserDto(uuid, "test", "test", "", "test");
+
+        when(userService.findByIds(List.of(uuid))).thenReturn(List.of(foundUser));
+
+        mvc.perform(
+                get("/api/users")
+                        .param("ids", uuid.toString())
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(uuid.toString())))
+                .andExpect(jsonPath("$[0].username", is(foundUser.getUsername())));
+    }
+
+    @Test
+    @DisplayName("getUsers returns the same etag regardless of the order of found users")
+    public void getUsers_UsersFoundInDifferentOrder_ReturnsSameEtag() throws Exception {
+        UserDto user1 = new UserDto(UUID.randomUUID(), "test1", "test1", "", "test1");
+        UserDto user2 = new UserDto(UUID.randomUUID(), "test2", "test2", "", "test2");
+        var ids = List.of(user1.getId(), user2.getId());
+
+        when(userService.findByIds(ids)).thenReturn(List.of(user1, user2), List.of(user2, user1));
+
+        var etag = mvc.perform(
+                get("/api/users")
+                        .param("ids", user1.getId().toString(), user2.getId().toString())
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mvc.perform(
+                get("/api/users")
+                        .param("ids", user1.getId().toString(), user2.getId().toString())
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", etag));
+    }
+
+    @Test
+    @DisplayName("getUsers returns not modified when users have not changed")
+    public void getUsers_EtagMatches_ReturnsNotModified() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        UserDto foundUser = new UserDto(uuid, "test", "test", "", "test");
+
+        when(userService.findByIds(List.of(uuid))).thenReturn(List.of(foundUser));
+
+        var etag = mvc.perform(
+                get("/api/users")
+                        .param("ids", uuid.toString())
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mvc.perform(
+                get("/api/users")
+                        .param("ids", uuid.toString())
+                        .header("If-None-Match", etag)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @DisplayName("getUsers returns ok when users have changed")
+    public void getUsers_EtagDoesNotMatch_ReturnsOk() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        UserDto user = new UserDto(uuid, "test", "test", "", "test");
+        UserDto changedUser = new UserDto(uuid, "test", "changed", "", "test");
+
+        when(userService.findByIds(List.of(uuid))).thenReturn(List.of(user), List.of(changedUser));
+
+        var etag = mvc.perform(
+                get("/api/users")
+                        .param("ids", uuid.toString())
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mvc.perform(
+                get("/api/users")
+                        .param("ids", uuid.toString())
+                        .header("If-None-Match", etag)
+                        .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].displayedName", is("changed")));
+    }
+
     @Test
     @DisplayName("getUser output ok when user exists")
     public void getUser_UserExists_ReturnsOk() throws Exception {
@@ -561,6 +668,46 @@ public class UserControllerTests {
                 .andExpect(jsonPath("$.follows", is(true)));
     }
 
+    @Test
+    @DisplayName("getFollowStatuses returns ok with a status of every user")
+    public void getFollowStatuses_IdsProvided_ReturnsOk() throws Exception {
+        var sourceId = UUID.fromString(PRINCIPAL_ID);
+        var followed = UUID.randomUUID();
+        var notFollowed = UUID.randomUUID();
+
+        when(userService.findFollowStatuses(sourceId, List.of(followed, notFollowed)))
+                .thenReturn(Map.of(followed, true, notFollowed, false));
+
+        mvc.perform(
+                        get("/api/users/follow-status")
+                                .param("ids", followed + "," + notFollowed)
+                                .accept(MediaType.APPLICATION_JSON)
+                                .with(customBearerToken())
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$." + followed, is(true)))
+                .andExpect(jsonPath("$." + notFollowed, is(false)));
+    }
+
+    @Test
+    @DisplayName("getFollowStatuses returns error when too many ids are provided")
+    public void getFollowStatuses_TooManyIds_ReturnsExpectedError() throws Exception {
+        var sourceId = UUID.fromString(PRINCIPAL_ID);
+        var id = UUID.randomUUID();
+
+        when(userService.findFollowStatuses(sourceId, List.of(id)))
+                .thenThrow(new IllegalArgumentException("at most 100 follows can be checked at once"));
+
+        mvc.perform(
+                        get("/api/users/follow-status")
+                                .param("ids", id.toString())
+                                .accept(MediaType.APPLICATION_JSON)
+                                .with(customBearerToken())
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.messages", hasItem("at most 100 follows can be checked at once")));
+    }
+
     @Test
     @DisplayName("createFollow returns error when service throws")
     public void createFollow_ServiceThrows_ReturnsExpectedError() throws Exception {
@@ -597,6 +744,23 @@ public class UserControllerTests {
                 .andExpect(jsonPath("$.follows", is(true)));
     }
 
+    @Test
+    @DisplayName("createFollow returns ok when follow already existed")
+    public void createFollow_FollowAlreadyExisted_ReturnsOk() throws Exception {
+        var sourceId = UUID.fromString(PRINCIPAL_ID);
+        var targetId = UUID.randomUUID();
+
+        when(userService.followUser(sourceId, targetId)).thenReturn(false);
+
+        mvc.perform(
+                        post("/api/users/" + targetId + "/follow")
+                                .accept(MediaType.APPLICATION_JSON)
+                                .with(customBearerToken())
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.follows", is(true)));
+    }
+
     @Test
     @DisplayName("deleteFollow returns ok when follow deleted")
     public void deleteFollow_FollowDeleted_ReturnsOk() throws Exception {
@@ -614,6 +778,23 @@ public class UserControllerTests {
                 .andExpect(jsonPath("$.follows", is(false)));
     }
 
+    @Test
+    @DisplayName("deleteFollow returns ok when follow had not existed")
+    public void deleteFollow_FollowNotFound_ReturnsOk() throws Exception {
+        var sourceId = UUID.fromString(PRINCIPAL_ID);
+        var targetId = UUID.randomUUID();
+
+        when(userService.unfollowUser(sourceId, targetId)).thenReturn(false);
+
+        mvc.perform(
+                        delete("/api/users/" + targetId + "/follow")
+                                .accept(MediaType.APPLICATION_JSON)
+                                .with(customBearerToken())
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.follows", is(false)));
+    }
+
     @Test
     @DisplayName("deleteFollow returns error when user tries to unfollow themselves")
     public void deleteFollow_UserUnfollowsThemselves_ReturnsExpectedError() throws Exception {
@@ -803,4 +984,73 @@ public class UserControllerTests {
                 .andExpect(jsonPath("$.content[0].aviUrl", is(userDto.getAviUrl())))
                 .andExpect(jsonPath("$.content[0].description", is(userDto.getDescription())));
     }
+
+    @Test
+    @DisplayName("autocomplete uses the default limit when it's not provided")
+    public void autocomplete_LimitNotProvided_UsesDefaultLimit() throws Exception {
+        var user = new UserDto(UUID.randomUUID(), "anna", "Anna", "", "");
+
+        when(userService.autocomplete("an", 10)).thenReturn(List.of(user));
+
+        mvc.perform(
+                        get("/api/users/autocomplete")
+                                .param("prefix", "an")
+                                .accept(MediaType.APPLICATION_JSON)
+                                .with(customBearerToken())
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(user.getId().toString())))
+                .andExpect(jsonPath("$[0].username", is("anna")));
+    }
+
+    @Test
+    @DisplayName("autocomplete returns error when the limit is out of range")
+    public void autocomplete_LimitOutOfRange_ReturnsExpectedError() throws Exception {
+        when(userService.autocomplete("an", 50))
+                .thenThrow(new IllegalArgumentException("'limit' has to be between 1 and 20"));
+
+        mvc.perform(
+                        get("/api/users/autocomplete")
+                                .param("prefix", "an")
+                                .param("limit", "50")
+                                .accept(MediaType.APPLICATION_JSON)
+                                .with(customBearerToken())
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.messages", hasItem("'limit' has to be between 1 and 20")));
+    }
+
+    @Test
+    @DisplayName("getSuggestions uses the id of the token owner and the default limit")
+    public void getSuggestions_LimitNotProvided_UsesDefaultLimit() throws Exception {
+        var user = new UserDto(UUID.randomUUID(), "anna", "Anna", "", "");
+
+        when(followSuggestionService.suggestFollows(UUID.fromString(PRINCIPAL_ID), 10)).thenReturn(List.of(user));
+
+        mvc.perform(
+                        get("/api/users/me/suggestions")
+                                .accept(MediaType.APPLICATION_JSON)
+                                .with(customBearerToken())
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(user.getId().toString())));
+    }
+
+    @Test
+    @DisplayName("getSuggestions returns error when the limit is out of range")
+    public void getSuggestions_LimitOutOfRange_ReturnsExpectedError() throws Exception {
+        when(followSuggestionService.suggestFollows(UUID.fromString(PRINCIPAL_ID), 50))
+                .thenThrow(new IllegalArgumentException("'limit' has to be between 1 and 20"));
+
+        mvc.perform(
+                        get("/api/users/me/suggestions")
+                                .param("limit", "50")
+                                .accept(MediaType.APPLICATION_JSON)
+                                .with(customBearerToken())
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.messages", hasItem("'limit' has to be between 1 and 20")));
+    }
 }
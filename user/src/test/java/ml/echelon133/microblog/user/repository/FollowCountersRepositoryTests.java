@@ -0,0 +1,203 @@
+package ml.echelon133.microblog.user.repository;
+
+import ml.echelon133.microblog.shared.user.User;
+import ml.echelon133.microblog.shared.user.follow.Follow;
+import ml.echelon133.microblog.shared.user.follow.FollowCounters;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+    Disable kubernetes during tests to make local execution of tests possible.
+    If kubernetes is not disabled, tests won't execute at all because Spring will
+    fail to configure kubernetes when run outside it.
+
+    createCounters uses ON CONFLICT, which H2 only understands in its PostgreSQL compatibility mode,
+    so the embedded database is configured explicitly instead of being replaced by the default one.
+ */
+@TestPropertySource(properties = {
+        "spring.cloud.kubernetes.enabled=false",
+        "spring.test.database.replace=none",
+        "spring.datasource.url=jdbc:h2:mem:follow-counters-tests;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password="
+})
+@DataJpaTest
+@DisplayName("Tests of FollowCountersRepository")
+public class FollowCountersRepositoryTests {
+
+    @Autowired
+    private FollowCountersRepository followCountersRepository;
+
+    @Autowired
+    private FollowRepository followRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private UUID createUser(String username) {
+        var id = userRepository.save(new User(username, "", "", "", Set.of())).getId();
+        // every user follows themselves
+        followRepository.save(new Follow(id, id));
+        return id;
+    }
+
+    @Test
+    @DisplayName("Custom createCounters stores counters only once")
+    public void createCounters_CalledTwice_StoresFirstCounters() {
+        var id = createUser("user1");
+
+        // when
+        var firstCreated = followCountersRepository.createCounters(id, 10, 20);
+        var secondCreated = followCountersRepository.createCounters(id, 30, 40);
+
+        // then
+        assertEquals(1, firstCreated);
+        assertEquals(0, secondCreated);
+        var counters = followCountersRepository.findCountersOfUser(id).orElseThrow();
+        assertEquals(10, counters.getFollowing());
+        assertEquals(20, counters.getFollowers());
+    }
+
+    @Test
+    @DisplayName("Custom findCountersOfUser query returns empty when counters do not exist")
+    public void findCountersOfUser_CountersNotFound_ReturnsEmpty() {
+        // when
+        var result = followCountersRepository.findCountersOfUser(UUID.randomUUID());
+
+        // then
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Custom findCountersOfUser query returns stored counters")
+    public void findCountersOfUser_CountersFound_ReturnsCounters() {
+        var userId = UUID.randomUUID();
+
+        // given
+        followCountersRepository.save(new FollowCounters(userId, 10, 20));
+
+        // when
+        var result = followCountersRepository.findCountersOfUser(userId).orElseThrow();
+
+        // then
+        assertEquals(10, result.getFollowing());
+        assertEquals(20, result.getFollowers());
+    }
+
+    @Test
+    @DisplayName("Custom updateCounters query updates counters of both sides of the follow")
+    public void updateCounters_CountersExist_UpdatesBothSides() {
+        var source = UUID.randomUUID();
+        var target = UUID.randomUUID();
+        var other = UUID.randomUUID();
+
+        // given
+        followCountersRepository.save(new FollowCounters(source, 1, 2));
+        followCountersRepository.save(new FollowCounters(target, 3, 4));
+        followCountersRepository.save(new FollowCounters(other, 5, 6));
+
+        // when
+        followCountersRepository.updateCounters(source, target, 1);
+        var afterFollow = List.of(
+                followCountersRepository.findCountersOfUser(source).orElseThrow(),
+                followCountersRepository.findCountersOfUser(target).orElseThrow()
+        );
+        followCountersRepository.updateCounters(source, target, -1);
+        var afterUnfollow = List.of(
+                followCountersRepository.findCountersOfUser(source).orElseThrow(),
+                followCountersRepository.findCountersOfUser(target).orElseThrow()
+        );
+        var otherCounters = followCountersRepository.findCountersOfUser(other).orElseThrow();
+
+        // then
+        assertEquals(2, afterFollow.get(0).getFollowing());
+        assertEquals(2, afterFollow.get(0).getFollowers());
+        assertEquals(3, afterFollow.get(1).getFollowing());
+        assertEquals(5, afterFollow.get(1).getFollowers());
+        assertEquals(1, afterUnfollow.get(0).getFollowing());
+        assertEquals(2, afterUnfollow.get(0).getFollowers());
+        assertEquals(3, afterUnfollow.get(1).getFollowing());
+        assertEquals(4, afterUnfollow.get(1).getFollowers());
+        assertEquals(5, otherCounters.getFollowing());
+        assertEquals(6, otherCounters.getFollowers());
+    }
+
+    @Test
+    @DisplayName("Custom createMissingCounters query only creates counters of users who do not have them")
+    public void createMissingCounters_SomeCountersMissing_CreatesMissingCounters() {
+        // given
+        var user1 = createUser("user1");
+        var user2 = createUser("user2");
+        followCountersRepository.save(new FollowCounters(user1, 7, 8));
+
+        // when
+        var created = followCountersRepository.createMissingCounters();
+
+        // then
+        assertEquals(1, created);
+        var counters1 = followCountersRepository.findCountersOfUser(user1).orElseThrow();
+        var counters2 = followCountersRepository.findCountersOfUser(user2).orElseThrow();
+        assertEquals(7, counters1.getFollowing());
+        assertEquals(8, counters1.getFollowers());
+        assertEquals(0, counters2.getFollowing());
+        assertEquals(0, counters2.getFollowers());
+    }
+
+    @Test
+    @DisplayName("Custom findUserIdsAfter query returns ids in chunks")
+    public void findUserIdsAfter_MultipleCountersExist_ReturnsChunks() {
+        // given
+        for (int i = 0; i < 5; i++) {
+            followCountersRepository.save(new FollowCounters(UUID.randomUUID()));
+        }
+
+        // when
+        var chunk1 = followCountersRepository.findUserIdsAfter(new UUID(0, 0), Pageable.ofSize(3));
+        var chunk2 = followCountersRepository.findUserIdsAfter(chunk1.get(2), Pageable.ofSize(3));
+
+        // then
+        assertEquals(3, chunk1.size());
+        assertEquals(2, chunk2.size());
+        assertEquals(5, Set.of(chunk1.get(0), chunk1.get(1), chunk1.get(2), chunk2.get(0), chunk2.get(1)).size());
+    }
+
+    @Test
+    @DisplayName("Custom recountCounters query replaces counters with actual numbers of follows, excluding self-follows")
+    public void recountCounters_CountersDrifted_RecountsCounters() {
+        // given
+        var user1 = createUser("user1");
+        var user2 = createUser("user2");
+        var user3 = createUser("user3");
+        followRepository.save(new Follow(user1, user2));
+        followRepository.save(new Follow(user1, user3));
+        followRepository.save(new Follow(user2, user3));
+        followCountersRepository.save(new FollowCounters(user1, 100, 100));
+        followCountersRepository.save(new FollowCounters(user2, 100, 100));
+        followCountersRepository.save(new FollowCounters(user3, 100, 100));
+
+        // when
+        var recounted = followCountersRepository.recountCounters(List.of(user1, user3));
+
+        // then
+        assertEquals(2, recounted);
+        var counters1 = followCountersRepository.findCountersOfUser(user1).orElseThrow();
+        var counters2 = followCountersRepository.findCountersOfUser(user2).orElseThrow();
+        var counters3 = followCountersRepository.findCountersOfUser(user3).orElseThrow();
+        assertEquals(2, counters1.getFollowing());
+        assertEquals(0, counters1.getFollowers());
+        assertEquals(100, counters2.getFollowing());
+        assertEquals(100, counters2.getFollowers());
+        assertEquals(0, counters3.getFollowing());
+        assertEquals(2, counters3.getFollowers());
+    }
+}
@@ -1,14 +1,18 @@
 package ml.echelon133.microblog.user.repository;
 
 import ml.echelon133.microblog.shared.user.follow.Follow;
+import ml.echelon133.microblog.shared.user.follow.FollowId;
 import ml.echelon133.microblog.shared.user.User;
 import ml.echelon133.microblog.shared.user.UserDto;
+import ml.echelon133.microblog.user.service.FollowGraph;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.TestPropertySource;
 
 import java.util.*;
@@ -16,13 +20,23 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /*
     Disable kubernetes during tests to make local execution of tests possible.
     If kubernetes is not disabled, tests won't execute at all because Spring will
     fail to configure kubernetes when run outside it.
+
+    createFollow uses ON CONFLICT, which H2 only understands in its PostgreSQL compatibility mode,
+    so the embedded database is configured explicitly instead of being replaced by the default one.
  */
-@TestPropertySource(properties = "spring.cloud.kubernetes.enabled=false")
+@TestPropertySource(properties = {
+        "spring.cloud.kubernetes.enabled=false",
+        "spring.test.database.replace=none",
+        "spring.datasource.url=jdbc:h2:mem:follow-tests;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password="
+})
 @DataJpaTest
 @DisplayName("Tests of FollowRepository")
 public class FollowRepositoryTests {
@@ -235,10 +249,139 @@ public class FollowRepositoryTests {
         assertEquals(expectedKnownUsers.size(), knownUsers.getTotalElements());
     }
 
+    @Test
+    @DisplayName("Custom findAllKnownUserFollowers sorted by id returns users in the order of the follow graph")
+    public void findAllKnownUserFollowers_SortedById_ReturnsUsersInGraphOrder() {
+        setupFollowRelationships();
+
+        var sourceUser = usersIds.get("user1");
+        var targetUser = usersIds.get("user5");
+
+        // when
+        var knownUsers = followRepository.findAllKnownUserFollowers(
+                sourceUser, targetUser, PageRequest.of(0, 10, Sort.by("id"))
+        );
+
+        // then
+        var ids = knownUsers.stream().map(UserDto::getId).toList();
+        assertEquals(2, ids.size());
+        assertEquals(ids.stream().sorted(FollowGraph.USER_ID_ORDER).toList(), ids);
+    }
+
     private static void assertPageContainsExpectedUsernames(List<String> expectedUsernames, Page<UserDto> foundUsers) {
         var foundUsernames = foundUsers.stream().map(
                 UserDto::getUsername
         ).sorted().collect(Collectors.toList());
         assertEquals(expectedUsernames, foundUsernames);
     }
+
+    @Test
+    @DisplayName("Custom findFollowIdsAfter returns all follows except self-follows in chunks")
+    public void findFollowIdsAfter_MultipleChunks_ReturnsAllFollowsOnce() {
+        setupFollowRelationships();
+        var minId = new UUID(0, 0);
+
+        // when
+        var chunk1 = followRepository.findFollowIdsAfter(minId, minId, Pageable.ofSize(4));
+        var last1 = chunk1.get(chunk1.size() - 1);
+        var chunk2 = followRepository.findFollowIdsAfter(last1.getFollowingUser(), last1.getFollowedUser(), Pageable.ofSize(4));
+        var last2 = chunk2.get(chunk2.size() - 1);
+        var chunk3 = followRepository.findFollowIdsAfter(last2.getFollowingUser(), last2.getFollowedUser(), Pageable.ofSize(4));
+        var last3 = chunk3.get(chunk3.size() - 1);
+        var chunk4 = followRepository.findFollowIdsAfter(last3.getFollowingUser(), last3.getFollowedUser(), Pageable.ofSize(4));
+
+        // then
+        assertEquals(4, chunk1.size());
+        assertEquals(4, chunk2.size());
+        assertEquals(1, chunk3.size());
+        assertEquals(0, chunk4.size());
+        var all = new HashSet<FollowId>();
+        all.addAll(chunk1);
+        all.addAll(chunk2);
+        all.addAll(chunk3);
+        assertEquals(9, all.size());
+        assertTrue(all.stream().noneMatch(f -> f.getFollowingUser().equals(f.getFollowedUser())));
+    }
+
+    @Test
+    @DisplayName("Custom createFollow creates only the follow which does not exist")
+    public void createFollow_FollowDoesNotExist_CreatesFollow() {
+        setupFollowRelationships();
+        var user5 = usersIds.get("user5");
+        var user1 = usersIds.get("user1");
+
+        // when
+        var created = followRepository.createFollow(user5, user1);
+        var createdAgain = followRepository.createFollow(user5, user1);
+
+        // then
+        assertEquals(1, created);
+        assertEquals(0, createdAgain);
+        assertTrue(followRepository.existsById(new FollowId(user5, user1)));
+        assertEquals(1, followRepository.countUserFollowing(user5));
+    }
+
+    @Test
+    @DisplayName("Custom createFollow does not create a follow of a user who does not exist")
+    public void createFollow_UserDoesNotExist_DoesNotCreateFollow() {
+        setupFollowRelationships();
+        var user1 = usersIds.get("user1");
+        var unknownUser = UUID.randomUUID();
+
+        // when
+        var createdFollowing = followRepository.createFollow(user1, unknownUser);
+        var createdFollowed = followRepository.createFollow(unknownUser, user1);
+
+        // then
+        assertEquals(0, createdFollowing);
+        assertEquals(0, createdFollowed);
+        assertEquals(4, followRepository.countUserFollowing(user1));
+        assertEquals(0, followRepository.countUserFollowers(user1));
+    }
+
+    @Test
+    @DisplayName("Custom createFollow does not create a second self-follow")
+    public void createFollow_SelfFollow_DoesNotCreateFollow() {
+        setupFollowRelationships();
+        var user1 = usersIds.get("user1");
+
+        // when
+        var created = followRepository.createFollow(user1, user1);
+
+        // then
+        assertEquals(0, created);
+        assertTrue(followRepository.existsById(new FollowId(user1, user1)));
+    }
+
+    @Test
+    @DisplayName("Custom deleteFollow removes only the follow which exists")
+    public void deleteFollow_FollowExists_RemovesFollow() {
+        setupFollowRelationships();
+        var user1 = usersIds.get("user1");
+        var user2 = usersIds.get("user2");
+
+        // when
+        var deleted = followRepository.deleteFollow(user1, user2);
+        var deletedAgain = followRepository.deleteFollow(user1, user2);
+
+        // then
+        assertEquals(1, deleted);
+        assertEquals(0, deletedAgain);
+        assertEquals(3, followRepository.countUserFollowing(user1));
+    }
+
+    @Test
+    @DisplayName("Custom findFollowedAmong returns only users who are being followed")
+    public void findFollowedAmong_SomeUsersFollowed_ReturnsFollowedUsers() {
+        setupFollowRelationships();
+        var user2 = usersIds.get("user2");
+
+        // when
+        var followed = followRepository.findFollowedAmong(user2, List.of(
+                usersIds.get("user1"), usersIds.get("user3"), usersIds.get("user4"), usersIds.get("user5"), UUID.randomUUID()
+        ));
+
+        // then
+        assertEquals(Set.of(usersIds.get("user3"), usersIds.get("user4")), Set.copyOf(followed));
+    }
 }
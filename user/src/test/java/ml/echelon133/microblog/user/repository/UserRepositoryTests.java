@@ -77,15 +77,32 @@ public class UserRepositoryTests {
     }
 
     @Test
-    @DisplayName("Custom updateDisplayedName query updates only specific user's displayed name")
-    public void updateDisplayedName_ChangingDisplayedName_UpdatesOnlyOneUser() {
+    @DisplayName("Custom findByUserIds query returns DTO projections of existing users only")
+    public void findByUserIds_SomeUsersExist_ReturnsOnlyExisting() {
         // given
         User u1 = createTestUser("test1");
         User u2 = createTestUser("test2");
+        createTestUser("test3");
 
         // when
-        userRepository.updateDisplayedName(u1.getId(), "asdf");
-        userRepository.updateDisplayedName(u2.getId(), "qwerty");
+        var userDtos = userRepository.findByUserIds(List.of(u1.getId(), u2.getId(), UUID.randomUUID()));
+
+        // then
+        assertEquals(2, userDtos.size());
+        var foundIds = userDtos.stream().map(UserDto::getId).toList();
+        assertTrue(foundIds.containsAll(List.of(u1.getId(), u2.getId())));
+    }
+
+    @Test
+    @DisplayName("Custom updateUserInfo query updates only specific user's displayed name")
+    public void updateUserInfo_ChangingDisplayedName_UpdatesOnlyOneUser() {
+        // given
+        User u1 = createTestUser("test1");
+        User u2 = createTestUser("test2");
+
+        // when
+        userRepository.updateUserInfo(u1.getId(), "asdf", null, null);
+        userRepository.updateUserInfo(u2.getId(), "qwerty", null, null);
 
         UserDto u1Dto = userRepository.findByUserId(u1.getId());
         UserDto u2Dto = userRepository.findByUserId(u2.getId());
@@ -93,18 +110,20 @@ public class UserRepositoryTests {
         // then
         assertEquals("asdf", u1Dto.getDisplayedName());
         assertEquals("qwerty", u2Dto.getDisplayedName());
+        assertEquals("test description", u1Dto.getDescription());
+        assertEquals("", u1Dto.getAviUrl());
     }
 
     @Test
-    @DisplayName("Custom updateAviUrl query updates only specific user's aviUrl")
-    public void updateAviUrl_ChangingAviUrl_UpdatesOnlyOneUser() {
+    @DisplayName("Custom updateUserInfo query updates only specific user's aviUrl")
+    public void updateUserInfo_ChangingAviUrl_UpdatesOnlyOneUser() {
         // given
         User u1 = createTestUser("test1");
         User u2 = createTestUser("test2");
 
         // when
-        userRepository.updateAviUrl(u1.getId(), "http://test.com");
-        userRepository.updateAviUrl(u2.getId(), "http://example.com");
+        userRepository.updateUserInfo(u1.getId(), null, "http://test.com", null);
+        userRepository.updateUserInfo(u2.getId(), null, "http://example.com", null);
 
         UserDto u1Dto = userRepository.findByUserId(u1.getId());
         UserDto u2Dto = userRepository.findByUserId(u2.getId());
@@ -112,18 +131,20 @@ public class UserRepositoryTests {
         // then
         assertEquals("http://test.com", u1Dto.getAviUrl());
         assertEquals("http://example.com", u2Dto.getAviUrl());
+        assertEquals("test1", u1Dto.getDisplayedName());
+        assertEquals("test description", u1Dto.getDescription());
     }
 
     @Test
-    @DisplayName("Custom updateDescription query updates only specific user's description")
-    public void updateDescription_ChangingDescription_UpdatesOnlyOneUser() {
+    @DisplayName("Custom updateUserInfo query updates only specific user's description")
+    public void updateUserInfo_ChangingDescription_UpdatesOnlyOneUser() {
         // given
         User u1 = createTestUser("test1");
         User u2 = createTestUser("test2");
 
         // when
-        userRepository.updateDescription(u1.getId(), "description1");
-        userRepository.updateDescription(u2.getId(), "description2");
+        userRepository.updateUserInfo(u1.getId(), null, null, "description1");
+        userRepository.updateUserInfo(u2.getId(), null, null, "description2");
 
         UserDto u1Dto = userRepository.findByUserId(u1.getId());
         UserDto u2Dto = userRepository.findByUserId(u2.getId());
@@ -131,6 +152,35 @@ public class UserRepositoryTests {
         // then
         assertEquals("description1", u1Dto.getDescription());
         assertEquals("description2", u2Dto.getDescription());
+        assertEquals("test1", u1Dto.getDisplayedName());
+        assertEquals("", u1Dto.getAviUrl());
+    }
+
+    @Test
+    @DisplayName("Custom updateUserInfo query updates all fields at once")
+    public void updateUserInfo_ChangingAllFields_UpdatesAllFields() {
+        // given
+        User u1 = createTestUser("test1");
+
+        // when
+        var updated = userRepository.updateUserInfo(u1.getId(), "asdf", "http://test.com", "description1");
+        UserDto u1Dto = userRepository.findByUserId(u1.getId());
+
+        // then
+        assertEquals(1, updated);
+        assertEquals("asdf", u1Dto.getDisplayedName());
+        assertEquals("http://test.com", u1Dto.getAviUrl());
+        assertEquals("description1", u1Dto.getDescription());
+    }
+
+    @Test
+    @DisplayName("Custom updateUserInfo query does not update anything when the user does not exist")
+    public void updateUserInfo_UserDoesNotExist_ReturnsZero() {
+        // when
+        var updated = userRepository.updateUserInfo(UUID.randomUUID(), "asdf", null, null);
+
+        // then
+        assertEquals(0, updated);
     }
 
     @Test
@@ -236,4 +286,63 @@ public class UserRepositoryTests {
         var allUsernames = firstPage.getContent().stream().map(UserDto::getUsername).toList();
         assertTrue(allUsernames.contains("test1"));
     }
+
+    @Test
+    @DisplayName("Custom existsUserByUsernameIgnoreCase query ignores case of usernames")
+    public void existsUserByUsernameIgnoreCase_UserExists_ReturnsTrueIgnoringCase() {
+        // given
+        createTestUser("TestUser");
+
+        // when
+        var existsExact = userRepository.existsUserByUsernameIgnoreCase("TestUser");
+        var existsDifferentCase = userRepository.existsUserByUsernameIgnoreCase("tESTuSER");
+        var existsOther = userRepository.existsUserByUsernameIgnoreCase("testuser1");
+
+        // then
+        assertTrue(existsExact);
+        assertTrue(existsDifferentCase);
+        assertFalse(existsOther);
+    }
+
+    @Test
+    @DisplayName("Custom findByUsernamePrefix query returns users with matching usernames in alphabetical order")
+    public void findByUsernamePrefix_MultipleUsersExist_ReturnsMatchingInOrder() {
+        // given
+        createTestUser("anna2");
+        createTestUser("Anna");
+        createTestUser("annabel");
+        createTestUser("joanna");
+
+        // when
+        var all = userRepository.findByUsernamePrefix("anna", Pageable.ofSize(10));
+        var limited = userRepository.findByUsernamePrefix("anna", Pageable.ofSize(2));
+
+        // then
+        assertEquals(List.of("Anna", "anna2", "annabel"), all.stream().map(UserDto::getUsername).toList());
+        assertEquals(List.of("Anna", "anna2"), limited.stream().map(UserDto::getUsername).toList());
+    }
+
+    @Test
+    @DisplayName("Custom findByDisplayedNamePrefix query returns users with matching displayed names, shortest first")
+    public void findByDisplayedNamePrefix_MultipleUsersExist_ReturnsShortestFirst() {
+        // given
+        var user1 = createTestUser("user1");
+        user1.setDisplayedName("Anna Smith");
+        var user2 = createTestUser("user2");
+        user2.setDisplayedName("anna");
+        var user3 = createTestUser("user3");
+        user3.setDisplayedName("Joanna");
+        var user4 = createTestUser("user4");
+        user4.setDisplayedName("100% anna");
+
+        // when
+        var found = userRepository.findByDisplayedNamePrefix("ann", Pageable.ofSize(10));
+        var escaped = userRepository.findByDisplayedNamePrefix("100\\%", Pageable.ofSize(10));
+        var wildcard = userRepository.findByDisplayedNamePrefix("\\%", Pageable.ofSize(10));
+
+        // then
+        assertEquals(List.of("user2", "user1"), found.stream().map(UserDto::getUsername).toList());
+        assertEquals(List.of("user4"), escaped.stream().map(UserDto::getUsername).toList());
+        assertEquals(0, wildcard.size());
+    }
 }
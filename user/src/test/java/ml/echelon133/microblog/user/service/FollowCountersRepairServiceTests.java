@@ -0,0 +1,124 @@
+package ml.echelon133.microblog.user.service;
+
+import ml.echelon133.microblog.user.repository.FollowCountersRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of FollowCountersRepairService")
+public class FollowCountersRepairServiceTests {
+
+    @Mock
+    private FollowCountersRepository followCountersRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PreparedStatement statement;
+
+    @Mock
+    private ResultSet resultSet;
+
+    @InjectMocks
+    private FollowCountersRepairService followCountersRepairService;
+
+    @BeforeEach
+    public void beforeEach() {
+        followCountersRepairService.chunkSize = 2;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenRepairLock(boolean acquired) throws SQLException {
+        given(jdbcTemplate.execute(any(ConnectionCallback.class))).willAnswer((invocation) ->
+                invocation.getArgument(0, ConnectionCallback.class).doInConnection(connection)
+        );
+        given(connection.prepareStatement(anyString())).willReturn(statement);
+        given(statement.executeQuery()).willReturn(resultSet);
+        given(resultSet.next()).willReturn(true);
+        given(resultSet.getBoolean(1)).willReturn(acquired);
+    }
+
+    @Test
+    @DisplayName("repairCounters creates missing counters even when there is nothing to recount")
+    public void repairCounters_NoCounters_CreatesMissingCounters() throws SQLException {
+        // given
+        givenRepairLock(true);
+        given(followCountersRepository.findUserIdsAfter(eq(new UUID(0, 0)), any())).willReturn(List.of());
+
+        // when
+        var recounted = followCountersRepairService.repairCounters();
+
+        // then
+        assertEquals(0, recounted);
+        verify(followCountersRepository, times(1)).createMissingCounters();
+        verify(followCountersRepository, times(0)).recountCounters(any());
+    }
+
+    @Test
+    @DisplayName("repairCounters recounts counters in chunks, each chunk starting after the last id of the previous one")
+    public void repairCounters_MultipleChunks_RecountsAllChunks() throws SQLException {
+        var chunk1 = List.of(UUID.randomUUID(), UUID.randomUUID());
+        var chunk2 = List.of(UUID.randomUUID());
+
+        // given
+        givenRepairLock(true);
+        given(followCountersRepository.findUserIdsAfter(eq(new UUID(0, 0)), any())).willReturn(chunk1);
+        given(followCountersRepository.findUserIdsAfter(eq(chunk1.get(1)), any())).willReturn(chunk2);
+        given(followCountersRepository.findUserIdsAfter(eq(chunk2.get(0)), any())).willReturn(List.of());
+        given(followCountersRepository.recountCounters(chunk1)).willReturn(2);
+        given(followCountersRepository.recountCounters(chunk2)).willReturn(1);
+
+        // when
+        var recounted = followCountersRepairService.repairCounters();
+
+        // then
+        assertEquals(3, recounted);
+        verify(followCountersRepository, times(1)).recountCounters(chunk1);
+        verify(followCountersRepository, times(1)).recountCounters(chunk2);
+        // the lock is released once counters are repaired
+        verify(connection, times(1)).prepareStatement("SELECT pg_advisory_unlock(?)");
+    }
+
+    @Test
+    @DisplayName("repairCounters does nothing when another replica holds the repair lock")
+    public void repairCounters_LockHeldByAnotherReplica_DoesNothing() throws SQLException {
+        // given
+        givenRepairLock(false);
+
+        // when
+        var recounted = followCountersRepairService.repairCounters();
+
+        // then
+        assertEquals(0, recounted);
+        verify(followCountersRepository, never()).createMissingCounters();
+        verify(followCountersRepository, never()).findUserIdsAfter(any(), any());
+        verify(connection, never()).prepareStatement("SELECT pg_advisory_unlock(?)");
+    }
+}
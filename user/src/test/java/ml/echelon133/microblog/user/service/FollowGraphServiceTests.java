@@ -0,0 +1,136 @@
+package ml.echelon133.microblog.user.service;
+
+import ml.echelon133.microblog.shared.user.follow.FollowId;
+import ml.echelon133.microblog.shared.user.follow.FollowInfoDto;
+import ml.echelon133.microblog.user.repository.FollowRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of FollowGraphService")
+public class FollowGraphServiceTests {
+
+    private static final UUID MIN_ID = new UUID(0, 0);
+
+    @Mock
+    private FollowRepository followRepository;
+
+    @InjectMocks
+    private FollowGraphService followGraphService;
+
+    private final UUID user1 = UUID.randomUUID();
+    private final UUID user2 = UUID.randomUUID();
+    private final UUID user3 = UUID.randomUUID();
+
+    @BeforeEach
+    public void beforeEach() {
+        followGraphService.loadChunkSize = 1;
+    }
+
+    @Test
+    @DisplayName("findKnownFollowers returns empty before the graph is loaded")
+    public void findKnownFollowers_GraphNotLoaded_ReturnsEmpty() {
+        // given
+        given(followRepository.existsById(new FollowId(user1, user2))).willReturn(true);
+
+        // when
+        followGraphService.applyFollowChange(new FollowInfoDto(user1, user2));
+        var result = followGraphService.findKnownFollowers(user1, user3);
+
+        // then
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    @DisplayName("rebuildGraph loads follows in chunks, each chunk starting after the last follow of the previous one")
+    public void rebuildGraph_MultipleChunks_LoadsAllFollows() {
+        var follow1 = new FollowId(user1, user2);
+        var follow2 = new FollowId(user2, user3);
+
+        // given
+        given(followRepository.findFollowIdsAfter(eq(MIN_ID), eq(MIN_ID), any())).willReturn(List.of(follow1));
+        given(followRepository.findFollowIdsAfter(eq(user1), eq(user2), any())).willReturn(List.of(follow2));
+        given(followRepository.findFollowIdsAfter(eq(user2), eq(user3), any())).willReturn(List.of());
+
+        // when
+        followGraphService.rebuildGraph();
+        var result = followGraphService.findKnownFollowers(user1, user3);
+
+        // then
+        assertEquals(List.of(user2), result.orElseThrow());
+    }
+
+    @Test
+    @DisplayName("rebuildGraph replays follows which have changed while the graph was being loaded")
+    public void rebuildGraph_FollowsChangedDuringLoad_ReplaysChanges() {
+        var follow1 = new FollowId(user1, user2);
+
+        // given
+        given(followRepository.existsById(new FollowId(user2, user3))).willReturn(true);
+        given(followRepository.existsById(new FollowId(user1, user2))).willReturn(false, true);
+        given(followRepository.findFollowIdsAfter(eq(MIN_ID), eq(MIN_ID), any())).willAnswer(a -> {
+            // user2 follows user3 after this chunk has been read, and user1 unfollows user2 right after
+            // the follow had been read
+            followGraphService.applyFollowChange(new FollowInfoDto(user2, user3));
+            followGraphService.applyFollowChange(new FollowInfoDto(user1, user2));
+            return List.of(follow1);
+        });
+        given(followRepository.findFollowIdsAfter(eq(user1), eq(user2), any())).willReturn(List.of());
+
+        // when
+        followGraphService.rebuildGraph();
+        var afterLoad = followGraphService.findKnownFollowers(user1, user3).orElseThrow();
+        followGraphService.applyFollowChange(new FollowInfoDto(user1, user2));
+        var afterFollow = followGraphService.findKnownFollowers(user1, user3).orElseThrow();
+
+        // then
+        assertEquals(0, afterLoad.size());
+        assertEquals(List.of(user2), afterFollow);
+    }
+
+    @Test
+    @DisplayName("applyFollowChange applies the state of the follow from the database, even if messages arrive out of order")
+    public void applyFollowChange_MessagesOutOfOrder_AppliesStateFromDatabase() {
+        // given
+        given(followRepository.findFollowIdsAfter(eq(MIN_ID), eq(MIN_ID), any()))
+                .willReturn(List.of(new FollowId(user2, user3)));
+        given(followRepository.findFollowIdsAfter(eq(user2), eq(user3), any())).willReturn(List.of());
+        // user1 has followed and then unfollowed user2, but the message about the follow arrives last
+        given(followRepository.existsById(new FollowId(user1, user2))).willReturn(false);
+        followGraphService.rebuildGraph();
+
+        // when
+        followGraphService.applyFollowChange(new FollowInfoDto(user1, user2));
+        followGraphService.applyFollowChange(new FollowInfoDto(user1, user2));
+        var result = followGraphService.findKnownFollowers(user1, user3);
+
+        // then
+        assertEquals(0, result.orElseThrow().size());
+    }
+
+    @Test
+    @DisplayName("rebuildGraph keeps the graph unloaded when loading fails")
+    public void rebuildGraph_LoadingFails_GraphNotLoaded() {
+        // given
+        given(followRepository.findFollowIdsAfter(any(), any(), any())).willThrow(new RuntimeException("test"));
+
+        // when
+        followGraphService.rebuildGraph();
+
+        // then
+        assertTrue(followGraphService.findKnownFollowers(user1, user3).isEmpty());
+    }
+}
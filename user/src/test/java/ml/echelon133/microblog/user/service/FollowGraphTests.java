@@ -0,0 +1,262 @@
+package ml.echelon133.microblog.user.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests of FollowGraph")
+public class FollowGraphTests {
+
+    private final UUID user1 = UUID.randomUUID();
+    private final UUID user2 = UUID.randomUUID();
+    private final UUID user3 = UUID.randomUUID();
+    private final UUID user4 = UUID.randomUUID();
+
+    @Test
+    @DisplayName("follow ignores self-follows and follows which already exist")
+    public void follow_SelfFollowAndDuplicate_AreIgnored() {
+        var graph = new FollowGraph();
+
+        // when
+        var selfFollow = graph.follow(user1, user1);
+        var follow = graph.follow(user1, user2);
+        var duplicate = graph.follow(user1, user2);
+
+        // then
+        assertFalse(selfFollow);
+        assertTrue(follow);
+        assertFalse(duplicate);
+        assertEquals(1, graph.countFollows());
+    }
+
+    @Test
+    @DisplayName("unfollow removes only follows which exist")
+    public void unfollow_FollowExists_RemovesFollow() {
+        var graph = new FollowGraph();
+
+        // given
+        graph.follow(user1, user2);
+
+        // when
+        var unknownUser = graph.unfollow(user1, UUID.randomUUID());
+        var unfollow = graph.unfollow(user1, user2);
+        var duplicate = graph.unfollow(user1, user2);
+
+        // then
+        assertFalse(unknownUser);
+        assertTrue(unfollow);
+        assertFalse(duplicate);
+        assertEquals(0, graph.countFollows());
+    }
+
+    @Test
+    @DisplayName("findKnownFollowers returns users followed by the source who follow the target")
+    public void findKnownFollowers_KnownFollowersExist_ReturnsThem() {
+        var graph = new FollowGraph();
+
+        // given
+        // user1 follows user2 and user3, and only user2 follows user4
+        graph.follow(user1, user2);
+        graph.follow(user1, user3);
+        graph.follow(user2, user4);
+        graph.follow(user3, user1);
+        // the source following the target does not make the source a known follower
+        graph.follow(user1, user4);
+
+        // when
+        var known = graph.findKnownFollowers(user1, user4);
+
+        // then
+        assertEquals(List.of(user2), known);
+    }
+
+    @Test
+    @DisplayName("findKnownFollowers does not return users who have been unfollowed")
+    public void findKnownFollowers_KnownFollowerUnfollowed_DoesNotReturnThem() {
+        var graph = new FollowGraph();
+
+        // given
+        graph.follow(user1, user2);
+        graph.follow(user1, user3);
+        graph.follow(user2, user4);
+        graph.follow(user3, user4);
+        graph.unfollow(user3, user4);
+
+        // when
+        var known = graph.findKnownFollowers(user1, user4);
+
+        // then
+        assertEquals(List.of(user2), known);
+    }
+
+    @Test
+    @DisplayName("findKnownFollowers returns empty list for unknown users")
+    public void findKnownFollowers_UnknownUsers_ReturnsEmpty() {
+        var graph = new FollowGraph();
+
+        // when
+        var known = graph.findKnownFollowers(user1, user2);
+
+        // then
+        assertEquals(0, known.size());
+    }
+
+    @Test
+    @DisplayName("findKnownFollowers returns all known followers sorted by id, regardless of the order of follows")
+    public void findKnownFollowers_ManyFollowers_ReturnsSortedResult() {
+        var graph = new FollowGraph();
+        var reversedGraph = new FollowGraph();
+        var followers = IntStream.range(0, 1000).mapToObj(i -> UUID.randomUUID()).toList();
+
+        // given
+        followers.forEach(f -> graph.follow(f, user2));
+        // user1 follows every 10th follower of user2
+        for (int i = 0; i < followers.size(); i += 10) {
+            graph.follow(user1, followers.get(i));
+        }
+        // the same follows are added to the other graph in the reversed order, which interns users differently
+        for (int i = followers.size() - 1; i >= 0; i--) {
+            if (i % 10 == 0) {
+                reversedGraph.follow(user1, followers.get(i));
+            }
+            reversedGraph.follow(followers.get(i), user2);
+        }
+
+        // when
+        var known = graph.findKnownFollowers(user1, user2);
+        var knownInReversedGraph = reversedGraph.findKnownFollowers(user1, user2);
+
+        // then
+        assertEquals(100, known.size());
+        assertEquals(known, knownInReversedGraph);
+        assertEquals(known.stream().sorted(FollowGraph.USER_ID_ORDER).toList(), known);
+        assertTrue(Set.copyOf(followers).containsAll(known));
+    }
+
+    @Test
+    @DisplayName("USER_ID_ORDER compares ids as unsigned numbers")
+    public void userIdOrder_IdsWithHighestBitSet_SortedLast() {
+        var low = UUID.fromString("7fffffff-ffff-ffff-ffff-ffffffffffff");
+        var high = UUID.fromString("80000000-0000-0000-0000-000000000000");
+
+        // then
+        assertTrue(FollowGraph.USER_ID_ORDER.compare(low, high) < 0);
+        assertTrue(low.compareTo(high) > 0);
+    }
+
+    @Test
+    @DisplayName("suggestFollows ranks friends of friends by how many friends follow them")
+    public void suggestFollows_FriendsOfFriendsExist_RanksThem() {
+        var graph = new FollowGraph();
+        var user5 = UUID.randomUUID();
+        var user6 = UUID.randomUUID();
+
+        // given
+        // user1 follows user2, user3 and user4
+        graph.follow(user1, user2);
+        graph.follow(user1, user3);
+        graph.follow(user1, user4);
+        // user6 is followed by two of them, user5 only by one
+        graph.follow(user2, user6);
+        graph.follow(user3, user6);
+        graph.follow(user4, user5);
+        // user1 and users already followed by user1 are never suggested
+        graph.follow(user2, user1);
+        graph.follow(user2, user3);
+
+        // when
+        var suggestions = graph.suggestFollows(user1, 10, 100, 100);
+        var limited = graph.suggestFollows(user1, 1, 100, 100);
+
+        // then
+        assertEquals(List.of(user6, user5), suggestions);
+        assertEquals(List.of(user6), limited);
+    }
+
+    @Test
+    @DisplayName("suggestFollows returns empty list for unknown users")
+    public void suggestFollows_UnknownUser_ReturnsEmpty() {
+        var graph = new FollowGraph();
+
+        // when
+        var suggestions = graph.suggestFollows(user1, 10, 100, 100);
+
+        // then
+        assertEquals(0, suggestions.size());
+    }
+
+    @Test
+    @DisplayName("suggestFollows only counts sampled follows of users with many follows")
+    public void suggestFollows_ManyFollows_SamplesFollows() {
+        var graph = new FollowGraph();
+        var candidates = IntStream.range(0, 1000).mapToObj(i -> UUID.randomUUID()).toList();
+
+        // given
+        graph.follow(user1, user2);
+        candidates.forEach(c -> graph.follow(user2, c));
+
+        // when
+        var suggestions = graph.suggestFollows(user1, 1000, 10, 50);
+
+        // then
+        assertEquals(50, suggestions.size());
+        assertEquals(50, Set.copyOf(suggestions).size());
+        assertTrue(Set.copyOf(candidates).containsAll(suggestions));
+    }
+
+    @Test
+    @DisplayName("Builder skips self-follows and duplicates, and builds the same graph as incremental follows")
+    public void builder_FollowsInAnyOrder_BuildsSameGraphAsIncrementalFollows() {
+        var incrementalGraph = new FollowGraph();
+        var builder = new FollowGraph.Builder();
+        var followers = IntStream.range(0, 1000).mapToObj(i -> UUID.randomUUID()).toList();
+
+        // given
+        builder.follow(user1, user1);
+        for (int i = followers.size() - 1; i >= 0; i--) {
+            builder.follow(followers.get(i), user2);
+            incrementalGraph.follow(followers.get(i), user2);
+            if (i % 10 == 0) {
+                builder.follow(user1, followers.get(i));
+                incrementalGraph.follow(user1, followers.get(i));
+            }
+        }
+        builder.follow(followers.get(0), user2);
+
+        // when
+        var graph = builder.build();
+
+        // then
+        assertEquals(1100, graph.countFollows());
+        assertEquals(incrementalGraph.findKnownFollowers(user1, user2), graph.findKnownFollowers(user1, user2));
+        assertEquals(100, graph.findKnownFollowers(user1, user2).size());
+    }
+
+    @Test
+    @DisplayName("Builder builds a graph which can be changed incrementally")
+    public void builder_BuiltGraph_AcceptsIncrementalChanges() {
+        var builder = new FollowGraph.Builder();
+
+        // given
+        builder.follow(user1, user3);
+        builder.follow(user3, user2);
+        var graph = builder.build();
+
+        // when
+        var unfollow = graph.unfollow(user3, user2);
+        var follow = graph.follow(user4, user2);
+        graph.follow(user1, user4);
+
+        // then
+        assertTrue(unfollow);
+        assertTrue(follow);
+        assertEquals(List.of(user4), graph.findKnownFollowers(user1, user2));
+        assertEquals(3, graph.countFollows());
+    }
+}
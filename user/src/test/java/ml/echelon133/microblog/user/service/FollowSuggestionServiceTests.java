@@ -0,0 +1,122 @@
+package ml.echelon133.microblog.user.service;
+
+import ml.echelon133.microblog.shared.user.UserDto;
+import ml.echelon133.microblog.user.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Tests of FollowSuggestionService")
+public class FollowSuggestionServiceTests {
+
+    @Mock
+    private FollowGraphService followGraphService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private FollowSuggestionService followSuggestionService;
+
+    private final UUID userId = UUID.randomUUID();
+
+    @BeforeEach
+    public void beforeEach() {
+        var clock = Clock.fixed(Instant.parse("2023-01-01T10:00:00Z"), ZoneId.of("UTC"));
+        followSuggestionService = new FollowSuggestionService(followGraphService, userRepository, clock);
+        followSuggestionService.cacheTtl = Duration.ofMinutes(10);
+        followSuggestionService.maxSampledFollows = 100;
+        followSuggestionService.maxSampledFollowsOfFollow = 50;
+        followSuggestionService.createCache();
+    }
+
+    @Test
+    @DisplayName("suggestFollows throws an IllegalArgumentException when the limit is out of range")
+    public void suggestFollows_LimitOutOfRange_ThrowsException() {
+        // when
+        String message1 = assertThrows(IllegalArgumentException.class, () ->
+                followSuggestionService.suggestFollows(userId, 0)
+        ).getMessage();
+        String message2 = assertThrows(IllegalArgumentException.class, () ->
+                followSuggestionService.suggestFollows(userId, FollowSuggestionService.MAX_SUGGESTIONS + 1)
+        ).getMessage();
+
+        // then
+        assertEquals("'limit' has to be between 1 and 20", message1);
+        assertEquals(message1, message2);
+    }
+
+    @Test
+    @DisplayName("suggestFollows returns empty list and does not cache anything when the follow graph is not loaded")
+    public void suggestFollows_GraphNotLoaded_ReturnsEmpty() {
+        // given
+        given(followGraphService.suggestFollows(eq(userId), anyInt(), anyInt(), anyInt())).willReturn(Optional.empty());
+
+        // when
+        var result1 = followSuggestionService.suggestFollows(userId, 10);
+        var result2 = followSuggestionService.suggestFollows(userId, 10);
+
+        // then
+        assertEquals(0, result1.size());
+        assertEquals(0, result2.size());
+        verify(followGraphService, times(2)).suggestFollows(eq(userId), anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    @DisplayName("suggestFollows returns users in the order of the graph and caches them")
+    public void suggestFollows_SuggestionsFound_ReturnsCachedUsersInOrder() {
+        var user1 = new UserDto(UUID.randomUUID(), "user1", "", "", "");
+        var user2 = new UserDto(UUID.randomUUID(), "user2", "", "", "");
+
+        // given
+        given(followGraphService.suggestFollows(userId, FollowSuggestionService.MAX_SUGGESTIONS, 100, 50))
+                .willReturn(Optional.of(List.of(user2.getId(), user1.getId())));
+        given(userRepository.findByUserIds(List.of(user2.getId(), user1.getId()))).willReturn(List.of(user1, user2));
+
+        // when
+        var result1 = followSuggestionService.suggestFollows(userId, 10);
+        var result2 = followSuggestionService.suggestFollows(userId, 1);
+
+        // then
+        assertEquals(List.of(user2, user1), result1);
+        assertEquals(List.of(user2), result2);
+        verify(followGraphService, times(1)).suggestFollows(any(), anyInt(), anyInt(), anyInt());
+        verify(userRepository, times(1)).findByUserIds(any());
+    }
+
+    @Test
+    @DisplayName("suggestFollows computes suggestions again after cached ones expire")
+    public void suggestFollows_CachedSuggestionsExpired_ComputesAgain() {
+        // given
+        followSuggestionService.cacheTtl = Duration.ZERO;
+        followSuggestionService.createCache();
+        given(followGraphService.suggestFollows(eq(userId), anyInt(), anyInt(), anyInt())).willReturn(Optional.of(List.of()));
+
+        // when
+        followSuggestionService.suggestFollows(userId, 10);
+        followSuggestionService.suggestFollows(userId, 10);
+
+        // then
+        verify(followGraphService, times(2)).suggestFollows(eq(userId), anyInt(), anyInt(), anyInt());
+        verify(userRepository, times(0)).findByUserIds(any());
+    }
+}
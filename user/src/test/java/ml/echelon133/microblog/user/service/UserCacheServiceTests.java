@@ -0,0 +1,120 @@
+package ml.echelon133.microblog.user.service;
+
+import ml.echelon133.microblog.shared.user.UserDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Tests of UserCacheService")
+public class UserCacheServiceTests {
+
+    private static final Instant NOW = Instant.parse("2023-01-01T10:00:00Z");
+
+    private UserCacheService createService(Duration ttl) {
+        var service = new UserCacheService(Clock.fixed(NOW, ZoneId.of("UTC")));
+        service.ttl = ttl;
+        service.maxEntries = 2;
+        service.createCache();
+        return service;
+    }
+
+    private UserCacheService userCacheService;
+
+    @BeforeEach
+    public void beforeEach() {
+        userCacheService = createService(Duration.ofMinutes(5));
+    }
+
+    private static UserDto createUser() {
+        return new UserDto(UUID.randomUUID(), "user", "user", "", "");
+    }
+
+    @Test
+    @DisplayName("get loads the user only once when the user is cached")
+    public void get_UserCached_DoesNotLoadAgain() {
+        var user = createUser();
+        var loads = new AtomicInteger();
+
+        // when
+        var result1 = userCacheService.get(user.getId(), id -> { loads.incrementAndGet(); return user; });
+        var result2 = userCacheService.get(user.getId(), id -> { loads.incrementAndGet(); return user; });
+
+        // then
+        assertEquals(user, result1.orElseThrow());
+        assertEquals(user, result2.orElseThrow());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("get returns empty and does not cache anything when the user does not exist")
+    public void get_UserNotFound_ReturnsEmpty() {
+        var id = UUID.randomUUID();
+        var loads = new AtomicInteger();
+
+        // when
+        var result1 = userCacheService.get(id, i -> { loads.incrementAndGet(); return null; });
+        var result2 = userCacheService.get(id, i -> { loads.incrementAndGet(); return null; });
+
+        // then
+        assertTrue(result1.isEmpty());
+        assertTrue(result2.isEmpty());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("get loads the user again after the user is evicted")
+    public void get_UserEvicted_LoadsAgain() {
+        var user = createUser();
+        var updatedUser = new UserDto(user.getId(), "user", "new name", "", "");
+
+        // when
+        userCacheService.get(user.getId(), id -> user);
+        userCacheService.evict(user.getId());
+        var result = userCacheService.get(user.getId(), id -> updatedUser);
+
+        // then
+        assertEquals("new name", result.orElseThrow().getDisplayedName());
+    }
+
+    @Test
+    @DisplayName("get does not cache a user who has been loaded while any user has been evicted")
+    public void get_EvictedDuringLoad_DoesNotCache() {
+        var user = createUser();
+        var updatedUser = new UserDto(user.getId(), "user", "new name", "", "");
+
+        // when
+        var result1 = userCacheService.get(user.getId(), id -> {
+            userCacheService.evict(id);
+            return user;
+        });
+        var result2 = userCacheService.get(user.getId(), id -> updatedUser);
+
+        // then
+        assertEquals(user, result1.orElseThrow());
+        assertEquals(updatedUser, result2.orElseThrow());
+    }
+
+    @Test
+    @DisplayName("get loads the user again after the cached user expires")
+    public void get_UserExpired_LoadsAgain() {
+        var user = createUser();
+        var loads = new AtomicInteger();
+        var expiredService = createService(Duration.ZERO);
+
+        // when
+        expiredService.get(user.getId(), id -> { loads.incrementAndGet(); return user; });
+        expiredService.get(user.getId(), id -> { loads.incrementAndGet(); return user; });
+
+        // then
+        assertEquals(2, loads.get());
+    }
+}
@@ -3,10 +3,13 @@ package ml.echelon133.microblog.user.service;
 import ml.echelon133.microblog.shared.exception.ResourceNotFoundException;
 import ml.echelon133.microblog.shared.notification.Notification;
 import ml.echelon133.microblog.shared.user.*;
+import ml.echelon133.microblog.shared.user.follow.FollowDto;
 import ml.echelon133.microblog.shared.user.follow.FollowId;
 import ml.echelon133.microblog.user.exception.UsernameTakenException;
 import ml.echelon133.microblog.user.queue.FollowPublisher;
 import ml.echelon133.microblog.user.queue.NotificationPublisher;
+import ml.echelon133.microblog.user.queue.UserUpdatePublisher;
+import ml.echelon133.microblog.user.repository.FollowCountersRepository;
 import ml.echelon133.microblog.user.repository.FollowRepository;
 import ml.echelon133.microblog.user.repository.RoleRepository;
 import ml.echelon133.microblog.user.repository.UserRepository;
@@ -16,14 +19,20 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -44,6 +53,9 @@ public class UserServiceTests {
     @Mock
     private FollowRepository followRepository;
 
+    @Mock
+    private FollowCountersRepository followCountersRepository;
+
     @Mock
     private PasswordEncoder passwordEncoder;
 
@@ -53,6 +65,15 @@ public class UserServiceTests {
     @Mock
     private NotificationPublisher notificationPublisher;
 
+    @Mock
+    private UserUpdatePublisher userUpdatePublisher;
+
+    @Mock
+    private UserCacheService userCacheService;
+
+    @Mock
+    private FollowGraphService followGraphService;
+
     @InjectMocks
     private UserService userService;
 
@@ -61,7 +82,7 @@ public class UserServiceTests {
     public void findById_UserDoesNotExist_ThrowsException() {
         // given
         UUID uuid = UUID.randomUUID();
-        given(userRepository.existsById(uuid)).willReturn(false);
+        given(userCacheService.get(eq(uuid), any())).willReturn(Optional.empty());
 
         // when
         String message = assertThrows(ResourceNotFoundException.class, () -> {
@@ -77,14 +98,61 @@ public class UserServiceTests {
     public void findById_UserExists_DoesNotThrow() throws ResourceNotFoundException {
         // given
         UserDto userDto = new UserDto(UUID.randomUUID(), "user", "", "", "");
-        given(userRepository.existsById(userDto.getId())).willReturn(true);
+        given(userCacheService.get(eq(userDto.getId()), any())).willReturn(Optional.of(userDto));
+
+        // when
+        UserDto foundUser = userService.findById(userDto.getId());
+
+        // then
+        assertNotNull(foundUser); // ensure that the cache is called properly
+        verify(userRepository, times(0)).existsById(any());
+    }
+
+    @Test
+    @DisplayName("findById loads users which are not cached with the repository")
+    public void findById_UserNotCached_LoadsUserWithRepository() throws ResourceNotFoundException {
+        // given
+        UserDto userDto = new UserDto(UUID.randomUUID(), "user", "", "", "");
         given(userRepository.findByUserId(userDto.getId())).willReturn(userDto);
+        given(userCacheService.get(eq(userDto.getId()), any())).willAnswer(a -> {
+            Function<UUID, UserDto> loader = a.getArgument(1);
+            return Optional.ofNullable(loader.apply(a.getArgument(0)));
+        });
 
         // when
         UserDto foundUser = userService.findById(userDto.getId());
 
         // then
-        assertNotNull(foundUser); // ensure that repository is called properly
+        assertEquals(userDto, foundUser);
+        verify(userRepository, times(1)).findByUserId(userDto.getId());
+    }
+
+    @Test
+    @DisplayName("findByIds throws an IllegalArgumentException when too many ids are provided")
+    public void findByIds_TooManyIds_ThrowsException() {
+        var ids = IntStream.rangeClosed(0, UserService.MAX_IDS_PER_LOOKUP).mapToObj(i -> UUID.randomUUID()).toList();
+
+        // when
+        String message = assertThrows(IllegalArgumentException.class, () -> {
+            userService.findByIds(ids);
+        }).getMessage();
+
+        // then
+        assertEquals(String.format("at most %d users can be fetched at once", UserService.MAX_IDS_PER_LOOKUP), message);
+    }
+
+    @Test
+    @DisplayName("findByIds calls the repository once with unique ids")
+    public void findByIds_DuplicateIds_CallsRepositoryOnceWithUniqueIds() {
+        // given
+        UserDto userDto = new UserDto(UUID.randomUUID(), "user", "", "", "");
+        given(userRepository.findByUserIds(Set.of(userDto.getId()))).willReturn(List.of(userDto));
+
+        // when
+        var foundUsers = userService.findByIds(List.of(userDto.getId(), userDto.getId()));
+
+        // then
+        assertEquals(List.of(userDto), foundUsers);
     }
 
     @Test
@@ -133,6 +201,10 @@ public class UserServiceTests {
         verify(followRepository, times(1)).save(argThat(
                 a -> a.getFollowId().equals(new FollowId(userId, userId))
         ));
+        // creates zeroed counters, which do not include the self-follow
+        verify(followCountersRepository, times(1)).save(argThat(
+                a -> a.getUserId().equals(userId) && a.getFollowing() == 0 && a.getFollowers() == 0
+        ));
         verify(followPublisher, times(1)).publishFollow(argThat(
                 a -> a.getFollowingUser().equals(userId) && a.getFollowingUser().equals(a.getFollowedUser())
         ));
@@ -143,15 +215,17 @@ public class UserServiceTests {
     public void updateUserInfo_UserDoesNotExist_ThrowsException() {
         // given
         UUID uuid = UUID.randomUUID();
-        given(userRepository.existsById(uuid)).willReturn(false);
+        given(userRepository.updateUserInfo(uuid, "new name", null, null)).willReturn(0);
 
         // when
         String message = assertThrows(ResourceNotFoundException.class, () -> {
-            userService.updateUserInfo(uuid, null);
+            userService.updateUserInfo(uuid, new UserUpdateDto("new name", null, null));
         }).getMessage();
 
         // then
         assertEquals(String.format("user %s could not be found", uuid), message);
+        verify(userCacheService, times(0)).evict(any());
+        verify(userUpdatePublisher, times(0)).publishUserUpdate(any());
     }
 
     @Test
@@ -160,15 +234,13 @@ public class UserServiceTests {
         // given
         var id = UUID.randomUUID();
         UserUpdateDto allFields = new UserUpdateDto("new name", "http://test.com", "description");
-        given(userRepository.existsById(id)).willReturn(true);
+        given(userRepository.updateUserInfo(id, "new name", "http://test.com", "description")).willReturn(1);
 
         // when
         userService.updateUserInfo(id, allFields);
 
         // then
-        verify(userRepository, times(1)).updateDisplayedName(id, allFields.getDisplayedName());
-        verify(userRepository, times(1)).updateAviUrl(id, allFields.getAviUrl());
-        verify(userRepository, times(1)).updateDescription(id, allFields.getDescription());
+        verify(userRepository, times(1)).updateUserInfo(id, "new name", "http://test.com", "description");
         verify(userRepository, times(1)).findByUserId(id);
     }
 
@@ -178,15 +250,13 @@ public class UserServiceTests {
         // given
         var id = UUID.randomUUID();
         UserUpdateDto onlyDName = new UserUpdateDto("new name", null, null);
-        given(userRepository.existsById(id)).willReturn(true);
+        given(userRepository.updateUserInfo(id, "new name", null, null)).willReturn(1);
 
         // when
         userService.updateUserInfo(id, onlyDName);
 
         // then
-        verify(userRepository, times(1)).updateDisplayedName(id, onlyDName.getDisplayedName());
-        verify(userRepository, times(0)).updateAviUrl(any(), any());
-        verify(userRepository, times(0)).updateDescription(any(), any());
+        verify(userRepository, times(1)).updateUserInfo(id, "new name", null, null);
         verify(userRepository, times(1)).findByUserId(id);
     }
 
@@ -196,15 +266,13 @@ public class UserServiceTests {
         // given
         var id = UUID.randomUUID();
         UserUpdateDto onlyAvi = new UserUpdateDto(null, "http://test.com", null);
-        given(userRepository.existsById(id)).willReturn(true);
+        given(userRepository.updateUserInfo(id, null, "http://test.com", null)).willReturn(1);
 
         // when
         userService.updateUserInfo(id, onlyAvi);
 
         // then
-        verify(userRepository, times(0)).updateDisplayedName(any(), any());
-        verify(userRepository, times(1)).updateAviUrl(id, onlyAvi.getAviUrl());
-        verify(userRepository, times(0)).updateDescription(any(), any());
+        verify(userRepository, times(1)).updateUserInfo(id, null, "http://test.com", null);
         verify(userRepository, times(1)).findByUserId(id);
     }
 
@@ -214,18 +282,31 @@ public class UserServiceTests {
         // given
         var id = UUID.randomUUID();
         UserUpdateDto onlyDesc = new UserUpdateDto(null, null, "desc");
-        given(userRepository.existsById(id)).willReturn(true);
+        given(userRepository.updateUserInfo(id, null, null, "desc")).willReturn(1);
 
         // when
         userService.updateUserInfo(id, onlyDesc);
 
         // then
-        verify(userRepository, times(0)).updateDisplayedName(any(), any());
-        verify(userRepository, times(0)).updateAviUrl(any(), any());
-        verify(userRepository, times(1)).updateDescription(id, onlyDesc.getDescription());
+        verify(userRepository, times(1)).updateUserInfo(id, null, null, "desc");
         verify(userRepository, times(1)).findByUserId(id);
     }
 
+    @Test
+    @DisplayName("updateUserInfo evicts the cached user locally and on other instances")
+    public void updateUserInfo_UserUpdated_EvictsCachedUser() throws ResourceNotFoundException {
+        // given
+        var id = UUID.randomUUID();
+        given(userRepository.updateUserInfo(id, "new name", null, null)).willReturn(1);
+
+        // when
+        userService.updateUserInfo(id, new UserUpdateDto("new name", null, null));
+
+        // then
+        verify(userCacheService, times(1)).evict(id);
+        verify(userUpdatePublisher, times(1)).publishUserUpdate(id);
+    }
+
     @Test
     @DisplayName("followExists uses the repository")
     public void followExists_ProvidedIds_UsesRepository() {
@@ -240,6 +321,49 @@ public class UserServiceTests {
                 .existsById(new FollowId(source, target));
     }
 
+    @Test
+    @DisplayName("findFollowStatuses throws an IllegalArgumentException when too many ids are provided")
+    public void findFollowStatuses_TooManyIds_ThrowsException() {
+        var ids = IntStream.range(0, UserService.MAX_IDS_PER_LOOKUP + 1).mapToObj(i -> UUID.randomUUID()).toList();
+
+        // when
+        String message = assertThrows(IllegalArgumentException.class, () ->
+                userService.findFollowStatuses(UUID.randomUUID(), ids)
+        ).getMessage();
+
+        // then
+        assertEquals("at most 100 follows can be checked at once", message);
+    }
+
+    @Test
+    @DisplayName("findFollowStatuses does not query the repository when no ids are provided")
+    public void findFollowStatuses_NoIds_ReturnsEmptyMap() {
+        // when
+        var statuses = userService.findFollowStatuses(UUID.randomUUID(), List.of());
+
+        // then
+        assertEquals(0, statuses.size());
+        verify(followRepository, times(0)).findFollowedAmong(any(), any());
+    }
+
+    @Test
+    @DisplayName("findFollowStatuses calls the repository once and returns a status of every user")
+    public void findFollowStatuses_IdsProvided_ReturnsStatusOfEveryUser() {
+        var source = UUID.randomUUID();
+        var followed = UUID.randomUUID();
+        var notFollowed = UUID.randomUUID();
+
+        // given
+        given(followRepository.findFollowedAmong(source, Set.of(followed, notFollowed))).willReturn(List.of(followed));
+
+        // when
+        var statuses = userService.findFollowStatuses(source, List.of(followed, notFollowed, followed));
+
+        // then
+        assertEquals(Map.of(followed, true, notFollowed, false), statuses);
+        verify(followRepository, times(1)).findFollowedAmong(any(), any());
+    }
+
     @Test
     @DisplayName("followUser throws a ResourceNotFoundException when following user id belongs to a non existent user")
     public void followUser_FollowingUserIdNotFound_ThrowsException() {
@@ -278,24 +402,21 @@ public class UserServiceTests {
     }
 
     @Test
-    @DisplayName("followUser uses the follow repository")
-    public void followUser_UsersFound_UsesRepositories() throws ResourceNotFoundException {
+    @DisplayName("followUser creates the follow and publishes it when the follow did not exist")
+    public void followUser_FollowCreated_PublishesFollow() throws ResourceNotFoundException {
         var source = UUID.randomUUID();
         var target = UUID.randomUUID();
 
         // given
-        given(userRepository.existsById(source)).willReturn(true);
-        given(userRepository.existsById(target)).willReturn(true);
-        given(followRepository.existsById(new FollowId(source, target))).willReturn(true);
+        given(followRepository.createFollow(source, target)).willReturn(1);
 
         // when
         boolean result = userService.followUser(source, target);
 
         // then
         assertTrue(result);
-        verify(followRepository, times(1)).save(
-                argThat(a -> a.getFollowId().equals(new FollowId(source, target)))
-        );
+        verify(userRepository, times(0)).existsById(any());
+        verify(followCountersRepository, times(1)).updateCounters(source, target, 1);
         verify(followPublisher, times(1)).publishFollow(
                 argThat(a -> a.getFollowingUser().equals(source) && a.getFollowedUser().equals(target))
         );
@@ -308,22 +429,60 @@ public class UserServiceTests {
     }
 
     @Test
-    @DisplayName("unfollowUser uses the follow repository")
-    public void unfollowUser_UsersFound_UsesRepositories() {
+    @DisplayName("followUser neither updates counters nor publishes anything when the follow already exists")
+    public void followUser_FollowAlreadyExists_DoesNotPublish() throws ResourceNotFoundException {
+        var source = UUID.randomUUID();
+        var target = UUID.randomUUID();
+
+        // given
+        given(followRepository.createFollow(source, target)).willReturn(0);
+        given(userRepository.existsById(source)).willReturn(true);
+        given(userRepository.existsById(target)).willReturn(true);
+
+        // when
+        boolean result = userService.followUser(source, target);
+
+        // then
+        assertFalse(result);
+        verify(followCountersRepository, times(0)).updateCounters(any(), any(), anyLong());
+        verify(followPublisher, times(0)).publishFollow(any());
+        verify(notificationPublisher, times(0)).publishNotification(any());
+    }
+
+    @Test
+    @DisplayName("unfollowUser neither updates counters nor publishes anything when the follow does not exist")
+    public void unfollowUser_FollowNotFound_DoesNotPublish() {
         var source = UUID.randomUUID();
         var target = UUID.randomUUID();
-        var fId = new FollowId(source, target);
 
         // given
-        given(followRepository.existsById(fId)).willReturn(false);
+        given(followRepository.deleteFollow(source, target)).willReturn(0);
+
+        // when
+        boolean result = userService.unfollowUser(source, target);
+
+        // then
+        assertFalse(result);
+        verify(followCountersRepository, times(0)).updateCounters(any(), any(), anyLong());
+        verify(followPublisher, times(0)).publishUnfollow(any());
+    }
+
+    @Test
+    @DisplayName("unfollowUser removes the follow and publishes it when the follow existed")
+    public void unfollowUser_FollowRemoved_PublishesUnfollow() {
+        var source = UUID.randomUUID();
+        var target = UUID.randomUUID();
+
+        // given
+        given(followRepository.deleteFollow(source, target)).willReturn(1);
 
         // when
         boolean result = userService.unfollowUser(source, target);
 
         // then
         assertTrue(result);
-        verify(followRepository, times(1)).deleteById(eq(fId));
-        verify(followRepository, times(1)).existsById(eq(fId));
+        verify(followRepository, times(1)).deleteFollow(source, target);
+        verify(followCountersRepository, times(1)).updateCounters(source, target, -1);
         verify(followPublisher, times(1)).publishUnfollow(
                 argThat(a -> a.getFollowingUser().equals(source) && a.getFollowedUser().equals(target))
         );
@@ -366,6 +525,25 @@ public class UserServiceTests {
         var id = UUID.randomUUID();
 
         // given
+        given(followCountersRepository.findCountersOfUser(id)).willReturn(Optional.of(new FollowDto(100L, 500L)));
+
+        // when
+        var result = userService.getUserProfileCounters(id);
+
+        // then
+        assertEquals(100L, result.getFollowing());
+        assertEquals(500L, result.getFollowers());
+        verify(followRepository, times(0)).countUserFollowing(any());
+        verify(followRepository, times(0)).countUserFollowers(any());
+    }
+
+    @Test
+    @DisplayName("getUserProfileCounters counts and stores counters which have not been stored yet")
+    public void getUserProfileCounters_CountersNotStored_CountsAndStoresCounters() throws ResourceNotFoundException {
+        var id = UUID.randomUUID();
+
+        // given
+        given(followCountersRepository.findCountersOfUser(id)).willReturn(Optional.empty());
         given(userRepository.existsById(id)).willReturn(true);
         given(followRepository.countUserFollowing(id)).willReturn(100L);
         given(followRepository.countUserFollowers(id)).willReturn(500L);
@@ -376,6 +554,7 @@ public class UserServiceTests {
         // then
         assertEquals(100L, result.getFollowing());
         assertEquals(500L, result.getFollowers());
+        verify(followCountersRepository, times(1)).createCounters(id, 100L, 500L);
     }
 
     @Test
@@ -510,7 +689,7 @@ public class UserServiceTests {
         given(userRepository.existsById(id)).willReturn(true);
         given(userRepository.existsById(target)).willReturn(true);
         given(followRepository.findAllKnownUserFollowers(
-                eq(id), eq(target), isA(Pageable.class)
+                eq(id), eq(target), eq(PageRequest.of(0, 10, Sort.by("id")))
         )).willReturn(new PageImpl<>(List.of(userDto)));
 
         // when
@@ -523,6 +702,74 @@ public class UserServiceTests {
         assertTrue(page.stream().anyMatch(e -> e.getId().equals(id)));
     }
 
+    @Test
+    @DisplayName("findAllKnownUserFollowers reads sorted pages from the follow repository even when the follow graph is loaded")
+    public void findAllKnownUserFollowers_PageSorted_UsesRepository() throws ResourceNotFoundException {
+        var source = UUID.randomUUID();
+        var target = UUID.randomUUID();
+        var pageable = PageRequest.of(0, 10, Sort.by("username"));
+
+        // given
+        given(userRepository.existsById(source)).willReturn(true);
+        given(userRepository.existsById(target)).willReturn(true);
+        given(followRepository.findAllKnownUserFollowers(source, target, pageable)).willReturn(Page.empty());
+
+        // when
+        userService.findAllKnownUserFollowers(source, target, pageable);
+
+        // then
+        verify(followRepository, times(1)).findAllKnownUserFollowers(source, target, pageable);
+        verify(followGraphService, times(0)).findKnownFollowers(any(), any());
+    }
+
+    @Test
+    @DisplayName("findAllKnownUserFollowers reads only users on the page when the follow graph is loaded")
+    public void findAllKnownUserFollowers_GraphLoaded_ReadsOnlyUsersOnPage() throws ResourceNotFoundException {
+        var source = UUID.randomUUID();
+        var target = UUID.randomUUID();
+        var known = IntStream.range(0, 5).mapToObj(i -> UUID.randomUUID()).toList();
+        var pageIds = known.subList(2, 4);
+
+        // given
+        given(userRepository.existsById(source)).willReturn(true);
+        given(userRepository.existsById(target)).willReturn(true);
+        given(followGraphService.findKnownFollowers(source, target)).willReturn(Optional.of(known));
+        // the repository returns users in a different order than the graph
+        given(userRepository.findByUserIds(pageIds)).willReturn(List.of(
+                new UserDto(pageIds.get(1), "user2", "", "", ""),
+                new UserDto(pageIds.get(0), "user1", "", "", "")
+        ));
+
+        // when
+        var page = userService.findAllKnownUserFollowers(source, target, PageRequest.of(1, 2));
+
+        // then
+        assertEquals(5, page.getTotalElements());
+        assertEquals(pageIds, page.getContent().stream().map(UserDto::getId).toList());
+        verify(followRepository, times(0)).findAllKnownUserFollowers(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("findAllKnownUserFollowers does not read any users when the page is beyond known followers")
+    public void findAllKnownUserFollowers_PageBeyondKnownFollowers_ReturnsEmptyPage() throws ResourceNotFoundException {
+        var source = UUID.randomUUID();
+        var target = UUID.randomUUID();
+
+        // given
+        given(userRepository.existsById(source)).willReturn(true);
+        given(userRepository.existsById(target)).willReturn(true);
+        given(followGraphService.findKnownFollowers(source, target))
+                .willReturn(Optional.of(List.of(UUID.randomUUID())));
+
+        // when
+        var page = userService.findAllKnownUserFollowers(source, target, PageRequest.of(3, 2));
+
+        // then
+        assertEquals(1, page.getTotalElements());
+        assertEquals(0, page.getContent().size());
+        verify(userRepository, times(0)).findByUserIds(any());
+    }
+
     @Test
     @DisplayName("findByUsername uses the correct repository when exact flag is false")
     public void findByUsername_ExactFalse_CallsCorrectRepository() {
@@ -556,4 +803,82 @@ public class UserServiceTests {
                 eq(pageable)
         );
     }
+
+    @Test
+    @DisplayName("autocomplete throws an IllegalArgumentException when the limit is out of range")
+    public void autocomplete_LimitOutOfRange_ThrowsException() {
+        // when
+        String message1 = assertThrows(IllegalArgumentException.class, () ->
+                userService.autocomplete("test", 0)
+        ).getMessage();
+        String message2 = assertThrows(IllegalArgumentException.class, () ->
+                userService.autocomplete("test", UserService.MAX_AUTOCOMPLETE_RESULTS + 1)
+        ).getMessage();
+
+        // then
+        assertEquals("'limit' has to be between 1 and 20", message1);
+        assertEquals(message1, message2);
+    }
+
+    @Test
+    @DisplayName("autocomplete throws an IllegalArgumentException when the prefix is blank")
+    public void autocomplete_BlankPrefix_ThrowsException() {
+        // when
+        String message = assertThrows(IllegalArgumentException.class, () ->
+                userService.autocomplete(" @", 5)
+        ).getMessage();
+
+        // then
+        assertEquals("'prefix' cannot be blank", message);
+    }
+
+    @Test
+    @DisplayName("autocomplete with a short prefix only matches usernames")
+    public void autocomplete_ShortPrefix_OnlyMatchesUsernames() {
+        var user = new UserDto(UUID.randomUUID(), "an", "An", "", "");
+
+        // given
+        given(userRepository.findByUsernamePrefix(eq("an"), argThat(a -> a.getPageSize() == 5))).willReturn(List.of(user));
+
+        // when
+        var result = userService.autocomplete("@An", 5);
+
+        // then
+        assertEquals(List.of(user), result);
+        verify(userRepository, times(0)).findByDisplayedNamePrefix(any(), any());
+    }
+
+    @Test
+    @DisplayName("autocomplete ranks username matches before displayed name matches and skips duplicates")
+    public void autocomplete_UsernameAndDisplayedNameMatches_RanksUsernamesFirst() {
+        var usernameMatch = new UserDto(UUID.randomUUID(), "anna", "Anna", "", "");
+        var displayedNameMatch = new UserDto(UUID.randomUUID(), "user1", "Anna Smith", "", "");
+        var otherDisplayedNameMatch = new UserDto(UUID.randomUUID(), "user2", "Annabel", "", "");
+
+        // given
+        given(userRepository.findByUsernamePrefix(eq("anna"), any())).willReturn(List.of(usernameMatch));
+        given(userRepository.findByDisplayedNamePrefix(eq("anna"), any())).willReturn(
+                List.of(usernameMatch, displayedNameMatch, otherDisplayedNameMatch)
+        );
+
+        // when
+        var result = userService.autocomplete("anna", 2);
+
+        // then
+        assertEquals(List.of(usernameMatch, displayedNameMatch), result);
+    }
+
+    @Test
+    @DisplayName("autocomplete escapes wildcards in prefixes which cannot match any username")
+    public void autocomplete_PrefixWithWildcards_EscapesWildcardsAndSkipsUsernames() {
+        // given
+        given(userRepository.findByDisplayedNamePrefix(eq("100\\%\\_"), any())).willReturn(List.of());
+
+        // when
+        var result = userService.autocomplete("100%_", 5);
+
+        // then
+        assertEquals(0, result.size());
+        verify(userRepository, times(0)).findByUsernamePrefix(any(), any());
+    }
 }